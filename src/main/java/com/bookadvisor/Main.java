@@ -1,21 +1,51 @@
 package com.bookadvisor;
 
+import com.bookadvisor.batch.BatchSearchRunner;
+import com.bookadvisor.batch.BatchSummary;
+import com.bookadvisor.cache.CoverCache;
+import com.bookadvisor.cache.DiskHttpCache;
+import com.bookadvisor.exchange.ExchangeFormat;
+import com.bookadvisor.exchange.LibraryExporter;
+import com.bookadvisor.exchange.LibraryImporter;
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.importer.ImportSummary;
+import com.bookadvisor.importer.WorksDumpImporter;
+import com.bookadvisor.observer.CoverPrefetcher;
+import com.bookadvisor.observer.SearchIndexUpdater;
+import com.bookadvisor.search.FallbackSearchProvider;
+import com.bookadvisor.search.LocalSearchProvider;
+import com.bookadvisor.search.OpenLibrarySearchProvider;
 import com.bookadvisor.service.BookService;
 import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.storage.LibraryConverter;
+import com.bookadvisor.storage.ShardedLibrary;
+import com.bookadvisor.storage.btree.BTreeBookStore;
 import com.bookadvisor.factory.BookDtoBuilder;
 import com.bookadvisor.interfaces.BookSaver;
 import com.bookadvisor.model.BookDto;
 import com.bookadvisor.strategy.SaveStrategy;
 import com.bookadvisor.strategy.FileSaveStrategy;
 import com.bookadvisor.strategy.ConsoleSaveStrategy;
+import com.bookadvisor.strategy.BTreeSaveStrategy;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
 
 /**
  * BookAdvisor CLI - version with persistent library on file.
  * This is the main entry point for the BookAdvisor command-line application.
  * It allows users to search, add, remove, and view books in their library,
- * as well as switch between different save strategies (file or console).
+ * as well as switch between different save strategies (file, tree library or console).
  */
 public class Main {
     private static final Scanner scanner = new Scanner(System.in);
@@ -26,17 +56,53 @@ public class Main {
     // Service for managing the local book library
     private static final BookLibraryService libraryService = new BookLibraryService();
 
-    // BookSaver instance for saving books (using IoC)
-    private static final BookSaver saver = new BookLibraryService();
+    // BookSaver instance for saving books (using IoC), sharing the observers of the library service
+    private static final BookSaver saver = libraryService;
 
-    // Save strategy, can be switched between file and console
-    private static SaveStrategy saveStrategy = new FileSaveStrategy();
+    // Save strategy, can be switched between file, tree library and console
+    private static SaveStrategy saveStrategy = new FileSaveStrategy(libraryService);
+
+    // Tree library used by the tree save mode, opened on first use
+    private static BTreeBookStore treeStore;
+
+    // Local copies of the covers of saved books (null if the cache is disabled or not set up)
+    private static CoverCache coverCache;
 
     /**
      * Program entry point with interactive menu.
-     * @param args command-line arguments (not used)
+     * With {@code --batch <file>} the program runs the queries of the file
+     * (or of stdin for "-") without interaction instead; see {@link #runBatch(String[])}.
+     * With {@code --import <dump>} it imports an Open Library works dump; see {@link #runImport(String[])}.
+     * With {@code --convert <source>} it converts a library file between the text, binary and compressed formats;
+     * see {@link #runConvert(String[])}.
+     * With {@code --shard <library>} it splits a library into shards or changes their number;
+     * see {@link #runShard(String[])}.
+     * With {@code --export <file>} and {@code --import-books <file>} it streams the library to or
+     * from JSON Lines or CSV; see {@link #runExport(String[])} and {@link #runImportBooks(String[])}.
+     * @param args command-line arguments
      */
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--batch")) {
+            System.exit(runBatch(args));
+        }
+        if (Arrays.asList(args).contains("--import")) {
+            System.exit(runImport(args));
+        }
+        if (Arrays.asList(args).contains("--convert")) {
+            System.exit(runConvert(args));
+        }
+        if (Arrays.asList(args).contains("--shard")) {
+            System.exit(runShard(args));
+        }
+        if (Arrays.asList(args).contains("--export")) {
+            System.exit(runExport(args));
+        }
+        if (Arrays.asList(args).contains("--import-books")) {
+            System.exit(runImportBooks(args));
+        }
+
+        setUpSearch();
+        setUpCoverCache();
 
         String option;
         do {
@@ -56,6 +122,49 @@ public class Main {
         } while (!option.equals("0"));
     }
 
+    /**
+     * Sets up the services behind searches: the work cache and the search backend.
+     * Only called by the modes that search, so the other modes do not touch the caches.
+     */
+    private static void setUpSearch() {
+        // Keep work documents on disk so descriptions survive restarts
+        try {
+            bookService.setWorkCache(new DiskHttpCache(Paths.get("cache", "works")));
+        } catch (IOException e) {
+            System.err.println("⚠️ Work cache disabled: " + e.getMessage());
+        }
+
+        // Pick the search backend: -Dbookadvisor.search=openlibrary (default), local or auto
+        String backend = System.getProperty("bookadvisor.search", OpenLibrarySearchProvider.NAME);
+        if (backend.equals(LocalSearchProvider.NAME) || backend.equals("auto")) {
+            // Index the saved library on first search, and keep the index up to date
+            // as books are saved and removed, or the library is overwritten
+            LocalSearchProvider local = new LocalSearchProvider(libraryService::loadBooks);
+            SearchIndexUpdater indexUpdater = new SearchIndexUpdater(local);
+            libraryService.addObserver(indexUpdater);
+            // Also follow the books saved and removed by other running instances
+            libraryService.followExternalChanges(indexUpdater);
+            bookService.setSearchProvider(backend.equals("auto")
+                    ? new FallbackSearchProvider(local, bookService.getSearchProvider()) : local);
+        } else if (!backend.equals(OpenLibrarySearchProvider.NAME)) {
+            System.err.println("⚠️ Unknown search backend '" + backend + "', using Open Library");
+        }
+    }
+
+    /**
+     * Sets up the cover cache of the interactive mode, which downloads the cover
+     * of every saved book in the background.
+     */
+    private static void setUpCoverCache() {
+        try {
+            coverCache = new CoverCache(Paths.get("cache", "covers"), HttpTransport.getInstance());
+            coverCache.startSweeper(Duration.ofMinutes(10));
+            libraryService.addObserver(new CoverPrefetcher(coverCache));
+        } catch (IOException e) {
+            System.err.println("⚠️ Cover cache disabled: " + e.getMessage());
+        }
+    }
+
     /**
      * Prints the main menu options to the console.
      */
@@ -67,7 +176,7 @@ public class Main {
         System.out.println("4. Remove a book from the library");
         System.out.println("5. Show BookDto attributes (via Reflection)");
         System.out.println("6. Manually add a book (Builder)");
-        System.out.println("7. Change save mode (file/console)");
+        System.out.println("7. Change save mode (file/tree/console)");
         System.out.println("0. Exit");
         System.out.print("Select an option: ");
     }
@@ -91,15 +200,20 @@ public class Main {
             System.out.println("\n👽 Results found:");
             for (int i = 0; i < books.size(); i++) {
                 BookDto b = books.get(i);
-                System.out.println((i + 1) + ". " + b.getTitle() + " by " + b.getAuthor());
+                System.out.println((i + 1) + ". " + b.getTitle() + " by " + b.getAuthor()
+                        + (libraryService.isSaved(b) ? " (already in your library)" : ""));
             }
 
             System.out.print("\nSelect the number of the book to save (0 to cancel): ");
             try {
                 int choice = Integer.parseInt(scanner.nextLine().trim());
                 if (choice > 0 && choice <= books.size()) {
-                    saver.save(books.get(choice - 1));
-                    System.out.println("✅ Book saved to your library.");
+                    switch (libraryService.saveBook(books.get(choice - 1))) {
+                        case SAVED -> System.out.println("✅ Book saved to your library.");
+                        case MERGED -> System.out.println("✅ Book already in your library: its details were updated.");
+                        case REJECTED -> System.out.println("⚠️ Book already in your library: nothing was changed.");
+                        case FAILED -> System.out.println("❌ The book could not be saved.");
+                    }
                 } else if (choice != 0) {
                     System.out.println("❌ Invalid choice.");
                 }
@@ -114,8 +228,15 @@ public class Main {
      * If the library is empty, informs the user.
      */
     private static void viewLibrary() {
-        List<BookDto> books = libraryService.loadBooks();
+        printLibrary(libraryService.loadBooks());
+    }
 
+    /**
+     * Prints the given books of the library, numbered from 1.
+     *
+     * @param books the books to print
+     */
+    private static void printLibrary(List<BookDto> books) {
         if (books.isEmpty()) {
             System.out.println("📭 The library is empty.");
         } else {
@@ -128,7 +249,8 @@ public class Main {
                 if (coverUrl == null || !coverUrl.startsWith("http")) {
                     System.out.println("   Cover: Empty");
                 } else if (!coverUrl.isEmpty()) {
-                    System.out.println("   Cover: " + coverUrl);
+                    Path localCover = coverCache != null ? coverCache.lookup(coverUrl) : null;
+                    System.out.println("   Cover: " + coverUrl + (localCover != null ? " (local: " + localCover + ")" : ""));
                 } else {
                     System.out.println("   Cover: N/A");
                 }
@@ -145,7 +267,7 @@ public class Main {
     }
 
     /**
-     * Removes a selected book from the library and updates the file.
+     * Removes a selected book from the library by appending a tombstone to the file.
      */
     private static void removeBook() {
         List<BookDto> books = libraryService.loadBooks();
@@ -154,13 +276,12 @@ public class Main {
             return;
         }
 
-        viewLibrary();
+        printLibrary(books);
         System.out.print("🗑️ Enter the number of the book to remove: ");
         try {
             int index = Integer.parseInt(scanner.nextLine()) - 1;
             if (index >= 0 && index < books.size()) {
-                books.remove(index);
-                libraryService.saveAllInternal(books);
+                libraryService.removeBook(books.get(index).getKey());
                 System.out.println("✅ Book removed.");
             } else {
                 System.out.println("❌ Invalid choice.");
@@ -219,16 +340,304 @@ public class Main {
     }
 
     /**
-     * Allows switching between saving to a file and printing to the console.
+     * Cycles between saving to the library file, saving to the tree library
+     * ("library.db") and printing to the console.
      */
     private static void toggleSaveStrategy() {
         if (saveStrategy instanceof FileSaveStrategy) {
+            try {
+                if (treeStore == null) {
+                    treeStore = BTreeBookStore.open(Paths.get("library.db"));
+                    Runtime.getRuntime().addShutdownHook(new Thread(Main::closeTreeStore));
+                }
+                saveStrategy = new BTreeSaveStrategy(treeStore);
+                System.out.println("✅ Save mode set to TREE (" + treeStore.getFile() + ", "
+                        + treeStore.size() + " books).");
+            } catch (IOException e) {
+                System.out.println("❌ Tree library unavailable: " + e.getMessage());
+                saveStrategy = new ConsoleSaveStrategy();
+                System.out.println("✅ Save mode set to CONSOLE.");
+            }
+        } else if (saveStrategy instanceof BTreeSaveStrategy) {
             saveStrategy = new ConsoleSaveStrategy();
             System.out.println("✅ Save mode set to CONSOLE.");
         } else {
-            saveStrategy = new FileSaveStrategy();
+            saveStrategy = new FileSaveStrategy(libraryService);
             System.out.println("✅ Save mode set to FILE.");
         }
     }
 
+    /**
+     * Checkpoints and closes the tree library on exit.
+     */
+    private static void closeTreeStore() {
+        try {
+            treeStore.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not close the tree library: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the non-interactive batch mode:
+     * {@code --batch <queries.txt|-> [--out <results.jsonl>] [--parallelism <n>]}.
+     * Results are written as JSON Lines to the output file (stdout by default),
+     * and the throughput/latency summary is printed to stderr.
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runBatch(String[] args) {
+        String input = null;
+        String output = null;
+        int parallelism = 8;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch" -> input = args[++i];
+                    case "--out" -> output = args[++i];
+                    case "--parallelism" -> parallelism = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --batch <queries.txt|-> [--out <results.jsonl>] [--parallelism <n>]");
+            return 2;
+        }
+
+        setUpSearch();
+        // Every description ends up in the output, so fetch them as soon as each search completes
+        bookService.setDescriptionPrefetch(BookService.MAX_RESULTS);
+        BatchSearchRunner runner = new BatchSearchRunner(bookService, parallelism);
+        try (Reader in = input.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.UTF_8);
+             Writer out = output == null
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8)) {
+            BatchSummary summary = runner.run(in, out);
+            System.err.println(summary);
+            return summary.getFailures() == 0 ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("❌ Batch failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Runs the bulk import of an Open Library works dump:
+     * {@code --import <works.txt.gz> [--into <library file>] [--batch-size <n>]}.
+     * Progress is checkpointed next to the dump, so running the same command again
+     * after an interruption resumes the import.
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runImport(String[] args) {
+        String dump = null;
+        String into = null;
+        int batchSize = WorksDumpImporter.DEFAULT_BATCH_SIZE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--import" -> dump = args[++i];
+                    case "--into" -> into = args[++i];
+                    case "--batch-size" -> batchSize = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --import <works.txt.gz> [--into <library file>] [--batch-size <n>]");
+            return 2;
+        }
+
+        BookLibraryService target = into == null ? libraryService : new BookLibraryService(into);
+        WorksDumpImporter importer = new WorksDumpImporter(target, batchSize, Runtime.getRuntime().availableProcessors());
+        try {
+            ImportSummary summary = importer.importDump(Paths.get(dump), Paths.get(dump + ".checkpoint"));
+            System.err.println(summary);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("❌ Import failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Converts a library file to the other format:
+     * {@code --convert <library file> --to <converted file> [--compress]}. A text
+     * library is converted to binary, and a binary or compressed library to text.
+     * With {@code --compress} a text or binary library is converted to the
+     * block-compressed format instead.
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runConvert(String[] args) {
+        String source = null;
+        String target = null;
+        boolean compress = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--convert" -> source = args[++i];
+                    case "--to" -> target = args[++i];
+                    case "--compress" -> compress = true;
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (target == null) {
+                throw new IllegalArgumentException("Missing --to");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --convert <library file> --to <converted file> [--compress]");
+            return 2;
+        }
+
+        try {
+            long start = System.nanoTime();
+            long records = compress ? LibraryConverter.compress(Paths.get(source), Paths.get(target))
+                    : LibraryConverter.convert(Paths.get(source), Paths.get(target));
+            System.err.printf("✅ Converted %d records in %d ms (%d -> %d bytes)%n", records,
+                    (System.nanoTime() - start) / 1_000_000, Files.size(Paths.get(source)), Files.size(Paths.get(target)));
+            return 0;
+        } catch (IOException e) {
+            System.err.println("❌ Conversion failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Splits a library file into shards, or changes the number of shards of a
+     * sharded library: {@code --shard <library file> --shards <count>}. The
+     * library path then holds the manifest of the shards.
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runShard(String[] args) {
+        String library = null;
+        int shards = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--shard" -> library = args[++i];
+                    case "--shards" -> shards = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (shards < 1) {
+                throw new IllegalArgumentException("Missing or invalid --shards");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --shard <library file> --shards <count>");
+            return 2;
+        }
+
+        try {
+            long start = System.nanoTime();
+            ShardedLibrary sharded = ShardedLibrary.reshard(Paths.get(library), shards);
+            System.err.printf("✅ Library spread over %d shards in %d ms%n", sharded.getShardCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ Sharding failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Exports the library, one book at a time:
+     * {@code --export <file> [--from <library file>] [--threads <n>]}. A file
+     * name ending with ".csv" (or ".csv.gz") is written as CSV, any other as
+     * JSON Lines, gzipped if it ends with ".gz".
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runExport(String[] args) {
+        String target = null;
+        String from = null;
+        int threads = 1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--export" -> target = args[++i];
+                    case "--from" -> from = args[++i];
+                    case "--threads" -> threads = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("Invalid --threads: " + threads);
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --export <file.jsonl|file.csv> [--from <library file>] [--threads <n>]");
+            return 2;
+        }
+
+        BookLibraryService source = from == null ? libraryService : new BookLibraryService(from);
+        Path file = Paths.get(target);
+        LibraryExporter exporter = new LibraryExporter(ExchangeFormat.of(file), threads, LibraryExporter.DEFAULT_BATCH_SIZE);
+        try {
+            long start = System.nanoTime();
+            long books = exporter.export(source, file);
+            System.err.printf("✅ Exported %d books in %d ms (%d bytes)%n", books,
+                    (System.nanoTime() - start) / 1_000_000, Files.size(file));
+            return 0;
+        } catch (IOException e) {
+            System.err.println("❌ Export failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Imports books exported with {@code --export}, one at a time:
+     * {@code --import-books <file> [--into <library file>] [--batch-size <n>]}.
+     * Imported books replace the saved books with the same keys.
+     *
+     * @param args command-line arguments
+     * @return the process exit code
+     */
+    private static int runImportBooks(String[] args) {
+        String source = null;
+        String into = null;
+        int batchSize = LibraryImporter.DEFAULT_BATCH_SIZE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--import-books" -> source = args[++i];
+                    case "--into" -> into = args[++i];
+                    case "--batch-size" -> batchSize = Integer.parseInt(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("❌ " + (e instanceof ArrayIndexOutOfBoundsException
+                    ? "Missing value for " + args[args.length - 1] : e.getMessage()));
+            System.err.println("Usage: --import-books <file.jsonl|file.csv> [--into <library file>] [--batch-size <n>]");
+            return 2;
+        }
+
+        BookLibraryService target = into == null ? libraryService : new BookLibraryService(into);
+        try {
+            long start = System.nanoTime();
+            long books = new LibraryImporter(target, batchSize).importFile(Paths.get(source));
+            System.err.printf("✅ Imported %d books in %d ms%n", books, (System.nanoTime() - start) / 1_000_000);
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("❌ Import failed: " + e.getMessage());
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package com.bookadvisor.batch;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookService;
+import com.bookadvisor.util.AppLogger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs many searches from a query list without user interaction.
+ * <p>
+ * Queries are read one per line (blank lines and lines starting with {@code #}
+ * are skipped) and searched concurrently with {@link BookService#searchBooksAsync(String, java.time.Duration)},
+ * without a blocked thread per query. Each result is written as one JSON line
+ * as soon as its query completes, so output order follows completion order; a
+ * failed query gets a line with an {@code error} field. The reader never gets
+ * more than {@code parallelism} queries ahead of the searches, so memory use
+ * does not grow with the size of the input.
+ * </p>
+ */
+public class BatchSearchRunner {
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Service used to run the searches
+    private final BookService bookService;
+    // Number of searches in flight at the same time
+    private final int parallelism;
+
+    /**
+     * Creates a runner.
+     *
+     * @param bookService the service used to run the searches
+     * @param parallelism number of searches in flight at the same time
+     *                    (the service runs at most {@link BookService#SEARCH_CONCURRENCY} at once)
+     */
+    public BatchSearchRunner(BookService bookService, int parallelism) {
+        this.bookService = bookService;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Searches every query read from {@code queries} and writes the results to {@code out}
+     * as JSON Lines. Returns when all searches have completed.
+     *
+     * @param queries source of queries, one per line
+     * @param out     destination of the JSON lines
+     * @return the throughput and latency summary
+     * @throws IOException if reading the queries or writing the results fails
+     */
+    public BatchSummary run(Reader queries, Writer out) throws IOException {
+        LatencyStats latencies = new LatencyStats();
+        AtomicInteger failures = new AtomicInteger();
+        // Bounds the number of searches in flight, so the reader never gets far ahead
+        Semaphore pending = new Semaphore(parallelism);
+        long start = System.nanoTime();
+
+        try {
+            BufferedReader reader = new BufferedReader(queries);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String query = line.strip();
+                if (query.isEmpty() || query.startsWith("#")) {
+                    continue;
+                }
+                pending.acquire();
+                long t0 = System.nanoTime();
+                bookService.searchBooksAsync(query, BookService.DEFAULT_SEARCH_TIMEOUT).whenComplete((books, error) -> {
+                    try {
+                        long latency = System.nanoTime() - t0;
+                        latencies.record(latency);
+                        if (error != null) {
+                            failures.incrementAndGet();
+                            logger.warning("⚠️ Batch query failed: " + query + " (" + error + ")");
+                        }
+                        write(out, query, latency, books, error);
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                        logger.warning("⚠️ Batch query failed: " + query + " (" + e.getMessage() + ")");
+                    } finally {
+                        pending.release();
+                    }
+                });
+            }
+            // Wait for the searches still running
+            pending.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch interrupted");
+        }
+
+        out.flush();
+        return new BatchSummary(failures.get(), System.nanoTime() - start, latencies);
+    }
+
+    /**
+     * Writes the JSON line of one search.
+     */
+    private void write(Writer out, String query, long latency, List<BookDto> books, Throwable error) {
+        JSONArray results = new JSONArray();
+        if (books != null) {
+            for (BookDto book : books) {
+                results.put(toJson(book));
+            }
+        }
+        JSONObject json = new JSONObject()
+                .put("query", query)
+                .put("latencyMs", latency / 1_000_000)
+                .put("results", results);
+        if (error != null) {
+            json.put("error", String.valueOf(error.getMessage()));
+        }
+
+        synchronized (out) {
+            try {
+                out.write(json.toString());
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Converts a book to a JSON object.
+     *
+     * @param book the book
+     * @return the JSON representation
+     */
+    static JSONObject toJson(BookDto book) {
+        return new JSONObject()
+                .put("title", book.getTitle())
+                .put("author", book.getAuthor())
+                .put("coverUrl", book.getCoverUrl() != null ? book.getCoverUrl() : JSONObject.NULL)
+                .put("publishDate", book.getPublishDate())
+                .put("key", book.getKey() != null ? book.getKey() : JSONObject.NULL)
+                .put("description", book.getDescription() != null ? book.getDescription() : "");
+    }
+}
@@ -0,0 +1,93 @@
+package com.bookadvisor.batch;
+
+/**
+ * Throughput and latency summary of a batch run.
+ */
+public class BatchSummary {
+    private final int queries;
+    private final int failures;
+    private final long elapsedNanos;
+    private final long p50Nanos;
+    private final long p95Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    /**
+     * Creates a summary from the statistics of a finished run.
+     *
+     * @param failures     number of queries that failed
+     * @param elapsedNanos wall-clock duration of the run
+     * @param latencies    latency of each query
+     */
+    public BatchSummary(int failures, long elapsedNanos, LatencyStats latencies) {
+        this.queries = latencies.getCount();
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+        this.p50Nanos = latencies.percentile(50);
+        this.p95Nanos = latencies.percentile(95);
+        this.p99Nanos = latencies.percentile(99);
+        this.maxNanos = latencies.max();
+    }
+
+    /**
+     * Returns the number of queries processed.
+     *
+     * @return the query count
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Returns the number of queries that failed.
+     *
+     * @return the failure count
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the throughput of the run.
+     *
+     * @return queries per second
+     */
+    public double getQueriesPerSecond() {
+        return elapsedNanos == 0 ? 0 : queries / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Returns the median query latency.
+     *
+     * @return the p50 latency in milliseconds
+     */
+    public double getP50Millis() {
+        return p50Nanos / 1e6;
+    }
+
+    /**
+     * Returns the 95th percentile query latency.
+     *
+     * @return the p95 latency in milliseconds
+     */
+    public double getP95Millis() {
+        return p95Nanos / 1e6;
+    }
+
+    /**
+     * Returns the 99th percentile query latency.
+     *
+     * @return the p99 latency in milliseconds
+     */
+    public double getP99Millis() {
+        return p99Nanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "📊 %d queries (%d failed) in %.1f s: %.1f queries/s, latency p50 %.0f ms, p95 %.0f ms, p99 %.0f ms, max %.0f ms",
+                queries, failures, elapsedNanos / 1e9, getQueriesPerSecond(),
+                getP50Millis(), getP95Millis(), getP99Millis(), maxNanos / 1e6);
+    }
+}
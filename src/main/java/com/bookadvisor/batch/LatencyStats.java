@@ -0,0 +1,67 @@
+package com.bookadvisor.batch;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples and computes percentiles over them.
+ * <p>
+ * Samples are kept as primitive longs (8 bytes each), so a million queries
+ * cost about 8 MB. All methods are thread-safe.
+ * </p>
+ */
+public class LatencyStats {
+
+    private long[] samples = new long[1024];
+    private int count;
+
+    /**
+     * Records one latency sample.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Returns the number of recorded samples.
+     *
+     * @return the sample count
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of samples fall
+     * (nearest-rank method).
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the latency in nanoseconds, or 0 if there are no samples
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+
+    /**
+     * Returns the largest recorded latency.
+     *
+     * @return the maximum latency in nanoseconds, or 0 if there are no samples
+     */
+    public synchronized long max() {
+        long max = 0;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+}
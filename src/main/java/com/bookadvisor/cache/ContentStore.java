@@ -0,0 +1,123 @@
+package com.bookadvisor.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed file store.
+ * <p>
+ * Each blob is stored once, in a file named after the SHA-256 hash of its content
+ * (e.g. {@code 3f/3fa9...}). Storing the same content twice is a no-op, and a
+ * file, once written, never changes. Files are written to a temporary name and
+ * moved into place, so readers never see a partial blob.
+ * </p>
+ */
+public class ContentStore {
+
+    // Root directory of the store
+    private final Path root;
+
+    /**
+     * Creates a store rooted at the given directory, creating it if needed.
+     *
+     * @param root the root directory
+     * @throws IOException if the directory cannot be created
+     */
+    public ContentStore(Path root) throws IOException {
+        this.root = root;
+        Files.createDirectories(root);
+    }
+
+    /**
+     * Returns the root directory of the store.
+     *
+     * @return the root directory
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Stores a blob and returns its hash.
+     *
+     * @param data the content to store
+     * @return the SHA-256 hash of the content, in hex
+     * @throws IOException if the blob cannot be written
+     */
+    public String put(byte[] data) throws IOException {
+        String hash = hash(data);
+        Path target = resolve(hash);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), hash, ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Reads a blob.
+     *
+     * @param hash the hash returned by {@link #put(byte[])}
+     * @return the content
+     * @throws IOException if the blob does not exist or cannot be read
+     */
+    public byte[] read(String hash) throws IOException {
+        return Files.readAllBytes(resolve(hash));
+    }
+
+    /**
+     * Returns whether a blob is present.
+     *
+     * @param hash the hash of the blob
+     * @return true if the blob exists
+     */
+    public boolean contains(String hash) {
+        return Files.exists(resolve(hash));
+    }
+
+    /**
+     * Deletes a blob if it exists.
+     *
+     * @param hash the hash of the blob
+     * @throws IOException if the file cannot be deleted
+     */
+    public void delete(String hash) throws IOException {
+        Files.deleteIfExists(resolve(hash));
+    }
+
+    /**
+     * Returns the path of the file holding a blob.
+     *
+     * @param hash the hash of the blob
+     * @return the file path (which may not exist)
+     */
+    public Path resolve(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Computes the SHA-256 hash of some content.
+     *
+     * @param data the content
+     * @return the hash in lowercase hex
+     */
+    public static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JDK is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.bookadvisor.cache;
+
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.BoundedExecutor;
+import com.bookadvisor.util.SingleFlight;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Local cache of cover images.
+ * <p>
+ * Covers are downloaded once and kept in a {@link DiskHttpCache}, whose bodies
+ * live in a content-addressed store with a size cap and least-recently-used
+ * eviction. Open Library covers never change for a given id, so cached covers
+ * are only revalidated after a long time. Covers are served back as local file
+ * paths, or copied to a channel without passing through the Java heap.
+ * </p>
+ * <p>
+ * Covers can be prefetched in the background (see
+ * {@link com.bookadvisor.observer.CoverPrefetcher}), and a sweeper can be started
+ * to clean up files left behind by interrupted writes.
+ * </p>
+ */
+public class CoverCache implements AutoCloseable {
+
+    /**
+     * Default maximum total size of the cached covers (200 MiB).
+     */
+    public static final long DEFAULT_MAX_BYTES = 200L * 1024 * 1024;
+
+    /**
+     * Time a cached cover is used without revalidation.
+     */
+    public static final Duration FRESHNESS = Duration.ofDays(30);
+
+    /**
+     * Maximum number of covers downloaded in the background at the same time.
+     */
+    public static final int PREFETCH_CONCURRENCY = 4;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Cover bodies and their index
+    private final DiskHttpCache store;
+    // Transport used to download covers
+    private final HttpTransport transport;
+    // Executor running the background downloads
+    private final BoundedExecutor prefetchExecutor = new BoundedExecutor("cover-prefetch", PREFETCH_CONCURRENCY);
+    // Coalesces concurrent downloads of the same cover
+    private final SingleFlight<String, Path> downloads = new SingleFlight<>();
+    // Periodic sweeper, if started
+    private ScheduledExecutorService sweeper;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Creates a cover cache in the given directory with the default size cap.
+     *
+     * @param directory the cache directory
+     * @param transport the transport used to download covers
+     * @throws IOException if the directory cannot be created
+     */
+    public CoverCache(Path directory, HttpTransport transport) throws IOException {
+        this(directory, transport, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cover cache in the given directory.
+     *
+     * @param directory the cache directory
+     * @param transport the transport used to download covers
+     * @param maxBytes  maximum total size of the cached covers
+     * @throws IOException if the directory cannot be created
+     */
+    public CoverCache(Path directory, HttpTransport transport, long maxBytes) throws IOException {
+        this.store = new DiskHttpCache(directory, maxBytes, FRESHNESS);
+        this.transport = transport;
+    }
+
+    /**
+     * Returns the local file of a cover if it is cached, without contacting the network.
+     *
+     * @param coverUrl the cover URL
+     * @return the local file, or null if the cover is not cached
+     */
+    public Path lookup(String coverUrl) {
+        Path path = store.getCachedPath(transport.resolve(coverUrl).toString());
+        (path != null ? hits : misses).incrementAndGet();
+        return path;
+    }
+
+    /**
+     * Returns the local file of a cover, downloading it first if needed.
+     * The file may be evicted later, so it should be read promptly.
+     *
+     * @param coverUrl the cover URL
+     * @return the local file
+     * @throws IOException if the cover cannot be downloaded
+     */
+    public Path get(String coverUrl) throws IOException {
+        Path cached = lookup(coverUrl);
+        if (cached != null) {
+            return cached;
+        }
+        String url = transport.resolve(coverUrl).toString();
+        try {
+            return downloads.execute(url, () -> {
+                store.fetch(transport, url);
+                Path path = store.getCachedPath(url);
+                if (path == null) {
+                    // Larger than the whole cache, or evicted straight away
+                    throw new IOException("Cover could not be cached: " + url);
+                }
+                return path;
+            });
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a cover to a channel, downloading it first if needed. The bytes go
+     * from the file to the channel without being copied into the Java heap when
+     * the platform allows it.
+     *
+     * @param coverUrl the cover URL
+     * @param target   the destination channel
+     * @return the number of bytes copied
+     * @throws IOException if the cover cannot be downloaded or copied
+     */
+    public long transferTo(String coverUrl, WritableByteChannel target) throws IOException {
+        try (FileChannel file = FileChannel.open(get(coverUrl), StandardOpenOption.READ)) {
+            long size = file.size();
+            long position = 0;
+            while (position < size) {
+                position += file.transferTo(position, size - position, target);
+            }
+            return position;
+        }
+    }
+
+    /**
+     * Downloads a cover in the background if it is not cached yet.
+     *
+     * @param coverUrl the cover URL
+     * @return a future completed with the local file
+     */
+    public Future<Path> prefetch(String coverUrl) {
+        Path cached = store.getCachedPath(transport.resolve(coverUrl).toString());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return prefetchExecutor.submit(() -> {
+            try {
+                return get(coverUrl);
+            } catch (IOException e) {
+                logger.warning("⚠️ Cover prefetch failed for " + coverUrl + ": " + e.getMessage());
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Starts a background sweeper that periodically removes unused files and
+     * writes the index. Does nothing if the sweeper is already running.
+     *
+     * @param interval time between two sweeps
+     */
+    public synchronized void startSweeper(Duration interval) {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cover-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes unused files and index entries whose file is gone.
+     *
+     * @return the number of files and entries removed
+     */
+    public int sweep() {
+        try {
+            int removed = store.sweep();
+            if (removed > 0) {
+                logger.info("🧹 Cover cache sweep removed " + removed + " files/entries");
+            }
+            return removed;
+        } catch (IOException e) {
+            logger.warning("⚠️ Cover cache sweep failed: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from disk.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that found no cached cover.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of covers that could not be downloaded.
+     *
+     * @return the failure count
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the number of covers cached.
+     *
+     * @return the number of covers
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Returns the total size of the cached covers in bytes.
+     *
+     * @return the total size
+     */
+    public long getTotalBytes() {
+        return store.getTotalBytes();
+    }
+
+    /**
+     * Returns the number of covers evicted to respect the size cap.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return store.getEvictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CoverCache[covers=%d, bytes=%d, hits=%d, misses=%d, failures=%d, evictions=%d]",
+                size(), getTotalBytes(), hits.get(), misses.get(), failures.get(), getEvictionCount());
+    }
+
+    /**
+     * Stops the sweeper and the background downloads, then writes the index.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        prefetchExecutor.close();
+        store.flush();
+    }
+}
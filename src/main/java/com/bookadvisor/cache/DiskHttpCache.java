@@ -0,0 +1,483 @@
+package com.bookadvisor.cache;
+
+import com.bookadvisor.http.HttpStatusException;
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Persistent HTTP response cache for rarely changing documents such as
+ * Open Library works.
+ * <p>
+ * Bodies are kept in a {@link ContentStore} under the cache directory, and an
+ * index file ({@code index.tsv}) maps each URL to its blob and validators
+ * ({@code ETag}, {@code Last-Modified}). The index is loaded when the cache is
+ * created, so responses survive process restarts.
+ * </p>
+ * <p>
+ * A response younger than the freshness period is served straight from disk.
+ * Older responses are revalidated with a conditional request
+ * ({@code If-None-Match}/{@code If-Modified-Since}); a {@code 304 Not Modified}
+ * answer costs no body transfer. The total size of the cached bodies is capped,
+ * and the least recently used entries are evicted when it is exceeded.
+ * When the server cannot be reached, the stale copy is served instead.
+ * </p>
+ */
+public class DiskHttpCache {
+
+    /**
+     * Default maximum total size of the cached bodies (50 MiB).
+     */
+    public static final long DEFAULT_MAX_BYTES = 50L * 1024 * 1024;
+
+    /**
+     * Default time a response is served without revalidation.
+     */
+    public static final Duration DEFAULT_FRESHNESS = Duration.ofDays(1);
+
+    // Name of the index file inside the cache directory
+    private static final String INDEX_FILE = "index.tsv";
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Store holding the response bodies
+    private final ContentStore store;
+    // Index file path
+    private final Path indexFile;
+    // Entries by URL, in access order: the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    // Maximum total size of the cached bodies
+    private final long maxBytes;
+    // Time a response is served without revalidation
+    private final Duration freshness;
+
+    private long totalBytes;
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long staleHits;
+    private long evictions;
+
+    /**
+     * Creates a cache in the given directory with the default size cap and freshness.
+     *
+     * @param directory the cache directory
+     * @throws IOException if the directory cannot be created
+     */
+    public DiskHttpCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES, DEFAULT_FRESHNESS);
+    }
+
+    /**
+     * Creates a cache in the given directory and loads its index.
+     *
+     * @param directory the cache directory
+     * @param maxBytes  maximum total size of the cached bodies
+     * @param freshness time a response is served without revalidation
+     * @throws IOException if the directory cannot be created
+     */
+    public DiskHttpCache(Path directory, long maxBytes, Duration freshness) throws IOException {
+        this.store = new ContentStore(directory.resolve("blobs"));
+        this.indexFile = directory.resolve(INDEX_FILE);
+        this.maxBytes = maxBytes;
+        this.freshness = freshness;
+        loadIndex();
+    }
+
+    /**
+     * Fetches a document through the cache.
+     *
+     * @param transport the transport used when the network has to be contacted
+     * @param pathOrUrl the document path or URL
+     * @return the response body
+     * @throws HttpStatusException if the server answers with an unexpected status
+     * @throws IOException         if the request fails
+     */
+    public byte[] fetch(HttpTransport transport, String pathOrUrl) throws IOException {
+        String url = transport.resolve(pathOrUrl).toString();
+        Entry entry = lookup(url);
+
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < freshness.toMillis()) {
+            byte[] body = readBody(url, entry);
+            if (body != null) {
+                count(Counter.HIT);
+                return body;
+            }
+            entry = null;
+        }
+
+        HttpRequest.Builder request = transport.newRequest(url);
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.header("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.header("If-Modified-Since", entry.lastModified);
+            }
+        }
+
+        HttpTransport.Response sent;
+        try {
+            sent = transport.send(request.build());
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // Upstream unavailable (or circuit open): serve the stale copy if there is one
+            byte[] stale = entry != null ? readBody(url, entry) : null;
+            if (stale == null) {
+                throw e;
+            }
+            count(Counter.STALE);
+            logger.warning("⚠️ Serving stale copy of " + url + ": " + e.getMessage());
+            return stale;
+        }
+
+        try (HttpTransport.Response response = sent) {
+            if (response.getStatusCode() == 304 && entry != null) {
+                byte[] body = readBody(url, entry);
+                if (body != null) {
+                    count(Counter.REVALIDATION);
+                    markValidated(url, entry);
+                    return body;
+                }
+                // The blob vanished; fetch the full body again without validators
+                return fetch(transport, pathOrUrl);
+            }
+            if (response.getStatusCode() / 100 != 2) {
+                throw new HttpStatusException(response.getStatusCode(), url);
+            }
+            byte[] body;
+            try (InputStream in = response.getBody()) {
+                body = in.readAllBytes();
+            }
+            count(Counter.MISS);
+            store(url, body, response.getHeader("ETag"), response.getHeader("Last-Modified"));
+            return body;
+        }
+    }
+
+    /**
+     * Returns the cached body for a URL without contacting the network, even if
+     * it is no longer fresh.
+     *
+     * @param url the absolute URL
+     * @return the cached body, or null if not cached
+     */
+    public byte[] getStale(String url) {
+        Entry entry = lookup(url);
+        return entry == null ? null : readBody(url, entry);
+    }
+
+    /**
+     * Returns the file holding the cached body for a URL, without contacting the
+     * network. The entry counts as recently used. The file may be deleted later
+     * if the entry is evicted, so it should be read promptly.
+     *
+     * @param url the absolute URL
+     * @return the path of the cached body, or null if not cached
+     */
+    public Path getCachedPath(String url) {
+        Entry entry = lookup(url);
+        if (entry == null) {
+            return null;
+        }
+        Path path = store.resolve(entry.hash);
+        if (!Files.exists(path)) {
+            synchronized (this) {
+                if (index.remove(url, entry)) {
+                    totalBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Reconciles the index with the files on disk: drops entries whose body file is
+     * gone and deletes body files no entry refers to (e.g. left over by a crash),
+     * then writes the index. Files modified in the last few minutes are left alone.
+     *
+     * @return the number of entries dropped plus the number of files deleted
+     * @throws IOException if the store directory cannot be listed
+     */
+    public int sweep() throws IOException {
+        Set<String> referenced = new HashSet<>();
+        int removed = 0;
+        synchronized (this) {
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next().getValue();
+                if (store.contains(entry.hash)) {
+                    referenced.add(entry.hash);
+                } else {
+                    it.remove();
+                    totalBytes -= entry.size;
+                    removed++;
+                }
+            }
+            flush();
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(store.getRoot(), 2)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        long cutoff = System.currentTimeMillis() - Duration.ofMinutes(5).toMillis();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            // Recent files may belong to a store in progress, not yet in the index
+            boolean unused = name.endsWith(".tmp") || !isReferenced(name, referenced);
+            if (unused && Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                Files.deleteIfExists(file);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries in the cache.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Returns the total size of the cached bodies in bytes.
+     *
+     * @return the total size
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns the number of responses served from disk without contacting the network.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of responses served from disk after a 304 revalidation.
+     *
+     * @return the revalidation count
+     */
+    public synchronized long getRevalidationCount() {
+        return revalidations;
+    }
+
+    /**
+     * Returns the number of responses downloaded in full.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of stale responses served because the server could not be reached.
+     *
+     * @return the stale hit count
+     */
+    public synchronized long getStaleHitCount() {
+        return staleHits;
+    }
+
+    /**
+     * Returns the number of entries evicted to respect the size cap.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Writes the index to disk, recording the current access order.
+     */
+    public synchronized void flush() {
+        try {
+            saveIndex();
+        } catch (IOException e) {
+            logger.warning("⚠️ Could not write HTTP cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks a blob against the hashes seen by {@link #sweep()} and, for blobs
+     * stored since, against the live index.
+     */
+    private synchronized boolean isReferenced(String hash, Set<String> referenced) {
+        return referenced.contains(hash) || index.values().stream().anyMatch(e -> e.hash.equals(hash));
+    }
+
+    private synchronized Entry lookup(String url) {
+        return index.get(url);
+    }
+
+    private synchronized void count(Counter counter) {
+        switch (counter) {
+            case HIT -> hits++;
+            case REVALIDATION -> revalidations++;
+            case MISS -> misses++;
+            case STALE -> staleHits++;
+        }
+    }
+
+    private synchronized void markValidated(String url, Entry entry) {
+        if (index.containsKey(url)) {
+            index.put(url, entry.validated(System.currentTimeMillis()));
+            flush();
+        }
+    }
+
+    /**
+     * Reads the blob of an entry, dropping the entry if the blob is missing.
+     */
+    private byte[] readBody(String url, Entry entry) {
+        try {
+            return store.read(entry.hash);
+        } catch (IOException e) {
+            synchronized (this) {
+                if (index.remove(url) != null) {
+                    totalBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores a response body and its validators, then enforces the size cap.
+     */
+    private void store(String url, byte[] body, String etag, String lastModified) throws IOException {
+        if (body.length > maxBytes) {
+            return;
+        }
+        String hash = store.put(body);
+        List<String> orphans = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = index.put(url, new Entry(hash, etag, lastModified, body.length, System.currentTimeMillis()));
+            if (previous != null) {
+                totalBytes -= previous.size;
+                if (!previous.hash.equals(hash)) {
+                    orphans.add(previous.hash);
+                }
+            }
+            totalBytes += body.length;
+
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                it.remove();
+                totalBytes -= eldest.getValue().size;
+                orphans.add(eldest.getValue().hash);
+                evictions++;
+            }
+            // Blobs are shared by identical bodies, so only delete unreferenced ones
+            orphans.removeIf(h -> index.values().stream().anyMatch(e -> e.hash.equals(h)));
+            flush();
+        }
+        for (String orphan : orphans) {
+            store.delete(orphan);
+        }
+    }
+
+    /**
+     * Loads the index file, skipping malformed lines and entries whose blob is gone.
+     */
+    private synchronized void loadIndex() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 6 || !store.contains(parts[1])) {
+                    continue;
+                }
+                Entry entry = new Entry(parts[1], emptyToNull(parts[2]), emptyToNull(parts[3]),
+                        Long.parseLong(parts[4]), Long.parseLong(parts[5]));
+                index.put(parts[0], entry);
+                totalBytes += entry.size;
+            }
+            logger.info("📦 HTTP cache loaded with " + index.size() + " entries");
+        } catch (IOException | NumberFormatException e) {
+            logger.warning("⚠️ Could not read HTTP cache index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the index atomically, least recently used entries first.
+     */
+    private void saveIndex() throws IOException {
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                Entry entry = e.getValue();
+                writer.write(e.getKey() + "\t" + entry.hash + "\t" + nullToEmpty(entry.etag) + "\t"
+                        + nullToEmpty(entry.lastModified) + "\t" + entry.size + "\t" + entry.validatedAt);
+                writer.newLine();
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String emptyToNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    private enum Counter { HIT, REVALIDATION, MISS, STALE }
+
+    /**
+     * Index entry: blob hash, validators, body size and last validation time.
+     */
+    private static final class Entry {
+        final String hash;
+        final String etag;
+        final String lastModified;
+        final long size;
+        final long validatedAt;
+
+        Entry(String hash, String etag, String lastModified, long size, long validatedAt) {
+            this.hash = hash;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.validatedAt = validatedAt;
+        }
+
+        Entry validated(long time) {
+            return new Entry(hash, etag, lastModified, size, time);
+        }
+    }
+}
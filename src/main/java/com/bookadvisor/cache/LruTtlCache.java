@@ -0,0 +1,253 @@
+package com.bookadvisor.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded in-memory cache with least-recently-used eviction and time-based expiry.
+ * <p>
+ * Every value has a weight (1 by default) and the cache never holds more than the
+ * configured total weight: when a new value does not fit, the least recently used
+ * entries are evicted. Entries also expire a fixed time after they were stored:
+ * {@link #get(Object)} no longer returns them, but they stay in the cache until
+ * evicted or replaced, so {@link #getStale(Object)} can still serve them.
+ * Hit, miss and eviction counters are kept for monitoring.
+ * </p>
+ * <p>
+ * All methods are thread-safe.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LruTtlCache<K, V> {
+
+    // Entries in access order: the first entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Maximum total weight of the cached values
+    private final long maxWeight;
+    // Time to live of each entry, in nanoseconds
+    private final long ttlNanos;
+    // Computes the weight of a value
+    private final ToLongFunction<V> weigher;
+    // Time source in nanoseconds (replaceable in tests)
+    private final LongSupplier clock;
+
+    private long totalWeight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Creates a cache holding at most {@code maxEntries} entries.
+     *
+     * @param maxEntries maximum number of entries
+     * @param ttl        time after which an entry expires
+     */
+    public LruTtlCache(long maxEntries, Duration ttl) {
+        this(maxEntries, ttl, value -> 1L);
+    }
+
+    /**
+     * Creates a cache bounded by the total weight of its values.
+     *
+     * @param maxWeight maximum total weight
+     * @param ttl       time after which an entry expires
+     * @param weigher   computes the weight of a value (must be positive)
+     */
+    public LruTtlCache(long maxWeight, Duration ttl, ToLongFunction<V> weigher) {
+        this(maxWeight, ttl, weigher, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache with a custom time source.
+     *
+     * @param maxWeight maximum total weight
+     * @param ttl       time after which an entry expires
+     * @param weigher   computes the weight of a value (must be positive)
+     * @param clock     time source in nanoseconds
+     */
+    public LruTtlCache(long maxWeight, Duration ttl, ToLongFunction<V> weigher, LongSupplier clock) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Maximum weight must be at least 1: " + maxWeight);
+        }
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttl.toNanos();
+        this.weigher = weigher;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the value cached for a key, marking it as recently used.
+     * An expired entry is kept for {@link #getStale(Object)}.
+     *
+     * @param key the key
+     * @return the cached value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (clock.getAsLong() - entry.expiresAt > 0) {
+            if (!entry.expired) {
+                entry.expired = true;
+                expirations++;
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Returns the value cached for a key even if it has expired, without touching
+     * the counters or the LRU order. Useful to serve stale data when the source is
+     * unavailable.
+     *
+     * @param key the key
+     * @return the cached value, or null if absent
+     */
+    public synchronized V getStale(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Stores a value, evicting least recently used entries if needed.
+     * A value heavier than the whole cache is not stored.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        Entry<V> previous = entries.remove(key);
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        if (weight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, weight, clock.getAsLong() + ttlNanos));
+        totalWeight += weight;
+
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            it.remove();
+            totalWeight -= eldest.getValue().weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @param key the key
+     */
+    public synchronized void invalidate(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            remove(key, entry);
+        }
+    }
+
+    /**
+     * Removes all entries. Counters are kept.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * Returns the number of entries currently cached (including expired ones not yet removed).
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the total weight of the cached values.
+     *
+     * @return the total weight
+     */
+    public synchronized long getWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the number of lookups that found a live entry.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that found no live entry.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to make room for new ones.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of entries found expired by a lookup.
+     *
+     * @return the expiration count
+     */
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LruTtlCache[size=" + entries.size() + ", weight=" + totalWeight + "/" + maxWeight
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", expirations=" + expirations + "]";
+    }
+
+    private void remove(K key, Entry<V> entry) {
+        entries.remove(key);
+        totalWeight -= entry.weight;
+    }
+
+    /**
+     * Cached value with its weight and expiry time.
+     */
+    private static final class Entry<V> {
+        final V value;
+        final long weight;
+        final long expiresAt;
+        // Set once a lookup has found the entry expired
+        boolean expired;
+
+        Entry(V value, long weight, long expiresAt) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
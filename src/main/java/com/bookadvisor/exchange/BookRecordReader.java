@@ -0,0 +1,262 @@
+package com.bookadvisor.exchange;
+
+import com.bookadvisor.model.BookDto;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the books of an exported file one record at a time.
+ * <p>
+ * Only the record being read is in memory, so files of any size are read in
+ * constant memory. CSV files must start with a header row; columns are matched
+ * by name, unknown columns are ignored and missing ones read as empty strings.
+ * Errors are thrown as {@link UncheckedIOException}, since iterators cannot
+ * throw checked exceptions.
+ * </p>
+ */
+public class BookRecordReader implements Iterator<BookDto>, Closeable {
+
+    // Source of the records
+    private final BufferedReader reader;
+    // Format of the records
+    private final ExchangeFormat format;
+    // Name of the source, for error messages
+    private final String source;
+    // Field index of each CSV column, -1 for ignored columns
+    private int[] columns;
+    // Next book, read ahead by hasNext()
+    private BookDto next;
+    // Line the next record starts at
+    private long line = 1;
+    // Reusable buffers of the CSV parser
+    private final StringBuilder field = new StringBuilder(256);
+    private final List<String> values = new ArrayList<>(ExchangeFormat.FIELDS.size());
+
+    /**
+     * Creates a reader over text.
+     *
+     * @param reader the text to read
+     * @param format the format of the records
+     * @param source the name of the source, for error messages
+     */
+    public BookRecordReader(Reader reader, ExchangeFormat format, String source) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader, 1 << 16);
+        this.format = format;
+        this.source = source;
+    }
+
+    /**
+     * Opens an exported file, its format found from its name, decompressing it
+     * on the fly if its name ends with ".gz".
+     *
+     * @param file the file
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static BookRecordReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            if (file.getFileName().toString().endsWith(".gz")) {
+                in = new GZIPInputStream(in, 1 << 16);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BookRecordReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16),
+                ExchangeFormat.of(file), file.toString());
+    }
+
+    /**
+     * Returns the remaining books as a sequential stream that closes this reader when closed.
+     *
+     * @return the stream
+     */
+    public Stream<BookDto> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = format == ExchangeFormat.CSV ? readCsv() : readJson();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public BookDto next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BookDto book = next;
+        next = null;
+        return book;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Reads the next JSON line, skipping blank lines.
+     *
+     * @return the book, or null at the end
+     */
+    private BookDto readJson() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            long number = line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            try {
+                JSONObject object = new JSONObject(text);
+                String[] fields = new String[ExchangeFormat.FIELDS.size()];
+                for (int i = 0; i < fields.length; i++) {
+                    String name = ExchangeFormat.FIELDS.get(i);
+                    fields[i] = object.has(name) && object.isNull(name) ? null : object.optString(name, "");
+                }
+                return ExchangeFormat.toBook(fields);
+            } catch (JSONException e) {
+                throw new IOException("Invalid record at line " + number + " of " + source + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next CSV record, reading the header first.
+     *
+     * @return the book, or null at the end
+     */
+    private BookDto readCsv() throws IOException {
+        if (columns == null) {
+            if (!readCsvRecord()) {
+                return null;
+            }
+            columns = new int[values.size()];
+            boolean known = false;
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = ExchangeFormat.FIELDS.indexOf(values.get(i).strip());
+                known |= columns[i] >= 0;
+            }
+            if (!known) {
+                throw new IOException("Missing CSV header in " + source);
+            }
+        }
+        while (readCsvRecord()) {
+            if (values.size() == 1 && values.get(0).isEmpty()) {
+                // Blank line
+                continue;
+            }
+            String[] fields = new String[ExchangeFormat.FIELDS.size()];
+            for (int i = 0; i < columns.length && i < values.size(); i++) {
+                if (columns[i] >= 0) {
+                    fields[columns[i]] = values.get(i);
+                }
+            }
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] == null) {
+                    fields[i] = "";
+                }
+            }
+            return ExchangeFormat.toBook(fields);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the fields of one CSV record into {@link #values}. Quoted fields may
+     * hold commas, doubled quotes and line breaks.
+     *
+     * @return false at the end of the input
+     */
+    private boolean readCsvRecord() throws IOException {
+        values.clear();
+        field.setLength(0);
+        long start = line;
+        int c = reader.read();
+        if (c < 0) {
+            return false;
+        }
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field at line " + start + " of " + source);
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int after = reader.read();
+                    if (after == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                values.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n' || c < 0) {
+                if (c == '\n') {
+                    line++;
+                }
+                int end = field.length();
+                if (!wasQuoted && end > 0 && field.charAt(end - 1) == '\r') {
+                    field.setLength(end - 1);
+                }
+                values.add(field.toString());
+                return true;
+            } else if (c == '\r' && wasQuoted) {
+                // CR of a CRLF after a closing quote
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.bookadvisor.exchange;
+
+import com.bookadvisor.model.BookDto;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Formats a library can be exported to and imported from.
+ * <p>
+ * Both formats hold one book per record with the fields {@link #FIELDS}.
+ * JSON Lines writes one JSON object per line; CSV follows RFC 4180: a header
+ * row, CRLF line ends, and fields holding a comma, a quote or a line break
+ * quoted, with quotes doubled. CSV cannot tell a missing field from an empty
+ * one, so null fields are imported back as empty strings.
+ * </p>
+ */
+public enum ExchangeFormat {
+
+    /**
+     * One JSON object per line.
+     */
+    JSONL {
+        @Override
+        public String encode(BookDto book) {
+            StringBuilder line = new StringBuilder(256);
+            line.append('{');
+            String[] values = fieldsOf(book);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append('"').append(FIELDS.get(i)).append("\":");
+                appendJson(line, values[i]);
+            }
+            return line.append("}\n").toString();
+        }
+
+        @Override
+        public String header() {
+            return "";
+        }
+    },
+
+    /**
+     * Comma-separated values, as in RFC 4180.
+     */
+    CSV {
+        @Override
+        public String encode(BookDto book) {
+            StringBuilder line = new StringBuilder(256);
+            String[] values = fieldsOf(book);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendCsv(line, values[i]);
+            }
+            return line.append("\r\n").toString();
+        }
+
+        @Override
+        public String header() {
+            return String.join(",", FIELDS) + "\r\n";
+        }
+    };
+
+    /**
+     * Fields of a book record, in the order they are written.
+     */
+    public static final List<String> FIELDS = List.of("key", "title", "author", "coverUrl", "publishDate", "description");
+
+    /**
+     * Encodes a book as a record, line end included.
+     *
+     * @param book the book
+     * @return the record
+     */
+    public abstract String encode(BookDto book);
+
+    /**
+     * Returns what the file starts with before the first record.
+     *
+     * @return the header, line end included, or an empty string
+     */
+    public abstract String header();
+
+    /**
+     * Returns the format of a file from its extension: {@code .csv} for CSV,
+     * anything else for JSON Lines. A {@code .gz} suffix is ignored.
+     *
+     * @param file the file
+     * @return the format
+     */
+    public static ExchangeFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return name.endsWith(".csv") ? CSV : JSONL;
+    }
+
+    /**
+     * Builds a book from its field values, in the order of {@link #FIELDS}.
+     *
+     * @param values the values
+     * @return the book
+     */
+    static BookDto toBook(String[] values) {
+        return new BookDto(values[1], values[2], values[3], values[4], values[0], values[5]);
+    }
+
+    private static String[] fieldsOf(BookDto book) {
+        return new String[]{book.getKey(), book.getTitle(), book.getAuthor(), book.getCoverUrl(),
+                book.getPublishDate(), book.getDescription()};
+    }
+
+    private static void appendJson(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    private static void appendCsv(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,258 @@
+package com.bookadvisor.exchange;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.BoundedExecutor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports a library to JSON Lines or CSV (see {@link ExchangeFormat}).
+ * <p>
+ * Books are streamed from the library one at a time
+ * ({@link BookLibraryService#forEachBook(Consumer)}), encoded and written
+ * through a buffered writer, so the export runs in constant memory whatever
+ * the size of the library. With a parallelism above 1, books are grouped into
+ * batches encoded at the same time, and the encoded batches are written in
+ * library order; only a few batches are in memory at any time.
+ * </p>
+ * <p>
+ * The file is written next to its final path and renamed into place, and is
+ * gzipped if its name ends with ".gz".
+ * </p>
+ */
+public class LibraryExporter {
+
+    /**
+     * Default number of books per encoded batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Format of the export
+    private final ExchangeFormat format;
+    // Number of batches encoded at the same time, 1 to encode on the calling thread
+    private final int parallelism;
+    // Number of books per batch
+    private final int batchSize;
+
+    /**
+     * Creates an exporter encoding on the calling thread.
+     *
+     * @param format the format of the export
+     */
+    public LibraryExporter(ExchangeFormat format) {
+        this(format, 1, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an exporter.
+     *
+     * @param format      the format of the export
+     * @param parallelism number of batches encoded at the same time, 1 to encode on the calling thread
+     * @param batchSize   number of books per batch
+     */
+    public LibraryExporter(ExchangeFormat format, int parallelism, int batchSize) {
+        if (parallelism < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Parallelism and batch size must be at least 1");
+        }
+        this.format = format;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Exports every book of a library to a file.
+     *
+     * @param library the library to export
+     * @param target  the file to write
+     * @return the number of books exported
+     * @throws IOException if the library cannot be read or the file cannot be written
+     */
+    public long export(BookLibraryService library, Path target) throws IOException {
+        return export(target, library::forEachBook);
+    }
+
+    /**
+     * Exports a stream of books to a file.
+     *
+     * @param books  the books to export
+     * @param target the file to write
+     * @return the number of books exported
+     * @throws IOException if the file cannot be written
+     */
+    public long export(Stream<BookDto> books, Path target) throws IOException {
+        return export(target, pipeline -> books.forEach(pipeline));
+    }
+
+    /**
+     * Writes a stream of books to a writer, which is flushed but not closed.
+     *
+     * @param books the books to write
+     * @param out   the writer
+     * @return the number of books written
+     * @throws IOException if the writer fails
+     */
+    public long write(Stream<BookDto> books, Writer out) throws IOException {
+        try (Pipeline pipeline = new Pipeline(out)) {
+            try {
+                books.forEach(pipeline);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            pipeline.finish();
+            return pipeline.written;
+        }
+    }
+
+    private long export(Path target, Source source) throws IOException {
+        long start = System.nanoTime();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        long written;
+        try (Writer out = open(tmp, target.getFileName().toString().endsWith(".gz"));
+             Pipeline pipeline = new Pipeline(out)) {
+            try {
+                source.feed(pipeline);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            pipeline.finish();
+            written = pipeline.written;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info(String.format("📤 Exported %d books to %s in %d ms", written, target,
+                (System.nanoTime() - start) / 1_000_000));
+        return written;
+    }
+
+    private static Writer open(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Feeds the books to export to the pipeline.
+     */
+    @FunctionalInterface
+    private interface Source {
+        void feed(Consumer<BookDto> pipeline) throws IOException;
+    }
+
+    /**
+     * Encodes the books it receives, in batches on worker threads when
+     * parallel, and writes them in order.
+     */
+    private final class Pipeline implements Consumer<BookDto>, AutoCloseable {
+
+        // Destination of the records
+        private final Writer out;
+        // Encodes batches, or null when encoding on the calling thread
+        private final BoundedExecutor executor;
+        // Batches being encoded, oldest first
+        private final Deque<Future<String>> pending = new ArrayDeque<>();
+        // Books of the batch being filled
+        private List<BookDto> batch = new ArrayList<>(batchSize);
+        // Number of books written
+        private long written;
+
+        Pipeline(Writer out) throws IOException {
+            this.out = out;
+            this.executor = parallelism > 1 ? new BoundedExecutor("library-export", parallelism) : null;
+            out.write(format.header());
+        }
+
+        @Override
+        public void accept(BookDto book) {
+            try {
+                if (executor == null) {
+                    out.write(format.encode(book));
+                    written++;
+                    return;
+                }
+                batch.add(book);
+                if (batch.size() == batchSize) {
+                    submit();
+                    // Keep a bounded number of batches in memory
+                    if (pending.size() >= parallelism * 2) {
+                        writeOldest();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Writes the batches still pending and flushes the writer.
+         */
+        void finish() throws IOException {
+            if (!batch.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                writeOldest();
+            }
+            out.flush();
+        }
+
+        private void submit() {
+            List<BookDto> books = batch;
+            batch = new ArrayList<>(batchSize);
+            pending.add(executor.submit(() -> {
+                StringBuilder text = new StringBuilder(books.size() * 256);
+                for (BookDto book : books) {
+                    text.append(format.encode(book));
+                }
+                return text.toString();
+            }));
+            written += books.size();
+        }
+
+        private void writeOldest() throws IOException {
+            try {
+                out.write(pending.poll().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export interrupted");
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to encode books", e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                pending.forEach(f -> f.cancel(true));
+                executor.close();
+            }
+        }
+    }
+}
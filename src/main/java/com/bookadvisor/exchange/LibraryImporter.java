@@ -0,0 +1,122 @@
+package com.bookadvisor.exchange;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Imports books exported by {@link LibraryExporter} into a library.
+ * <p>
+ * Records are read one at a time ({@link BookRecordReader}) and appended to
+ * the library in batches, with a single write per batch, so only one batch is
+ * in memory whatever the size of the file. Imported books replace the books
+ * with the same keys. Line breaks in the fields are replaced by spaces, since
+ * the text library holds one record per line.
+ * </p>
+ */
+public class LibraryImporter {
+
+    /**
+     * Default number of books per appended batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Library receiving the books
+    private final BookLibraryService library;
+    // Number of books per batch
+    private final int batchSize;
+
+    /**
+     * Creates an importer with the default batch size.
+     *
+     * @param library the library receiving the books
+     */
+    public LibraryImporter(BookLibraryService library) {
+        this(library, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param library   the library receiving the books
+     * @param batchSize number of books per appended batch
+     */
+    public LibraryImporter(BookLibraryService library, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.library = library;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports an exported file, its format found from its name.
+     *
+     * @param source the JSON Lines or CSV file, possibly gzipped
+     * @return the number of books imported
+     * @throws IOException if the file cannot be read or holds an invalid record,
+     *                     or the library cannot be written
+     */
+    public long importFile(Path source) throws IOException {
+        long start = System.nanoTime();
+        long imported;
+        try (BookRecordReader reader = BookRecordReader.open(source);
+             Stream<BookDto> books = reader.stream()) {
+            imported = importBooks(books);
+        }
+        logger.info(String.format("📥 Imported %d books from %s in %d ms", imported, source,
+                (System.nanoTime() - start) / 1_000_000));
+        return imported;
+    }
+
+    /**
+     * Imports a stream of books.
+     *
+     * @param books the books to import
+     * @return the number of books imported
+     * @throws IOException if the books cannot be read or the library cannot be written
+     */
+    public long importBooks(Stream<BookDto> books) throws IOException {
+        long imported = 0;
+        List<BookDto> batch = new ArrayList<>(batchSize);
+        try {
+            Iterator<BookDto> it = books.iterator();
+            while (it.hasNext()) {
+                batch.add(clean(it.next()));
+                if (batch.size() == batchSize) {
+                    library.appendBooks(batch);
+                    imported += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!batch.isEmpty()) {
+            library.appendBooks(batch);
+            imported += batch.size();
+        }
+        return imported;
+    }
+
+    private static BookDto clean(BookDto book) {
+        return new BookDto(clean(book.getTitle()), clean(book.getAuthor()), clean(book.getCoverUrl()),
+                clean(book.getPublishDate()), clean(book.getKey()), clean(book.getDescription()));
+    }
+
+    private static String clean(String text) {
+        return text == null || (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) ? text
+                : text.replaceAll("[\\r\\n]+", " ");
+    }
+}
@@ -0,0 +1,126 @@
+package com.bookadvisor.http;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter whose rate adapts to how the server responds (AIMD).
+ * <p>
+ * Each request takes one token; tokens are refilled at the current rate, up to
+ * a small burst. Every healthy response raises the rate by a fixed step
+ * (additive increase), while a throttling response (HTTP 429) or a response
+ * slower than the latency threshold cuts it by a factor (multiplicative
+ * decrease). The rate always stays between the configured minimum and maximum.
+ * </p>
+ */
+public class AdaptiveRateLimiter {
+
+    private final double minRate;
+    private final double maxRate;
+    private final double increaseStep;
+    private final double decreaseFactor;
+    private final double burst;
+    private final long latencyThresholdNanos;
+
+    // Current rate in requests per second
+    private double rate;
+    // Tokens currently available
+    private double tokens;
+    // Time of the last refill, in nanoseconds
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * Creates a limiter with the defaults used for Open Library:
+     * 10 requests/s to start, between 1 and 50 requests/s, bursts of 20 requests.
+     */
+    public AdaptiveRateLimiter() {
+        this(10, 1, 50, 20, 0.1, 0.5, 5_000);
+    }
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initialRate        starting rate in requests per second
+     * @param minRate            lowest rate the limiter can fall to
+     * @param maxRate            highest rate the limiter can reach
+     * @param burst              maximum number of tokens that can accumulate
+     * @param increaseStep       rate added after each healthy response
+     * @param decreaseFactor     factor applied to the rate after throttling (between 0 and 1)
+     * @param latencyThresholdMs responses slower than this count as a congestion signal
+     */
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double burst,
+                               double increaseStep, double decreaseFactor, long latencyThresholdMs) {
+        this.rate = initialRate;
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.increaseStep = increaseStep;
+        this.decreaseFactor = decreaseFactor;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+    }
+
+    /**
+     * Takes one token, waiting until one is available.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / rate * 1e9);
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+            }
+        }
+    }
+
+    /**
+     * Records a healthy response, raising the rate unless it was slow.
+     *
+     * @param latencyNanos time the request took
+     */
+    public synchronized void onSuccess(long latencyNanos) {
+        refill();
+        if (latencyNanos > latencyThresholdNanos) {
+            rate = Math.max(minRate, rate * decreaseFactor);
+        } else {
+            rate = Math.min(maxRate, rate + increaseStep);
+        }
+    }
+
+    /**
+     * Records a throttling response (HTTP 429), cutting the rate.
+     */
+    public synchronized void onThrottled() {
+        refill();
+        rate = Math.max(minRate, rate * decreaseFactor);
+        // Drop the saved-up burst as well, so the next requests really slow down
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Returns the current rate.
+     *
+     * @return the rate in requests per second
+     */
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * rate);
+        lastRefill = now;
+    }
+}
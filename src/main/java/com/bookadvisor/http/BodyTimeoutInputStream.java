@@ -0,0 +1,121 @@
+package com.bookadvisor.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response body stream whose reads fail when no data arrives in time.
+ * <p>
+ * The request timeout of {@link java.net.http.HttpClient} stops once the
+ * response headers are in, so a server stalling in the middle of the body
+ * would otherwise block the reader forever. Each read arms a watchdog that
+ * closes the stream if the read is still waiting after the timeout, which
+ * wakes the reader up with an {@link HttpTimeoutException}. Time spent by the
+ * caller between reads is not counted.
+ * </p>
+ */
+final class BodyTimeoutInputStream extends FilterInputStream {
+
+    // Closes the streams of stalled reads
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "http-body-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        WATCHDOG.setRemoveOnCancelPolicy(true);
+    }
+
+    // Time a read may wait for data
+    private final Duration timeout;
+    // Requested URI, for error messages
+    private final URI uri;
+    // Whether the watchdog closed the stream
+    private volatile boolean timedOut;
+
+    /**
+     * Wraps a response body stream.
+     *
+     * @param body    the body stream
+     * @param timeout time a read may wait for data
+     * @param uri     the requested URI
+     */
+    BodyTimeoutInputStream(InputStream body, Duration timeout, URI uri) {
+        super(body);
+        this.timeout = timeout;
+        this.uri = uri;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ScheduledFuture<?> watchdog = arm();
+        int b;
+        try {
+            b = in.read();
+        } catch (IOException e) {
+            throw timedOut ? stalled(e) : e;
+        } finally {
+            watchdog.cancel(false);
+        }
+        if (timedOut) {
+            throw stalled(null);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        ScheduledFuture<?> watchdog = arm();
+        int n;
+        try {
+            n = in.read(b, off, len);
+        } catch (IOException e) {
+            throw timedOut ? stalled(e) : e;
+        } finally {
+            watchdog.cancel(false);
+        }
+        if (timedOut) {
+            throw stalled(null);
+        }
+        return n;
+    }
+
+    /**
+     * Schedules the closing of the stream once the timeout elapses.
+     */
+    private ScheduledFuture<?> arm() throws IOException {
+        if (timedOut) {
+            throw stalled(null);
+        }
+        return WATCHDOG.schedule(this::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Closes the stream of a stalled read, which makes the read return or fail.
+     */
+    private void expire() {
+        timedOut = true;
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // The read fails with a timeout either way
+        }
+    }
+
+    private HttpTimeoutException stalled(IOException cause) {
+        HttpTimeoutException e = new HttpTimeoutException("No response data for " + timeout.toMillis()
+                + " ms: " + uri);
+        if (cause != null) {
+            e.initCause(cause);
+        }
+        return e;
+    }
+}
@@ -0,0 +1,114 @@
+package com.bookadvisor.http;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker that stops sending requests to an upstream that keeps failing.
+ * <p>
+ * While {@link State#CLOSED} every request is allowed. After a number of
+ * consecutive failures the breaker opens and rejects requests immediately for a
+ * cool-down period. It then becomes {@link State#HALF_OPEN} and lets a single
+ * trial request through: if it succeeds the breaker closes again, otherwise it
+ * reopens for another cool-down period.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * States of the breaker.
+     */
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * Creates a breaker that opens after 5 consecutive failures for 30 seconds.
+     */
+    public CircuitBreaker() {
+        this(5, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a breaker.
+     *
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openDuration     time the breaker stays open before allowing a trial request
+     */
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Returns whether a request may be sent now. When half-open, only one trial
+     * request is allowed until its outcome is recorded.
+     *
+     * @return true if the request may be sent
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    /**
+     * Records a successful request, closing the breaker.
+     */
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    /**
+     * Records a failed request, opening the breaker if the threshold is reached
+     * or if the failed request was the half-open trial.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        trialInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Releases the half-open trial slot without recording an outcome, e.g. when the
+     * trial request was interrupted or throttled rather than failed.
+     */
+    public synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    /**
+     * Returns the current state, moving from open to half-open if the cool-down is over.
+     *
+     * @return the state
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,20 @@
+package com.bookadvisor.http;
+
+import java.io.IOException;
+
+/**
+ * Signals that a request was not sent because the circuit breaker is open.
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception for the given URI.
+     *
+     * @param uri the request that was rejected
+     */
+    public CircuitOpenException(String uri) {
+        super("Circuit open, request not sent: " + uri);
+    }
+}
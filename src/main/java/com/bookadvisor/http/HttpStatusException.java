@@ -0,0 +1,34 @@
+package com.bookadvisor.http;
+
+import java.io.IOException;
+
+/**
+ * Signals that an HTTP request completed with an unexpected status code.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // Status code returned by the server
+    private final int statusCode;
+
+    /**
+     * Creates a new exception for the given status code.
+     *
+     * @param statusCode the HTTP status code returned by the server
+     * @param uri        the requested URI
+     */
+    public HttpStatusException(int statusCode, String uri) {
+        super("HTTP " + statusCode + " for " + uri);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status code returned by the server.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,336 @@
+package com.bookadvisor.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Transport layer for all Open Library traffic.
+ * <p>
+ * Owns a single {@link HttpClient}, so connections (and TLS sessions) are kept
+ * alive and reused across requests, and HTTP/2 streams are multiplexed over one
+ * connection when the server supports it. Every request asks for gzip and the
+ * body is decompressed while it is being read.
+ * </p>
+ * <p>
+ * Relative paths such as {@code /search.json?q=java} are resolved against the
+ * base URL, which lets tests point the transport at a local stub server.
+ * </p>
+ * <p>
+ * Requests go through a {@link ResiliencePolicy} (adaptive rate limiting,
+ * retries with backoff and a circuit breaker) unless it is disabled.
+ * </p>
+ * <p>
+ * The request timeout only covers the wait for the response headers. Reads of
+ * the body have a timeout of their own: a read waiting longer than the body
+ * timeout for data fails with an {@link java.net.http.HttpTimeoutException},
+ * so a server stalling mid-body cannot block a reader forever.
+ * </p>
+ */
+public class HttpTransport {
+
+    /**
+     * Base URL of the Open Library API.
+     */
+    public static final String DEFAULT_BASE_URL = "https://openlibrary.org";
+
+    /**
+     * Default time allowed to establish a connection.
+     */
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Default time allowed for a request to receive its response headers.
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    // Shared default instance
+    private static HttpTransport instance;
+
+    // Client shared by every request sent through this transport
+    private final HttpClient client;
+    // Base URL used to resolve relative paths
+    private final String baseUrl;
+    // Timeout applied to every request
+    private final Duration requestTimeout;
+    // Time a read of a response body may wait for data
+    private final Duration bodyTimeout;
+    // Rate limiting, retries and circuit breaking (null to disable)
+    private volatile ResiliencePolicy resiliencePolicy = new ResiliencePolicy();
+
+    /**
+     * Creates a transport for the Open Library API with the default timeouts.
+     */
+    public HttpTransport() {
+        this(DEFAULT_BASE_URL, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Creates a transport with a custom base URL and timeouts. Reads of a
+     * response body may wait for data as long as the request timeout.
+     *
+     * @param baseUrl        base URL used to resolve relative paths (without trailing slash)
+     * @param connectTimeout time allowed to establish a connection
+     * @param requestTimeout time allowed for a request to receive its response headers
+     */
+    public HttpTransport(String baseUrl, Duration connectTimeout, Duration requestTimeout) {
+        this(baseUrl, connectTimeout, requestTimeout, requestTimeout);
+    }
+
+    /**
+     * Creates a transport with a custom base URL and timeouts.
+     *
+     * @param baseUrl        base URL used to resolve relative paths (without trailing slash)
+     * @param connectTimeout time allowed to establish a connection
+     * @param requestTimeout time allowed for a request to receive its response headers
+     * @param bodyTimeout    time allowed for each read of a response body to receive data
+     */
+    public HttpTransport(String baseUrl, Duration connectTimeout, Duration requestTimeout, Duration bodyTimeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.requestTimeout = requestTimeout;
+        this.bodyTimeout = bodyTimeout;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Returns the shared transport for the Open Library API.
+     *
+     * @return the shared HttpTransport instance
+     */
+    public static synchronized HttpTransport getInstance() {
+        if (instance == null) {
+            instance = new HttpTransport();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the base URL used to resolve relative paths.
+     *
+     * @return the base URL
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Resolves a path against the base URL. Absolute URLs are returned unchanged.
+     *
+     * @param pathOrUrl a path starting with "/" or an absolute URL
+     * @return the resolved URI
+     */
+    public URI resolve(String pathOrUrl) {
+        if (pathOrUrl.startsWith("http://") || pathOrUrl.startsWith("https://")) {
+            return URI.create(pathOrUrl);
+        }
+        return URI.create(baseUrl + pathOrUrl);
+    }
+
+    /**
+     * Creates a GET request builder with the transport defaults already applied.
+     * Callers can add headers before passing the request to {@link #send(HttpRequest)}.
+     *
+     * @param pathOrUrl a path starting with "/" or an absolute URL
+     * @return a pre-configured request builder
+     */
+    public HttpRequest.Builder newRequest(String pathOrUrl) {
+        return HttpRequest.newBuilder(resolve(pathOrUrl))
+                .timeout(requestTimeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    /**
+     * Sends a request through the resilience policy and returns the response,
+     * whatever its status code. The response must be closed once its body has been read.
+     *
+     * @param request the request to send
+     * @return the response with a decompressed body stream
+     * @throws CircuitOpenException if the circuit breaker rejects the request
+     * @throws IOException          if the request fails or the calling thread is interrupted
+     */
+    public Response send(HttpRequest request) throws IOException {
+        ResiliencePolicy policy = resiliencePolicy;
+        if (policy == null) {
+            return sendOnce(request);
+        }
+        return policy.execute(request.uri().toString(), request.method().equals("GET"), () -> sendOnce(request));
+    }
+
+    /**
+     * Returns the resilience policy applied to every request.
+     *
+     * @return the policy, or null if requests are sent unprotected
+     */
+    public ResiliencePolicy getResiliencePolicy() {
+        return resiliencePolicy;
+    }
+
+    /**
+     * Replaces the resilience policy applied to every request.
+     *
+     * @param resiliencePolicy the new policy, or null to send requests unprotected
+     */
+    public void setResiliencePolicy(ResiliencePolicy resiliencePolicy) {
+        this.resiliencePolicy = resiliencePolicy;
+    }
+
+    /**
+     * Sends a request once, without the resilience policy.
+     */
+    private Response sendOnce(HttpRequest request) throws IOException {
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            InputStream body = new BodyTimeoutInputStream(response.body(), bodyTimeout, request.uri());
+            return new Response(response.statusCode(), response.headers(), decode(request, response, body));
+        } catch (InterruptedException e) {
+            // Interrupting the caller aborts the exchange; keep the interrupt visible
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request interrupted: " + request.uri());
+        }
+    }
+
+    /**
+     * Sends a GET request and returns the body of a successful response as a stream.
+     * Reads of the stream fail with an {@link java.net.http.HttpTimeoutException}
+     * when no data arrives within the body timeout.
+     *
+     * @param pathOrUrl a path starting with "/" or an absolute URL
+     * @return the decompressed body stream, to be closed by the caller
+     * @throws HttpStatusException if the server answers with a non-2xx status
+     * @throws IOException         if the request fails
+     */
+    public InputStream openStream(String pathOrUrl) throws IOException {
+        Response response = send(newRequest(pathOrUrl).build());
+        if (response.getStatusCode() / 100 != 2) {
+            response.close();
+            throw new HttpStatusException(response.getStatusCode(), pathOrUrl);
+        }
+        return response.getBody();
+    }
+
+    /**
+     * Sends a GET request and returns the whole body of a successful response.
+     *
+     * @param pathOrUrl a path starting with "/" or an absolute URL
+     * @return the decompressed body
+     * @throws HttpStatusException if the server answers with a non-2xx status
+     * @throws IOException         if the request fails, or no data arrives within
+     *                             the body timeout while reading the body
+     */
+    public byte[] getBytes(String pathOrUrl) throws IOException {
+        try (InputStream in = openStream(pathOrUrl)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Wraps the body stream in a streaming gzip decoder when the server compressed it.
+     * Responses without a body (HEAD, 204, 304, or an empty body) get an empty
+     * stream whatever their Content-Encoding.
+     *
+     * @param request  the request
+     * @param response the raw response
+     * @param body     the raw body stream
+     * @return the decoded body stream
+     * @throws IOException if the gzip header cannot be read; the body is closed
+     */
+    private static InputStream decode(HttpRequest request, HttpResponse<InputStream> response, InputStream body)
+            throws IOException {
+        int status = response.statusCode();
+        if (request.method().equals("HEAD") || status == 204 || status == 304) {
+            body.close();
+            return InputStream.nullInputStream();
+        }
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (!encoding.equalsIgnoreCase("gzip")) {
+            return body;
+        }
+        try {
+            PushbackInputStream in = new PushbackInputStream(body, 1);
+            int first = in.read();
+            if (first < 0) {
+                in.close();
+                return InputStream.nullInputStream();
+            }
+            in.unread(first);
+            return new GZIPInputStream(in, 8192);
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Response returned by {@link #send(HttpRequest)}.
+     */
+    public static class Response implements Closeable {
+        private final int statusCode;
+        private final HttpHeaders headers;
+        private final InputStream body;
+
+        /**
+         * Creates a new response.
+         *
+         * @param statusCode the HTTP status code
+         * @param headers    the response headers
+         * @param body       the decompressed body stream
+         */
+        public Response(int statusCode, HttpHeaders headers, InputStream body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Returns the HTTP status code.
+         *
+         * @return the status code
+         */
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        /**
+         * Returns the first value of a response header.
+         *
+         * @param name the header name (case-insensitive)
+         * @return the header value, or null if absent
+         */
+        public String getHeader(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        /**
+         * Returns the decompressed body stream.
+         *
+         * @return the body stream
+         */
+        public InputStream getBody() {
+            return body;
+        }
+
+        /**
+         * Closes the body stream, releasing the connection back to the pool.
+         *
+         * @throws IOException if closing fails
+         */
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.bookadvisor.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Protects outbound requests against an overloaded or failing upstream.
+ * <p>
+ * Every attempt goes through a {@link CircuitBreaker} (fail fast while the
+ * upstream is unhealthy) and an {@link AdaptiveRateLimiter} (slow down when
+ * throttled). Idempotent requests that fail with an I/O error, HTTP 429 or
+ * HTTP 5xx are retried with jittered exponential backoff, honouring
+ * {@code Retry-After} when the server sends it.
+ * </p>
+ * <p>
+ * The state of the breaker, the current rate and the counters are exposed
+ * for monitoring.
+ * </p>
+ */
+public class ResiliencePolicy {
+
+    /**
+     * One attempt at sending a request.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        HttpTransport.Response send() throws IOException;
+    }
+
+    private final AdaptiveRateLimiter rateLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxAttempts;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+
+    /**
+     * Creates a policy with the default limiter and breaker, 3 attempts per request
+     * and backoff starting at 200 ms, capped at 5 seconds.
+     */
+    public ResiliencePolicy() {
+        this(new AdaptiveRateLimiter(), new CircuitBreaker(), 3, Duration.ofMillis(200), Duration.ofSeconds(5));
+    }
+
+    /**
+     * Creates a policy.
+     *
+     * @param rateLimiter    the rate limiter applied to every attempt
+     * @param circuitBreaker the circuit breaker applied to every attempt
+     * @param maxAttempts    maximum number of attempts per idempotent request
+     * @param baseDelay      backoff before the first retry (doubled on each retry)
+     * @param maxDelay       maximum backoff between attempts
+     */
+    public ResiliencePolicy(AdaptiveRateLimiter rateLimiter, CircuitBreaker circuitBreaker,
+                            int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayNanos = baseDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+    }
+
+    /**
+     * Sends a request under the policy.
+     *
+     * @param uri        the request URI (for error messages)
+     * @param idempotent whether the request may be retried
+     * @param attempt    sends the request once
+     * @return the first successful response, or the last failed response if no attempts are left
+     * @throws CircuitOpenException if the breaker rejects the request
+     * @throws IOException          if the last attempt fails with an I/O error
+     */
+    public HttpTransport.Response execute(String uri, boolean idempotent, Attempt attempt) throws IOException {
+        for (int n = 1; ; n++) {
+            if (!circuitBreaker.allowRequest()) {
+                shortCircuited.incrementAndGet();
+                throw new CircuitOpenException(uri);
+            }
+            rateLimiter.acquire();
+            requests.incrementAndGet();
+
+            long start = System.nanoTime();
+            HttpTransport.Response response;
+            try {
+                response = attempt.send();
+            } catch (InterruptedIOException e) {
+                circuitBreaker.releaseTrial();
+                throw e;
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                circuitBreaker.recordFailure();
+                if (!idempotent || n >= maxAttempts) {
+                    throw e;
+                }
+                backoff(n, null);
+                continue;
+            }
+
+            int status = response.getStatusCode();
+            if (status == 429) {
+                throttled.incrementAndGet();
+                rateLimiter.onThrottled();
+                circuitBreaker.releaseTrial();
+            } else if (status >= 500) {
+                failures.incrementAndGet();
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+                rateLimiter.onSuccess(System.nanoTime() - start);
+                return response;
+            }
+
+            if (!idempotent || n >= maxAttempts) {
+                return response;
+            }
+            String retryAfter = response.getHeader("Retry-After");
+            response.close();
+            backoff(n, retryAfter);
+        }
+    }
+
+    /**
+     * Returns the rate limiter.
+     *
+     * @return the rate limiter
+     */
+    public AdaptiveRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns the state of the circuit breaker.
+     *
+     * @return the breaker state
+     */
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Returns the number of attempts sent.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Returns the number of retries performed.
+     *
+     * @return the retry count
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Returns the number of HTTP 429 responses received.
+     *
+     * @return the throttled count
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /**
+     * Returns the number of attempts that failed with an I/O error or HTTP 5xx.
+     *
+     * @return the failure count
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the number of requests rejected by the open circuit breaker.
+     *
+     * @return the short-circuited count
+     */
+    public long getShortCircuitedCount() {
+        return shortCircuited.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResiliencePolicy[circuit=%s, rate=%.1f/s, requests=%d, retries=%d, throttled=%d, failures=%d, shortCircuited=%d]",
+                getCircuitState(), rateLimiter.getRate(), requests.get(), retries.get(), throttled.get(),
+                failures.get(), shortCircuited.get());
+    }
+
+    /**
+     * Sleeps before the next attempt: a random delay up to the exponential
+     * backoff ("full jitter"), or longer if the server asked for it.
+     */
+    private void backoff(int attempt, String retryAfter) throws InterruptedIOException {
+        retries.incrementAndGet();
+        long ceiling = Math.min(maxDelayNanos, baseDelayNanos << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (retryAfter != null) {
+            try {
+                delay = Math.max(delay, Math.min(maxDelayNanos, TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()))));
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form of Retry-After: fall back to the computed backoff
+            }
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+}
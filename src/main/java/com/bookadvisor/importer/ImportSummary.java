@@ -0,0 +1,80 @@
+package com.bookadvisor.importer;
+
+/**
+ * Progress and throughput summary of a dump import.
+ */
+public class ImportSummary {
+    private final long startLine;
+    private final long linesRead;
+    private final long imported;
+    private final long skipped;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a summary.
+     *
+     * @param startLine    line offset the import resumed from
+     * @param linesRead    number of lines read in this run
+     * @param imported     number of works written to the library
+     * @param skipped      number of lines skipped (other record types or malformed)
+     * @param elapsedNanos wall-clock duration of the run
+     */
+    public ImportSummary(long startLine, long linesRead, long imported, long skipped, long elapsedNanos) {
+        this.startLine = startLine;
+        this.linesRead = linesRead;
+        this.imported = imported;
+        this.skipped = skipped;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the line offset the import resumed from (0 for a fresh import).
+     *
+     * @return the starting line offset
+     */
+    public long getStartLine() {
+        return startLine;
+    }
+
+    /**
+     * Returns the number of lines read in this run.
+     *
+     * @return the line count
+     */
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    /**
+     * Returns the number of works written to the library.
+     *
+     * @return the imported count
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Returns the number of lines skipped.
+     *
+     * @return the skipped count
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Returns the number of lines processed per second.
+     *
+     * @return the throughput
+     */
+    public double getLinesPerSecond() {
+        return elapsedNanos == 0 ? 0 : linesRead / (elapsedNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("📊 %d lines read from offset %d (%d works imported, %d skipped) in %.1f s, %.0f lines/s",
+                linesRead, startLine, imported, skipped, elapsedNanos / 1e9, getLinesPerSecond());
+    }
+}
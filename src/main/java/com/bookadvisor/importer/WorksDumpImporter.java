@@ -0,0 +1,291 @@
+package com.bookadvisor.importer;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.BoundedExecutor;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Imports the works of an Open Library data dump into a library file.
+ * <p>
+ * The dump is a (usually gzipped) text file with one record per line and five
+ * tab-separated columns: type, key, revision, last modified and the record as
+ * JSON. Only {@code /type/work} records with a title are imported.
+ * </p>
+ * <p>
+ * The file is streamed: lines are grouped into batches, batches are parsed in
+ * parallel, and parsed batches are appended to the library in input order with
+ * a single write each. Only a few batches are in memory at any time, whatever
+ * the size of the dump. After each batch the number of lines done is written
+ * to a checkpoint file, so an interrupted import resumes where it stopped (a
+ * batch being written when the import stopped is written again, its records
+ * replacing the first copy).
+ * </p>
+ */
+public class WorksDumpImporter {
+
+    /**
+     * Default number of lines per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    // Record type of works in the dump
+    private static final String WORK_TYPE = "/type/work";
+
+    // Longest description kept, as for search results
+    private static final int MAX_DESCRIPTION = 150;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Library receiving the works
+    private final BookLibraryService library;
+    // Number of lines per batch
+    private final int batchSize;
+    // Number of batches parsed at the same time
+    private final int parallelism;
+
+    /**
+     * Creates an importer using every core and the default batch size.
+     *
+     * @param library the library receiving the works
+     */
+    public WorksDumpImporter(BookLibraryService library) {
+        this(library, DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param library     the library receiving the works
+     * @param batchSize   number of lines per batch
+     * @param parallelism number of batches parsed at the same time
+     */
+    public WorksDumpImporter(BookLibraryService library, int batchSize, int parallelism) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        this.library = library;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Imports a dump, resuming from the checkpoint if it exists.
+     *
+     * @param dump       the dump file (gzipped if its name ends with ".gz")
+     * @param checkpoint the checkpoint file, holding the number of lines already imported
+     * @return the summary of this run
+     * @throws IOException if the dump cannot be read or the library cannot be written
+     */
+    public ImportSummary importDump(Path dump, Path checkpoint) throws IOException {
+        long startLine = readCheckpoint(checkpoint);
+        long start = System.nanoTime();
+        long line = startLine;
+        long imported = 0;
+        long skipped = 0;
+
+        try (BufferedReader reader = open(dump);
+             BoundedExecutor executor = new BoundedExecutor("dump-parser", parallelism)) {
+            // Lines before the checkpoint are read but not parsed
+            for (long i = 0; i < startLine && reader.readLine() != null; i++) {
+                // skip
+            }
+
+            Deque<Future<Batch>> pending = new ArrayDeque<>();
+            List<String> lines = new ArrayList<>(batchSize);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                lines.add(text);
+                line++;
+                if (lines.size() == batchSize) {
+                    pending.add(submit(executor, lines, line));
+                    lines = new ArrayList<>(batchSize);
+                    // Keep a bounded number of batches in memory
+                    if (pending.size() >= parallelism * 2) {
+                        Batch batch = write(pending.poll(), checkpoint, startLine, start);
+                        imported += batch.books.size();
+                        skipped += batch.skipped;
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                pending.add(submit(executor, lines, line));
+            }
+            while (!pending.isEmpty()) {
+                Batch batch = write(pending.poll(), checkpoint, startLine, start);
+                imported += batch.books.size();
+                skipped += batch.skipped;
+            }
+        }
+
+        ImportSummary summary = new ImportSummary(startLine, line - startLine, imported, skipped, System.nanoTime() - start);
+        logger.info("✅ Import finished: " + summary);
+        return summary;
+    }
+
+    /**
+     * Parses one line of the dump.
+     *
+     * @param line the dump line
+     * @return the work as a book, or null if the line is not an importable work
+     */
+    static BookDto parseLine(String line) {
+        String[] columns = line.split("\t", 5);
+        if (columns.length < 5 || !columns[0].equals(WORK_TYPE)) {
+            return null;
+        }
+        try {
+            JSONObject work = new JSONObject(columns[4]);
+            String title = clean(work.optString("title", ""));
+            if (title.isEmpty()) {
+                return null;
+            }
+
+            JSONArray covers = work.optJSONArray("covers");
+            int coverId = covers != null && covers.length() > 0 ? covers.optInt(0, -1) : -1;
+
+            String description;
+            Object value = work.opt("description");
+            if (value instanceof JSONObject typed) {
+                description = typed.optString("value", "");
+            } else {
+                description = value instanceof String s ? s : "";
+            }
+            description = clean(description);
+            if (description.length() > MAX_DESCRIPTION) {
+                description = description.substring(0, MAX_DESCRIPTION) + "...";
+            }
+
+            // Works only reference their authors by key: names are not in the works dump
+            return new BookDtoBuilder()
+                    .title(title)
+                    .author("Unknown")
+                    .coverUrl(coverId > 0 ? "https://covers.openlibrary.org/b/id/" + coverId + "-M.jpg" : null)
+                    .publishDate(clean(work.optString("first_publish_date", "N/A")))
+                    .key(work.optString("key", columns[1]))
+                    .description(description)
+                    .build();
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Submits a batch of lines for parsing.
+     */
+    private static Future<Batch> submit(BoundedExecutor executor, List<String> lines, long endLine) {
+        return executor.submit(() -> {
+            List<BookDto> books = new ArrayList<>(lines.size());
+            int skipped = 0;
+            for (String line : lines) {
+                BookDto book = parseLine(line);
+                if (book != null) {
+                    books.add(book);
+                } else {
+                    skipped++;
+                }
+            }
+            return new Batch(books, skipped, endLine);
+        });
+    }
+
+    /**
+     * Waits for a parsed batch, appends it to the library and moves the checkpoint past it.
+     */
+    private Batch write(Future<Batch> future, Path checkpoint, long startLine, long start) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse batch", e.getCause());
+        }
+        library.appendBooks(batch.books);
+        writeCheckpoint(checkpoint, batch.endLine);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        logger.info(String.format("📥 Imported up to line %d (%.0f lines/s)",
+                batch.endLine, seconds == 0 ? 0 : (batch.endLine - startLine) / seconds));
+        return batch;
+    }
+
+    /**
+     * Opens the dump as text, decompressing it on the fly if it is gzipped.
+     */
+    private static BufferedReader open(Path dump) throws IOException {
+        InputStream in = Files.newInputStream(dump);
+        if (dump.getFileName().toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Reads the number of lines already imported, or 0 if there is no checkpoint.
+     */
+    private static long readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(Files.readString(checkpoint, StandardCharsets.UTF_8).strip());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint file: " + checkpoint, e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint atomically.
+     */
+    private static void writeCheckpoint(Path checkpoint, long line) throws IOException {
+        Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(tmp, Long.toString(line), StandardCharsets.UTF_8);
+        Files.move(tmp, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Keeps text on a single line and away from the library field separator.
+     */
+    private static String clean(String text) {
+        return text.replaceAll("[\\r\\n\\t]+", " ").replace("||", "|").strip();
+    }
+
+    /**
+     * Parsed batch: the works found, the number of lines skipped and the line the batch ends at.
+     */
+    private static final class Batch {
+        final List<BookDto> books;
+        final int skipped;
+        final long endLine;
+
+        Batch(List<BookDto> books, int skipped, long endLine) {
+            this.books = books;
+            this.skipped = skipped;
+            this.endLine = endLine;
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.bookadvisor.model;
 
+import java.util.function.Supplier;
+
 /**
  * Data Transfer Object (DTO) for Book information.
  * <p>
  * This class is used to transfer book data between the client and server.
  * It encapsulates the main attributes of a book.
+ * <p>
+ * The description can be resolved lazily: when a description loader is set, it
+ * is called the first time the description is read, and its result is kept.
+ * A loader that fails leaves the description as it was, and is called again
+ * on the next read (it is up to the loader to answer quickly meanwhile).
+ * </p>
  */
 public class BookDto {
     private String title;
@@ -12,7 +20,9 @@ public class BookDto {
     private String coverUrl;
     private String publishDate;
     private String key;
-    private String description;
+    private volatile String description;
+    // Fetches the description on first read (null once resolved)
+    private volatile Supplier<String> descriptionLoader;
 
     /**
      * Constructs a new BookDto with the specified details.
@@ -79,20 +89,61 @@ public class BookDto {
     }
 
     /**
-     * Returns the description of the book.
+     * Returns the description of the book, resolving it with the description
+     * loader on first read. The loader runs without holding the lock of the
+     * book, so other calls on the book never wait for it. Concurrent first reads
+     * may call the loader together; the first result kept wins. If the loader
+     * fails with an exception, the current description is returned and the loader
+     * is kept, to be called again on the next read.
      *
      * @return the book description
      */
     public String getDescription() {
-        return description;
+        Supplier<String> loader = descriptionLoader;
+        if (loader == null) {
+            return description;
+        }
+        String loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            // Not available for now: only a successful result is kept
+            return description;
+        }
+        synchronized (this) {
+            if (descriptionLoader == loader) {
+                description = loaded;
+                descriptionLoader = null;
+            }
+            return description;
+        }
     }
 
     /**
-     * Sets the description of the book.
+     * Sets the description of the book, replacing any pending description loader.
      *
      * @param description the new description to set
      */
-    public void setDescription(String description) {
+    public synchronized void setDescription(String description) {
         this.description = description;
+        this.descriptionLoader = null;
+    }
+
+    /**
+     * Sets a loader that fetches the description the first time it is read.
+     *
+     * @param descriptionLoader the loader, or null to keep the current description
+     */
+    public synchronized void setDescriptionLoader(Supplier<String> descriptionLoader) {
+        this.descriptionLoader = descriptionLoader;
+    }
+
+    /**
+     * Returns whether the description is known without calling a loader.
+     *
+     * @return true if no description loader is pending
+     */
+    public boolean isDescriptionResolved() {
+        return descriptionLoader == null;
     }
 }
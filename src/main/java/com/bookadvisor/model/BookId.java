@@ -0,0 +1,109 @@
+package com.bookadvisor.model;
+
+import com.bookadvisor.util.Hashes;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Stable 64-bit identity of a book, used to detect books saved twice.
+ * <p>
+ * A book with an Open Library work key ({@code /works/OL45804W}) is identified
+ * by its work number, so the same work always gets the same id whatever its
+ * other fields. Other books are identified by a hash of their normalized title
+ * and author (accents, case and punctuation ignored), with the top bit set so
+ * the two kinds of ids never collide.
+ * </p>
+ */
+public final class BookId {
+
+    // Top bit of the ids hashed from title and author
+    private static final long HASHED = 1L << 63;
+
+    // Combining marks left by the decomposition of accented letters
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    // Runs of anything but letters and digits
+    private static final Pattern PUNCTUATION = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private BookId() {
+    }
+
+    /**
+     * Returns the id of a book: its work number, or the hash of its title and author.
+     *
+     * @param book the book
+     * @return the id
+     */
+    public static long of(BookDto book) {
+        long work = fromWorkKey(book.getKey());
+        return work != 0 ? work : fromTitleAndAuthor(book.getTitle(), book.getAuthor());
+    }
+
+    /**
+     * Returns the work number of an Open Library work key.
+     *
+     * @param key a key such as {@code /works/OL45804W} or {@code OL45804W}
+     * @return the work number, or 0 if the key is not a work key
+     */
+    public static long fromWorkKey(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int start = key.startsWith("/works/") ? 7 : 0;
+        int end = key.length() - 1;
+        if (end - start < 3 || end - start > 20 || !key.startsWith("OL", start) || key.charAt(end) != 'W') {
+            return 0;
+        }
+        long number = 0;
+        for (int i = start + 2; i < end; i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+            number = number * 10 + (c - '0');
+            if (number >= HASHED >>> 1) {
+                return 0;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Returns the id hashed from a title and an author.
+     *
+     * @param title  the title
+     * @param author the author
+     * @return the id, with its top bit set
+     */
+    public static long fromTitleAndAuthor(String title, String author) {
+        byte[] bytes = (normalize(title) + '\0' + normalize(author)).getBytes(StandardCharsets.UTF_8);
+        return HASHED | (Hashes.hash(bytes) >>> 1);
+    }
+
+    /**
+     * Returns whether an id is a work number rather than a title and author hash.
+     *
+     * @param id the id
+     * @return true for a work number
+     */
+    public static boolean isWorkId(long id) {
+        return id >= 0;
+    }
+
+    /**
+     * Normalizes text for comparison: accents removed, lower case, and runs of
+     * punctuation and spaces turned into single spaces.
+     *
+     * @param text the text, possibly null
+     * @return the normalized text, empty for null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD)).replaceAll("");
+        return PUNCTUATION.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").strip();
+    }
+}
@@ -0,0 +1,31 @@
+package com.bookadvisor.observer;
+
+import com.bookadvisor.cache.CoverCache;
+import com.bookadvisor.model.BookDto;
+
+/**
+ * CoverPrefetcher is an implementation of the Observer interface that downloads
+ * the cover of every saved book into the local cover cache, in the background.
+ */
+public class CoverPrefetcher implements Observer {
+
+    // Cache receiving the covers
+    private final CoverCache coverCache;
+
+    /**
+     * Creates a prefetcher for the given cache.
+     *
+     * @param coverCache the cache receiving the covers
+     */
+    public CoverPrefetcher(CoverCache coverCache) {
+        this.coverCache = coverCache;
+    }
+
+    @Override
+    public void update(BookDto book) {
+        String coverUrl = book.getCoverUrl();
+        if (coverUrl != null && coverUrl.startsWith("http")) {
+            coverCache.prefetch(coverUrl);
+        }
+    }
+}
@@ -8,4 +8,20 @@ import com.bookadvisor.model.BookDto;
  */
 public interface Observer {
     void update(BookDto book);
+
+    /**
+     * Called when a book is removed from the library, or replaced by a copy
+     * saved under another key. Does nothing by default.
+     *
+     * @param key the key of the removed book
+     */
+    default void removed(String key) {
+    }
+
+    /**
+     * Called when the library changed as a whole rather than book by book, e.g.
+     * when it was overwritten or books were imported in bulk. Does nothing by default.
+     */
+    default void libraryChanged() {
+    }
 }
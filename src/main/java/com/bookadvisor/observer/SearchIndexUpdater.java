@@ -0,0 +1,40 @@
+package com.bookadvisor.observer;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.search.LocalSearchProvider;
+
+/**
+ * SearchIndexUpdater is an implementation of the Observer interface that keeps
+ * a local search index in step with the library: saved books are indexed,
+ * replacing their previous copy, removed books leave the index, and the whole
+ * library is indexed again on the next search after it changed as a whole.
+ */
+public class SearchIndexUpdater implements Observer {
+
+    // Index following the library
+    private final LocalSearchProvider index;
+
+    /**
+     * Creates an updater for the given index.
+     *
+     * @param index the index following the library
+     */
+    public SearchIndexUpdater(LocalSearchProvider index) {
+        this.index = index;
+    }
+
+    @Override
+    public void update(BookDto book) {
+        index.add(book);
+    }
+
+    @Override
+    public void removed(String key) {
+        index.remove(key);
+    }
+
+    @Override
+    public void libraryChanged() {
+        index.invalidate();
+    }
+}
@@ -0,0 +1,59 @@
+package com.bookadvisor.parser;
+
+import com.bookadvisor.model.BookDto;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * ResponseParser that builds a full {@link JSONObject} tree of the response
+ * before reading any field.
+ * <p>
+ * This is the original parsing path of the application. It is kept as a reference
+ * implementation for tests and benchmarks of {@link StreamingResponseParser}.
+ * </p>
+ */
+public class DomResponseParser implements ResponseParser {
+
+    @Override
+    public int parseSearch(Reader in, int limit, Consumer<BookDto> sink) throws IOException {
+        try {
+            JSONObject obj = new JSONObject(new JSONTokener(in));
+            JSONArray docs = obj.getJSONArray("docs");
+
+            int count = Math.min(limit, docs.length());
+            for (int i = 0; i < count; i++) {
+                JSONObject d = docs.getJSONObject(i);
+                String author = d.has("author_name") ? d.getJSONArray("author_name").optString(0) : null;
+                Integer coverId = d.has("cover_i") ? d.getInt("cover_i") : null;
+                Integer year = d.has("first_publish_year") ? d.getInt("first_publish_year") : null;
+                sink.accept(ResponseParser.toBookDto(d.optString("key"), d.optString("title"), author, coverId, year));
+            }
+            return count;
+        } catch (JSONException e) {
+            throw new IOException("Invalid search response: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String parseDescription(Reader in) throws IOException {
+        try {
+            JSONObject workObj = new JSONObject(new JSONTokener(in));
+            if (!workObj.has("description")) {
+                return "";
+            }
+            Object descObj = workObj.get("description");
+            if (descObj instanceof JSONObject) {
+                return ((JSONObject) descObj).optString("value", "");
+            }
+            return descObj.toString();
+        } catch (JSONException e) {
+            throw new IOException("Invalid work response: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.bookadvisor.parser;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * Parser for the JSON responses of the Open Library API.
+ * <p>
+ * Implementations turn a {@code search.json} response into {@link BookDto}
+ * objects and extract the description from a work document.
+ * </p>
+ */
+public interface ResponseParser {
+
+    /**
+     * Fields requested from {@code search.json}; everything else is left out by the server.
+     */
+    String SEARCH_FIELDS = "key,title,author_name,cover_i,first_publish_year";
+
+    /**
+     * Parses a search response and emits a BookDto for each document, in ranking order.
+     *
+     * @param in    the response body
+     * @param limit maximum number of documents to emit
+     * @param sink  receives each book as soon as it is parsed
+     * @return the number of books emitted
+     * @throws IOException if reading or parsing fails
+     */
+    int parseSearch(Reader in, int limit, Consumer<BookDto> sink) throws IOException;
+
+    /**
+     * Extracts the description of a work document.
+     *
+     * @param in the response body
+     * @return the description, or an empty string if the work has none
+     * @throws IOException if reading or parsing fails
+     */
+    String parseDescription(Reader in) throws IOException;
+
+    /**
+     * Maps the projected fields of a search document to a BookDto, using the
+     * same defaults for missing fields as the rest of the application.
+     *
+     * @param key        the work key, may be null
+     * @param title      the title, may be null
+     * @param authorName the first author name, may be null
+     * @param coverId    the cover id, or null if absent
+     * @param year       the first publish year, or null if absent
+     * @return the mapped BookDto with an empty description
+     */
+    static BookDto toBookDto(String key, String title, String authorName, Integer coverId, Integer year) {
+        return new BookDtoBuilder()
+                .title(title != null ? title : "")
+                .author(authorName != null ? authorName : "Unknown")
+                .coverUrl(coverId != null ? "https://covers.openlibrary.org/b/id/" + coverId + "-M.jpg" : null)
+                .publishDate(year != null ? String.valueOf(year) : "N/A")
+                .key(key != null ? key : "")
+                .description("")
+                .build();
+    }
+}
@@ -0,0 +1,290 @@
+package com.bookadvisor.parser;
+
+import com.bookadvisor.model.BookDto;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * ResponseParser that reads the response token by token with a {@link JSONTokener}
+ * instead of building a {@code JSONObject} tree.
+ * <p>
+ * Only the projected fields of each search document are materialized; every other
+ * value is skipped character by character. Each book is emitted as soon as its
+ * document has been read, and parsing stops (leaving the rest of the body unread)
+ * once the limit has been reached. Work documents are read only up to the
+ * description.
+ * </p>
+ */
+public class StreamingResponseParser implements ResponseParser {
+
+    @Override
+    public int parseSearch(Reader in, int limit, Consumer<BookDto> sink) throws IOException {
+        try {
+            JSONTokener t = new JSONTokener(in);
+            expect(t, '{');
+            String name;
+            while ((name = nextName(t)) != null) {
+                if (name.equals("docs")) {
+                    return parseDocs(t, limit, sink);
+                }
+                skipValue(t);
+            }
+            return 0;
+        } catch (JSONException e) {
+            throw new IOException("Invalid search response: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String parseDescription(Reader in) throws IOException {
+        try {
+            JSONTokener t = new JSONTokener(in);
+            expect(t, '{');
+            String name;
+            while ((name = nextName(t)) != null) {
+                if (!name.equals("description")) {
+                    skipValue(t);
+                    continue;
+                }
+                char c = t.nextClean();
+                if (c == '"') {
+                    return t.nextString('"');
+                }
+                if (c == '{') {
+                    // Typed text: {"type": "/type/text", "value": "..."}
+                    String field;
+                    while ((field = nextName(t)) != null) {
+                        if (field.equals("value")) {
+                            String value = readString(t);
+                            return value != null ? value : "";
+                        }
+                        skipValue(t);
+                    }
+                    return "";
+                }
+                t.back();
+                skipValue(t);
+                return "";
+            }
+            return "";
+        } catch (JSONException e) {
+            throw new IOException("Invalid work response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the elements of the "docs" array until it ends or the limit is reached.
+     */
+    private int parseDocs(JSONTokener t, int limit, Consumer<BookDto> sink) {
+        expect(t, '[');
+        int count = 0;
+        while (count < limit) {
+            char c = t.nextClean();
+            if (c == ',') {
+                c = t.nextClean();
+            }
+            if (c == ']') {
+                break;
+            }
+            if (c != '{') {
+                t.back();
+                skipValue(t);
+                continue;
+            }
+            sink.accept(parseDoc(t));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Parses one search document, reading only the projected fields.
+     * The opening brace has already been consumed.
+     */
+    private BookDto parseDoc(JSONTokener t) {
+        String key = null;
+        String title = null;
+        String author = null;
+        Integer coverId = null;
+        Integer year = null;
+
+        String name;
+        while ((name = nextName(t)) != null) {
+            switch (name) {
+                case "key" -> key = readString(t);
+                case "title" -> title = readString(t);
+                case "author_name" -> author = readFirstString(t);
+                case "cover_i" -> coverId = readInt(t);
+                case "first_publish_year" -> year = readInt(t);
+                default -> skipValue(t);
+            }
+        }
+        return ResponseParser.toBookDto(key, title, author, coverId, year);
+    }
+
+    /**
+     * Reads the next member name of an object, including the colon after it.
+     *
+     * @return the name, or null if the object has ended
+     */
+    private static String nextName(JSONTokener t) {
+        char c = t.nextClean();
+        if (c == ',') {
+            c = t.nextClean();
+        }
+        if (c == '}') {
+            return null;
+        }
+        if (c != '"') {
+            throw t.syntaxError("Expected a member name");
+        }
+        String name = t.nextString('"');
+        expect(t, ':');
+        return name;
+    }
+
+    /**
+     * Reads a string value, or skips the value and returns null if it is not a string.
+     */
+    private static String readString(JSONTokener t) {
+        char c = t.nextClean();
+        if (c == '"') {
+            return t.nextString('"');
+        }
+        t.back();
+        skipValue(t);
+        return null;
+    }
+
+    /**
+     * Reads the first string of an array value, skipping the remaining elements.
+     */
+    private static String readFirstString(JSONTokener t) {
+        char c = t.nextClean();
+        if (c != '[') {
+            t.back();
+            skipValue(t);
+            return null;
+        }
+        String first = null;
+        while (true) {
+            c = t.nextClean();
+            if (c == ']') {
+                return first;
+            }
+            if (c == ',') {
+                continue;
+            }
+            if (c == '"' && first == null) {
+                first = t.nextString('"');
+            } else {
+                t.back();
+                skipValue(t);
+            }
+        }
+    }
+
+    /**
+     * Reads an integer value, or returns null if the value is not a number.
+     */
+    private static Integer readInt(JSONTokener t) {
+        char c = t.nextClean();
+        t.back();
+        if (c != '-' && (c < '0' || c > '9')) {
+            skipValue(t);
+            return null;
+        }
+        String token = readScalar(t);
+        try {
+            return Integer.valueOf(token);
+        } catch (NumberFormatException e) {
+            try {
+                return (int) Double.parseDouble(token);
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Skips a complete value of any type without materializing it.
+     */
+    private static void skipValue(JSONTokener t) {
+        char c = t.nextClean();
+        switch (c) {
+            case '"' -> skipString(t);
+            case '{', '[' -> skipNested(t);
+            case 0 -> throw t.syntaxError("Unexpected end of input");
+            default -> {
+                t.back();
+                readScalar(t);
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of a string whose opening quote has been consumed.
+     */
+    private static void skipString(JSONTokener t) {
+        while (true) {
+            char c = t.next();
+            if (c == '\\') {
+                t.next();
+            } else if (c == '"') {
+                return;
+            } else if (c == 0) {
+                throw t.syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of an object or array whose opening bracket has been consumed.
+     */
+    private static void skipNested(JSONTokener t) {
+        int depth = 1;
+        while (depth > 0) {
+            char c = t.next();
+            switch (c) {
+                case '"' -> skipString(t);
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                case 0 -> throw t.syntaxError("Unterminated object or array");
+                default -> {
+                    // Scalars and separators inside the nested value are ignored
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an unquoted scalar token (number, true, false, null).
+     */
+    private static String readScalar(JSONTokener t) {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = t.next();
+            if (c == 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                if (c != 0) {
+                    t.back();
+                }
+                return sb.toString();
+            }
+            sb.append(c);
+        }
+    }
+
+    /**
+     * Consumes the next non-whitespace character, which must be the expected one.
+     */
+    private static void expect(JSONTokener t, char expected) {
+        char c = t.nextClean();
+        if (c != expected) {
+            throw t.syntaxError("Expected '" + expected + "'");
+        }
+    }
+}
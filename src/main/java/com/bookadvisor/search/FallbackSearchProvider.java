@@ -0,0 +1,62 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Search provider that asks a primary provider first and only falls back to a
+ * second one when the primary has no results for the query, or fails.
+ * <p>
+ * Combined with a {@link LocalSearchProvider} as primary, well-known titles are
+ * answered locally and only the other queries reach Open Library.
+ * </p>
+ */
+public class FallbackSearchProvider implements SearchProvider {
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Provider asked first
+    private final SearchProvider primary;
+    // Provider asked when the primary has no results or fails
+    private final SearchProvider fallback;
+
+    /**
+     * Creates a provider chaining two providers.
+     *
+     * @param primary  the provider asked first
+     * @param fallback the provider asked when the primary has no results or fails
+     */
+    public FallbackSearchProvider(SearchProvider primary, SearchProvider fallback) {
+        this.primary = primary;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return primary.getName() + "+" + fallback.getName();
+    }
+
+    /**
+     * Returns the results of the primary provider, or those of the fallback if the
+     * primary fails or has none for the first page. Later pages come from the
+     * provider that answered the first one: the primary is asked for the page
+     * itself, and only when that page is empty is it asked whether it had any
+     * result for the query.
+     */
+    @Override
+    public List<BookDto> search(String query, int page, int pageSize) throws IOException {
+        try {
+            List<BookDto> results = primary.search(query, page, pageSize);
+            if (!results.isEmpty() || (page > 1 && !primary.search(query, 1, 1).isEmpty())) {
+                return results;
+            }
+        } catch (IOException e) {
+            logger.warning("⚠️ " + primary.getName() + " search failed, using " + fallback.getName() + ": " + e.getMessage());
+        }
+        return fallback.search(query, page, pageSize);
+    }
+}
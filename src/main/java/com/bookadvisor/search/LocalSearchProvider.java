@@ -0,0 +1,416 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.LibraryRecords;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Search provider over a local corpus of books, without any network access.
+ * <p>
+ * Books are held in memory with an inverted index from each word of the title
+ * and author to the books containing it. A query matches the books containing
+ * all of its words, so a lookup costs a few hash lookups and a short
+ * intersection rather than a scan. Results are ranked by how well the title
+ * matches (exact title first, then titles starting with the query, then titles
+ * containing the most query words), ties keeping corpus order.
+ * </p>
+ * <p>
+ * A book added under the key of an indexed book replaces it, and books can be
+ * removed, so the index can follow a library as books are saved and removed.
+ * Replaced and removed books stay in the postings until they outnumber the
+ * live ones and the index is rebuilt. A provider created over a library
+ * indexes it on the first search, and again on the first search after
+ * {@link #invalidate()}, e.g. once the library was overwritten.
+ * </p>
+ * <p>
+ * Searches return copies of the indexed books, so callers can change the
+ * results (e.g. set description loaders on them) without changing the index.
+ * </p>
+ */
+public class LocalSearchProvider implements SearchProvider {
+
+    /**
+     * Name of this provider.
+     */
+    public static final String NAME = "local";
+
+    // Smallest number of replaced and removed books before the index is rebuilt
+    private static final int MIN_GARBAGE = 64;
+
+    // Splits text into words
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    // Books of the corpus, by document id; null for a replaced or removed book
+    private final List<BookDto> books = new ArrayList<>();
+    // Normalized titles, by document id
+    private final List<String> titles = new ArrayList<>();
+    // Document ids of the books containing each word, in ascending order
+    private final Map<String, List<Integer>> postings = new HashMap<>();
+    // Document id of each indexed book, by key
+    private final Map<String, Integer> ids = new HashMap<>();
+    // Guards the index: many concurrent searches, occasional changes
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Library the index is rebuilt from, or null for a corpus given book by book
+    private final Supplier<? extends Collection<BookDto>> library;
+    // True when the library must be indexed again before the next search
+    private volatile boolean stale;
+
+    /**
+     * Creates an empty provider.
+     */
+    public LocalSearchProvider() {
+        this.library = null;
+    }
+
+    /**
+     * Creates a provider indexing the given books.
+     *
+     * @param corpus the books to index
+     */
+    public LocalSearchProvider(Collection<BookDto> corpus) {
+        this();
+        addAll(corpus);
+    }
+
+    /**
+     * Creates a provider over a library. The library is indexed on the first
+     * search, and again after {@link #invalidate()}; the changes in between are
+     * expected through {@link #add(BookDto)} and {@link #remove(String)}.
+     *
+     * @param library returns the books of the library
+     */
+    public LocalSearchProvider(Supplier<? extends Collection<BookDto>> library) {
+        this.library = library;
+        this.stale = true;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Adds a book to the corpus, replacing the book indexed under the same key.
+     *
+     * @param book the book to add
+     * @return true if no book was indexed under its key
+     */
+    public boolean add(BookDto book) {
+        BookDto copy = copy(book);
+        lock.writeLock().lock();
+        try {
+            boolean added = index(copy);
+            compactIfNeeded();
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds books to the corpus, replacing the books indexed under the same keys.
+     *
+     * @param corpus the books to add
+     * @return the number of books not indexed under their key before
+     */
+    public int addAll(Collection<BookDto> corpus) {
+        List<BookDto> copies = copyAll(corpus);
+        lock.writeLock().lock();
+        try {
+            int added = 0;
+            for (BookDto book : copies) {
+                if (index(book)) {
+                    added++;
+                }
+            }
+            compactIfNeeded();
+            return added;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a book from the corpus.
+     *
+     * @param key the key of the book, as stored in the library
+     * @return true if a book was indexed under the key
+     */
+    public boolean remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(key);
+            if (id == null) {
+                return false;
+            }
+            unindex(id);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole corpus.
+     *
+     * @param corpus the books to index
+     */
+    public void replaceAll(Collection<BookDto> corpus) {
+        List<BookDto> copies = copyAll(corpus);
+        lock.writeLock().lock();
+        try {
+            reindex(copies);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes the next search index the library again, for a library that changed
+     * as a whole rather than book by book. Does nothing for a provider not
+     * created over a library.
+     */
+    public void invalidate() {
+        if (library != null) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Returns the number of books in the corpus.
+     *
+     * @return the corpus size
+     */
+    public int size() {
+        refresh();
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<BookDto> search(String query, int page, int pageSize) {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        String normalized = String.join(" ", words);
+
+        refresh();
+        lock.readLock().lock();
+        try {
+            List<Integer> matches = intersect(words);
+            // Rank by title match; the sort is stable, so ties keep corpus order
+            List<int[]> ranked = new ArrayList<>(matches.size());
+            for (int id : matches) {
+                if (books.get(id) == null) {
+                    continue;
+                }
+                ranked.add(new int[]{id, score(id, normalized, words)});
+            }
+            ranked.sort((a, b) -> Integer.compare(b[1], a[1]));
+
+            int from = Math.min(ranked.size(), (page - 1) * pageSize);
+            int to = Math.min(ranked.size(), from + pageSize);
+            List<BookDto> results = new ArrayList<>(to - from);
+            for (int[] match : ranked.subList(from, to)) {
+                results.add(copy(books.get(match[0])));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the library again if it was invalidated. The flag is cleared
+     * first: an invalidation during the rebuild makes the next search rebuild again.
+     */
+    private void refresh() {
+        if (!stale) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (stale) {
+                stale = false;
+                reindex(copyAll(library.get()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of a book, its description resolved. The index only holds
+     * copies, and searches return copies, so nobody else can change the indexed books.
+     */
+    private static BookDto copy(BookDto book) {
+        return new BookDto(book.getTitle(), book.getAuthor(), book.getCoverUrl(), book.getPublishDate(),
+                book.getKey(), book.getDescription());
+    }
+
+    private static List<BookDto> copyAll(Collection<BookDto> corpus) {
+        List<BookDto> copies = new ArrayList<>(corpus.size());
+        for (BookDto book : corpus) {
+            copies.add(copy(book));
+        }
+        return copies;
+    }
+
+    /**
+     * Drops the index and indexes the given books. Must be called with the write lock held.
+     */
+    private void reindex(Collection<BookDto> corpus) {
+        books.clear();
+        titles.clear();
+        postings.clear();
+        ids.clear();
+        for (BookDto book : corpus) {
+            index(book);
+        }
+    }
+
+    /**
+     * Rebuilds the index once replaced and removed books outnumber the live
+     * ones. Must be called with the write lock held.
+     */
+    private void compactIfNeeded() {
+        int garbage = books.size() - ids.size();
+        if (garbage >= MIN_GARBAGE && garbage > ids.size()) {
+            List<BookDto> live = new ArrayList<>(ids.size());
+            for (BookDto book : books) {
+                if (book != null) {
+                    live.add(book);
+                }
+            }
+            reindex(live);
+        }
+    }
+
+    /**
+     * Marks a document as replaced or removed. Must be called with the write lock held.
+     */
+    private void unindex(int id) {
+        books.set(id, null);
+        titles.set(id, null);
+    }
+
+    /**
+     * Indexes a book, replacing the book indexed under the same key. Must be
+     * called with the write lock held.
+     */
+    private boolean index(BookDto book) {
+        int id = books.size();
+        Integer previous = ids.put(LibraryRecords.keyOf(book), id);
+        if (previous != null) {
+            unindex(previous);
+        }
+        books.add(book);
+        List<String> titleWords = words(book.getTitle());
+        titles.add(String.join(" ", titleWords));
+
+        Set<String> seen = new HashSet<>(titleWords);
+        seen.addAll(words(book.getAuthor()));
+        for (String word : seen) {
+            postings.computeIfAbsent(word, w -> new ArrayList<>()).add(id);
+        }
+        return previous == null;
+    }
+
+    /**
+     * Returns the ids of the books containing every word, starting from the
+     * rarest word so the intersection stays small.
+     */
+    private List<Integer> intersect(List<String> words) {
+        List<List<Integer>> lists = new ArrayList<>(words.size());
+        for (String word : new HashSet<>(words)) {
+            List<Integer> ids = postings.get(word);
+            if (ids == null) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        List<Integer> result = lists.get(0);
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Intersects two ascending id lists.
+     */
+    private static List<Integer> intersect(List<Integer> a, List<Integer> b) {
+        List<Integer> result = new ArrayList<>(Math.min(a.size(), b.size()));
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            int cmp = Integer.compare(a.get(i), b.get(j));
+            if (cmp == 0) {
+                result.add(a.get(i));
+                i++;
+                j++;
+            } else if (cmp < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scores how well the title of a book matches the query.
+     */
+    private int score(int id, String normalizedQuery, List<String> words) {
+        String title = titles.get(id);
+        if (title.equals(normalizedQuery)) {
+            return 1000;
+        }
+        if (title.startsWith(normalizedQuery)) {
+            return 500;
+        }
+        int score = 0;
+        for (String word : words) {
+            if ((" " + title + " ").contains(" " + word + " ")) {
+                score++;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Splits text into lowercase words.
+     */
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,62 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.composite.BookGroup;
+import com.bookadvisor.composite.BookLeaf;
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.parser.ResponseParser;
+import com.bookadvisor.parser.StreamingResponseParser;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Search provider backed by the Open Library search API ({@code /search.json}).
+ */
+public class OpenLibrarySearchProvider implements SearchProvider {
+
+    /**
+     * Name of this provider.
+     */
+    public static final String NAME = "openlibrary";
+
+    // Transport used for the search requests
+    private final HttpTransport transport;
+    // Parser for search responses
+    private final ResponseParser parser = new StreamingResponseParser();
+
+    /**
+     * Creates a provider using the given transport.
+     *
+     * @param transport the transport used for the search requests
+     */
+    public OpenLibrarySearchProvider(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<BookDto> search(String query, int page, int pageSize) throws IOException {
+        // Build the Open Library API path, asking only for the fields we use
+        String path = "/search.json?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                + "&fields=" + ResponseParser.SEARCH_FIELDS + "&limit=" + pageSize
+                + (page > 1 ? "&page=" + page : "");
+
+        // Create a group to hold the search results
+        BookGroup results = new BookGroup("Results");
+
+        // Parse the response as it streams in, stopping after the requested results
+        try (Reader in = new InputStreamReader(transport.openStream(path), StandardCharsets.UTF_8)) {
+            parser.parseSearch(in, pageSize, dto -> results.add(new BookLeaf(dto)));
+        }
+        return results.toList();
+    }
+}
@@ -0,0 +1,36 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.model.BookDto;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Source of book search results.
+ * <p>
+ * {@link com.bookadvisor.service.BookService} delegates searches to a provider,
+ * so the same caching, coalescing and paging work whether results come from
+ * Open Library or from a local corpus.
+ * </p>
+ */
+public interface SearchProvider {
+
+    /**
+     * Returns a short name identifying the provider (e.g. "openlibrary").
+     * Results are cached per provider name.
+     *
+     * @return the provider name
+     */
+    String getName();
+
+    /**
+     * Returns one page of results for a query, in ranking order.
+     *
+     * @param query    the normalized search query
+     * @param page     the page number, starting at 1
+     * @param pageSize the maximum number of results in the page
+     * @return the results of the page (a page shorter than {@code pageSize} is the last one)
+     * @throws IOException if the results cannot be retrieved
+     */
+    List<BookDto> search(String query, int page, int pageSize) throws IOException;
+}
@@ -2,33 +2,106 @@ package com.bookadvisor.service;
 
 import com.bookadvisor.annotations.Important;
 import com.bookadvisor.model.BookDto;
+import com.bookadvisor.model.BookId;
 import com.bookadvisor.util.AppLogger;
 import com.bookadvisor.interfaces.BookSaver;
 import com.bookadvisor.observer.Observer;
+import com.bookadvisor.storage.DurabilityPolicy;
+import com.bookadvisor.storage.GroupCommitWriter;
+import com.bookadvisor.storage.LibraryLog;
+import com.bookadvisor.storage.LibraryRecords;
+import com.bookadvisor.storage.LibraryStore;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
- * Service class for managing a library of books stored in a text file.
+ * Service class for managing a library of books stored in a text file,
+ * or in a binary library file (the format is detected from the file).
  * Provides methods for saving, loading, and updating books persistently.
  * Supports observer notification for book save events.
+ * <p>
+ * Saves can be written behind: see {@link #enableWriteBehind(DurabilityPolicy, boolean)}.
+ * </p>
+ * <p>
+ * The service keeps the library in memory: {@link #loadBooks()} only reads the
+ * file again when it changed since it was last read or written by this service.
+ * Saving a book already in the library under another record (same work, or
+ * same title and author) follows the {@link DuplicatePolicy}.
+ * </p>
  */
-public class BookLibraryService implements BookSaver {
+public class BookLibraryService implements BookSaver, AutoCloseable {
 
     /**
      * List of observers to be notified when a book is saved.
      * Observers can perform additional actions such as sending notifications or updating UI.
+     * Copied on write: observers are added while other threads notify them.
      */
-    private final List<Observer> observers = new ArrayList<>();
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
 
     /**
      * Logger instance for logging informational and error messages.
      */
     private static final Logger logger = AppLogger.getInstance().getLogger();
 
+    /**
+     * Path of the library file.
+     */
+    private final String filePath;
+
+    /**
+     * Write-behind queue receiving saved books, or null when saves are written directly.
+     */
+    private volatile GroupCommitWriter writeBehind;
+
+    /**
+     * Whether saveBook waits until its book is committed in write-behind mode.
+     */
+    private volatile boolean waitForCommit;
+
+    /**
+     * In-memory copy of the library, also used to serialize the changes made through this service.
+     */
+    private final ResidentLibrary resident = new ResidentLibrary();
+
+    /**
+     * What saveBook does with a book already in the library.
+     */
+    private volatile DuplicatePolicy duplicatePolicy = DuplicatePolicy.MERGE;
+
+    /**
+     * Store last returned by getStore, with the state of the file its format was detected from.
+     */
+    private volatile DetectedStore detectedStore;
+
+    /**
+     * Creates a service for the default library file ("library.txt").
+     */
+    public BookLibraryService() {
+        this("library.txt");
+    }
+
+    /**
+     * Creates a service for the given library file, e.g. a separate catalogue.
+     *
+     * @param filePath the path of the library file
+     */
+    public BookLibraryService(String filePath) {
+        this.filePath = filePath;
+    }
+
     /**
      * Returns the path to the file where the library is stored.
      * Subclasses can override this method to change the file location.
@@ -36,44 +109,360 @@ public class BookLibraryService implements BookSaver {
      * @return the file path as a string
      */
     protected String getFilePath() {
-        return "library.txt";
+        return filePath;
+    }
+
+    /**
+     * Returns the store of the library file, detecting its format: a shard
+     * manifest, a compressed or binary library file, or otherwise the append-only text log.
+     * <p>
+     * The format is only detected again when the file was replaced (e.g. by a
+     * conversion) or rewritten since it was last detected, which costs a file
+     * status and a read of the generation rather than reading the file.
+     * </p>
+     *
+     * @return the shared store of the current file
+     */
+    protected LibraryStore getStore() {
+        Path path = Paths.get(getFilePath());
+        // Taken first: a file replaced after this point is detected on the next call
+        Object fileKey = fileKey(path);
+        DetectedStore detected = detectedStore;
+        if (detected != null && detected.path().equals(path) && Objects.equals(detected.fileKey(), fileKey)
+                && detected.generation() == generationOf(detected.store())) {
+            return detected.store();
+        }
+        LibraryStore store = LibraryStore.open(path);
+        detectedStore = new DetectedStore(path, fileKey, generationOf(store), store);
+        return store;
+    }
+
+    /**
+     * Returns what identifies a file until it is replaced: its file key (inode),
+     * or its creation time where there is none, or null for a missing file.
+     */
+    private static Object fileKey(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // Never equal to a previous key: detect the format again
+            return new Object();
+        }
+    }
+
+    /**
+     * Returns the generation of a store, or -1 if it cannot be read.
+     */
+    private static long generationOf(LibraryStore store) {
+        try {
+            return store.getGeneration();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sets what saveBook does with a book already in the library under another
+     * record. Saves written behind are not checked.
+     *
+     * @param duplicatePolicy the policy, MERGE by default
+     */
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    /**
+     * Returns whether a book is already in the library: same Open Library work,
+     * or same title and author. Answered from memory once the library is loaded,
+     * without checking the file for changes.
+     *
+     * @param book the book
+     * @return true if the library holds the book
+     */
+    public boolean isSaved(BookDto book) {
+        synchronized (resident) {
+            try {
+                if (!resident.isLoaded()) {
+                    resident.load(getStore());
+                }
+                return resident.findSaved(book) != null;
+            } catch (IOException e) {
+                logger.warning("⚠️ No file found or error while loading: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Switches saves to write-behind mode: saveBook enqueues the book and a
+     * single writer thread writes queued books in batches, with one write and
+     * at most one sync per batch. Meant for bulk ingestion.
+     *
+     * @param policy        when written books are synced to disk
+     * @param waitForCommit true to make saveBook wait until its book is committed
+     */
+    public synchronized void enableWriteBehind(DurabilityPolicy policy, boolean waitForCommit) {
+        disableWriteBehind();
+        this.waitForCommit = waitForCommit;
+        this.writeBehind = new GroupCommitWriter(this::getStore, policy, GroupCommitWriter.DEFAULT_CAPACITY);
+        logger.info("📝 Write-behind enabled (sync " + policy + ")");
+    }
+
+    /**
+     * Writes the queued books and switches back to direct saves.
+     */
+    public synchronized void disableWriteBehind() {
+        GroupCommitWriter writer = writeBehind;
+        if (writer == null) {
+            return;
+        }
+        writeBehind = null;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.severe("❌ Error while writing queued books: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes and syncs every queued book. Does nothing outside write-behind mode.
+     *
+     * @throws IOException if the queued books cannot be written or synced
+     */
+    public void flush() throws IOException {
+        GroupCommitWriter writer = writeBehind;
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Writes the queued books and stops the write-behind thread, if any.
+     */
+    @Override
+    public void close() {
+        disableWriteBehind();
     }
 
     /**
      * Saves a single book by appending it to the end of the file.
-     * Notifies all registered observers after saving.
+     * A book with the same key replaces the previous one, and a book already
+     * saved under another key is handled by the {@link DuplicatePolicy}.
+     * Notifies all registered observers after saving (in write-behind mode,
+     * once the book is queued, or committed if saves wait for commit).
      *
      * @param book the book to save
+     * @return whether the book was added, merged into a saved copy, rejected,
+     *         or could not be written
      */
     @Important
-    public void saveBook(BookDto book) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(getFilePath(), true))) {
-            writer.write(serialize(book));
-            writer.newLine();
-            notifyObservers(book);
-            logger.info("✅ Book saved: " + book.getTitle());
+    public SaveOutcome saveBook(BookDto book) {
+        GroupCommitWriter writer = writeBehind;
+        if (writer != null) {
+            return saveBehind(writer, book);
+        }
+        try {
+            Saved saved = saveChecked(book);
+            if (saved == null) {
+                logger.info("⚠️ Book already in the library: " + book.getTitle());
+                return SaveOutcome.REJECTED;
+            }
+            if (saved.movedFrom() != null) {
+                notifyRemoved(saved.movedFrom());
+            }
+            notifyObservers(saved.book());
+            logger.info("✅ Book saved: " + saved.book().getTitle());
+            return saved.merged() ? SaveOutcome.MERGED : SaveOutcome.SAVED;
         } catch (IOException e) {
             logger.severe("❌ Error while saving: " + e.getMessage());
+            return SaveOutcome.FAILED;
         }
     }
 
     /**
-     * Loads all books stored in the file.
+     * Writes a book after looking for it in the in-memory library, loaded first
+     * if needed, and applies the duplicate policy.
      *
-     * @return a list of BookDto objects loaded from the file
+     * @return the book written (merged with the saved one, if any), or null if rejected
      */
-    public List<BookDto> loadBooks() {
-        List<BookDto> books = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(getFilePath()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                books.add(deserialize(line));
+    private Saved saveChecked(BookDto book) throws IOException {
+        DuplicatePolicy policy = duplicatePolicy;
+        synchronized (resident) {
+            LibraryStore store = getStore();
+            boolean current = resident.isCurrent(store);
+            if (!current && policy != DuplicatePolicy.ALLOW) {
+                resident.load(store);
+                current = true;
+            }
+            BookDto saved = policy != DuplicatePolicy.ALLOW ? resident.findSaved(book) : null;
+            if (saved != null && policy == DuplicatePolicy.REJECT) {
+                return null;
+            }
+            BookDto merged = saved != null ? merge(saved, book) : book;
+            String previousKey = saved != null ? LibraryRecords.keyOf(saved) : null;
+            boolean moved = previousKey != null && !previousKey.equals(LibraryRecords.keyOf(merged));
+            try {
+                store.put(merged);
+                if (moved) {
+                    store.remove(previousKey);
+                }
+            } catch (IOException | RuntimeException e) {
+                resident.invalidate();
+                throw e;
+            }
+            resident.changed(current, store, r -> {
+                if (moved) {
+                    r.remove(previousKey);
+                }
+                r.put(merged);
+            });
+            return new Saved(merged, moved ? previousKey : null, saved != null);
+        }
+    }
+
+    /**
+     * Merges a new copy of a saved book into it: the fields the new copy leaves
+     * empty keep their saved value, and an Open Library work key wins over other keys.
+     */
+    private static BookDto merge(BookDto saved, BookDto incoming) {
+        String key = BookId.fromWorkKey(incoming.getKey()) != 0 || BookId.fromWorkKey(saved.getKey()) == 0
+                ? incoming.getKey() : saved.getKey();
+        return new BookDto(pick(incoming.getTitle(), saved.getTitle()), pick(incoming.getAuthor(), saved.getAuthor()),
+                pick(incoming.getCoverUrl(), saved.getCoverUrl()),
+                pick(incoming.getPublishDate(), saved.getPublishDate()), key,
+                pick(incoming.getDescription(), saved.getDescription()));
+    }
+
+    private static String pick(String value, String fallback) {
+        return value == null || value.isBlank() || value.equals("N/A") ? fallback : value;
+    }
+
+    /**
+     * Writes a change to the store, and applies it to the in-memory copy if the
+     * copy matched the file just before the change.
+     */
+    private <T> T write(StoreWrite<T> write, ResidentLibrary.Change change) throws IOException {
+        synchronized (resident) {
+            LibraryStore store = getStore();
+            boolean current = resident.isCurrent(store);
+            T result;
+            try {
+                result = write.apply(store);
+            } catch (IOException | RuntimeException e) {
+                // A failed write may have been partly applied: reload on next use
+                resident.invalidate();
+                throw e;
+            }
+            resident.changed(current, store, change);
+            return result;
+        }
+    }
+
+    /**
+     * Queues a book in write-behind mode. Books are not logged one by one here:
+     * the writer thread logs failed batches.
+     */
+    private SaveOutcome saveBehind(GroupCommitWriter writer, BookDto book) {
+        try {
+            CompletableFuture<Void> committed = writer.save(book);
+            if (waitForCommit) {
+                committed.join();
+            }
+            notifyObservers(book);
+            return SaveOutcome.SAVED;
+        } catch (IOException | CompletionException | IllegalStateException e) {
+            logger.severe("❌ Error while saving: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            return SaveOutcome.FAILED;
+        }
+    }
+
+    /**
+     * Writes queued books before an operation that reads or rewrites the file.
+     */
+    private void flushQueued() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.severe("❌ Error while writing queued books: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends many books to the file at once, with a single write.
+     * Meant for bulk imports: observers are not notified of each book, only
+     * that the library changed as a whole.
+     *
+     * @param books the books to append
+     * @throws IOException if the books cannot be written
+     */
+    public void appendBooks(List<BookDto> books) throws IOException {
+        flush();
+        write(store -> {
+            store.putAll(books);
+            return null;
+        }, r -> r.putAll(books));
+        notifyLibraryChanged();
+    }
+
+    /**
+     * Removes a book by appending a tombstone, without rewriting the file.
+     *
+     * @param key the key of the book to remove
+     * @return true if a book was removed
+     */
+    public boolean removeBook(String key) {
+        flushQueued();
+        try {
+            boolean removed = write(store -> store.remove(key), r -> r.remove(key));
+            if (removed) {
+                notifyRemoved(key);
+                logger.info("🗑️ Book removed: " + key);
             }
-            logger.info("📚 Books loaded from file: " + books.size());
+            return removed;
         } catch (IOException e) {
-            logger.warning("⚠️ No file found or error while loading: " + e.getMessage());
+            logger.severe("❌ Error while removing: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns all books stored in the file. The file is only read if it changed
+     * since this service last read or wrote it.
+     *
+     * @return a new list of the books
+     */
+    public List<BookDto> loadBooks() {
+        flushQueued();
+        synchronized (resident) {
+            try {
+                LibraryStore store = getStore();
+                if (!resident.isCurrent(store)) {
+                    resident.load(store);
+                    logger.info("📚 Books loaded from file: " + resident.size());
+                }
+                return resident.getBooks();
+            } catch (IOException e) {
+                resident.invalidate();
+                logger.warning("⚠️ No file found or error while loading: " + e.getMessage());
+                return new ArrayList<>();
+            }
         }
-        return books;
+    }
+
+    /**
+     * Calls an action with every saved book, read one at a time from the file
+     * rather than loaded in memory, so a library of any size can be exported.
+     * Queued saves are written first.
+     *
+     * @param action receives the books, in library order
+     * @throws IOException if the file cannot be read
+     */
+    public void forEachBook(Consumer<BookDto> action) throws IOException {
+        flush();
+        getStore().forEachBook(action);
     }
 
     /**
@@ -82,17 +471,13 @@ public class BookLibraryService implements BookSaver {
      * @param books the new list of books to save
      */
     public void saveAllInternal(List<BookDto> books) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(getFilePath(), false))) {
-            books.stream()
-                    .map(this::serialize)
-                    .forEach(line -> {
-                        try {
-                            writer.write(line);
-                            writer.newLine();
-                        } catch (IOException e) {
-                            logger.warning("Error writing line: " + e.getMessage());
-                        }
-                    });
+        flushQueued();
+        try {
+            write(store -> {
+                store.replaceAll(books);
+                return null;
+            }, r -> r.replaceAll(books));
+            notifyLibraryChanged();
             logger.info("📄 Library overwritten with " + books.size() + " books.");
         } catch (IOException e) {
             logger.severe("❌ Error during full save: " + e.getMessage());
@@ -120,56 +505,85 @@ public class BookLibraryService implements BookSaver {
     }
 
     /**
-     * Serializes a BookDto object into a string for file storage.
+     * Registers an observer to be notified when a book is saved or removed.
      *
-     * @param book the book to serialize
-     * @return the serialized string representation of the book
+     * @param o the observer to add
      */
-    private String serialize(BookDto book) {
-        return book.getTitle() + "||" +
-                book.getAuthor() + "||" +
-                book.getCoverUrl() + "||" +
-                book.getPublishDate() + "||" +
-                (book.getDescription() != null ? book.getDescription() : "");
+    public void addObserver(Observer o) {
+        observers.add(o);
     }
 
     /**
-     * Deserializes a line from the file into a BookDto object.
+     * Notifies an observer of the books that other processes append to or
+     * remove from the library file, and of the rewrites of the file. Only text
+     * libraries are followed.
      *
-     * @param line the line read from the file
-     * @return the deserialized BookDto object
+     * @param o the observer to notify, on the watcher thread
+     * @return true if the library is followed
      */
-    private BookDto deserialize(String line) {
-        String[] parts = line.split("\\|\\|");
-
-        String title = parts.length > 0 ? parts[0] : "";
-        String author = parts.length > 1 ? parts[1] : "";
-        String coverUrl = parts.length > 2 ? parts[2] : "";
-        String publishDate = parts.length > 3 ? parts[3] : "";
-        String key = title + "||" + author + "||" + coverUrl + "||" + publishDate;
-        String description = parts.length > 4 ? parts[4] : "";
-
-        return new BookDto(title, author, coverUrl, publishDate, key, description);
+    public boolean followExternalChanges(Observer o) {
+        if (!(getStore() instanceof LibraryLog log)) {
+            return false;
+        }
+        try {
+            log.follow(o::update, o::removed, o::libraryChanged);
+            return true;
+        } catch (IOException e) {
+            logger.warning("⚠️ Could not follow library changes: " + e.getMessage());
+            return false;
+        }
     }
 
     /**
-     * Registers an observer to be notified when a book is saved.
+     * Notifies all registered observers about a saved book.
      *
-     * @param o the observer to add
+     * @param book the book that was saved
      */
-    public void addObserver(Observer o) {
-        observers.add(o);
+    private void notifyObservers(BookDto book) {
+        for (Observer o : observers) {
+            o.update(book);
+        }
     }
 
     /**
-     * Notifies all registered observers about a saved book.
+     * Notifies all registered observers about a removed book.
      *
-     * @param book the book that was saved
+     * @param key the key of the book that was removed
      */
-    private void notifyObservers(BookDto book) {
+    private void notifyRemoved(String key) {
         for (Observer o : observers) {
-            o.update(book);
+            o.removed(key);
         }
     }
 
+    /**
+     * Notifies all registered observers that the library changed as a whole.
+     */
+    private void notifyLibraryChanged() {
+        for (Observer o : observers) {
+            o.libraryChanged();
+        }
+    }
+
+    /**
+     * A book written by saveBook, the key of the copy it replaced under
+     * another key, or null, and whether it was merged into a saved copy.
+     */
+    private record Saved(BookDto book, String movedFrom, boolean merged) {
+    }
+
+    /**
+     * A store, and the file key and generation of the file its format was detected from.
+     */
+    private record DetectedStore(Path path, Object fileKey, long generation, LibraryStore store) {
+    }
+
+    /**
+     * A change written to a store.
+     */
+    @FunctionalInterface
+    private interface StoreWrite<T> {
+        T apply(LibraryStore store) throws IOException;
+    }
+
 }
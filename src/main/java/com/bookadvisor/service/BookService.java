@@ -1,28 +1,59 @@
 package com.bookadvisor.service;
 
 import com.bookadvisor.model.BookDto;
-import com.bookadvisor.factory.BookDtoBuilder;
 import com.bookadvisor.factory.BookDtoFactory; //unused import, but kept for potential future use
-import com.bookadvisor.composite.BookGroup;
-import com.bookadvisor.composite.BookLeaf;
+import com.bookadvisor.cache.DiskHttpCache;
+import com.bookadvisor.cache.LruTtlCache;
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.parser.ResponseParser;
+import com.bookadvisor.parser.StreamingResponseParser;
+import com.bookadvisor.search.OpenLibrarySearchProvider;
+import com.bookadvisor.search.SearchProvider;
 import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.BoundedExecutor;
+import com.bookadvisor.util.SingleFlight;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
-
-import org.json.*;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * BookService is a service class that handles the logic for searching books
  * using the Open Library API.
  * It fetches book data based on a search query and returns a list of BookDto
  * objects.
+ * <p>
+ * Searches are delegated to a {@link SearchProvider}: Open Library by default,
+ * or e.g. a local corpus, chosen by configuration or per call.
+ * </p>
+ * <p>
+ * Descriptions are fetched lazily: a result only fetches its work document when
+ * its description is first read, so a search costs a single request. The top
+ * results can optionally be prefetched on a bounded executor.
+ * Results are cached in memory by normalized query, so repeating a search does
+ * not hit the network again, and concurrent requests for the same search or the
+ * same work are coalesced into a single call.
+ * </p>
+ * <p>
+ * {@link #streamBooks(String)} goes beyond the first results by fetching further
+ * pages lazily, as the stream is consumed.
+ * </p>
  */
-public class BookService {
+public class BookService implements AutoCloseable {
     /**
      * Logger instance for logging messages and errors.
      * This logger is used to log search results and any errors that occur during
@@ -30,119 +61,445 @@ public class BookService {
      */
     private static final Logger logger = AppLogger.getInstance().getLogger();
 
+    /**
+     * Maximum number of results returned by a search.
+     */
+    public static final int MAX_RESULTS = 10;
+
+    /**
+     * Default maximum number of work documents fetched at the same time.
+     */
+    public static final int DEFAULT_ENRICHMENT_CONCURRENCY = 8;
+
+    /**
+     * Default time a read of a description waits for its work document.
+     */
+    public static final Duration DEFAULT_DESCRIPTION_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Default number of results fetched per page by {@link #streamBooks(String)}.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Maximum number of searches or page fetches running in the background at the same time.
+     */
+    public static final int SEARCH_CONCURRENCY = 16;
+
+    /**
+     * Time allowed for a blocking {@link #searchBooks(String)} call.
+     */
+    public static final Duration DEFAULT_SEARCH_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Default maximum number of searches kept in the result cache.
+     */
+    public static final int DEFAULT_CACHE_ENTRIES = 256;
+
+    /**
+     * Default time a search result stays in the result cache.
+     */
+    public static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(10);
+
+    // Matches runs of whitespace in a query
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Transport used for every request to Open Library
+    private final HttpTransport transport;
+    // Parser for work responses
+    private final ResponseParser parser = new StreamingResponseParser();
+    // Provider answering searches unless another one is given per call
+    private volatile SearchProvider searchProvider;
+    // Executor running the per-work description fetches
+    private final BoundedExecutor enrichmentExecutor;
+    // Executor running searches and page prefetches in the background
+    private final BoundedExecutor searchExecutor = new BoundedExecutor("book-search", SEARCH_CONCURRENCY);
+    // Time a read waits for a description before giving up on it
+    private final Duration descriptionTimeout;
+    // Number of top results whose descriptions are fetched as soon as a search completes
+    private volatile int descriptionPrefetch;
+    // Results of recent searches, keyed by normalized query
+    private volatile LruTtlCache<String, List<BookDto>> resultCache =
+            new LruTtlCache<>(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_TTL);
+    // Persistent cache for work documents (optional)
+    private volatile DiskHttpCache workCache;
+    // Coalesces concurrent identical searches, keyed by request path
+    private final SingleFlight<String, List<BookDto>> searchFlight = new SingleFlight<>();
+    // Coalesces concurrent fetches of the same work, keyed by request path
+    private final SingleFlight<String, String> workFlight = new SingleFlight<>();
+
+    /**
+     * Creates a BookService using the shared transport and the default enrichment settings.
+     */
+    public BookService() {
+        this(HttpTransport.getInstance());
+    }
+
+    /**
+     * Creates a BookService using the given transport and the default enrichment settings.
+     *
+     * @param transport the transport used for all Open Library requests
+     */
+    public BookService(HttpTransport transport) {
+        this(transport, DEFAULT_ENRICHMENT_CONCURRENCY, DEFAULT_DESCRIPTION_TIMEOUT);
+    }
+
+    /**
+     * Creates a BookService with custom enrichment settings.
+     *
+     * @param transport             the transport used for all Open Library requests
+     * @param enrichmentConcurrency maximum number of description fetches running at the same time
+     * @param descriptionTimeout    time a read of a description waits for its work document
+     */
+    public BookService(HttpTransport transport, int enrichmentConcurrency, Duration descriptionTimeout) {
+        this.transport = transport;
+        this.searchProvider = new OpenLibrarySearchProvider(transport);
+        this.enrichmentExecutor = new BoundedExecutor("book-enrichment", enrichmentConcurrency);
+        this.descriptionTimeout = descriptionTimeout;
+    }
+
     /**
      * Searches for books using the Open Library API based on the provided query.
+     * Results of recent searches are served from the in-memory result cache, which
+     * also provides expired results when Open Library cannot be reached.
+     * <p>
+     * This is a blocking wrapper around {@link #searchBooksAsync(String, Duration)}
+     * with the {@link #DEFAULT_SEARCH_TIMEOUT}. Errors are logged and yield an empty list.
+     * </p>
      *
      * @param query The search query for finding books.
      * @return A list of BookDto objects containing book information.
      */
     public List<BookDto> searchBooks(String query) {
-        // Thread-safe list to store the search results
-        final List<BookDto> resultList = Collections.synchronizedList(new ArrayList<>());
+        return searchBooks(query, searchProvider);
+    }
 
-        // Create a new thread to perform the search operation
-        Thread searchThread = new Thread(() -> {
-            try {
-                // Build the Open Library API URL with the search query
-                String urlString = "https://openlibrary.org/search.json?q=" + query.replace(" ", "+");
-                URL url = java.net.URI.create(urlString).toURL();
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-
-                // Read the response from the API
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                StringBuilder json = new StringBuilder();
-                String line;
-                while ((line = in.readLine()) != null)
-                    json.append(line);
-                in.close();
-
-                // Parse the JSON response
-                JSONObject obj = new JSONObject(json.toString());
-                JSONArray docs = obj.getJSONArray("docs");
-
-                // Create a group to hold the search results
-                BookGroup results = new BookGroup("Results");
-
-                // Iterate through the first 10 results (or less if fewer are available)
-                for (int i = 0; i < Math.min(10, docs.length()); i++) {
-                    JSONObject d = docs.getJSONObject(i);
-                    String title = d.optString("title");
-                    String author = d.has("author_name") ? d.getJSONArray("author_name").optString(0) : "Unknown";
-                    String coverUrl = d.has("cover_i")
-                            ? "https://covers.openlibrary.org/b/id/" + d.getInt("cover_i") + "-M.jpg"
-                            : null;
-                    String publishDate = d.has("first_publish_year") ? String.valueOf(d.getInt("first_publish_year"))
-                            : "N/A";
-                    String key = d.optString("key");
-
-                    // Optional: Fetch the book description if available
-                    String description = "";
-                    if (!key.isBlank()) {
-                        try {
-                            URL workUrl = new URL("https://openlibrary.org" + key + ".json");
-                            HttpURLConnection workConn = (HttpURLConnection) workUrl.openConnection();
-                            workConn.setRequestMethod("GET");
-
-                            BufferedReader workIn = new BufferedReader(
-                                    new InputStreamReader(workConn.getInputStream()));
-                            StringBuilder workJson = new StringBuilder();
-                            String workLine;
-                            while ((workLine = workIn.readLine()) != null)
-                                workJson.append(workLine);
-                            workIn.close();
-
-                            JSONObject workObj = new JSONObject(workJson.toString());
-                            if (workObj.has("description")) {
-                                Object descObj = workObj.get("description");
-                                if (descObj instanceof JSONObject) {
-                                    description = ((JSONObject) descObj).optString("value", "");
-                                } else {
-                                    description = descObj.toString();
-                                }
-                                // Truncate description if it's too long
-                                if (description.length() > 150) {
-                                    description = description.substring(0, 150) + "...";
-                                }
-                            }
-                        } catch (Exception ex) {
-                            // Ignore errors when fetching description
-                            description = "";
-                        }
-                    }
-
-                    // Build the BookDto object using the builder pattern
-                    BookDto dto = new BookDtoBuilder()
-                            .title(title)
-                            .author(author)
-                            .coverUrl(coverUrl)
-                            .publishDate(publishDate)
-                            .description(description)
-                            .build();
-
-                    // Add the BookDto to the results group
-                    results.add(new BookLeaf(dto));
-                }
+    /**
+     * Searches for books through a specific provider, e.g. to search the local
+     * corpus only. Behaves like {@link #searchBooks(String)}.
+     *
+     * @param query    the search query
+     * @param provider the provider answering the search
+     * @return the results in ranking order
+     */
+    public List<BookDto> searchBooks(String query, SearchProvider provider) {
+        CompletableFuture<List<BookDto>> search = searchBooksAsync(query, DEFAULT_SEARCH_TIMEOUT, provider);
+        try {
+            return new ArrayList<>(search.get());
+        } catch (InterruptedException e) {
+            search.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Already logged by the search task, except for timeouts
+            if (e.getCause() instanceof TimeoutException) {
+                logger.severe("❌ Search timed out: " + query);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Searches for books without blocking the caller.
+     *
+     * @param query the search query
+     * @return a future completed with the results, or with the error if the search failed
+     * @see #searchBooksAsync(String, Duration)
+     */
+    public CompletableFuture<List<BookDto>> searchBooksAsync(String query) {
+        return searchBooksAsync(query, null);
+    }
+
+    /**
+     * Searches for books without blocking the caller.
+     * <p>
+     * Cached results complete the future immediately. Otherwise the search runs on
+     * the service's bounded search executor. Cancelling the future, or letting it
+     * time out, frees the executor thread: the caller stops waiting, while the
+     * request itself goes on for the other callers of the same search (see
+     * {@link SingleFlight}), its results still cached. If the search
+     * fails and an expired result is still cached, that result is returned instead.
+     * </p>
+     *
+     * @param query   the search query
+     * @param timeout time after which the future fails with a {@link TimeoutException}, or null for none
+     * @return a future completed with the results in ranking order (unmodifiable)
+     */
+    public CompletableFuture<List<BookDto>> searchBooksAsync(String query, Duration timeout) {
+        return searchBooksAsync(query, timeout, searchProvider);
+    }
 
-                // Add all results to the result list
-                resultList.addAll(results.toList());
+    /**
+     * Searches for books through a specific provider without blocking the caller.
+     * Behaves like {@link #searchBooksAsync(String, Duration)}; results are cached per provider.
+     *
+     * @param query    the search query
+     * @param timeout  time after which the future fails with a {@link TimeoutException}, or null for none
+     * @param provider the provider answering the search
+     * @return a future completed with the results in ranking order (unmodifiable)
+     */
+    public CompletableFuture<List<BookDto>> searchBooksAsync(String query, Duration timeout, SearchProvider provider) {
+        String cacheKey = provider.getName() + ":" + normalizeQuery(query);
+        List<BookDto> cached = resultCache.get(cacheKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
 
+        CompletableFuture<List<BookDto>> result = new CompletableFuture<>();
+        Future<?> task = searchExecutor.submit(() -> {
+            try {
+                List<BookDto> books = fetchResults(provider, query);
+                resultCache.put(cacheKey, books);
+                result.complete(books);
             } catch (Exception e) {
+                if (result.isDone()) {
+                    // Cancelled or timed out: nobody is waiting for the outcome
+                    return null;
+                }
                 logger.severe("❌ Error during search: " + e.getMessage());
+                // Serve an expired result rather than nothing while Open Library is unavailable
+                List<BookDto> stale = resultCache.getStale(cacheKey);
+                if (stale != null) {
+                    logger.warning("⚠️ Serving cached results for: " + query);
+                    result.complete(stale);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            }
+            return null;
+        });
+        // A cancelled or timed-out caller stops waiting; the interrupt does not reach
+        // the request, which other callers of the same search may be waiting for
+        result.whenComplete((books, error) -> {
+            if (error != null) {
+                task.cancel(true);
             }
         });
+        return timeout != null ? result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS) : result;
+    }
 
-        // Start the search thread
-        searchThread.start();
+    /**
+     * Searches for books and returns every result as a lazy stream.
+     * Results are fetched {@link #DEFAULT_PAGE_SIZE} at a time, only as the stream
+     * is consumed; the stream should be closed if it is not consumed to the end.
+     *
+     * @param query the search query
+     * @return a sequential stream of results in ranking order
+     * @see #streamBooks(String, int)
+     */
+    public Stream<BookDto> streamBooks(String query) {
+        return streamBooks(query, DEFAULT_PAGE_SIZE);
+    }
 
-        try {
-            // Wait for the search thread to complete
-            searchThread.join();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    /**
+     * Searches for books and returns every result as a lazy stream.
+     * <p>
+     * A page is requested only when the consumer moves past the previous one, and
+     * the next page is prefetched in the background when the consumer gets close
+     * to the end of the current one. Paged results are not cached. If a page
+     * cannot be fetched, the stream throws an {@link java.io.UncheckedIOException}.
+     * </p>
+     *
+     * @param query    the search query
+     * @param pageSize number of results fetched per page
+     * @return a sequential stream of results in ranking order
+     */
+    public Stream<BookDto> streamBooks(String query, int pageSize) {
+        SearchProvider provider = searchProvider;
+        PagedSearchIterator pages = new PagedSearchIterator(page -> fetchPage(provider, query, page, pageSize),
+                pageSize, searchExecutor);
+        return StreamSupport.stream(
+                        Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(pages::close);
+    }
+
+    /**
+     * Returns the cache holding the results of recent searches, e.g. to read its counters.
+     *
+     * @return the result cache
+     */
+    public LruTtlCache<String, List<BookDto>> getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Replaces the result cache, e.g. to change its size or time to live.
+     *
+     * @param resultCache the new result cache
+     */
+    public void setResultCache(LruTtlCache<String, List<BookDto>> resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Returns the number of searches and work fetches that were served by an
+     * identical request already in flight.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedRequestCount() {
+        return searchFlight.getCoalescedCount() + workFlight.getCoalescedCount();
+    }
+
+    /**
+     * Returns the provider answering searches by default.
+     *
+     * @return the default search provider
+     */
+    public SearchProvider getSearchProvider() {
+        return searchProvider;
+    }
+
+    /**
+     * Sets the provider answering searches by default (Open Library unless changed).
+     *
+     * @param searchProvider the default search provider
+     */
+    public void setSearchProvider(SearchProvider searchProvider) {
+        this.searchProvider = searchProvider;
+    }
+
+    /**
+     * Returns the number of top results whose descriptions are fetched in the
+     * background as soon as a search completes.
+     *
+     * @return the number of descriptions prefetched per search
+     */
+    public int getDescriptionPrefetch() {
+        return descriptionPrefetch;
+    }
+
+    /**
+     * Sets the number of top results whose descriptions are fetched in the
+     * background as soon as a search completes. The other descriptions are only
+     * fetched when read. Use 0 (the default) to fetch descriptions only on demand.
+     *
+     * @param descriptionPrefetch the number of descriptions prefetched per search
+     */
+    public void setDescriptionPrefetch(int descriptionPrefetch) {
+        this.descriptionPrefetch = Math.max(0, descriptionPrefetch);
+    }
+
+    /**
+     * Sets the persistent cache used for work documents, or null to always fetch
+     * them from the network.
+     *
+     * @param workCache the work document cache
+     */
+    public void setWorkCache(DiskHttpCache workCache) {
+        this.workCache = workCache;
+    }
+
+    /**
+     * Normalizes a query for use as a cache key: trimmed, case-folded and with
+     * runs of whitespace collapsed to a single space.
+     *
+     * @param query the query as typed by the user
+     * @return the normalized query
+     */
+    public static String normalizeQuery(String query) {
+        return WHITESPACE.matcher(query.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    /**
+     * Runs a search through a provider. Descriptions are resolved lazily.
+     *
+     * @param provider the search provider
+     * @param query    the search query
+     * @return the results in ranking order (unmodifiable)
+     * @throws IOException if the search request or the parsing fails
+     */
+    private List<BookDto> fetchResults(SearchProvider provider, String query) throws IOException {
+        return fetchPage(provider, query, 1, MAX_RESULTS);
+    }
+
+    /**
+     * Fetches one page of search results, with lazy description loaders attached.
+     *
+     * @param provider the search provider
+     * @param query    the search query
+     * @param page     the page number, starting at 1
+     * @param pageSize the number of results per page
+     * @return the results of the page in ranking order (unmodifiable)
+     * @throws IOException if the search request or the parsing fails
+     */
+    private List<BookDto> fetchPage(SearchProvider provider, String query, int page, int pageSize) throws IOException {
+        String normalized = normalizeQuery(query);
+        String flightKey = provider.getName() + "|" + normalized + "|" + page + "|" + pageSize;
+
+        // Concurrent searches for the same query share a single request
+        return searchFlight.execute(flightKey, () -> {
+            List<BookDto> books = new ArrayList<>(provider.search(normalized, page, pageSize));
+            // Descriptions are fetched when first read (or prefetched for the top results)
+            attachDescriptionLoaders(books);
+            return List.copyOf(books);
+        });
+    }
+
+    /**
+     * Sets a description loader on each book, so its work document is only fetched
+     * when the description is read, and starts the fetches of the first
+     * {@link #getDescriptionPrefetch()} books in the background.
+     *
+     * @param books the books to enrich, in ranking order
+     */
+    private void attachDescriptionLoaders(List<BookDto> books) {
+        int prefetch = descriptionPrefetch;
+        for (BookDto book : books) {
+            String key = book.getKey();
+            // Only Open Library works without a known description have anything to fetch
+            if (!key.startsWith("/works/") || !isBlank(book.getDescription())) {
+                continue;
+            }
+            DescriptionLoader loader = new DescriptionLoader(key, () -> fetchDescription(key),
+                    enrichmentExecutor, descriptionTimeout);
+            book.setDescriptionLoader(loader);
+            if (prefetch-- > 0) {
+                loader.prefetch();
+            }
         }
+    }
+
+    /**
+     * Fetches the description of a single work from the Open Library API, through
+     * the work cache if one is configured.
+     * Long descriptions are truncated to 150 characters.
+     *
+     * @param key the Open Library work key (e.g. "/works/OL45883W")
+     * @return the description, or an empty string if the work has none
+     * @throws IOException if the request or the JSON parsing fails
+     */
+    private String fetchDescription(String key) throws IOException {
+        String path = key + ".json";
 
-        return resultList;
+        // Searches returning the same work share a single request
+        return workFlight.execute(path, () -> {
+            DiskHttpCache cache = workCache;
+            InputStream body = cache != null ? new ByteArrayInputStream(cache.fetch(transport, path))
+                    : transport.openStream(path);
+
+            String description;
+            try (Reader in = new InputStreamReader(body, StandardCharsets.UTF_8)) {
+                description = parser.parseDescription(in);
+            }
+            // Truncate description if it's too long
+            if (description.length() > 150) {
+                description = description.substring(0, 150) + "...";
+            }
+            return description;
+        });
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    /**
+     * Stops the background workers. Fetches still running are interrupted.
+     */
+    @Override
+    public void close() {
+        searchExecutor.close();
+        enrichmentExecutor.close();
     }
 
 }
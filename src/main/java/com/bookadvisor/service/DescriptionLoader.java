@@ -0,0 +1,164 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.BoundedExecutor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Description loader set on search results, so that a work document is only
+ * fetched when the description of the book is actually read.
+ * <p>
+ * The fetch runs on the enrichment executor, either when the description is
+ * first read or earlier through {@link #prefetch()}. A read waits for the fetch
+ * for at most the description timeout. A fetch that misses it goes on in the
+ * background, for a later read to pick up; a fetch that fails is discarded, and
+ * fetched again by a read after the retry delay. Until then, reads fail at once
+ * instead of waiting, and the book keeps its current description. Only a
+ * successful fetch is kept, by the book.
+ * </p>
+ * <p>
+ * A read that fails or times out does not cancel the fetch: the work document
+ * may be shared with other books through single-flight requests.
+ * </p>
+ */
+class DescriptionLoader implements Supplier<String> {
+
+    /**
+     * Time after a failed or timed-out fetch during which reads do not wait for a new one.
+     */
+    static final Duration DEFAULT_RETRY_DELAY = Duration.ofSeconds(30);
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Work key, for log messages
+    private final String key;
+    // Fetches the description
+    private final Callable<String> fetch;
+    // Executor running the fetch
+    private final BoundedExecutor executor;
+    // Time a read waits for the fetch
+    private final Duration timeout;
+    // Time after a failure before reads wait for a fetch again
+    private final Duration retryDelay;
+    // Fetch in progress or completed, if started
+    private Future<String> pending;
+    // System.nanoTime() before which reads fail at once, after a failure or timeout
+    private long retryAt;
+    // True once a fetch failed or timed out
+    private boolean backingOff;
+
+    /**
+     * Creates a loader retrying after the {@link #DEFAULT_RETRY_DELAY}.
+     *
+     * @param key      the Open Library work key
+     * @param fetch    fetches the description
+     * @param executor executor running the fetch
+     * @param timeout  time a read waits for the fetch
+     */
+    DescriptionLoader(String key, Callable<String> fetch, BoundedExecutor executor, Duration timeout) {
+        this(key, fetch, executor, timeout, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param key        the Open Library work key
+     * @param fetch      fetches the description
+     * @param executor   executor running the fetch
+     * @param timeout    time a read waits for the fetch
+     * @param retryDelay time after a failed or timed-out fetch during which reads fail at once
+     */
+    DescriptionLoader(String key, Callable<String> fetch, BoundedExecutor executor, Duration timeout, Duration retryDelay) {
+        this.key = key;
+        this.fetch = fetch;
+        this.executor = executor;
+        this.timeout = timeout;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * Starts the fetch in the background if it has not started yet, unless a
+     * fetch failed less than the retry delay ago.
+     */
+    synchronized void prefetch() {
+        if (pending == null && !inRetryDelay()) {
+            pending = executor.submit(fetch);
+        }
+    }
+
+    /**
+     * Returns the description, starting the fetch if needed and waiting for it.
+     *
+     * @return the description
+     * @throws UncheckedIOException if the fetch fails, times out or is interrupted,
+     *                              or failed or timed out less than the retry delay ago
+     */
+    @Override
+    public String get() {
+        Future<String> future;
+        synchronized (this) {
+            prefetch();
+            future = pending;
+            if (future == null || (!future.isDone() && inRetryDelay())) {
+                throw new UncheckedIOException(new IOException("Description not available yet: " + key));
+            }
+        }
+        try {
+            String description = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            succeeded();
+            return description;
+        } catch (TimeoutException e) {
+            // Left running: a later read may find it done
+            failed(null);
+            logger.warning("⚠️ Description fetch timed out for " + key);
+            throw new UncheckedIOException(new InterruptedIOException("Description fetch timed out: " + key));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new InterruptedIOException("Interrupted while fetching " + key));
+        } catch (ExecutionException e) {
+            failed(future);
+            // Ignore errors when fetching description
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+    }
+
+    /**
+     * Returns whether a failure or timeout happened less than the retry delay ago.
+     * Must be called while holding the lock.
+     */
+    private boolean inRetryDelay() {
+        return backingOff && System.nanoTime() - retryAt < 0;
+    }
+
+    /**
+     * Clears the retry delay after a successful fetch.
+     */
+    private synchronized void succeeded() {
+        backingOff = false;
+    }
+
+    /**
+     * Starts the retry delay, and forgets a failed fetch so the read after the
+     * delay starts a new one.
+     *
+     * @param failedFetch the fetch that failed, or null after a timeout
+     */
+    private synchronized void failed(Future<String> failedFetch) {
+        if (failedFetch != null && pending == failedFetch) {
+            pending = null;
+        }
+        backingOff = true;
+        retryAt = System.nanoTime() + retryDelay.toNanos();
+    }
+}
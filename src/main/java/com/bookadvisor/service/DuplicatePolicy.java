@@ -0,0 +1,25 @@
+package com.bookadvisor.service;
+
+/**
+ * What {@link BookLibraryService#saveBook} does with a book already in the
+ * library under another record: same Open Library work, or for books without
+ * a work key, same title and author (see {@link com.bookadvisor.model.BookId}).
+ */
+public enum DuplicatePolicy {
+
+    /**
+     * Keeps the saved book and ignores the new one.
+     */
+    REJECT,
+
+    /**
+     * Updates the saved book with the fields of the new one, keeping the saved
+     * values of the fields the new book leaves empty.
+     */
+    MERGE,
+
+    /**
+     * Saves the new book as it is: only a book with the same key is replaced.
+     */
+    ALLOW
+}
@@ -0,0 +1,190 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.BoundedExecutor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Iterator over search results that fetches them one page at a time.
+ * <p>
+ * A page is only requested when the consumer moves past the previous one, so
+ * at most two pages are held in memory whatever the size of the result set.
+ * When the consumer gets close to the end of the current page, the next page
+ * is fetched in the background so it is usually ready by the time it is needed.
+ * A page shorter than the page size marks the end of the results.
+ * </p>
+ */
+public class PagedSearchIterator implements Iterator<BookDto>, AutoCloseable {
+
+    /**
+     * Loads one page of results.
+     */
+    @FunctionalInterface
+    public interface PageLoader {
+        /**
+         * Loads a page.
+         *
+         * @param page the page number, starting at 1
+         * @return the results of the page, in ranking order
+         * @throws IOException if the page cannot be fetched
+         */
+        List<BookDto> load(int page) throws IOException;
+    }
+
+    // Loads the pages
+    private final PageLoader loader;
+    // Number of results requested per page
+    private final int pageSize;
+    // Position in the current page from which the next page is prefetched
+    private final int prefetchAt;
+    // Executor running the background prefetches
+    private final BoundedExecutor executor;
+
+    // Results of the current page
+    private List<BookDto> current = List.of();
+    // Position of the next result in the current page
+    private int index;
+    // Number of the current page (0 before the first page is loaded)
+    private int page;
+    // True once a short page has been seen
+    private boolean lastPage;
+    // Background fetch of the next page, if started
+    private Future<List<BookDto>> prefetch;
+    // Number of pages requested so far
+    private int pagesFetched;
+
+    /**
+     * Creates a new iterator. Nothing is fetched until {@link #hasNext()} is called.
+     *
+     * @param loader   loads a page of results
+     * @param pageSize number of results requested per page
+     * @param executor executor running the background prefetches
+     */
+    public PagedSearchIterator(PageLoader loader, int pageSize, BoundedExecutor executor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1: " + pageSize);
+        }
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.prefetchAt = pageSize - Math.max(1, pageSize / 4);
+        this.executor = executor;
+    }
+
+    /**
+     * Returns whether there are more results, fetching the next page if needed.
+     *
+     * @return true if there is at least one more result
+     * @throws UncheckedIOException if a page cannot be fetched
+     */
+    @Override
+    public boolean hasNext() {
+        while (index >= current.size()) {
+            if (lastPage) {
+                return false;
+            }
+            advancePage();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next result.
+     *
+     * @return the next book
+     * @throws NoSuchElementException if there are no more results
+     * @throws UncheckedIOException   if a page cannot be fetched
+     */
+    @Override
+    public BookDto next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BookDto book = current.get(index++);
+        if (index >= prefetchAt && prefetch == null && !lastPage) {
+            int nextPage = page + 1;
+            pagesFetched++;
+            prefetch = executor.submit(() -> loader.load(nextPage));
+        }
+        return book;
+    }
+
+    /**
+     * Returns the number of pages requested so far, including a prefetch in progress.
+     *
+     * @return the number of pages fetched
+     */
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    /**
+     * Cancels a background prefetch still in progress.
+     */
+    @Override
+    public void close() {
+        if (prefetch != null) {
+            prefetch.cancel(true);
+            prefetch = null;
+        }
+        lastPage = true;
+        current = List.of();
+    }
+
+    /**
+     * Replaces the current page with the next one, waiting for the prefetch if
+     * one was started.
+     */
+    private void advancePage() {
+        int nextPage = page + 1;
+        List<BookDto> results;
+        try {
+            if (prefetch != null) {
+                results = await(prefetch);
+                prefetch = null;
+            } else {
+                pagesFetched++;
+                results = loader.load(nextPage);
+            }
+        } catch (IOException e) {
+            lastPage = true;
+            throw new UncheckedIOException("Failed to fetch page " + nextPage, e);
+        }
+        page = nextPage;
+        current = results;
+        index = 0;
+        lastPage = results.size() < pageSize;
+    }
+
+    /**
+     * Waits for a prefetched page and rethrows its failure.
+     */
+    private static List<BookDto> await(Future<List<BookDto>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the next page");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Page fetch cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.model.BookId;
+import com.bookadvisor.storage.LibraryRecords;
+import com.bookadvisor.storage.LibraryStore;
+import com.bookadvisor.util.BloomFilter;
+import com.bookadvisor.util.LongHashMap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of a library file, so listing the library does not parse the
+ * whole file every time.
+ * <p>
+ * The copy remembers the size, modification time and generation of the files
+ * it matches. Before use it is checked against the file, which only costs a
+ * file status and a read of the generation, and it is reloaded only if the
+ * file changed. Changes made through the service are applied to the copy in
+ * place, provided the copy was current just before the change; otherwise it is
+ * dropped and reloaded on next use.
+ * </p>
+ * <p>
+ * Books are kept in the order of the store: a saved book moves to the end.
+ * They are also indexed by {@link BookId}, behind a Bloom filter, so finding
+ * whether a book is already saved takes a few memory reads, and usually just
+ * the filter for a book that is not. Not thread-safe: the service synchronizes on it.
+ * </p>
+ */
+class ResidentLibrary {
+
+    // Smallest number of books the filter is sized for
+    private static final int MIN_FILTER_SIZE = 1024;
+    // False positive rate of the filter when full
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // Books by key, in store order
+    private final Map<String, BookDto> books = new LinkedHashMap<>();
+    // State of the file the books match, or null when not loaded
+    private Stamp stamp;
+    // Keys of the books, by id
+    private LongHashMap<String> ids = new LongHashMap<>(16);
+    // Ids of the books, and of removed books until the filter is rebuilt
+    private BloomFilter filter = new BloomFilter(MIN_FILTER_SIZE, FALSE_POSITIVE_RATE);
+
+    /**
+     * Returns whether the copy matches the current content of the store.
+     *
+     * @param store the store of the library file
+     * @return true if the copy can be used as it is
+     * @throws IOException if the file cannot be checked
+     */
+    boolean isCurrent(LibraryStore store) throws IOException {
+        return stamp != null && stamp.equals(Stamp.of(store));
+    }
+
+    /**
+     * Reads the whole library from the store.
+     *
+     * @param store the store of the library file
+     * @throws IOException if the file cannot be read
+     */
+    void load(LibraryStore store) throws IOException {
+        invalidate();
+        // Taken first: a change made during the load makes the copy stale, not wrong
+        Stamp before = Stamp.of(store);
+        List<BookDto> loaded = store.loadAll();
+        ids = new LongHashMap<>(loaded.size());
+        filter = new BloomFilter(Math.max(MIN_FILTER_SIZE, loaded.size() * 2L), FALSE_POSITIVE_RATE);
+        for (BookDto book : loaded) {
+            put(book);
+        }
+        stamp = before;
+    }
+
+    /**
+     * Returns whether the copy was loaded and not dropped since.
+     *
+     * @return true if the copy holds the library as last read or written
+     */
+    boolean isLoaded() {
+        return stamp != null;
+    }
+
+    /**
+     * Returns the saved book with the same id as a book, if any.
+     *
+     * @param book the book
+     * @return the saved book, possibly under another key, or null
+     */
+    BookDto findSaved(BookDto book) {
+        long id = BookId.of(book);
+        if (!filter.mightContain(id)) {
+            return null;
+        }
+        String key = ids.get(id);
+        return key != null ? books.get(key) : null;
+    }
+
+    /**
+     * Records a change written to the store: applies it to the copy if the copy
+     * was current before the change, or drops the copy otherwise.
+     *
+     * @param wasCurrent whether the copy was current just before the change
+     * @param store      the store the change was written to
+     * @param change     the change to apply to the books
+     */
+    void changed(boolean wasCurrent, LibraryStore store, Change change) {
+        if (!wasCurrent) {
+            invalidate();
+            return;
+        }
+        change.apply(this);
+        try {
+            stamp = Stamp.of(store);
+        } catch (IOException e) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Drops the copy, so it is reloaded on next use.
+     */
+    void invalidate() {
+        stamp = null;
+        books.clear();
+        ids.clear();
+    }
+
+    /**
+     * Returns the books, in store order.
+     *
+     * @return a new list of the books
+     */
+    List<BookDto> getBooks() {
+        return new ArrayList<>(books.values());
+    }
+
+    /**
+     * Returns the number of books.
+     *
+     * @return the number of books
+     */
+    int size() {
+        return books.size();
+    }
+
+    void put(BookDto book) {
+        String key = LibraryRecords.keyOf(book);
+        // A saved book moves to the end, as in the store
+        unindex(books.remove(key), key);
+        books.put(key, book);
+        long id = BookId.of(book);
+        ids.put(id, key);
+        if (ids.size() > filter.getExpected()) {
+            rebuildFilter();
+        }
+        filter.add(id);
+    }
+
+    void putAll(Collection<BookDto> saved) {
+        saved.forEach(this::put);
+    }
+
+    void remove(String key) {
+        unindex(books.remove(key), key);
+    }
+
+    void replaceAll(Collection<BookDto> saved) {
+        books.clear();
+        ids.clear();
+        putAll(saved);
+    }
+
+    /**
+     * Removes a book from the id index, unless the id now points to another key.
+     */
+    private void unindex(BookDto book, String key) {
+        if (book != null) {
+            long id = BookId.of(book);
+            if (key.equals(ids.get(id))) {
+                ids.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the filter, twice as large as the library, from the index.
+     */
+    private void rebuildFilter() {
+        filter = new BloomFilter(Math.max(MIN_FILTER_SIZE, ids.size() * 2L), FALSE_POSITIVE_RATE);
+        ids.forEachKey(filter::add);
+    }
+
+    /**
+     * A change applied to the copy after it was written to the store.
+     */
+    @FunctionalInterface
+    interface Change {
+        void apply(ResidentLibrary library);
+    }
+
+    /**
+     * Sizes and modification times of the files of a library, and its generation.
+     */
+    private record Stamp(List<Long> sizes, List<FileTime> modified, long generation) {
+
+        static Stamp of(LibraryStore store) throws IOException {
+            List<Long> sizes = new ArrayList<>();
+            List<FileTime> modified = new ArrayList<>();
+            for (Path file : store.getFiles()) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    sizes.add(attributes.size());
+                    modified.add(attributes.lastModifiedTime());
+                } catch (NoSuchFileException e) {
+                    sizes.add(-1L);
+                    modified.add(null);
+                }
+            }
+            return new Stamp(sizes, modified, store.getGeneration());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bookadvisor.service;
+
+/**
+ * What {@link BookLibraryService#saveBook} did with a book.
+ */
+public enum SaveOutcome {
+
+    /**
+     * The book was added to the library (in write-behind mode, queued or
+     * committed, depending on whether saves wait for commit).
+     */
+    SAVED,
+
+    /**
+     * The book was already in the library and the saved copy was updated with
+     * its fields (see {@link DuplicatePolicy#MERGE}).
+     */
+    MERGED,
+
+    /**
+     * The book was already in the library and was left out
+     * (see {@link DuplicatePolicy#REJECT}).
+     */
+    REJECTED,
+
+    /**
+     * The book could not be written.
+     */
+    FAILED
+}
@@ -0,0 +1,738 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Library file in a compact binary format.
+ * <p>
+ * The file starts with a 16-byte header: the magic bytes {@code BKLB}, the
+ * format version (2 bytes), reserved flags (2 bytes) and the number of records
+ * (8 bytes). Records follow in blocks of up to {@link #BLOCK_RECORDS} records:
+ * </p>
+ * <pre>
+ * u32 payload length | u32 record count | u32 CRC32 of length and count | payload
+ *     | u32 CRC32 of the 12 bytes before the payload and the payload
+ * </pre>
+ * <p>
+ * The payload starts with the dictionary of the authors of the block; records
+ * then refer to their author by index, so an author repeated in a block is
+ * stored once. Strings are stored as a varint length followed by UTF-8 bytes,
+ * so any text, {@code ||} and line breaks included, is stored as it is. Plain
+ * years are stored as 16-bit values, and Open Library cover URLs and work keys
+ * as their number. As in the text format, a record is either
+ * a book or a tombstone removing a key, and the last record of a key wins.
+ * </p>
+ * <p>
+ * Saving books appends a block and updates the record count. A block cut short
+ * by a crash at the end of the file (a partial frame header, or a valid one
+ * whose payload runs past the end) is ignored and overwritten by the next
+ * append. Any other damage makes the load fail: a frame header or block whose
+ * checksum does not match, or, when no block was cut short, fewer records than
+ * the file header counts. Files of any other format version are not read.
+ * </p>
+ * <p>
+ * Processes sharing the file coordinate through a {@link LibraryLock}; a store
+ * re-reads the file when another process changed it.
+ * </p>
+ */
+public class BinaryLibraryFile implements LibraryStore {
+
+    /**
+     * Current format version.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Maximum number of records per block.
+     */
+    public static final int BLOCK_RECORDS = 4096;
+
+    // First bytes of every binary library file
+    private static final byte[] MAGIC = {'B', 'K', 'L', 'B'};
+    // Size of the file header
+    private static final int HEADER_BYTES = 16;
+    // Offset of the record count in the header
+    private static final int COUNT_OFFSET = 8;
+    // Size of a block frame header: length, count and their checksum
+    private static final int FRAME_BYTES = 12;
+
+    // Record types
+    private static final int BOOK = 0;
+    private static final int TOMBSTONE = 1;
+
+    // Open Library cover URLs and work keys, stored as their number
+    private static final String COVER_PREFIX = "https://covers.openlibrary.org/b/id/";
+    private static final String COVER_SUFFIX = "-M.jpg";
+    private static final String WORK_PREFIX = "/works/OL";
+    private static final String WORK_SUFFIX = "W";
+
+    // Tags of strings that may be stored as a number
+    private static final int AS_TEXT = 0;
+    private static final int AS_NUMBER = 1;
+
+    // Publish date codes; other values are the year itself
+    private static final int DATE_NOT_AVAILABLE = 0;
+    private static final int DATE_NULL = 0xFFFE;
+    private static final int DATE_TEXT = 0xFFFF;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Shared files, one per path
+    private static final Map<Path, BinaryLibraryFile> FILES = new ConcurrentHashMap<>();
+
+    // Library file
+    private final Path file;
+    // Keys of the live books (the values are only used while loading)
+    private Map<String, Integer> keys = new HashMap<>();
+    // End of the last complete block, where the next block goes
+    private long validEnd;
+    // Size of the file as last seen or written
+    private long fileSize = -1;
+    // Number of records in the file
+    private long records;
+    // Generation of the file when last read or written
+    private long generation = -1;
+    // Lock shared with the other processes using the file
+    private final LibraryLock lock;
+
+    /**
+     * Creates a store for a binary file. Prefer {@link #open(Path)}, which
+     * shares one store per file.
+     *
+     * @param file the library file (created on first write)
+     */
+    public BinaryLibraryFile(Path file) {
+        this.file = file;
+        this.lock = LibraryLock.of(file);
+    }
+
+    /**
+     * Returns the shared store of a binary file.
+     *
+     * @param file the library file
+     * @return the store
+     */
+    public static BinaryLibraryFile open(Path file) {
+        return FILES.computeIfAbsent(file.toAbsolutePath().normalize(), BinaryLibraryFile::new);
+    }
+
+    /**
+     * Returns whether a file is a binary library file, from its first bytes.
+     *
+     * @param file the file
+     * @return true for a binary library, false for a text library or a missing file
+     */
+    public static boolean isBinary(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the records of a binary file in file order, without loading it whole.
+     *
+     * @param file the binary library file
+     * @param sink receives the records
+     * @return the end of the last complete block
+     * @throws IOException if the file cannot be read, is not a binary library or is corrupt
+     */
+    public static long read(Path file, LibraryRecordSink sink) throws IOException {
+        return scan(file, sink);
+    }
+
+    /**
+     * Reads the records of a binary file and returns where the valid blocks end.
+     */
+    private static long scan(Path file, LibraryRecordSink sink) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a binary library file: " + file);
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported library format version " + version + ": " + file);
+            }
+            in.readUnsignedShort();
+            long expected = in.readLong();
+
+            long offset = HEADER_BYTES;
+            long records = 0;
+            boolean cutShort = false;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] frame = in.readNBytes(FRAME_BYTES);
+                if (frame.length == 0) {
+                    break;
+                }
+                if (frame.length < FRAME_BYTES) {
+                    logger.warning("⚠️ Ignoring incomplete block at the end of " + file);
+                    cutShort = true;
+                    break;
+                }
+                ByteBuffer header = ByteBuffer.wrap(frame);
+                int length = header.getInt();
+                int count = header.getInt();
+                crc.reset();
+                crc.update(frame, 0, 8);
+                if (Integer.toUnsignedLong(header.getInt()) != crc.getValue()) {
+                    throw new IOException("Corrupt block header at offset " + offset + " of " + file);
+                }
+                if (length < 0 || count < 1 || count > BLOCK_RECORDS) {
+                    throw new IOException("Invalid block header at offset " + offset + " of " + file);
+                }
+                // A valid frame header whose block runs past the end of the file was cut short by a crash
+                byte[] payload = in.readNBytes(length);
+                byte[] checksum = in.readNBytes(4);
+                if (payload.length < length || checksum.length < 4) {
+                    logger.warning("⚠️ Ignoring incomplete block at the end of " + file);
+                    cutShort = true;
+                    break;
+                }
+                crc.reset();
+                crc.update(frame);
+                crc.update(payload);
+                if (Integer.toUnsignedLong(ByteBuffer.wrap(checksum).getInt()) != crc.getValue()) {
+                    throw new IOException("Corrupt block at offset " + offset + " of " + file);
+                }
+                decodeBlock(ByteBuffer.wrap(payload), count, sink);
+                records += count;
+                offset += FRAME_BYTES + length + 4L;
+            }
+            // Blocks are written before the count is updated: unless the last
+            // block was cut short, a crash can leave more records than counted, never fewer
+            if (records < expected && !cutShort) {
+                throw new IOException("Missing blocks in " + file + ": " + records + " records found, "
+                        + expected + " expected");
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Creates a new binary file, replacing any existing file, and returns a
+     * writer for its records. Records are only counted in the header once the
+     * writer is closed.
+     *
+     * @param file the file to create
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    public static Writer create(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeHeader(channel, 0);
+            return new Writer(channel, HEADER_BYTES, 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void put(BookDto book) throws IOException {
+        putAll(List.of(book));
+    }
+
+    @Override
+    public synchronized void putAll(Collection<BookDto> books) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh();
+            Writer writer = append();
+            try (writer) {
+                for (BookDto book : books) {
+                    writer.book(book);
+                    keys.put(LibraryRecords.keyOf(book), -1);
+                }
+            }
+            appended(writer);
+        }
+    }
+
+    @Override
+    public synchronized boolean remove(String key) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh();
+            if (keys.remove(key) == null) {
+                return false;
+            }
+            Writer writer = append();
+            try (writer) {
+                writer.tombstone(key);
+            }
+            appended(writer);
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized List<BookDto> loadAll() throws IOException {
+        // The last record of a key wins and moves the book to the end:
+        // earlier records of a key are cleared from the list as they are replaced
+        List<BookDto> books = new ArrayList<>();
+        Map<String, Integer> positions = new HashMap<>();
+        long end;
+        try (LibraryLock.Held held = lock.shared()) {
+            generation = lock.readGeneration();
+            end = scan(file, new LibraryRecordSink() {
+                @Override
+                public void book(BookDto book) {
+                    Integer previous = positions.put(book.getKey(), books.size());
+                    if (previous != null) {
+                        books.set(previous, null);
+                    }
+                    books.add(book);
+                }
+
+                @Override
+                public void tombstone(String key) {
+                    Integer previous = positions.remove(key);
+                    if (previous != null) {
+                        books.set(previous, null);
+                    }
+                    books.add(null);
+                }
+            });
+            fileSize = Files.exists(file) ? Files.size(file) : -1;
+        } catch (NoSuchFileException e) {
+            books.clear();
+            positions.clear();
+            end = -1;
+            fileSize = -1;
+        }
+        keys = positions;
+        validEnd = end;
+        records = books.size();
+        books.removeIf(Objects::isNull);
+        return books;
+    }
+
+    /**
+     * Calls an action with every live book, reading the file twice: once for
+     * the position of the last record of each key, then for the books.
+     *
+     * @param action receives the books, in the order of {@link #loadAll()}
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    @Override
+    public synchronized void forEachBook(Consumer<BookDto> action) throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            if (!Files.exists(file)) {
+                return;
+            }
+            Map<String, Long> last = new HashMap<>();
+            long[] record = {0};
+            read(file, new LibraryRecordSink() {
+                @Override
+                public void book(BookDto book) {
+                    last.put(book.getKey(), record[0]++);
+                }
+
+                @Override
+                public void tombstone(String key) {
+                    last.remove(key);
+                    record[0]++;
+                }
+            });
+            record[0] = 0;
+            read(file, new LibraryRecordSink() {
+                @Override
+                public void book(BookDto book) {
+                    Long position = last.get(book.getKey());
+                    if (position != null && position == record[0]) {
+                        action.accept(book);
+                    }
+                    record[0]++;
+                }
+
+                @Override
+                public void tombstone(String key) {
+                    record[0]++;
+                }
+            });
+        }
+    }
+
+    @Override
+    public synchronized void replaceAll(Collection<BookDto> books) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            rewrite(books);
+        }
+    }
+
+    /**
+     * Writes the books to a new file and renames it over the library. The
+     * exclusive lock must be held.
+     */
+    private void rewrite(Collection<BookDto> books) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = create(tmp)) {
+            for (BookDto book : books) {
+                writer.book(book);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lock.nextGeneration();
+        fileSize = -1;
+    }
+
+    @Override
+    public long getGeneration() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            return lock.readGeneration();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Nothing written yet
+        }
+    }
+
+    /**
+     * Re-reads the keys if the file was changed by something else than this
+     * store. The lock must be held.
+     */
+    private void refresh() throws IOException {
+        long size = Files.exists(file) ? Files.size(file) : -1;
+        if (size != fileSize || lock.readGeneration() != generation) {
+            loadAll();
+        }
+    }
+
+    /**
+     * Opens a writer appending blocks after the last complete block, creating
+     * the file if needed.
+     */
+    private Writer append() throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (validEnd < HEADER_BYTES) {
+                channel.truncate(0);
+                writeHeader(channel, 0);
+                validEnd = HEADER_BYTES;
+                records = 0;
+            } else if (channel.size() > validEnd) {
+                // Drop an incomplete block left by a crash
+                channel.truncate(validEnd);
+            }
+            return new Writer(channel, validEnd, records);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records the state of the file after an append.
+     */
+    private void appended(Writer writer) throws IOException {
+        fileSize = Files.size(file);
+        validEnd = fileSize;
+        records = writer.getRecordCount();
+    }
+
+    private static void writeHeader(FileChannel channel, long count) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).putLong(count).flip();
+        writeFully(channel, header, 0);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Decodes the records of a block payload.
+     */
+    private static void decodeBlock(ByteBuffer payload, int count, LibraryRecordSink sink) throws IOException {
+        String[] authors = new String[readVarint(payload)];
+        for (int i = 0; i < authors.length; i++) {
+            authors[i] = readString(payload);
+        }
+        for (int i = 0; i < count; i++) {
+            int type = payload.get();
+            if (type == TOMBSTONE) {
+                sink.tombstone(readString(payload));
+                continue;
+            }
+            String title = readString(payload);
+            String author = authors[readVarint(payload)];
+            String coverUrl = readTagged(payload, COVER_PREFIX, COVER_SUFFIX);
+            int year = Short.toUnsignedInt(payload.getShort());
+            String publishDate = switch (year) {
+                case DATE_NOT_AVAILABLE -> "N/A";
+                case DATE_NULL -> null;
+                case DATE_TEXT -> readString(payload);
+                default -> Integer.toString(year);
+            };
+            String key = readTagged(payload, WORK_PREFIX, WORK_SUFFIX);
+            String description = readString(payload);
+            sink.book(new BookDto(title, author, coverUrl, publishDate, key, description));
+        }
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Reads a string stored either as text or as the number between a prefix and a suffix.
+     */
+    private static String readTagged(ByteBuffer in, String prefix, String suffix) {
+        return in.get() == AS_NUMBER ? prefix + readVarLong(in) + suffix : readString(in);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Writes records to a binary file, a block at a time. Closing the writer
+     * writes the last block, updates the record count and closes the file.
+     */
+    public static final class Writer implements LibraryRecordSink, Closeable {
+
+        // File being written
+        private final FileChannel channel;
+        // Where the next block goes
+        private long position;
+        // Records in the file, written blocks included
+        private long records;
+        // Authors of the current block, by index
+        private final Map<String, Integer> authors = new HashMap<>();
+        // Dictionary of the current block
+        private final ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+        // Records of the current block
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 16);
+        // Number of records in the current block
+        private int blockRecords;
+
+        private Writer(FileChannel channel, long position, long records) {
+            this.channel = channel;
+            this.position = position;
+            this.records = records;
+        }
+
+        @Override
+        public void book(BookDto book) throws IOException {
+            body.write(BOOK);
+            writeString(body, book.getTitle());
+            Integer author = authors.get(book.getAuthor());
+            if (author == null) {
+                author = authors.size();
+                authors.put(book.getAuthor(), author);
+                writeString(dictionary, book.getAuthor());
+            }
+            writeVarint(body, author);
+            writeTagged(body, book.getCoverUrl(), COVER_PREFIX, COVER_SUFFIX);
+            writeDate(body, book.getPublishDate());
+            writeTagged(body, LibraryRecords.keyOf(book), WORK_PREFIX, WORK_SUFFIX);
+            writeString(body, book.getDescription());
+            recordWritten();
+        }
+
+        @Override
+        public void tombstone(String key) throws IOException {
+            body.write(TOMBSTONE);
+            writeString(body, key);
+            recordWritten();
+        }
+
+        /**
+         * Returns the number of records in the file, the current block included.
+         *
+         * @return the record count
+         */
+        public long getRecordCount() {
+            return records + blockRecords;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+                ByteBuffer count = ByteBuffer.allocate(8).putLong(0, records);
+                writeFully(channel, count, COUNT_OFFSET);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void recordWritten() throws IOException {
+            blockRecords++;
+            if (blockRecords == BLOCK_RECORDS) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Writes the current block: frame header, dictionary and records, checksum.
+         */
+        private void flushBlock() throws IOException {
+            if (blockRecords == 0) {
+                return;
+            }
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(dictionary.size() + body.size() + 5);
+            writeVarint(payload, authors.size());
+            dictionary.writeTo(payload);
+            body.writeTo(payload);
+            byte[] bytes = payload.toByteArray();
+
+            CRC32 crc = new CRC32();
+            ByteBuffer block = ByteBuffer.allocate(FRAME_BYTES + bytes.length + 4);
+            block.putInt(bytes.length).putInt(blockRecords);
+            crc.update(block.array(), 0, 8);
+            block.putInt((int) crc.getValue());
+            crc.reset();
+            crc.update(block.array(), 0, FRAME_BYTES);
+            crc.update(bytes);
+            block.put(bytes).putInt((int) crc.getValue()).flip();
+            writeFully(channel, block, position);
+            position += block.limit();
+
+            records += blockRecords;
+            blockRecords = 0;
+            authors.clear();
+            dictionary.reset();
+            body.reset();
+        }
+
+        private static void writeDate(ByteArrayOutputStream out, String date) {
+            int code;
+            if (date == null) {
+                code = DATE_NULL;
+            } else if (date.equals("N/A")) {
+                code = DATE_NOT_AVAILABLE;
+            } else {
+                code = plainYear(date);
+            }
+            out.write(code >>> 8);
+            out.write(code);
+            if (code == DATE_TEXT) {
+                writeString(out, date);
+            }
+        }
+
+        /**
+         * Returns the year if the date is a plain year that reads back the same, DATE_TEXT otherwise.
+         */
+        private static int plainYear(String date) {
+            long year = plainNumber(date, 0, date.length());
+            return year > 0 && year < DATE_NULL ? (int) year : DATE_TEXT;
+        }
+
+        private static void writeVarint(ByteArrayOutputStream out, long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        /**
+         * Writes a string as the number between a prefix and a suffix when it reads
+         * back the same, as text otherwise.
+         */
+        private static void writeTagged(ByteArrayOutputStream out, String value, String prefix, String suffix) {
+            long number = value != null && value.startsWith(prefix) && value.endsWith(suffix)
+                    ? plainNumber(value, prefix.length(), value.length() - suffix.length()) : -1;
+            if (number < 0) {
+                out.write(AS_TEXT);
+                writeString(out, value);
+            } else {
+                out.write(AS_NUMBER);
+                writeVarint(out, number);
+            }
+        }
+
+        /**
+         * Returns the number written between two offsets, or -1 if the text there
+         * is not a plain number without leading zeros.
+         */
+        private static long plainNumber(String text, int from, int to) {
+            if (to <= from || to - from > 18 || (text.charAt(from) == '0' && to - from > 1)) {
+                return -1;
+            }
+            long number = 0;
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                number = number * 10 + (c - '0');
+            }
+            return number;
+        }
+
+        private static void writeString(ByteArrayOutputStream out, String value) {
+            if (value == null) {
+                writeVarint(out, 0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length + 1);
+            out.writeBytes(bytes);
+        }
+    }
+}
@@ -0,0 +1,916 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Library file compressed in blocks, with an index to read one book without
+ * decompressing the others.
+ * <p>
+ * The file starts with a 24-byte header: the magic bytes {@code BKCZ}, the
+ * format version (2 bytes), reserved flags (2 bytes), the offset of the index
+ * (8 bytes) and the offset of the saves made since the file was written (8 bytes).
+ * The books follow, sorted by key and grouped into blocks of about
+ * {@link #DEFAULT_BLOCK_BYTES} bytes, each compressed on its own with
+ * {@link Deflater}:
+ * </p>
+ * <pre>
+ * u32 compressed length | u32 raw length | u32 record count | compressed records | u32 CRC32
+ * </pre>
+ * <p>
+ * The index, itself stored as a block, holds the offset and first key of every
+ * book block: finding a book is a binary search of the index, then the
+ * decompression of a single block. Loading the whole library decompresses the
+ * blocks at the same time on a {@link ForkJoinPool}.
+ * </p>
+ * <p>
+ * Books saved or removed afterwards are appended after the index as blocks of
+ * records in save order, tombstones included, and kept in memory until the
+ * next merge. Once they take more than a quarter of the sorted blocks, the file
+ * is rewritten with every book sorted again. Books are listed in key order,
+ * followed by the books saved since the last merge.
+ * </p>
+ * <p>
+ * Processes sharing the file coordinate through a {@link LibraryLock}; a store
+ * re-reads the file when another process changed it.
+ * </p>
+ */
+public class CompressedLibraryFile implements LibraryStore {
+
+    /**
+     * Current format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Default amount of records, before compression, per block.
+     */
+    public static final int DEFAULT_BLOCK_BYTES = 64 * 1024;
+
+    // First bytes of every compressed library file
+    private static final byte[] MAGIC = {'B', 'K', 'C', 'Z'};
+    // Size of the file header
+    private static final int HEADER_BYTES = 24;
+    // Size of the frame around the compressed bytes of a block
+    private static final int FRAME_HEADER_BYTES = 12;
+    private static final int FRAME_BYTES = FRAME_HEADER_BYTES + 4;
+
+    // Record types
+    private static final int BOOK = 0;
+    private static final int TOMBSTONE = 1;
+
+    // Saves kept apart from the sorted blocks before a merge is considered
+    private static final long MIN_MERGE_BYTES = 1 << 20;
+    // Fraction of the sorted blocks above which saves are merged into them
+    private static final double MERGE_RATIO = 0.25;
+
+    // Marks a removed key among the saves
+    private static final BookDto REMOVED = new BookDto("", "", "", "", "", "");
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Shared files, one per path
+    private static final Map<Path, CompressedLibraryFile> FILES = new ConcurrentHashMap<>();
+
+    // Library file
+    private final Path file;
+    // Records per block, before compression
+    private final int blockBytes;
+    // Lock shared with the other processes using the file
+    private final LibraryLock lock;
+    // Index of the sorted blocks, null before the first read
+    private Index index;
+    // Books saved and keys removed since the blocks were sorted, in save order
+    private Map<String, BookDto> saves = new LinkedHashMap<>();
+    // Bytes taken by the saves, before compression
+    private long saveBytes;
+    // End of the last complete block, where the next block goes
+    private long validEnd;
+    // Size of the file as last seen or written
+    private long fileSize = -1;
+    // Generation of the file when last read or written
+    private long generation = -1;
+
+    /**
+     * Creates a store for a compressed file. Prefer {@link #open(Path)}, which
+     * shares one store per file.
+     *
+     * @param file       the library file (created on first write)
+     * @param blockBytes the amount of records per block, before compression
+     */
+    public CompressedLibraryFile(Path file, int blockBytes) {
+        if (blockBytes < 1024) {
+            throw new IllegalArgumentException("Block size must be at least 1 KiB: " + blockBytes);
+        }
+        this.file = file;
+        this.blockBytes = blockBytes;
+        this.lock = LibraryLock.of(file);
+    }
+
+    /**
+     * Returns the shared store of a compressed file, with the default block size.
+     *
+     * @param file the library file
+     * @return the store
+     */
+    public static CompressedLibraryFile open(Path file) {
+        return FILES.computeIfAbsent(file.toAbsolutePath().normalize(), p -> new CompressedLibraryFile(p, DEFAULT_BLOCK_BYTES));
+    }
+
+    /**
+     * Returns whether a file is a compressed library file, from its first bytes.
+     *
+     * @param file the file
+     * @return true for a compressed library, false for another format or a missing file
+     */
+    public static boolean isCompressed(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC.length), MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void put(BookDto book) throws IOException {
+        putAll(List.of(book));
+    }
+
+    /**
+     * Saves several books, appended as compressed blocks after the sorted ones.
+     *
+     * @param books the books to save
+     * @throws IOException if the blocks cannot be written
+     */
+    @Override
+    public synchronized void putAll(Collection<BookDto> books) throws IOException {
+        if (books.isEmpty()) {
+            return;
+        }
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh();
+            BlockWriter writer = new BlockWriter(blockBytes);
+            for (BookDto book : books) {
+                writer.book(book);
+            }
+            appendSaves(writer);
+            for (BookDto book : books) {
+                String key = LibraryRecords.keyOf(book);
+                saves.remove(key);
+                saves.put(key, book);
+            }
+            maybeMerge();
+        }
+    }
+
+    /**
+     * Removes the book with the given key by appending a tombstone.
+     *
+     * @param key the key of the book
+     * @return true if a book was removed
+     * @throws IOException if the tombstone cannot be written
+     */
+    @Override
+    public synchronized boolean remove(String key) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh();
+            if (find(key) == null) {
+                return false;
+            }
+            BlockWriter writer = new BlockWriter(blockBytes);
+            writer.tombstone(key);
+            appendSaves(writer);
+            saves.remove(key);
+            saves.put(key, REMOVED);
+            maybeMerge();
+            return true;
+        }
+    }
+
+    /**
+     * Returns the book stored under a key, decompressing at most one block.
+     *
+     * @param key the key of the book
+     * @return the book, or null if there is none
+     * @throws IOException if the block cannot be read
+     */
+    public synchronized BookDto get(String key) throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh();
+            return find(key);
+        }
+    }
+
+    /**
+     * Returns every book: the sorted blocks decompressed in parallel, then the
+     * books saved since they were written.
+     *
+     * @return the books
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    @Override
+    public synchronized List<BookDto> loadAll() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh();
+            return readAll();
+        }
+    }
+
+    /**
+     * Calls an action with every book, decompressing one block at a time.
+     *
+     * @param action receives the books, in the order of {@link #loadAll()}
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    @Override
+    public synchronized void forEachBook(Consumer<BookDto> action) throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh();
+            if (index.offsets.length > 0) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    for (long offset : index.offsets) {
+                        for (BookDto book : readBooks(channel, offset)) {
+                            if (!saves.containsKey(book.getKey())) {
+                                action.accept(book);
+                            }
+                        }
+                    }
+                }
+            }
+            for (BookDto book : saves.values()) {
+                if (book != REMOVED) {
+                    action.accept(book);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole library with the given books, sorted into new blocks.
+     * The new file is written next to the old one and renamed over it.
+     *
+     * @param books the new content of the library
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void replaceAll(Collection<BookDto> books) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            rewrite(books);
+        }
+    }
+
+    @Override
+    public long getGeneration() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            return lock.readGeneration();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Nothing written yet
+        }
+    }
+
+    /**
+     * Returns the number of sorted blocks.
+     *
+     * @return the block count
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized int getBlockCount() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh();
+            return index.offsets.length;
+        }
+    }
+
+    /**
+     * Returns the live book of a key, from the saves or the sorted blocks. The
+     * state must be current.
+     */
+    private BookDto find(String key) throws IOException {
+        BookDto saved = saves.get(key);
+        if (saved != null) {
+            return saved == REMOVED ? null : saved;
+        }
+        int block = index.blockOf(key);
+        if (block < 0) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Block read = readBlock(channel, index.offsets[block], true);
+            return findInBlock(read.records, read.count, key);
+        }
+    }
+
+    /**
+     * Returns the book of a key in a sorted block, comparing the raw key bytes
+     * so only the matching book is decoded.
+     */
+    private static BookDto findInBlock(byte[] records, int count, String key) throws IOException {
+        byte[] wanted = key.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer in = ByteBuffer.wrap(records);
+        for (int i = 0; i < count; i++) {
+            int start = in.position();
+            in.get();
+            int length = (int) readVarLong(in) - 1;
+            if (length == wanted.length
+                    && Arrays.equals(records, in.position(), in.position() + length, wanted, 0, wanted.length)) {
+                BookDto[] found = {null};
+                decode(ByteBuffer.wrap(records, start, records.length - start).slice(), 1, new LibraryRecordSink() {
+                    @Override
+                    public void book(BookDto book) {
+                        found[0] = book;
+                    }
+
+                    @Override
+                    public void tombstone(String removed) {
+                        // Sorted blocks hold no tombstones
+                    }
+                });
+                return found[0];
+            }
+            in.position(in.position() + Math.max(0, length));
+            for (int field = 0; field < 5; field++) {
+                int skipped = (int) readVarLong(in) - 1;
+                in.position(in.position() + Math.max(0, skipped));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads every live book. The state must be current.
+     */
+    private List<BookDto> readAll() throws IOException {
+        List<BookDto> books = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, index.books + saves.size()));
+        if (index.offsets.length > 0) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                for (List<BookDto> block : readBlocks(channel, ForkJoinPool.commonPool())) {
+                    for (BookDto book : block) {
+                        if (!saves.containsKey(book.getKey())) {
+                            books.add(book);
+                        }
+                    }
+                }
+            }
+        }
+        for (BookDto book : saves.values()) {
+            if (book != REMOVED) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Decompresses the sorted blocks, at the same time when there are several.
+     *
+     * @return the books of every block, in block order
+     */
+    private List<List<BookDto>> readBlocks(FileChannel channel, ForkJoinPool pool) throws IOException {
+        long[] offsets = index.offsets;
+        List<List<BookDto>> blocks = new ArrayList<>(offsets.length);
+        if (offsets.length == 1 || pool.getParallelism() <= 1) {
+            for (long offset : offsets) {
+                blocks.add(readBooks(channel, offset));
+            }
+            return blocks;
+        }
+
+        List<Future<List<BookDto>>> tasks = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            tasks.add(pool.submit(() -> {
+                try {
+                    return readBooks(channel, offset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        try {
+            for (Future<List<BookDto>> task : tasks) {
+                blocks.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(t -> t.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Library load interrupted");
+        } catch (ExecutionException e) {
+            tasks.forEach(t -> t.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof UncheckedIOException u ? u.getCause() : new IOException("Failed to read library", cause);
+        }
+        return blocks;
+    }
+
+    private List<BookDto> readBooks(FileChannel channel, long offset) throws IOException {
+        Block block = readBlock(channel, offset, true);
+        List<BookDto> books = new ArrayList<>(block.count);
+        decode(block.records, block.count, new LibraryRecordSink() {
+            @Override
+            public void book(BookDto book) {
+                books.add(book);
+            }
+
+            @Override
+            public void tombstone(String key) {
+                // Sorted blocks hold no tombstones
+            }
+        });
+        return books;
+    }
+
+    /**
+     * Re-reads the file if it was changed by something else than this store.
+     * Saves appended by another process are read from where this store stopped.
+     * The lock must be held.
+     */
+    private void refresh() throws IOException {
+        long size = Files.exists(file) ? Files.size(file) : -1;
+        long current = lock.readGeneration();
+        if (index != null && current == generation && size == fileSize) {
+            return;
+        }
+        if (size < HEADER_BYTES) {
+            index = Index.EMPTY;
+            saves = new LinkedHashMap<>();
+            saveBytes = 0;
+            validEnd = -1;
+        } else if (index == null || current != generation || size < fileSize) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                readFully(channel, header, 0);
+                header.flip();
+                byte[] magic = new byte[MAGIC.length];
+                header.get(magic);
+                if (!Arrays.equals(magic, MAGIC)) {
+                    throw new IOException("Not a compressed library file: " + file);
+                }
+                int version = Short.toUnsignedInt(header.getShort());
+                if (version > VERSION) {
+                    throw new IOException("Unsupported library format version " + version + ": " + file);
+                }
+                header.getShort();
+                long indexOffset = header.getLong();
+                long savesOffset = header.getLong();
+                index = Index.read(readBlock(channel, indexOffset, true).records);
+                saves = new LinkedHashMap<>();
+                saveBytes = 0;
+                validEnd = readSaves(channel, savesOffset, size);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                validEnd = readSaves(channel, validEnd, size);
+            }
+        }
+        fileSize = size;
+        generation = current;
+    }
+
+    /**
+     * Reads the blocks of saves between two offsets into memory.
+     *
+     * @return the end of the last complete block
+     */
+    private long readSaves(FileChannel channel, long from, long size) throws IOException {
+        long offset = from;
+        while (offset + FRAME_BYTES <= size) {
+            Block block = readBlock(channel, offset, false);
+            if (block == null) {
+                break;
+            }
+            decode(block.records, block.count, new LibraryRecordSink() {
+                @Override
+                public void book(BookDto book) {
+                    saves.remove(book.getKey());
+                    saves.put(book.getKey(), book);
+                }
+
+                @Override
+                public void tombstone(String key) {
+                    saves.remove(key);
+                    saves.put(key, REMOVED);
+                }
+            });
+            saveBytes += block.records.length;
+            offset += FRAME_BYTES + block.compressedLength;
+        }
+        if (offset < size) {
+            logger.warning("⚠️ Ignoring incomplete block at the end of " + file);
+        }
+        return offset;
+    }
+
+    /**
+     * Appends blocks of saves after the last complete block. The exclusive lock
+     * must be held and the state current.
+     */
+    private void appendSaves(BlockWriter writer) throws IOException {
+        if (validEnd < 0) {
+            // No file yet: start with an empty set of sorted blocks
+            rewrite(List.of());
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validEnd) {
+                // Drop an incomplete block left by a crash
+                channel.truncate(validEnd);
+            }
+            long position = validEnd;
+            for (ByteBuffer frame : writer.finish()) {
+                saveBytes += frame.getInt(4);
+                position = writeFully(channel, frame, position);
+            }
+            validEnd = position;
+            fileSize = position;
+        }
+    }
+
+    /**
+     * Merges the saves into the sorted blocks once they grew too large. The
+     * exclusive lock must be held and the state current.
+     */
+    private void maybeMerge() throws IOException {
+        if (saveBytes > Math.max(MIN_MERGE_BYTES, index.rawBytes * MERGE_RATIO)) {
+            long start = System.nanoTime();
+            rewrite(readAll());
+            logger.info("📚 Merged saves into " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Writes a new file holding the given books sorted into blocks, and renames
+     * it over the library. The exclusive lock must be held.
+     */
+    private void rewrite(Collection<BookDto> books) throws IOException {
+        TreeMap<String, BookDto> sorted = new TreeMap<>();
+        for (BookDto book : books) {
+            sorted.put(LibraryRecords.keyOf(book), book);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = HEADER_BYTES;
+            List<String> firstKeys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+            long rawBytes = 0;
+            BlockWriter writer = new BlockWriter(blockBytes);
+            for (Map.Entry<String, BookDto> entry : sorted.entrySet()) {
+                if (writer.isEmpty()) {
+                    firstKeys.add(entry.getKey());
+                }
+                writer.book(entry.getValue());
+                for (ByteBuffer frame : writer.completed()) {
+                    offsets.add(position);
+                    rawBytes += frame.getInt(4);
+                    position = writeFully(channel, frame, position);
+                }
+            }
+            for (ByteBuffer frame : writer.finish()) {
+                offsets.add(position);
+                rawBytes += frame.getInt(4);
+                position = writeFully(channel, frame, position);
+            }
+
+            long indexOffset = position;
+            BlockWriter indexWriter = new BlockWriter(Integer.MAX_VALUE);
+            indexWriter.index(sorted.size(), rawBytes, firstKeys, offsets);
+            for (ByteBuffer frame : indexWriter.finish()) {
+                position = writeFully(channel, frame, position);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).putLong(indexOffset).putLong(position).flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lock.nextGeneration();
+        index = null;
+        refresh();
+    }
+
+    /**
+     * Reads the block at an offset.
+     *
+     * @param complete true to fail on an incomplete block, false to return null
+     * @return the block, its records decompressed
+     */
+    private Block readBlock(FileChannel channel, long offset, boolean complete) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_BYTES);
+        if (readFully(channel, header, offset) < FRAME_HEADER_BYTES) {
+            return incomplete(offset, complete);
+        }
+        int compressedLength = header.getInt(0);
+        int rawLength = header.getInt(4);
+        int count = header.getInt(8);
+        if (compressedLength < 0 || rawLength < 0 || count < 0) {
+            throw new IOException("Corrupt block at offset " + offset + " of " + file);
+        }
+        ByteBuffer body = ByteBuffer.allocate(compressedLength + 4);
+        if (readFully(channel, body, offset + FRAME_HEADER_BYTES) < body.capacity()) {
+            return incomplete(offset, complete);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, compressedLength);
+        if ((int) crc.getValue() != body.getInt(compressedLength)) {
+            throw new IOException("Corrupt block at offset " + offset + " of " + file);
+        }
+        byte[] records = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body.array(), 0, compressedLength);
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(records, inflated, rawLength - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != rawLength) {
+                throw new IOException("Corrupt block at offset " + offset + " of " + file);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at offset " + offset + " of " + file, e);
+        } finally {
+            inflater.end();
+        }
+        return new Block(compressedLength, count, records);
+    }
+
+    private Block incomplete(long offset, boolean complete) throws IOException {
+        if (complete) {
+            throw new IOException("Truncated block at offset " + offset + " of " + file);
+        }
+        return null;
+    }
+
+    /**
+     * Reads from a position until the buffer is full or the file ends.
+     *
+     * @return the number of bytes read
+     */
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return position;
+    }
+
+    /**
+     * Decodes the records of a block.
+     */
+    private static void decode(byte[] records, int count, LibraryRecordSink sink) throws IOException {
+        decode(ByteBuffer.wrap(records), count, sink);
+    }
+
+    private static void decode(ByteBuffer in, int count, LibraryRecordSink sink) throws IOException {
+        for (int i = 0; i < count; i++) {
+            int type = in.get();
+            String key = readString(in);
+            if (type == TOMBSTONE) {
+                sink.tombstone(key);
+                continue;
+            }
+            String title = readString(in);
+            String author = readString(in);
+            String coverUrl = readString(in);
+            String publishDate = readString(in);
+            String description = readString(in);
+            sink.book(new BookDto(title, author, coverUrl, publishDate, key, description));
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * A block read from the file.
+     */
+    private record Block(int compressedLength, int count, byte[] records) {
+    }
+
+    /**
+     * Offsets and first keys of the sorted blocks.
+     */
+    private record Index(long books, long rawBytes, String[] firstKeys, long[] offsets) {
+
+        static final Index EMPTY = new Index(0, 0, new String[0], new long[0]);
+
+        static Index read(byte[] bytes) {
+            ByteBuffer in = ByteBuffer.wrap(bytes);
+            long books = readVarLong(in);
+            long rawBytes = readVarLong(in);
+            int blocks = (int) readVarLong(in);
+            String[] firstKeys = new String[blocks];
+            long[] offsets = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                offsets[i] = readVarLong(in);
+                firstKeys[i] = readString(in);
+            }
+            return new Index(books, rawBytes, firstKeys, offsets);
+        }
+
+        /**
+         * Returns the block that would hold a key: the last one starting at or before it.
+         *
+         * @return the block index, or -1 if the key sorts before every block
+         */
+        int blockOf(String key) {
+            int found = Arrays.binarySearch(firstKeys, key);
+            return found >= 0 ? found : -found - 2;
+        }
+    }
+
+    /**
+     * Encodes records and compresses them into framed blocks.
+     */
+    private static final class BlockWriter {
+
+        // Records per block, before compression
+        private final int blockBytes;
+        // Records of the current block
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        // Number of records in the current block
+        private int count;
+        // Completed blocks
+        private final List<ByteBuffer> frames = new ArrayList<>();
+
+        BlockWriter(int blockBytes) {
+            this.blockBytes = blockBytes;
+        }
+
+        void book(BookDto book) {
+            records.write(BOOK);
+            writeString(LibraryRecords.keyOf(book));
+            writeString(book.getTitle());
+            writeString(book.getAuthor());
+            writeString(book.getCoverUrl());
+            writeString(book.getPublishDate());
+            writeString(book.getDescription());
+            recordWritten();
+        }
+
+        void tombstone(String key) {
+            records.write(TOMBSTONE);
+            writeString(key);
+            recordWritten();
+        }
+
+        /**
+         * Writes the index of the sorted blocks as a single block.
+         */
+        void index(long books, long rawBytes, List<String> firstKeys, List<Long> offsets) {
+            writeVarLong(books);
+            writeVarLong(rawBytes);
+            writeVarLong(offsets.size());
+            for (int i = 0; i < offsets.size(); i++) {
+                writeVarLong(offsets.get(i));
+                writeString(firstKeys.get(i));
+            }
+            count = offsets.size();
+            flushBlock();
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * Returns the blocks completed since last called, ready to write.
+         */
+        List<ByteBuffer> completed() {
+            List<ByteBuffer> done = new ArrayList<>(frames);
+            frames.clear();
+            return done;
+        }
+
+        /**
+         * Compresses the last block and returns the blocks not returned yet.
+         */
+        List<ByteBuffer> finish() {
+            if (count > 0) {
+                flushBlock();
+            }
+            return completed();
+        }
+
+        private void recordWritten() {
+            count++;
+            if (records.size() >= blockBytes) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() {
+            byte[] raw = records.toByteArray();
+            Deflater deflater = new Deflater();
+            byte[] compressed;
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 3 + 64);
+                byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                compressed = out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(compressed);
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES + compressed.length);
+            frame.putInt(compressed.length).putInt(raw.length).putInt(count).put(compressed).putInt((int) crc.getValue()).flip();
+            frames.add(frame);
+            records.reset();
+            count = 0;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                records.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            records.write((int) value);
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1);
+            records.writeBytes(bytes);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.bookadvisor.storage;
+
+import java.time.Duration;
+
+/**
+ * When a {@link GroupCommitWriter} forces written records to the storage device.
+ * <p>
+ * Syncing is what makes a record survive a power loss, and it is by far the
+ * most expensive part of a write, so the writer syncs once for a whole batch of
+ * records: after every batch, after a number of records, or after some time.
+ * {@link GroupCommitWriter#flush()} and {@link GroupCommitWriter#close()} always sync.
+ * </p>
+ */
+public final class DurabilityPolicy {
+
+    // Records written before a sync (0 for no limit)
+    private final long maxRecords;
+    // Time before written records are synced (0 for no limit)
+    private final long maxDelayMillis;
+
+    private DurabilityPolicy(long maxRecords, long maxDelayMillis) {
+        this.maxRecords = maxRecords;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Syncs after every batch written: the safest policy.
+     *
+     * @return the policy
+     */
+    public static DurabilityPolicy everyWrite() {
+        return new DurabilityPolicy(1, 0);
+    }
+
+    /**
+     * Syncs once at least the given number of records have been written since the last sync.
+     *
+     * @param records the number of records
+     * @return the policy
+     */
+    public static DurabilityPolicy everyRecords(long records) {
+        if (records < 1) {
+            throw new IllegalArgumentException("Record count must be at least 1: " + records);
+        }
+        return new DurabilityPolicy(records, 0);
+    }
+
+    /**
+     * Syncs written records at the latest after the given delay.
+     *
+     * @param interval the longest time a written record stays unsynced
+     * @return the policy
+     */
+    public static DurabilityPolicy every(Duration interval) {
+        if (interval.toMillis() < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1 ms: " + interval);
+        }
+        return new DurabilityPolicy(0, interval.toMillis());
+    }
+
+    /**
+     * Never syncs on its own: only flush and close do.
+     *
+     * @return the policy
+     */
+    public static DurabilityPolicy onFlush() {
+        return new DurabilityPolicy(0, 0);
+    }
+
+    /**
+     * Returns whether the policy syncs on its own.
+     *
+     * @return false for {@link #onFlush()}
+     */
+    public boolean syncsOnItsOwn() {
+        return maxRecords > 0 || maxDelayMillis > 0;
+    }
+
+    /**
+     * Returns the longest time a written record stays unsynced.
+     *
+     * @return the delay in milliseconds, or 0 if the policy has no time limit
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Returns whether written records should be synced now.
+     *
+     * @param unsyncedRecords  records written since the last sync
+     * @param millisSinceWrite time since the oldest unsynced record was written
+     * @return true to sync
+     */
+    public boolean shouldSync(long unsyncedRecords, long millisSinceWrite) {
+        if (unsyncedRecords == 0) {
+            return false;
+        }
+        return (maxRecords > 0 && unsyncedRecords >= maxRecords)
+                || (maxDelayMillis > 0 && millisSinceWrite >= maxDelayMillis);
+    }
+
+    @Override
+    public String toString() {
+        if (maxRecords == 1) {
+            return "every write";
+        }
+        if (maxRecords > 0) {
+            return "every " + maxRecords + " records";
+        }
+        return maxDelayMillis > 0 ? "every " + maxDelayMillis + " ms" : "on flush";
+    }
+}
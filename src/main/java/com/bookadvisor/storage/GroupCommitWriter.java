@@ -0,0 +1,297 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue in front of a library store.
+ * <p>
+ * Callers enqueue books into a bounded queue and carry on; a single writer
+ * thread drains the queue and writes everything waiting with one call to
+ * {@link LibraryStore#putAll(java.util.Collection)}, then syncs according to
+ * the {@link DurabilityPolicy}. Under load, thousands of books share one write
+ * and one sync instead of paying for their own. When the queue is full, callers
+ * wait for room.
+ * </p>
+ * <p>
+ * Each save returns a future completed once the book is committed: written and,
+ * unless the policy is {@link DurabilityPolicy#onFlush()}, synced.
+ * {@link #flush()} and {@link #close()} are explicit durability points.
+ * </p>
+ */
+public class GroupCommitWriter implements AutoCloseable {
+
+    /**
+     * Default capacity of the queue.
+     */
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    // Most records written with one call
+    private static final int MAX_BATCH = 16_384;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Store receiving the books, looked up for every batch
+    private final Supplier<LibraryStore> store;
+    // When written records are synced
+    private final DurabilityPolicy policy;
+    // Books waiting to be written, and flush requests
+    private final BlockingQueue<Pending> queue;
+    // Drains the queue
+    private final Thread writer;
+    // Set once close() is called
+    private volatile boolean closed;
+
+    // Writer thread state: records written but not synced yet, and their futures
+    private final List<CompletableFuture<Void>> unsynced = new ArrayList<>();
+    // Writer thread state: when the oldest unsynced record was written
+    private long firstUnsyncedAt;
+    // Writer thread state: last write failure not reported to a flush yet
+    private Exception unreported;
+
+    /**
+     * Creates a writer and starts its thread.
+     *
+     * @param store    the store receiving the books
+     * @param policy   when written records are synced
+     * @param capacity the number of books the queue holds before callers wait
+     */
+    public GroupCommitWriter(Supplier<LibraryStore> store, DurabilityPolicy policy, int capacity) {
+        this.store = store;
+        this.policy = policy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "library-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Returns the durability policy.
+     *
+     * @return the policy
+     */
+    public DurabilityPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Enqueues a book, waiting for room if the queue is full.
+     *
+     * @param book the book to save
+     * @return a future completed once the book is committed
+     * @throws InterruptedIOException if interrupted while waiting for room
+     */
+    public CompletableFuture<Void> save(BookDto book) throws InterruptedIOException {
+        return enqueue(new Pending(book, false));
+    }
+
+    /**
+     * Writes and syncs every book enqueued so far, and waits until it is done.
+     *
+     * @throws IOException if the books cannot be written or synced
+     */
+    public void flush() throws IOException {
+        try {
+            enqueue(new Pending(null, false)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Flush failed", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes the queue and stops the writer thread. Saves are refused afterwards.
+     *
+     * @throws IOException if the last books cannot be written or synced
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            put(new Pending(null, true)).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Close failed", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(Pending pending) throws InterruptedIOException {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        return put(pending);
+    }
+
+    private CompletableFuture<Void> put(Pending pending) throws InterruptedIOException {
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the write queue");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Writer thread: drains the queue a batch at a time.
+     */
+    private void run() {
+        List<Pending> batch = new ArrayList<>();
+        List<BookDto> books = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                Pending first = next();
+                if (first == null) {
+                    // The oldest unsynced record is due
+                    Exception failure = sync();
+                    if (failure != null) {
+                        unreported = failure;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            boolean flush = false;
+            for (Pending pending : batch) {
+                if (pending.book != null) {
+                    books.add(pending.book);
+                } else {
+                    flush = true;
+                    running &= !pending.stop;
+                }
+            }
+            Exception failure = write(books, batch);
+            if (flush || policy.shouldSync(unsynced.size(), elapsedSinceFirstUnsynced())) {
+                Exception syncFailure = sync();
+                failure = failure != null ? failure : syncFailure;
+            } else if (!policy.syncsOnItsOwn()) {
+                // Committed once written
+                unsynced.forEach(f -> f.complete(null));
+                unsynced.clear();
+            }
+            // Flush requests fail if anything they cover failed, including
+            // batches written before them since the last flush
+            if (failure != null) {
+                unreported = failure;
+            }
+            if (flush) {
+                failure = unreported;
+                unreported = null;
+            }
+            for (Pending pending : batch) {
+                if (pending.book == null && failure == null) {
+                    pending.future.complete(null);
+                } else if (pending.book == null) {
+                    pending.future.completeExceptionally(failure);
+                }
+            }
+            batch.clear();
+            books.clear();
+        }
+
+        // Refuse the saves that raced with close()
+        queue.drainTo(batch);
+        batch.forEach(p -> p.future.completeExceptionally(new IllegalStateException("Writer is closed")));
+    }
+
+    /**
+     * Waits for the next request, or until the oldest unsynced record is due.
+     *
+     * @return the request, or null when a sync is due
+     */
+    private Pending next() throws InterruptedException {
+        long delay = policy.getMaxDelayMillis();
+        if (delay == 0 || unsynced.isEmpty()) {
+            return queue.take();
+        }
+        long wait = delay - elapsedSinceFirstUnsynced();
+        return wait <= 0 ? null : queue.poll(wait, TimeUnit.MILLISECONDS);
+    }
+
+    private long elapsedSinceFirstUnsynced() {
+        return unsynced.isEmpty() ? 0 : (System.nanoTime() - firstUnsyncedAt) / 1_000_000;
+    }
+
+    /**
+     * Writes the books of a batch with one call.
+     *
+     * @return the failure, or null if the books were written
+     */
+    private Exception write(List<BookDto> books, List<Pending> batch) {
+        if (books.isEmpty()) {
+            return null;
+        }
+        try {
+            store.get().putAll(books);
+            if (unsynced.isEmpty()) {
+                firstUnsyncedAt = System.nanoTime();
+            }
+            for (Pending pending : batch) {
+                if (pending.book != null) {
+                    unsynced.add(pending.future);
+                }
+            }
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger.severe("❌ Error while saving " + books.size() + " books: " + e.getMessage());
+            for (Pending pending : batch) {
+                if (pending.book != null) {
+                    pending.future.completeExceptionally(e);
+                }
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Syncs the store and completes the futures of the synced records.
+     *
+     * @return the failure, or null if the store was synced
+     */
+    private Exception sync() {
+        Exception failure = null;
+        try {
+            store.get().sync();
+            unsynced.forEach(f -> f.complete(null));
+        } catch (IOException | RuntimeException e) {
+            logger.severe("❌ Error while syncing the library: " + e.getMessage());
+            unsynced.forEach(f -> f.completeExceptionally(e));
+            failure = e;
+        }
+        unsynced.clear();
+        return failure;
+    }
+
+    /**
+     * A book to write, or a flush request when the book is null. A stop request
+     * is a flush request that also ends the writer thread.
+     */
+    private static final class Pending {
+        final BookDto book;
+        final boolean stop;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(BookDto book, boolean stop) {
+            this.book = book;
+            this.stop = stop;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Streaming converter between the text and binary library formats.
+ * <p>
+ * Records are copied one at a time, tombstones included, so files of any size
+ * convert in constant memory and the converted library holds the same books.
+ * The target is written next to its final path and renamed into place, so an
+ * interrupted conversion leaves no partial file.
+ * </p>
+ * <p>
+ * The text format has one record per line: line breaks in the fields are
+ * written as spaces. Separators inside fields are escaped by {@link LibraryRecords}.
+ * </p>
+ * <p>
+ * Conversions to and from the compressed format ({@link CompressedLibraryFile})
+ * go through the live books instead, since its blocks are sorted by key.
+ * </p>
+ */
+public final class LibraryConverter {
+
+    private LibraryConverter() {
+    }
+
+    /**
+     * Converts a library to the other format: a text file to binary, a binary
+     * or compressed file to text.
+     *
+     * @param source the library to convert
+     * @param target the converted library
+     * @return the number of records converted
+     * @throws IOException if the source cannot be read or the target cannot be written
+     */
+    public static long convert(Path source, Path target) throws IOException {
+        if (CompressedLibraryFile.isCompressed(source)) {
+            return decompress(source, target);
+        }
+        return BinaryLibraryFile.isBinary(source) ? toText(source, target) : toBinary(source, target);
+    }
+
+    /**
+     * Converts a text or binary library to the compressed format. The live books
+     * are read whole and sorted in memory.
+     *
+     * @param source     the text or binary library
+     * @param compressed the compressed library to write
+     * @return the number of books converted
+     * @throws IOException if the source cannot be read or the target cannot be written
+     */
+    public static long compress(Path source, Path compressed) throws IOException {
+        List<BookDto> books = BinaryLibraryFile.isBinary(source) ? BinaryLibraryFile.open(source).loadAll()
+                : LibraryScanner.readBooks(source);
+        CompressedLibraryFile.open(compressed).replaceAll(books);
+        return books.size();
+    }
+
+    /**
+     * Converts a compressed library to the text format, one line per live book.
+     * Line breaks in the fields are replaced by spaces.
+     *
+     * @param compressed the compressed library
+     * @param text       the text library to write
+     * @return the number of books converted
+     * @throws IOException if the source cannot be read or the target cannot be written
+     */
+    public static long decompress(Path compressed, Path text) throws IOException {
+        Path tmp = text.resolveSibling(text.getFileName() + ".tmp");
+        List<BookDto> books = CompressedLibraryFile.open(compressed).loadAll();
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (BookDto book : books) {
+                writer.write(textLine(book));
+                writer.newLine();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, text, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return books.size();
+    }
+
+    /**
+     * Converts a text library to the binary format.
+     *
+     * @param text   the text library
+     * @param binary the binary library to write
+     * @return the number of records converted
+     * @throws IOException if the source cannot be read or the target cannot be written
+     */
+    public static long toBinary(Path text, Path binary) throws IOException {
+        Path tmp = binary.resolveSibling(binary.getFileName() + ".tmp");
+        long count;
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.UTF_8);
+             BinaryLibraryFile.Writer writer = BinaryLibraryFile.create(tmp)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Fields keep their spaces, as when the text library reads them
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (LibraryRecords.isTombstone(line)) {
+                    writer.tombstone(LibraryRecords.keyOf(line));
+                } else {
+                    writer.book(LibraryRecords.decode(line));
+                }
+            }
+            count = writer.getRecordCount();
+        }
+        Files.move(tmp, binary, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Converts a binary library to the text format. Line breaks in the fields are
+     * replaced by spaces, since the text format holds one record per line.
+     *
+     * @param binary the binary library
+     * @param text   the text library to write
+     * @return the number of records converted
+     * @throws IOException if the source cannot be read or the target cannot be written
+     */
+    public static long toText(Path binary, Path text) throws IOException {
+        Path tmp = text.resolveSibling(text.getFileName() + ".tmp");
+        long[] count = {0};
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            BinaryLibraryFile.read(binary, new LibraryRecordSink() {
+                @Override
+                public void book(BookDto book) throws IOException {
+                    writeLine(textLine(book));
+                }
+
+                @Override
+                public void tombstone(String key) throws IOException {
+                    writeLine(LibraryRecords.tombstone(key).replaceAll("[\\r\\n]+", " "));
+                }
+
+                private void writeLine(String line) throws IOException {
+                    writer.write(line);
+                    writer.newLine();
+                    count[0]++;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, text, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return count[0];
+    }
+
+    /**
+     * Returns the text record of a book, line breaks replaced by spaces.
+     */
+    private static String textLine(BookDto book) {
+        return LibraryRecords.encode(book).replaceAll("[\\r\\n]+", " ");
+    }
+}
@@ -0,0 +1,164 @@
+package com.bookadvisor.storage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock coordinating the processes sharing a library file.
+ * <p>
+ * The lock is held on a sidecar file ({@code <library>.lock}) rather than on
+ * the library itself, since rewrites replace the library file with a rename.
+ * Reads take a shared lock and writes an exclusive one. File locks are held by
+ * the whole process, so threads of one process are serialized by an in-process
+ * lock first, and nested acquisitions by the same thread reuse the held lock.
+ * </p>
+ * <p>
+ * The sidecar also holds the generation of the library: a counter incremented,
+ * under the exclusive lock, whenever the library is rewritten rather than
+ * appended to. A reader that sees the generation it last read, and a larger
+ * file, knows it only has to read the new records at the end.
+ * </p>
+ */
+final class LibraryLock {
+
+    // Locks, one per library file
+    private static final Map<Path, LibraryLock> LOCKS = new ConcurrentHashMap<>();
+
+    // Sidecar lock file
+    private final Path lockFile;
+    // Serializes the threads of this process
+    private final ReentrantLock threads = new ReentrantLock();
+    // Open sidecar while the lock is held
+    private FileChannel channel;
+    // File lock while held
+    private FileLock fileLock;
+
+    private LibraryLock(Path lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /**
+     * Returns the lock of a library file.
+     *
+     * @param library the library file
+     * @return the lock
+     */
+    static LibraryLock of(Path library) {
+        Path normalized = library.toAbsolutePath().normalize();
+        return LOCKS.computeIfAbsent(normalized,
+                p -> new LibraryLock(p.resolveSibling(p.getFileName() + ".lock")));
+    }
+
+    /**
+     * Takes the lock for reading.
+     *
+     * @return the held lock, to close once done
+     * @throws IOException if the lock cannot be taken
+     */
+    Held shared() throws IOException {
+        return acquire(true);
+    }
+
+    /**
+     * Takes the lock for writing.
+     *
+     * @return the held lock, to close once done
+     * @throws IOException if the lock cannot be taken
+     */
+    Held exclusive() throws IOException {
+        return acquire(false);
+    }
+
+    private Held acquire(boolean shared) throws IOException {
+        try {
+            threads.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the library lock");
+        }
+        if (threads.getHoldCount() > 1) {
+            if (!shared && fileLock.isShared()) {
+                threads.unlock();
+                throw new IllegalStateException("Cannot upgrade a shared library lock");
+            }
+            return threads::unlock;
+        }
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            fileLock = channel.lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException | RuntimeException e) {
+            closeChannel();
+            threads.unlock();
+            throw e;
+        }
+        return this::release;
+    }
+
+    private void release() {
+        try {
+            closeChannel();
+        } finally {
+            threads.unlock();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                // Closing the channel releases the file lock
+                channel.close();
+            }
+        } catch (IOException e) {
+            // The lock is released with the channel either way
+        }
+        channel = null;
+        fileLock = null;
+    }
+
+    /**
+     * Returns the generation of the library. The lock must be held.
+     *
+     * @return the generation, 0 for a library never rewritten
+     * @throws IOException if the sidecar cannot be read
+     */
+    long readGeneration() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // keep reading
+        }
+        return buffer.hasRemaining() ? 0 : buffer.getLong(0);
+    }
+
+    /**
+     * Increments the generation of the library. The exclusive lock must be held.
+     *
+     * @return the new generation
+     * @throws IOException if the sidecar cannot be written
+     */
+    long nextGeneration() throws IOException {
+        long next = readGeneration() + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, next);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        return next;
+    }
+
+    /**
+     * A held lock, released by {@link #close()}.
+     */
+    @FunctionalInterface
+    interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
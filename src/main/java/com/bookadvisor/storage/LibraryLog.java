@@ -0,0 +1,771 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Append-only record log backing a library file.
+ * <p>
+ * Every change is appended to the end of the file: saving a book appends its
+ * record (replacing any earlier record with the same key), and removing a book
+ * appends a tombstone (see {@link LibraryRecords}). An in-memory index maps each
+ * live key to the position of its record, so a change costs a single small
+ * write whatever the size of the library, and a crash can at worst lose the
+ * last line being written.
+ * </p>
+ * <p>
+ * Replaced records and tombstones are garbage. Once garbage makes up more than
+ * a threshold of the file, a background compaction copies the live records to
+ * a new file and swaps it in with an atomic rename. Changes made while the
+ * compaction runs are carried over before the swap.
+ * </p>
+ * <p>
+ * Several processes can share a file: reads hold a shared lock and writes an
+ * exclusive one (see {@link LibraryLock}). Before each operation the log
+ * catches up with the changes of other processes: records they appended are
+ * read on their own, and only a rewrite (a full save or a compaction) makes the
+ * log read the whole file again. {@link #follow(Consumer)} reports the books
+ * other processes append as they do.
+ * </p>
+ * <p>
+ * Files written before this format (one record per line, no tombstones) are
+ * read as they are. Loading reads the file in parallel with {@link LibraryScanner}.
+ * Use {@link #open(Path)} to get the shared log of a file.
+ * </p>
+ */
+public class LibraryLog implements LibraryStore {
+
+    /**
+     * Default fraction of garbage above which the file is compacted.
+     */
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+    /**
+     * Default minimum file size before compaction is considered (64 KiB).
+     */
+    public static final long DEFAULT_MIN_COMPACTION_BYTES = 64 * 1024;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Shared logs, one per file
+    private static final Map<Path, LibraryLog> LOGS = new ConcurrentHashMap<>();
+
+    // Single background thread shared by all compactions
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Library file
+    private final Path file;
+    // Coordinates the processes sharing the file
+    private final LibraryLock lock;
+    // Fraction of garbage above which the file is compacted
+    private final double compactionThreshold;
+    // Minimum file size before compaction is considered
+    private final long minCompactionBytes;
+
+    // Position and length of the live record of each key
+    private Map<String, Slot> index = new HashMap<>();
+    // Size of the file as last seen or written by this log
+    private long fileSize = -1;
+    // Bytes taken by live records
+    private long liveBytes;
+    // True if the file does not end with a line terminator
+    private boolean missingNewline;
+    // Generation of the file as last read (see LibraryLock), -1 before the first read
+    private long generation = -1;
+    // Compaction in progress, if any
+    private Future<?> compaction;
+    // Receive the books appended by other processes
+    private final List<Consumer<BookDto>> followers = new CopyOnWriteArrayList<>();
+    // Receive the keys of the books removed by other processes
+    private final List<Consumer<String>> removalFollowers = new CopyOnWriteArrayList<>();
+    // Called after other processes rewrite the file
+    private final List<Runnable> rewriteFollowers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a log for a file with the default compaction settings.
+     * Prefer {@link #open(Path)}, which shares one log per file.
+     *
+     * @param file the library file (created on first write)
+     */
+    public LibraryLog(Path file) {
+        this(file, DEFAULT_COMPACTION_THRESHOLD, DEFAULT_MIN_COMPACTION_BYTES);
+    }
+
+    /**
+     * Creates a log for a file.
+     *
+     * @param file                the library file (created on first write)
+     * @param compactionThreshold fraction of garbage above which the file is compacted
+     * @param minCompactionBytes  minimum file size before compaction is considered
+     */
+    public LibraryLog(Path file, double compactionThreshold, long minCompactionBytes) {
+        this.file = file;
+        this.lock = LibraryLock.of(file);
+        this.compactionThreshold = compactionThreshold;
+        this.minCompactionBytes = minCompactionBytes;
+    }
+
+    /**
+     * Returns the shared log of a file.
+     *
+     * @param file the library file
+     * @return the log
+     */
+    public static LibraryLog open(Path file) {
+        return LOGS.computeIfAbsent(file.toAbsolutePath().normalize(), LibraryLog::new);
+    }
+
+    /**
+     * Returns the library file.
+     *
+     * @return the file path
+     */
+    @Override
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Saves a book, replacing the book with the same key if there is one.
+     *
+     * @param book the book to save
+     * @throws IOException if the record cannot be written
+     */
+    @Override
+    public void put(BookDto book) throws IOException {
+        putAll(List.of(book));
+    }
+
+    /**
+     * Saves several books with a single write, replacing the books with the same keys.
+     *
+     * @param books the books to save
+     * @throws IOException if the records cannot be written
+     */
+    @Override
+    public synchronized void putAll(Collection<BookDto> books) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh(false);
+            appendBooks(books);
+        }
+        maybeCompact();
+    }
+
+    private void appendBooks(Collection<BookDto> books) throws IOException {
+        List<String> keys = new ArrayList<>(books.size());
+        List<String> lines = new ArrayList<>(books.size());
+        for (BookDto book : books) {
+            keys.add(LibraryRecords.keyOf(book));
+            lines.add(LibraryRecords.encode(book));
+        }
+        long[] offsets = append(lines);
+        for (int i = 0; i < keys.size(); i++) {
+            int length = (int) (i + 1 < offsets.length ? offsets[i + 1] - offsets[i] : fileSize - offsets[i]);
+            track(keys.get(i), new Slot(offsets[i], length));
+        }
+    }
+
+    /**
+     * Removes the book with the given key by appending a tombstone.
+     *
+     * @param key the key of the book
+     * @return true if a book was removed
+     * @throws IOException if the tombstone cannot be written
+     */
+    @Override
+    public synchronized boolean remove(String key) throws IOException {
+        try (LibraryLock.Held held = lock.exclusive()) {
+            refresh(false);
+            Slot slot = index.remove(key);
+            if (slot == null) {
+                return false;
+            }
+            liveBytes -= slot.length;
+            append(List.of(LibraryRecords.tombstone(key)));
+        }
+        maybeCompact();
+        return true;
+    }
+
+    /**
+     * Returns the book stored under a key, reading only its record.
+     *
+     * @param key the key of the book
+     * @return the book, or null if there is none
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized BookDto get(String key) throws IOException {
+        try (LibraryLock.Held held = lock.shared();
+             FileChannel channel = openForRead()) {
+            refresh(false);
+            Slot slot = index.get(key);
+            if (slot == null || channel == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+            while (buffer.hasRemaining() && channel.read(buffer, slot.offset + buffer.position()) >= 0) {
+                // keep reading
+            }
+            return LibraryRecords.decode(trimLine(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Returns every live book, in the order of their records in the file.
+     *
+     * @return the books
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public synchronized List<BookDto> loadAll() throws IOException {
+        // One parallel pass both rebuilds the index and reads the books
+        List<LibraryScanner.Entry> entries;
+        try (LibraryLock.Held held = lock.shared()) {
+            generation = lock.readGeneration();
+            entries = reload(true);
+        }
+        List<BookDto> books = new ArrayList<>(index.size());
+        for (LibraryScanner.Entry entry : entries) {
+            Slot slot = entry.isTombstone() ? null : index.get(entry.key);
+            if (slot != null && slot.offset == entry.offset) {
+                books.add(entry.book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Calls an action with every live book, reading the file one record at a
+     * time: only the index of keys is in memory, never the books. Other
+     * processes cannot write to the file meanwhile.
+     *
+     * @param action receives the books, in the order of their records in the file
+     * @throws IOException if the file cannot be read
+     */
+    @Override
+    public synchronized void forEachBook(Consumer<BookDto> action) throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh(false);
+            if (fileSize <= 0) {
+                return;
+            }
+            scan(0, fileSize, (offset, length, line) -> {
+                if (LibraryRecords.isTombstone(line)) {
+                    return;
+                }
+                BookDto book = LibraryRecords.decode(line);
+                Slot slot = index.get(book.getKey());
+                if (slot != null && slot.offset == offset) {
+                    action.accept(book);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replaces the whole library with the given books. The new file is written
+     * next to the old one and renamed over it, so a crash leaves either version.
+     *
+     * @param books the new content of the library
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void replaceAll(Collection<BookDto> books) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (LibraryLock.Held held = lock.exclusive()) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                for (BookDto book : books) {
+                    out.write((LibraryRecords.encode(book) + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            moveIntoPlace(tmp);
+            generation = lock.nextGeneration();
+            reload(false);
+        }
+    }
+
+    @Override
+    public long getGeneration() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            return lock.readGeneration();
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        } catch (NoSuchFileException e) {
+            // Nothing written yet
+        }
+    }
+
+    /**
+     * Returns the number of live books.
+     *
+     * @return the number of books
+     * @throws IOException if the file has to be re-read and cannot be
+     */
+    public synchronized int size() throws IOException {
+        try (LibraryLock.Held held = lock.shared()) {
+            refresh(false);
+            return index.size();
+        }
+    }
+
+    /**
+     * Calls the follower with every book that other processes append to the file
+     * from now on. Changes are noticed with a {@link java.nio.file.WatchService},
+     * and only the appended records are read.
+     *
+     * @param follower receives the appended books, on the watcher thread
+     * @throws IOException if the file cannot be read or watched
+     */
+    public void follow(Consumer<BookDto> follower) throws IOException {
+        follow(follower, key -> { }, () -> { });
+    }
+
+    /**
+     * Calls the followers with every book that other processes append to the
+     * file from now on, with the key of every book they remove, and after every
+     * rewrite of the file (whose books are then not reported one by one).
+     *
+     * @param follower receives the appended books, on the watcher thread
+     * @param removals receives the keys of the removed books, on the watcher thread
+     * @param rewrites called after a rewrite, on the watcher thread
+     * @throws IOException if the file cannot be read or watched
+     */
+    public void follow(Consumer<BookDto> follower, Consumer<String> removals, Runnable rewrites) throws IOException {
+        synchronized (this) {
+            // Start from the current content, so only later appends are reported
+            try (LibraryLock.Held held = lock.shared()) {
+                refresh(false);
+            }
+        }
+        followers.add(follower);
+        removalFollowers.add(removals);
+        rewriteFollowers.add(rewrites);
+        LibraryWatcher.watch(this);
+    }
+
+    /**
+     * Catches up with a change noticed by the watcher and reports the appended
+     * and removed books, or the rewrite of the file.
+     */
+    void externalChange() {
+        List<BookDto> appended = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        boolean rewritten;
+        try {
+            synchronized (this) {
+                try (LibraryLock.Held held = lock.shared()) {
+                    List<LibraryScanner.Entry> entries = refresh(true);
+                    rewritten = entries == null;
+                    for (LibraryScanner.Entry entry : entries != null ? entries : List.<LibraryScanner.Entry>of()) {
+                        Slot slot = index.get(entry.key);
+                        if (entry.isTombstone()) {
+                            if (slot == null) {
+                                removed.add(entry.key);
+                            }
+                        } else if (slot != null && slot.offset == entry.offset) {
+                            appended.add(entry.book);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("⚠️ Could not read library changes: " + e.getMessage());
+            return;
+        }
+        if (rewritten) {
+            rewriteFollowers.forEach(Runnable::run);
+        }
+        for (String key : removed) {
+            removalFollowers.forEach(f -> f.accept(key));
+        }
+        for (BookDto book : appended) {
+            followers.forEach(f -> f.accept(book));
+        }
+    }
+
+    /**
+     * Returns the fraction of the file taken by replaced records and tombstones.
+     *
+     * @return the garbage ratio, between 0 and 1
+     */
+    public synchronized double getGarbageRatio() {
+        return fileSize <= 0 ? 0 : 1 - (double) liveBytes / fileSize;
+    }
+
+    /**
+     * Returns the size of the file.
+     *
+     * @return the size in bytes
+     */
+    public synchronized long getFileSize() {
+        return Math.max(0, fileSize);
+    }
+
+    /**
+     * Compacts the file now, on the calling thread.
+     *
+     * @throws IOException if the file cannot be compacted
+     */
+    public void compact() throws IOException {
+        long startGeneration;
+        long end;
+        Map<String, Slot> live;
+        synchronized (this) {
+            try (LibraryLock.Held held = lock.shared()) {
+                refresh(false);
+                startGeneration = generation;
+                end = fileSize;
+                live = new HashMap<>(index);
+            }
+        }
+
+        // Copy the live records without blocking writers, to a file of our own:
+        // another process may be compacting the same log
+        Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".compact");
+        Map<String, Slot> compacted = new HashMap<>(live.size() * 2);
+        long[] position = {0};
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+            copyPermissions(tmp);
+            scan(0, end, (offset, length, line) -> {
+                if (LibraryRecords.isTombstone(line)) {
+                    return;
+                }
+                String key = LibraryRecords.keyOf(line);
+                Slot slot = live.get(key);
+                if (slot != null && slot.offset == offset) {
+                    byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                    out.write(bytes);
+                    compacted.put(key, new Slot(position[0], bytes.length));
+                    position[0] += bytes.length;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+
+        synchronized (this) {
+            try (LibraryLock.Held held = lock.exclusive()) {
+                swapCompacted(tmp, startGeneration, end, compacted, position[0]);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmp);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Gives a new file the permissions of the log, where the file system has them.
+     */
+    private void copyPermissions(Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(file));
+        } catch (UnsupportedOperationException | NoSuchFileException e) {
+            // Default permissions
+        }
+    }
+
+    /**
+     * Carries the records appended during a compaction over to the compacted
+     * file and swaps it in, unless the file was rewritten meanwhile. The
+     * exclusive lock must be held.
+     */
+    private void swapCompacted(Path tmp, long startGeneration, long end, Map<String, Slot> compacted, long size)
+            throws IOException {
+        long[] position = {size};
+        refresh(false);
+        if (generation != startGeneration || fileSize < end) {
+            // The file was rewritten meanwhile, by another compaction for instance:
+            // this copy is outdated
+            Files.deleteIfExists(tmp);
+            logger.info("🧹 Compaction dropped: the library changed while it was copied");
+            return;
+        }
+        // Carry over the records appended while copying
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp, StandardOpenOption.APPEND))) {
+            scan(end, fileSize, (offset, length, line) -> {
+                byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                String key = LibraryRecords.keyOf(line);
+                if (LibraryRecords.isTombstone(line)) {
+                    compacted.remove(key);
+                } else {
+                    compacted.put(key, new Slot(position[0], bytes.length));
+                }
+                position[0] += bytes.length;
+            });
+        }
+        long before = fileSize;
+        moveIntoPlace(tmp);
+        generation = lock.nextGeneration();
+        index = compacted;
+        fileSize = position[0];
+        liveBytes = compacted.values().stream().mapToLong(s -> s.length).sum();
+        missingNewline = false;
+        logger.info("🧹 Library compacted: " + before + " -> " + fileSize + " bytes");
+    }
+
+    /**
+     * Catches up with changes made by other processes (or by hand). The lock must
+     * be held. If the file was only appended to since the last read, only the new
+     * records are read; if it was rewritten, the whole index is rebuilt.
+     *
+     * @return the new records when only those were read, or null after a full rebuild
+     */
+    private List<LibraryScanner.Entry> refresh(boolean withBooks) throws IOException {
+        long current = lock.readGeneration();
+        long size = Files.exists(file) ? Files.size(file) : 0;
+        if (current == generation && size == fileSize) {
+            return List.of();
+        }
+        if (current == generation && fileSize >= 0 && size > fileSize) {
+            return readTail(size, withBooks);
+        }
+        generation = current;
+        reload(false);
+        return null;
+    }
+
+    /**
+     * Reads the records appended after the last known end of the file into the index.
+     */
+    private List<LibraryScanner.Entry> readTail(long size, boolean withBooks) throws IOException {
+        List<LibraryScanner.Entry> entries;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            entries = LibraryScanner.scan(channel, fileSize, size, withBooks, ForkJoinPool.commonPool());
+            missingNewline = lastByte(channel, size) != '\n';
+        }
+        for (LibraryScanner.Entry entry : entries) {
+            if (entry.isTombstone()) {
+                Slot previous = index.remove(entry.key);
+                liveBytes -= previous != null ? previous.length : 0;
+            } else {
+                track(entry.key, new Slot(entry.offset, entry.length));
+            }
+        }
+        fileSize = size;
+        return entries;
+    }
+
+    /**
+     * Opens the file for reading, or returns null if it does not exist.
+     */
+    private FileChannel openForRead() throws IOException {
+        try {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rebuilds the index from the file and returns the records read.
+     */
+    private List<LibraryScanner.Entry> reload(boolean withBooks) throws IOException {
+        List<LibraryScanner.Entry> entries;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            entries = LibraryScanner.scan(channel, size, withBooks, ForkJoinPool.commonPool());
+            missingNewline = size > 0 && lastByte(channel, size) != '\n';
+        } catch (NoSuchFileException e) {
+            entries = List.of();
+            size = 0;
+            missingNewline = false;
+        }
+
+        Map<String, Slot> rebuilt = new HashMap<>(entries.size() * 2);
+        long live = 0;
+        for (LibraryScanner.Entry entry : entries) {
+            Slot previous = entry.isTombstone() ? rebuilt.remove(entry.key)
+                    : rebuilt.put(entry.key, new Slot(entry.offset, entry.length));
+            if (previous != null) {
+                live -= previous.length;
+            }
+            if (!entry.isTombstone()) {
+                live += entry.length;
+            }
+        }
+        index = rebuilt;
+        liveBytes = live;
+        fileSize = size;
+        return entries;
+    }
+
+    /**
+     * Reads the last byte of the file.
+     */
+    private static int lastByte(FileChannel channel, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, size - 1);
+        return buffer.get(0);
+    }
+
+    /**
+     * Records the new slot of a key, turning its previous record into garbage.
+     */
+    private void track(String key, Slot slot) {
+        Slot previous = index.put(key, slot);
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += slot.length;
+    }
+
+    /**
+     * Appends record lines with a single write and returns the offset of each.
+     */
+    private long[] append(List<String> lines) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (missingNewline) {
+            buffer.write('\n');
+        }
+        long[] offsets = new long[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            offsets[i] = fileSize + buffer.size();
+            buffer.writeBytes((lines.get(i) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        fileSize += buffer.size();
+        missingNewline = false;
+        return offsets;
+    }
+
+    /**
+     * Starts a background compaction if there is enough garbage and none is running.
+     */
+    private void maybeCompact() {
+        if (fileSize < minCompactionBytes || getGarbageRatio() <= compactionThreshold) {
+            return;
+        }
+        if (compaction != null && !compaction.isDone()) {
+            return;
+        }
+        compaction = COMPACTOR.submit(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                logger.warning("⚠️ Library compaction failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void moveIntoPlace(Path tmp) throws IOException {
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Calls the visitor for each non-empty record between two offsets, with the
+     * offset and length (terminator included) of the record.
+     */
+    private void scan(long from, long to, RecordVisitor visitor) throws IOException {
+        try (InputStream raw = Files.newInputStream(file)) {
+            raw.skipNBytes(from);
+            byte[] buffer = new byte[1 << 16];
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long offset = from;
+            long start = from;
+            int read;
+            while (offset < to && (read = raw.read(buffer, 0, (int) Math.min(buffer.length, to - offset))) != -1) {
+                // Start of the bytes not yet copied to the line
+                int pending = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        line.write(buffer, pending, i - pending);
+                        visit(visitor, start, offset + i + 1, line);
+                        start = offset + i + 1;
+                        pending = i + 1;
+                    }
+                }
+                line.write(buffer, pending, read - pending);
+                offset += read;
+            }
+            if (line.size() > 0) {
+                // Last line without terminator
+                visit(visitor, start, offset, line);
+            }
+        }
+    }
+
+    private static void visit(RecordVisitor visitor, long start, long end, ByteArrayOutputStream line) throws IOException {
+        String text = trimLine(line.toString(StandardCharsets.UTF_8));
+        line.reset();
+        if (!text.isEmpty()) {
+            visitor.visit(start, (int) (end - start), text);
+        }
+    }
+
+    private static String trimLine(String line) {
+        int end = line.length();
+        while (end > 0 && (line.charAt(end - 1) == '\n' || line.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    /**
+     * Receives the records of a scan.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(long offset, int length, String line) throws IOException;
+    }
+
+    /**
+     * Position and length of a record in the file.
+     */
+    private static final class Slot {
+        final long offset;
+        final int length;
+
+        Slot(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
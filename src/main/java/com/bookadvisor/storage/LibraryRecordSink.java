@@ -0,0 +1,28 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+
+import java.io.IOException;
+
+/**
+ * Receives the records of a library file in file order, e.g. to convert it
+ * to another format without loading it whole.
+ */
+public interface LibraryRecordSink {
+
+    /**
+     * Receives a book record.
+     *
+     * @param book the book
+     * @throws IOException if the record cannot be handled
+     */
+    void book(BookDto book) throws IOException;
+
+    /**
+     * Receives the removal of a key.
+     *
+     * @param key the key of the removed book
+     * @throws IOException if the record cannot be handled
+     */
+    void tombstone(String key) throws IOException;
+}
@@ -0,0 +1,192 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+
+/**
+ * Text encoding of the records of a library file, one record per line.
+ * <p>
+ * A book is stored as {@code title||author||coverUrl||publishDate||description},
+ * optionally followed by {@code ||key} when the book has a key that can be
+ * stored on its own (e.g. an Open Library work key). Without a stored key, the
+ * key is derived from the first four fields, as for files written before keys
+ * were stored. A removal is stored as a tombstone line {@code @DEL||key}.
+ * </p>
+ * <p>
+ * Inside a field, a {@code |} that would touch a separator (followed by
+ * another {@code |}, or ending the field) is written {@code \|}, and a
+ * {@code \} that would read as an escape (followed by {@code |} or {@code \},
+ * or ending the field) is written {@code \\}. Any other character is written
+ * as it is, so records written before escaping read the same as before unless
+ * a field held {@code \|} or {@code \\}.
+ * </p>
+ */
+public final class LibraryRecords {
+
+    /**
+     * Field separator.
+     */
+    public static final String SEPARATOR = "||";
+
+    /**
+     * Prefix of tombstone records.
+     */
+    public static final String TOMBSTONE = "@DEL" + SEPARATOR;
+
+    /**
+     * Escape character inside fields.
+     */
+    static final char ESCAPE = '\\';
+
+    // Number of fields of a book record, the key included
+    private static final int FIELDS = 6;
+
+    private LibraryRecords() {
+    }
+
+    /**
+     * Encodes a book as a record line (without the line terminator).
+     *
+     * @param book the book
+     * @return the record
+     */
+    public static String encode(BookDto book) {
+        String line = derivedKey(book.getTitle(), book.getAuthor(), String.valueOf(book.getCoverUrl()),
+                book.getPublishDate()) + SEPARATOR +
+                escape(book.getDescription() != null ? book.getDescription() : "");
+        return hasStorableKey(book) ? line + SEPARATOR + escape(book.getKey()) : line;
+    }
+
+    /**
+     * Encodes the removal of a key as a tombstone line.
+     *
+     * @param key the key of the removed book
+     * @return the tombstone record
+     */
+    public static String tombstone(String key) {
+        return TOMBSTONE + key;
+    }
+
+    /**
+     * Returns whether a record line is a tombstone.
+     *
+     * @param line the record line
+     * @return true for a tombstone
+     */
+    public static boolean isTombstone(String line) {
+        return line.startsWith(TOMBSTONE);
+    }
+
+    /**
+     * Decodes a book record.
+     *
+     * @param line the record line
+     * @return the book
+     */
+    public static BookDto decode(String line) {
+        String[] parts = new String[FIELDS];
+        // Fields as written in the line, for a derived key
+        String[] raw = new String[FIELDS];
+        int fields = 0;
+        int fieldStart = 0;
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        while (fields < FIELDS) {
+            if (i >= line.length() || (line.charAt(i) == '|' && i + 1 < line.length() && line.charAt(i + 1) == '|')) {
+                raw[fields] = line.substring(fieldStart, i);
+                parts[fields++] = field.toString();
+                field.setLength(0);
+                if (i >= line.length()) {
+                    break;
+                }
+                i += SEPARATOR.length();
+                fieldStart = i;
+                continue;
+            }
+            char c = line.charAt(i);
+            if (c == ESCAPE && i + 1 < line.length() && (line.charAt(i + 1) == '|' || line.charAt(i + 1) == ESCAPE)) {
+                c = line.charAt(++i);
+            }
+            field.append(c);
+            i++;
+        }
+
+        String title = fields > 0 ? parts[0] : "";
+        String author = fields > 1 ? parts[1] : "";
+        String coverUrl = fields > 2 ? parts[2] : "";
+        String publishDate = fields > 3 ? parts[3] : "";
+        String description = fields > 4 ? parts[4] : "";
+        String key = fields > 5 && !parts[5].isEmpty() ? parts[5]
+                : (fields > 0 ? raw[0] : "") + SEPARATOR + (fields > 1 ? raw[1] : "") + SEPARATOR
+                + (fields > 2 ? raw[2] : "") + SEPARATOR + (fields > 3 ? raw[3] : "");
+
+        return new BookDto(title, author, coverUrl, publishDate, key, description);
+    }
+
+    /**
+     * Escapes a field value so it reads back whole, as described above.
+     *
+     * @param value the field value
+     * @return the value as written in a record
+     */
+    static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            char next = i + 1 < value.length() ? value.charAt(i + 1) : 0;
+            boolean last = i + 1 == value.length();
+            boolean escape = c == '|' ? next == '|' || last
+                    : c == ESCAPE && (next == '|' || next == ESCAPE || last);
+            if (escape && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (escape) {
+                    escaped.append(ESCAPE);
+                }
+                escaped.append(c);
+            }
+        }
+        return escaped != null ? escaped.toString() : value;
+    }
+
+    /**
+     * Returns the key of a record: the removed key for a tombstone, the stored or
+     * derived key for a book.
+     *
+     * @param line the record line
+     * @return the key
+     */
+    public static String keyOf(String line) {
+        if (isTombstone(line)) {
+            return line.substring(TOMBSTONE.length());
+        }
+        return decode(line).getKey();
+    }
+
+    /**
+     * Returns the key a book is stored under.
+     *
+     * @param book the book
+     * @return the stored key, or the key derived from the first four fields
+     */
+    public static String keyOf(BookDto book) {
+        if (hasStorableKey(book)) {
+            return book.getKey();
+        }
+        return derivedKey(book.getTitle(), book.getAuthor(), String.valueOf(book.getCoverUrl()), book.getPublishDate());
+    }
+
+    private static boolean hasStorableKey(BookDto book) {
+        String key = book.getKey();
+        return key != null && !key.isBlank() && !key.contains(SEPARATOR) && !key.contains("\n");
+    }
+
+    /**
+     * Returns the key derived from the first four fields: those fields as
+     * written in the record, separators included.
+     */
+    private static String derivedKey(String title, String author, String coverUrl, String publishDate) {
+        return escape(String.valueOf(title)) + SEPARATOR + escape(String.valueOf(author)) + SEPARATOR
+                + escape(coverUrl) + SEPARATOR + escape(String.valueOf(publishDate));
+    }
+}
@@ -0,0 +1,354 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel reader of library files.
+ * <p>
+ * The file is memory-mapped in chunks that end on a line boundary, and the
+ * chunks are parsed at the same time on a {@link ForkJoinPool}. Each chunk is
+ * parsed by a byte-level scanner that looks for line ends and {@code ||}
+ * separators directly in the mapped bytes: both are ASCII, and UTF-8 never uses
+ * ASCII bytes inside a multi-byte character, so no decoding is needed to find
+ * them. Only the final field strings are decoded and allocated. The parsed
+ * chunks are merged back in file order.
+ * </p>
+ * <p>
+ * Small files, and any file when the pool has a single worker, are parsed
+ * on the calling thread, still one chunk at a time.
+ * </p>
+ */
+public final class LibraryScanner {
+
+    /**
+     * Smallest chunk parsed on its own; smaller files are parsed on one thread.
+     */
+    public static final int MIN_CHUNK_BYTES = 1 << 20;
+
+    // Largest chunk mapped at once
+    private static final int MAX_CHUNK_BYTES = 64 << 20;
+
+    // Number of chunks per worker, so that uneven chunks still balance
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    // Bytes of the tombstone prefix
+    private static final byte[] TOMBSTONE = LibraryRecords.TOMBSTONE.getBytes(StandardCharsets.UTF_8);
+
+    // Fields of a book record, the key included
+    private static final int FIELDS = 6;
+
+    private LibraryScanner() {
+    }
+
+    /**
+     * Reads the live books of a library file on the common pool: records
+     * replaced by a later record with the same key, or removed by a tombstone,
+     * are left out.
+     *
+     * @param file the library file
+     * @return the books, in the order of their records in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<BookDto> readBooks(Path file) throws IOException {
+        return readBooks(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads the live books of a library file on the given pool.
+     *
+     * @param file the library file
+     * @param pool the pool parsing the chunks
+     * @return the books, in the order of their records in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static List<BookDto> readBooks(Path file, ForkJoinPool pool) throws IOException {
+        List<Entry> entries;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            entries = scan(channel, channel.size(), true, pool);
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+        Map<String, Long> latest = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            if (entry.book == null) {
+                latest.remove(entry.key);
+            } else {
+                latest.put(entry.key, entry.offset);
+            }
+        }
+        List<BookDto> books = new ArrayList<>(latest.size());
+        for (Entry entry : entries) {
+            Long offset = entry.book != null ? latest.get(entry.key) : null;
+            if (offset != null && offset == entry.offset) {
+                books.add(entry.book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Parses the first {@code size} bytes of a library file.
+     *
+     * @param channel   the open file
+     * @param size      the number of bytes to parse
+     * @param withBooks false to only read keys and positions, without building books
+     * @param pool      the pool parsing the chunks
+     * @return the records, in file order
+     */
+    static List<Entry> scan(FileChannel channel, long size, boolean withBooks, ForkJoinPool pool) throws IOException {
+        return scan(channel, 0, size, withBooks, pool);
+    }
+
+    /**
+     * Parses the bytes of a library file between two offsets, the first being
+     * the start of a line (e.g. the records appended since the last read).
+     *
+     * @param channel   the open file
+     * @param from      the offset of the first record
+     * @param size      the offset where parsing stops
+     * @param withBooks false to only read keys and positions, without building books
+     * @param pool      the pool parsing the chunks
+     * @return the records, in file order
+     */
+    static List<Entry> scan(FileChannel channel, long from, long size, boolean withBooks, ForkJoinPool pool) throws IOException {
+        return scan(channel, from, size, withBooks, pool, MAX_CHUNK_BYTES);
+    }
+
+    /**
+     * Parses the bytes of a library file between two offsets, mapping at most
+     * {@code maxChunkBytes} (plus the rest of a line) at once.
+     */
+    static List<Entry> scan(FileChannel channel, long from, long size, boolean withBooks, ForkJoinPool pool,
+                            int maxChunkBytes) throws IOException {
+        int workers = Math.max(1, pool.getParallelism());
+        if (size - from < 2L * MIN_CHUNK_BYTES || workers == 1) {
+            // Chunk after chunk on the calling thread: a single mapping cannot exceed 2 GiB
+            List<Entry> entries = new ArrayList<>();
+            long start = from;
+            while (start < size) {
+                long end = start + maxChunkBytes >= size ? size : lineEnd(channel, start + maxChunkBytes, size);
+                entries.addAll(parseChunk(channel, start, end, withBooks));
+                start = end;
+            }
+            return entries;
+        }
+
+        long chunkSize = Math.max(Math.min(MIN_CHUNK_BYTES, maxChunkBytes),
+                Math.min(maxChunkBytes, (size - from) / (workers * CHUNKS_PER_WORKER)));
+        List<Future<List<Entry>>> chunks = new ArrayList<>();
+        long start = from;
+        while (start < size) {
+            long end = start + chunkSize >= size ? size : lineEnd(channel, start + chunkSize, size);
+            long chunkStart = start;
+            chunks.add(pool.submit(() -> {
+                try {
+                    return parseChunk(channel, chunkStart, end, withBooks);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            start = end;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (Future<List<Entry>> chunk : chunks) {
+                entries.addAll(chunk.get());
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(c -> c.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Library load interrupted");
+        } catch (ExecutionException e) {
+            chunks.forEach(c -> c.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof UncheckedIOException u ? u.getCause() : new IOException("Failed to parse library", cause);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the offset just after the first line end at or after a position,
+     * or the end of the file.
+     */
+    private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long base = position;
+        while (base < size) {
+            buffer.clear();
+            int read = channel.read(buffer, base);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return Math.min(size, base + i + 1);
+                }
+            }
+            base += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the records between two offsets, the first being the start of a line.
+     */
+    private static List<Entry> parseChunk(FileChannel channel, long start, long end, boolean withBooks) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (end <= start) {
+            return entries;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int limit = buffer.limit();
+        byte[] line = new byte[512];
+        int[] bounds = new int[FIELDS * 2];
+
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd < limit ? lineEnd + 1 : lineEnd;
+            int length = lineEnd - lineStart;
+            while (length > 0 && buffer.get(lineStart + length - 1) == '\r') {
+                length--;
+            }
+            if (length > 0) {
+                if (line.length < length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                buffer.get(lineStart, line, 0, length);
+                entries.add(parseLine(line, length, start + lineStart, next - lineStart, bounds, withBooks));
+            }
+            lineStart = next;
+        }
+        return entries;
+    }
+
+    /**
+     * Parses one record held in the first {@code length} bytes of {@code line}.
+     * Fields are split on the leftmost {@code ||}, as {@link LibraryRecords#decode(String)}
+     * does. A record holding the escape character is rare, and is left to that method.
+     */
+    private static Entry parseLine(byte[] line, int length, long offset, int recordLength, int[] bounds, boolean withBooks) {
+        if (startsWith(line, length, TOMBSTONE)) {
+            String key = new String(line, TOMBSTONE.length, length - TOMBSTONE.length, StandardCharsets.UTF_8);
+            return new Entry(offset, recordLength, key, null);
+        }
+        if (contains(line, length, (byte) LibraryRecords.ESCAPE)) {
+            BookDto book = LibraryRecords.decode(new String(line, 0, length, StandardCharsets.UTF_8));
+            return new Entry(offset, recordLength, book.getKey(), withBooks ? book : Entry.NO_BOOK);
+        }
+
+        int fields = 0;
+        int fieldStart = 0;
+        for (int i = 0; i + 1 < length && fields < FIELDS - 1; i++) {
+            if (line[i] == '|' && line[i + 1] == '|') {
+                bounds[fields * 2] = fieldStart;
+                bounds[fields * 2 + 1] = i;
+                fields++;
+                fieldStart = i + 2;
+                i++;
+            }
+        }
+        // Last field runs to the next separator or the end of the line
+        int fieldEnd = length;
+        for (int i = fieldStart; i + 1 < length; i++) {
+            if (line[i] == '|' && line[i + 1] == '|') {
+                fieldEnd = i;
+                break;
+            }
+        }
+        bounds[fields * 2] = fieldStart;
+        bounds[fields * 2 + 1] = fieldEnd;
+        fields++;
+
+        String key = fields > 5 && bounds[11] > bounds[10] ? field(line, bounds, 5) : null;
+        if (key == null) {
+            // Derived key: the first four fields, separators included
+            key = fields >= 4 ? new String(line, 0, bounds[7], StandardCharsets.UTF_8)
+                    : field(line, bounds, fields, 0) + LibraryRecords.SEPARATOR + field(line, bounds, fields, 1)
+                    + LibraryRecords.SEPARATOR + field(line, bounds, fields, 2)
+                    + LibraryRecords.SEPARATOR + field(line, bounds, fields, 3);
+        }
+        if (!withBooks) {
+            return new Entry(offset, recordLength, key, Entry.NO_BOOK);
+        }
+        BookDto book = new BookDto(field(line, bounds, fields, 0), field(line, bounds, fields, 1),
+                field(line, bounds, fields, 2), field(line, bounds, fields, 3), key, field(line, bounds, fields, 4));
+        return new Entry(offset, recordLength, key, book);
+    }
+
+    private static String field(byte[] line, int[] bounds, int fields, int index) {
+        return index < fields ? field(line, bounds, index) : "";
+    }
+
+    private static String field(byte[] line, int[] bounds, int index) {
+        int from = bounds[index * 2];
+        return new String(line, from, bounds[index * 2 + 1] - from, StandardCharsets.UTF_8);
+    }
+
+    private static boolean contains(byte[] line, int length, byte b) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean startsWith(byte[] line, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A parsed record: its position, its key, and the book it holds (null for a tombstone).
+     */
+    static final class Entry {
+        // Placeholder book of records read without their content
+        static final BookDto NO_BOOK = new BookDto("", "", "", "", "", "");
+
+        final long offset;
+        final int length;
+        final String key;
+        final BookDto book;
+
+        Entry(long offset, int length, String key, BookDto book) {
+            this.offset = offset;
+            this.length = length;
+            this.key = key;
+            this.book = book;
+        }
+
+        boolean isTombstone() {
+            return book == null;
+        }
+    }
+}
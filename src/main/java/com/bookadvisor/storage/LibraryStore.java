@@ -0,0 +1,126 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Storage of a library file, whatever its format.
+ * <p>
+ * Books are identified by their key ({@link LibraryRecords#keyOf(BookDto)}):
+ * saving a book replaces the book with the same key, and books are listed in
+ * the order they were last saved.
+ * </p>
+ */
+public interface LibraryStore {
+
+    /**
+     * Returns the shared store of a library file, its format found from its
+     * first bytes: a shard manifest, a compressed file, a binary file, or else
+     * a text log (also for a missing file).
+     *
+     * @param file the library file
+     * @return the store
+     */
+    static LibraryStore open(Path file) {
+        if (ShardedLibrary.isManifest(file)) {
+            return ShardedLibrary.open(file);
+        }
+        if (CompressedLibraryFile.isCompressed(file)) {
+            return CompressedLibraryFile.open(file);
+        }
+        return BinaryLibraryFile.isBinary(file) ? BinaryLibraryFile.open(file) : LibraryLog.open(file);
+    }
+
+    /**
+     * Returns the library file.
+     *
+     * @return the file path
+     */
+    Path getFile();
+
+    /**
+     * Returns every file holding the library: the library file, and the files
+     * it refers to for a library spread over several files.
+     *
+     * @return the file paths
+     * @throws IOException if the layout of the library cannot be read
+     */
+    default List<Path> getFiles() throws IOException {
+        return List.of(getFile());
+    }
+
+    /**
+     * Saves a book, replacing the book with the same key if there is one.
+     *
+     * @param book the book to save
+     * @throws IOException if the book cannot be written
+     */
+    void put(BookDto book) throws IOException;
+
+    /**
+     * Saves several books at once, replacing the books with the same keys.
+     *
+     * @param books the books to save
+     * @throws IOException if the books cannot be written
+     */
+    void putAll(Collection<BookDto> books) throws IOException;
+
+    /**
+     * Removes the book with the given key.
+     *
+     * @param key the key of the book
+     * @return true if a book was removed
+     * @throws IOException if the removal cannot be written
+     */
+    boolean remove(String key) throws IOException;
+
+    /**
+     * Returns every book of the library.
+     *
+     * @return the books
+     * @throws IOException if the file cannot be read
+     */
+    List<BookDto> loadAll() throws IOException;
+
+    /**
+     * Calls an action with every book of the library, in the order of
+     * {@link #loadAll()}, reading them one at a time where the format allows.
+     * The default implementation loads them all first.
+     *
+     * @param action receives the books
+     * @throws IOException if the file cannot be read
+     */
+    default void forEachBook(Consumer<BookDto> action) throws IOException {
+        loadAll().forEach(action);
+    }
+
+    /**
+     * Forces the records written so far to the storage device, so they survive
+     * a power loss. Writes are otherwise left to the operating system.
+     *
+     * @throws IOException if the file cannot be synced
+     */
+    void sync() throws IOException;
+
+    /**
+     * Returns the generation of the file: a counter moved every time the file
+     * is rewritten rather than appended to, by any process.
+     *
+     * @return the generation, 0 for a file never rewritten
+     * @throws IOException if the generation cannot be read
+     */
+    long getGeneration() throws IOException;
+
+    /**
+     * Replaces the whole library with the given books.
+     *
+     * @param books the new content of the library
+     * @throws IOException if the file cannot be written
+     */
+    void replaceAll(Collection<BookDto> books) throws IOException;
+}
@@ -0,0 +1,99 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.util.AppLogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * Watches library files for changes made by other processes, with a single
+ * {@link WatchService} and a daemon thread, and tells the logs of the changed
+ * files to catch up.
+ */
+final class LibraryWatcher {
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Watched logs, by library file
+    private static final Map<Path, List<LibraryLog>> WATCHED = new ConcurrentHashMap<>();
+    // Directories registered with the watch service
+    private static final Set<Path> DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    // Created with the first watched log
+    private static WatchService service;
+
+    private LibraryWatcher() {
+    }
+
+    /**
+     * Starts watching the file of a log.
+     *
+     * @param log the log to notify of changes
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    static synchronized void watch(LibraryLog log) throws IOException {
+        if (service == null) {
+            service = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(LibraryWatcher::run, "library-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Path file = log.getFile().toAbsolutePath().normalize();
+        Path directory = file.getParent();
+        if (DIRECTORIES.add(directory)) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        WATCHED.computeIfAbsent(file, f -> new CopyOnWriteArrayList<>()).add(log);
+    }
+
+    private static void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost: check every file of the directory
+                    WATCHED.forEach((file, logs) -> {
+                        if (file.getParent().equals(directory)) {
+                            logs.forEach(LibraryWatcher::notifyChange);
+                        }
+                    });
+                    continue;
+                }
+                List<LibraryLog> logs = WATCHED.get(directory.resolve((Path) event.context()));
+                if (logs != null) {
+                    logs.forEach(LibraryWatcher::notifyChange);
+                }
+            }
+            if (!key.reset()) {
+                DIRECTORIES.remove(directory);
+                logger.warning("⚠️ Library directory no longer watched: " + directory);
+            }
+        }
+    }
+
+    private static void notifyChange(LibraryLog log) {
+        try {
+            log.externalChange();
+        } catch (RuntimeException e) {
+            logger.warning("⚠️ Error while following library changes: " + e.getMessage());
+        }
+    }
+}
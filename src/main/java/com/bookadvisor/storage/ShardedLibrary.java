@@ -0,0 +1,606 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.model.BookId;
+import com.bookadvisor.util.AppLogger;
+import com.bookadvisor.util.Hashes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Library split into several shard files, each an independent {@link LibraryLog}.
+ * <p>
+ * The library path holds a small manifest listing the shard files, which sit
+ * next to it. A book goes to the shard picked by a hash of its {@link BookId},
+ * computed from its key so that a removal finds the shard of the book. Each
+ * shard has its own lock and writer, so saves to different shards never wait
+ * for each other, and loading reads every shard on its own thread.
+ * </p>
+ * <p>
+ * Books are listed shard after shard: the order of saves is kept within a
+ * shard, not across shards. {@link #reshard(Path, int)} changes the number of
+ * shards by writing a new set of shard files and then switching the manifest
+ * with a rename, so readers see either the old layout or the new one. It must
+ * not run while other processes write to the library.
+ * </p>
+ */
+public class ShardedLibrary implements LibraryStore {
+
+    /**
+     * First line of a manifest, used to recognize one.
+     */
+    public static final String MAGIC = "#bookadvisor-shards";
+
+    private static final byte[] MAGIC_BYTES = MAGIC.getBytes(StandardCharsets.US_ASCII);
+
+    // Largest number of shards
+    private static final int MAX_SHARDS = 1024;
+
+    // Books written to a new shard with one call while resharding
+    private static final int RESHARD_BATCH = 16_384;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Libraries, one per manifest
+    private static final Map<Path, ShardedLibrary> LIBRARIES = new ConcurrentHashMap<>();
+
+    // Numbers the worker threads
+    private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+
+    // Loads and writes the shards at the same time
+    private static final ExecutorService WORKERS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "library-shard-" + WORKER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Manifest file
+    private final Path manifest;
+    // Shared by operations on the shards, exclusive while the shards are replaced
+    private final ReadWriteLock layoutLock = new ReentrantReadWriteLock();
+    // Layout as last read from the manifest
+    private volatile Layout layout;
+
+    private ShardedLibrary(Path manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Returns the shared library of a manifest.
+     *
+     * @param manifest the manifest file
+     * @return the library
+     */
+    public static ShardedLibrary open(Path manifest) {
+        return LIBRARIES.computeIfAbsent(manifest.toAbsolutePath().normalize(), ShardedLibrary::new);
+    }
+
+    /**
+     * Returns whether a file is a shard manifest.
+     *
+     * @param file the file
+     * @return true if the file starts with {@link #MAGIC}
+     */
+    public static boolean isManifest(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return Arrays.equals(in.readNBytes(MAGIC_BYTES.length), MAGIC_BYTES);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Splits a library into shards, or changes the number of shards of a
+     * sharded library. A single-file library (text, binary or compressed) is
+     * replaced by a manifest at the same path once every shard has been written
+     * and read back; its books are kept.
+     *
+     * @param library the library file or manifest
+     * @param shards  the number of shards
+     * @return the sharded library
+     * @throws IOException if the library cannot be read or the shards cannot be written
+     */
+    public static ShardedLibrary reshard(Path library, int shards) throws IOException {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS + ": " + shards);
+        }
+        ShardedLibrary sharded = open(library);
+        if (isManifest(library)) {
+            sharded.rebalance(shards);
+        } else {
+            sharded.split(LibraryStore.open(library), shards);
+        }
+        return sharded;
+    }
+
+    /**
+     * Returns the shard of a key among a number of shards.
+     *
+     * @param key    the key of a book
+     * @param shards the number of shards
+     * @return the shard index
+     */
+    static int shardOf(String key, int shards) {
+        return (int) Long.remainderUnsigned(Hashes.mix(idOf(key)), shards);
+    }
+
+    /**
+     * Returns the id of the book stored under a key: its work number, or the
+     * hash of the title and author that start a derived key. Other keys are hashed whole.
+     */
+    private static long idOf(String key) {
+        long work = BookId.fromWorkKey(key);
+        if (work != 0) {
+            return work;
+        }
+        int titleEnd = key.indexOf(LibraryRecords.SEPARATOR);
+        if (titleEnd < 0) {
+            return Hashes.hash(key.getBytes(StandardCharsets.UTF_8));
+        }
+        int authorStart = titleEnd + LibraryRecords.SEPARATOR.length();
+        int authorEnd = key.indexOf(LibraryRecords.SEPARATOR, authorStart);
+        return BookId.fromTitleAndAuthor(key.substring(0, titleEnd),
+                key.substring(authorStart, authorEnd < 0 ? key.length() : authorEnd));
+    }
+
+    /**
+     * Returns the manifest file.
+     *
+     * @return the manifest path
+     */
+    @Override
+    public Path getFile() {
+        return manifest;
+    }
+
+    /**
+     * Returns the manifest and the shard files.
+     *
+     * @return the files of the library
+     */
+    @Override
+    public List<Path> getFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        files.add(manifest);
+        try (Locked locked = shared()) {
+            for (LibraryLog shard : locked.layout.shards) {
+                files.add(shard.getFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count
+     * @throws IOException if the manifest cannot be read
+     */
+    public int getShardCount() throws IOException {
+        try (Locked locked = shared()) {
+            return locked.layout.shards.size();
+        }
+    }
+
+    @Override
+    public void put(BookDto book) throws IOException {
+        try (Locked locked = shared()) {
+            locked.layout.shardOf(LibraryRecords.keyOf(book)).put(book);
+        }
+    }
+
+    /**
+     * Saves several books at once: each shard receives its books with one
+     * write, and the shards are written at the same time.
+     *
+     * @param books the books to save
+     * @throws IOException if the books cannot be written
+     */
+    @Override
+    public void putAll(Collection<BookDto> books) throws IOException {
+        try (Locked locked = shared()) {
+            List<LibraryLog> shards = locked.layout.shards;
+            List<List<BookDto>> groups = partition(books, shards.size());
+            List<Callable<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                LibraryLog shard = shards.get(i);
+                List<BookDto> group = groups.get(i);
+                if (!group.isEmpty()) {
+                    writes.add(() -> {
+                        shard.putAll(group);
+                        return null;
+                    });
+                }
+            }
+            runAll(writes);
+        }
+    }
+
+    @Override
+    public boolean remove(String key) throws IOException {
+        try (Locked locked = shared()) {
+            return locked.layout.shardOf(key).remove(key);
+        }
+    }
+
+    /**
+     * Returns every book of the library, the shards being read at the same
+     * time. Books are listed shard after shard.
+     *
+     * @return the books
+     * @throws IOException if a shard cannot be read
+     */
+    @Override
+    public List<BookDto> loadAll() throws IOException {
+        try (Locked locked = shared()) {
+            List<Callable<List<BookDto>>> loads = new ArrayList<>();
+            for (LibraryLog shard : locked.layout.shards) {
+                loads.add(shard::loadAll);
+            }
+            List<List<BookDto>> parts = runAll(loads);
+            List<BookDto> books = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+            parts.forEach(books::addAll);
+            return books;
+        }
+    }
+
+    /**
+     * Calls an action with every book, shard after shard, each shard being read
+     * one book at a time.
+     *
+     * @param action receives the books, in the order of {@link #loadAll()}
+     * @throws IOException if a shard cannot be read
+     */
+    @Override
+    public void forEachBook(Consumer<BookDto> action) throws IOException {
+        try (Locked locked = shared()) {
+            for (LibraryLog shard : locked.layout.shards) {
+                shard.forEachBook(action);
+            }
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        try (Locked locked = shared()) {
+            for (LibraryLog shard : locked.layout.shards) {
+                shard.sync();
+            }
+        }
+    }
+
+    /**
+     * Returns the generation of the library: the generation of the layout plus
+     * the generations of the shards, so it moves whenever any of them does.
+     *
+     * @return the generation
+     * @throws IOException if a generation cannot be read
+     */
+    @Override
+    public long getGeneration() throws IOException {
+        try (Locked locked = shared()) {
+            long generation = locked.layout.generation;
+            for (LibraryLog shard : locked.layout.shards) {
+                generation += shard.getGeneration();
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Replaces the whole library with the given books, shard by shard. Each
+     * shard is replaced atomically, but not the library as a whole.
+     *
+     * @param books the new content of the library
+     * @throws IOException if a shard cannot be written
+     */
+    @Override
+    public void replaceAll(Collection<BookDto> books) throws IOException {
+        layoutLock.writeLock().lock();
+        try {
+            List<LibraryLog> shards = layout().shards;
+            List<List<BookDto>> groups = partition(books, shards.size());
+            List<Callable<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                LibraryLog shard = shards.get(i);
+                List<BookDto> group = groups.get(i);
+                writes.add(() -> {
+                    shard.replaceAll(group);
+                    return null;
+                });
+            }
+            runAll(writes);
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates the shards from a single-file library, then replaces the file by the manifest.
+     */
+    private void split(LibraryStore single, int shards) throws IOException {
+        layoutLock.writeLock().lock();
+        try {
+            List<BookDto> books = single.loadAll();
+            List<Path> files = shardFiles(1, shards);
+            List<List<BookDto>> groups = partition(books, shards);
+            try {
+                for (int i = 0; i < shards; i++) {
+                    LibraryLog shard = LibraryLog.open(files.get(i));
+                    shard.replaceAll(groups.get(i));
+                    // Check the shard before the library file is replaced by the manifest
+                    int read = new LibraryLog(files.get(i)).loadAll().size();
+                    if (read != groups.get(i).size()) {
+                        throw new IOException("Shard " + files.get(i) + " holds " + read + " books instead of "
+                                + groups.get(i).size() + "; " + single.getFile() + " is left unchanged");
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                    Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".lock"));
+                }
+                throw e;
+            }
+            writeManifest(1, files);
+            logger.info("📚 Library split into " + shards + " shards (" + books.size() + " books)");
+        } finally {
+            layout = null;
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the books of every shard to a new set of shards, one old shard at a
+     * time, then switches the manifest and deletes the old shards.
+     */
+    private void rebalance(int shards) throws IOException {
+        layoutLock.writeLock().lock();
+        try {
+            Layout old = layout();
+            long generation = old.generation + 1;
+            List<Path> files = shardFiles(generation, shards);
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            int moved = 0;
+            for (LibraryLog shard : old.shards) {
+                List<List<BookDto>> groups = partition(shard.loadAll(), shards);
+                for (int i = 0; i < shards; i++) {
+                    List<BookDto> group = groups.get(i);
+                    for (int from = 0; from < group.size(); from += RESHARD_BATCH) {
+                        LibraryLog.open(files.get(i)).putAll(group.subList(from, Math.min(group.size(), from + RESHARD_BATCH)));
+                    }
+                    moved += group.size();
+                }
+            }
+            writeManifest(generation, files);
+            layout = null;
+            for (LibraryLog shard : old.shards) {
+                Files.deleteIfExists(shard.getFile());
+                Files.deleteIfExists(shard.getFile().resolveSibling(shard.getFile().getFileName() + ".lock"));
+            }
+            logger.info("📚 Library moved from " + old.shards.size() + " to " + shards + " shards (" + moved + " books)");
+        } finally {
+            layout = null;
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the paths of a new set of shards, named after the manifest and the generation.
+     */
+    private List<Path> shardFiles(long generation, int shards) {
+        String name = manifest.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = dot > 0 ? name.substring(0, dot) : name;
+        List<Path> files = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            files.add(manifest.resolveSibling(stem + "-" + generation + "-" + i + ".txt"));
+        }
+        return files;
+    }
+
+    /**
+     * Writes the manifest next to its final path, syncs it and renames it into place.
+     */
+    private void writeManifest(long generation, List<Path> files) throws IOException {
+        Path tmp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(MAGIC);
+            writer.newLine();
+            writer.write("format=1");
+            writer.newLine();
+            writer.write("generation=" + generation);
+            writer.newLine();
+            writer.write("shards=" + files.size());
+            writer.newLine();
+            for (int i = 0; i < files.size(); i++) {
+                writer.write("shard." + i + "=" + files.get(i).getFileName());
+                writer.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Takes the layout lock in shared mode, with the current layout.
+     */
+    private Locked shared() throws IOException {
+        layoutLock.readLock().lock();
+        try {
+            return new Locked(layout(), layoutLock.readLock()::unlock);
+        } catch (IOException | RuntimeException e) {
+            layoutLock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the layout, read again if the manifest changed since last read.
+     */
+    private Layout layout() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(manifest, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new NoSuchFileException(manifest.toString(), null, "No shard manifest");
+        }
+        Layout current = layout;
+        if (current != null && current.matches(attributes)) {
+            return current;
+        }
+        synchronized (this) {
+            current = layout;
+            if (current == null || !current.matches(attributes)) {
+                current = readManifest(attributes);
+                layout = current;
+            }
+            return current;
+        }
+    }
+
+    private Layout readManifest(BasicFileAttributes attributes) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        if (!"1".equals(properties.getProperty("format"))) {
+            throw new IOException("Unsupported shard manifest format in " + manifest);
+        }
+        try {
+            long generation = Long.parseLong(properties.getProperty("generation"));
+            int count = Integer.parseInt(properties.getProperty("shards"));
+            if (count < 1 || count > MAX_SHARDS) {
+                throw new IOException("Invalid shard count in " + manifest + ": " + count);
+            }
+            List<LibraryLog> shards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String name = properties.getProperty("shard." + i);
+                if (name == null || name.isBlank()) {
+                    throw new IOException("Missing shard " + i + " in " + manifest);
+                }
+                shards.add(LibraryLog.open(manifest.resolveSibling(name.strip())));
+            }
+            return new Layout(generation, List.copyOf(shards), attributes.fileKey(), attributes.lastModifiedTime(),
+                    attributes.size());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid shard manifest " + manifest + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Splits books by shard, keeping their order.
+     */
+    private static List<List<BookDto>> partition(Collection<BookDto> books, int shards) {
+        List<List<BookDto>> groups = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (BookDto book : books) {
+            groups.get(shardOf(LibraryRecords.keyOf(book), shards)).add(book);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs tasks on the worker threads, or on the calling thread when there is
+     * only one, and waits for all of them.
+     *
+     * @return the results, in task order
+     */
+    private static <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            try {
+                results.add(tasks.get(0).call());
+                return results;
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> futures.add(WORKERS.submit(task)));
+        IOException failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the shards");
+            } catch (ExecutionException e) {
+                // Wait for the other shards anyway, so none is still written on return
+                Throwable cause = e.getCause();
+                if (failure == null) {
+                    failure = cause instanceof IOException io ? io : new IOException("Shard operation failed", cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Shards of the library, and the state of the manifest they were read from.
+     */
+    private record Layout(long generation, List<LibraryLog> shards, Object fileKey, FileTime modified, long size) {
+
+        boolean matches(BasicFileAttributes attributes) {
+            return Objects.equals(fileKey, attributes.fileKey()) && modified.equals(attributes.lastModifiedTime())
+                    && size == attributes.size();
+        }
+
+        LibraryLog shardOf(String key) {
+            return shards.get(ShardedLibrary.shardOf(key, shards.size()));
+        }
+    }
+
+    /**
+     * A layout used under the shared lock, released by {@link #close()}.
+     */
+    private record Locked(Layout layout, Runnable unlock) implements AutoCloseable {
+        @Override
+        public void close() {
+            unlock.run();
+        }
+    }
+}
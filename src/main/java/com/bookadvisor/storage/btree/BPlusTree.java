@@ -0,0 +1,627 @@
+package com.bookadvisor.storage.btree;
+
+import com.bookadvisor.storage.DurabilityPolicy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedded B+tree mapping byte keys to byte values, stored in a file of
+ * fixed-size pages.
+ * <p>
+ * Leaves hold the keys in order with their values, and are linked for range
+ * scans; internal nodes hold separator keys. Values too large to share a leaf
+ * are stored in a chain of overflow pages. Get, put and delete read one page
+ * per level, through a {@link PageCache}. Pages emptied by deletes stay in the
+ * tree and fill up again with later puts in their key range; the pages of
+ * large values are reused through a free list.
+ * </p>
+ * <p>
+ * Crash safety comes from a {@link WriteAheadLog} next to the file
+ * ({@code <file>.wal}). Changes are logged before they are applied to the
+ * cached pages, and changed pages only reach the file at a checkpoint, which
+ * logs their images first. On open, the images of a complete checkpoint are
+ * written again and the operations logged after it are replayed. Logged
+ * operations are synced according to a {@link DurabilityPolicy}, checked as
+ * they are logged; checkpoints and {@link #close()} always sync.
+ * </p>
+ * <p>
+ * Page 0 holds the metadata: magic bytes {@code BKBT}, format version, page
+ * size, root page, page count, free list head and number of keys.
+ * </p>
+ */
+final class BPlusTree implements Closeable {
+
+    /**
+     * Size of the pages.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    /**
+     * Longest key, in UTF-8 bytes.
+     */
+    static final int MAX_KEY_BYTES = 512;
+
+    // Largest inline leaf cell: a leaf always holds at least four cells, so splits always succeed
+    private static final int MAX_INLINE_CELL = (PAGE_SIZE - Node.HEADER_BYTES) / 4;
+    // Bytes of a value held by one overflow page
+    private static final int OVERFLOW_DATA = PAGE_SIZE - Node.HEADER_BYTES - 2;
+    // Log size that triggers a checkpoint
+    private static final long MAX_LOG_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x424B4254;
+    private static final short VERSION = 1;
+
+    // Page file and its cache
+    private final PageFile file;
+    private final PageCache cache;
+    // Log of the changes since the last checkpoint
+    private final WriteAheadLog log;
+    // When logged operations are synced
+    private final DurabilityPolicy policy;
+
+    // Metadata
+    private int root;
+    private int pageCount;
+    private int freeHead;
+    private long size;
+
+    // Operations logged but not synced yet, and when the first was logged
+    private long unsynced;
+    private long firstUnsyncedAt;
+    // True while replaying the log: operations are not logged again
+    private boolean replaying;
+
+    private BPlusTree(PageFile file, PageCache cache, WriteAheadLog log, DurabilityPolicy policy) {
+        this.file = file;
+        this.cache = cache;
+        this.log = log;
+        this.policy = policy;
+    }
+
+    /**
+     * Opens a tree file, creating it if needed and recovering it from its log
+     * after a crash.
+     *
+     * @param path       the tree file
+     * @param cachePages the number of pages kept in memory
+     * @param policy     when logged operations are synced
+     * @return the open tree
+     * @throws IOException if the file cannot be opened or recovered
+     */
+    static BPlusTree open(Path path, int cachePages, DurabilityPolicy policy) throws IOException {
+        PageFile file = new PageFile(path, PAGE_SIZE);
+        WriteAheadLog log = null;
+        try {
+            log = new WriteAheadLog(path.resolveSibling(path.getFileName() + ".wal"));
+            BPlusTree tree = new BPlusTree(file, new PageCache(file, PAGE_SIZE, cachePages), log, policy);
+            tree.recover();
+            return tree;
+        } catch (IOException | RuntimeException e) {
+            if (log != null) {
+                log.close();
+            }
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is absent
+     * @throws IOException if the pages cannot be read
+     */
+    synchronized byte[] get(byte[] key) throws IOException {
+        cache.beginOperation();
+        Node leaf = findLeaf(key);
+        int index = leaf.search(key);
+        return index >= 0 ? readValue(leaf.cells.get(index)) : null;
+    }
+
+    /**
+     * Sets the value of a key, replacing any previous value.
+     *
+     * @param key   the key, at most {@link #MAX_KEY_BYTES} bytes
+     * @param value the value
+     * @throws IOException if the change cannot be logged or the pages cannot be read
+     */
+    synchronized void put(byte[] key, byte[] value) throws IOException {
+        if (key.length == 0 || key.length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Key must be 1 to " + MAX_KEY_BYTES + " bytes: " + key.length);
+        }
+        logged(() -> log.put(key, value));
+        cache.beginOperation();
+        Split split = insert(cache.get(root), key, value);
+        if (split != null) {
+            // The root split: the tree grows a level
+            Node newRoot = allocate(Node.INTERNAL);
+            newRoot.children.add(root);
+            newRoot.keys.add(split.key);
+            newRoot.children.add(split.right);
+            root = newRoot.id;
+        }
+        afterChange();
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return true if the key was present
+     * @throws IOException if the change cannot be logged or the pages cannot be read
+     */
+    synchronized boolean delete(byte[] key) throws IOException {
+        cache.beginOperation();
+        Node leaf = findLeaf(key);
+        int index = leaf.search(key);
+        if (index < 0) {
+            return false;
+        }
+        logged(() -> log.delete(key));
+        freeValue(leaf.cells.get(index));
+        leaf.keys.remove(index);
+        leaf.cells.remove(index);
+        cache.markDirty(leaf);
+        size--;
+        afterChange();
+        return true;
+    }
+
+    /**
+     * Visits the keys of a range in order.
+     *
+     * @param from    the first key, inclusive, or null to start at the first key
+     * @param to      the last key, exclusive, or null to run to the last key
+     * @param visitor receives the keys and values; returns false to stop
+     * @throws IOException if the pages cannot be read
+     */
+    synchronized void scan(byte[] from, byte[] to, EntryVisitor visitor) throws IOException {
+        cache.beginOperation();
+        Node leaf = from != null ? findLeaf(from) : firstLeaf();
+        int index = from != null ? leaf.search(from) : 0;
+        index = index >= 0 ? index : -index - 1;
+        while (true) {
+            for (; index < leaf.keys.size(); index++) {
+                byte[] key = leaf.keys.get(index);
+                if (to != null && Node.compare(key, to) >= 0) {
+                    return;
+                }
+                if (!visitor.visit(key, readValue(leaf.cells.get(index)))) {
+                    return;
+                }
+            }
+            if (leaf.next == 0) {
+                return;
+            }
+            cache.beginOperation();
+            leaf = cache.get(leaf.next);
+            index = 0;
+        }
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the key count
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the tree, 1 for a single leaf.
+     *
+     * @return the number of levels
+     * @throws IOException if the pages cannot be read
+     */
+    synchronized int height() throws IOException {
+        cache.beginOperation();
+        int height = 1;
+        for (Node node = cache.get(root); node.type == Node.INTERNAL; node = cache.get(node.children.get(0))) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Returns the fraction of page lookups served from memory.
+     *
+     * @return the cache hit ratio
+     */
+    synchronized double getCacheHitRatio() {
+        return cache.getHitRatio();
+    }
+
+    /**
+     * Forces the logged operations to the storage device.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    synchronized void sync() throws IOException {
+        log.sync();
+        unsynced = 0;
+    }
+
+    /**
+     * Writes the changed pages to the file and empties the log.
+     *
+     * @throws IOException if the pages cannot be written
+     */
+    synchronized void checkpoint() throws IOException {
+        List<Node> pages = cache.getDirtyPages();
+        if (pages.isEmpty() && log.size() == 0) {
+            return;
+        }
+        // Images first, so an interrupted write of the pages can be redone
+        List<ByteBuffer> images = new ArrayList<>(pages.size() + 1);
+        for (Node page : pages) {
+            ByteBuffer image = ByteBuffer.allocate(PAGE_SIZE);
+            page.encode(image);
+            images.add(image.clear());
+        }
+        images.add(encodeMeta());
+        for (int i = 0; i < pages.size(); i++) {
+            log.page(pages.get(i).id, images.get(i).duplicate());
+        }
+        log.page(0, images.get(pages.size()).duplicate());
+        log.checkpoint();
+        log.sync();
+
+        for (int i = 0; i < pages.size(); i++) {
+            file.write(pages.get(i).id, images.get(i));
+        }
+        file.write(0, images.get(pages.size()));
+        file.sync();
+        cache.markAllClean();
+        log.reset();
+        unsynced = 0;
+    }
+
+    /**
+     * Checkpoints, then closes the file and its log.
+     *
+     * @throws IOException if the last changes cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            try {
+                log.close();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the file and its log without a checkpoint, leaving them as a crash
+     * would. For tests.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    synchronized void abandon() throws IOException {
+        try {
+            log.close();
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the leaf that holds a key, or would.
+     */
+    private Node findLeaf(byte[] key) throws IOException {
+        Node node = cache.get(root);
+        while (node.type == Node.INTERNAL) {
+            node = cache.get(node.children.get(node.childIndex(key)));
+        }
+        return node;
+    }
+
+    private Node firstLeaf() throws IOException {
+        Node node = cache.get(root);
+        while (node.type == Node.INTERNAL) {
+            node = cache.get(node.children.get(0));
+        }
+        return node;
+    }
+
+    /**
+     * Inserts a key below a node.
+     *
+     * @return the split of the node, or null if it still fits its page
+     */
+    private Split insert(Node node, byte[] key, byte[] value) throws IOException {
+        if (node.type == Node.LEAF) {
+            int index = node.search(key);
+            if (index >= 0) {
+                // Freed first, so a large value reuses the pages of the value it replaces
+                freeValue(node.cells.get(index));
+            }
+            Node.Cell cell = storeValue(key, value);
+            if (index >= 0) {
+                node.cells.set(index, cell);
+            } else {
+                node.keys.add(-index - 1, key);
+                node.cells.add(-index - 1, cell);
+                size++;
+            }
+            cache.markDirty(node);
+            return node.encodedBytes() > PAGE_SIZE ? splitLeaf(node) : null;
+        }
+
+        int index = node.childIndex(key);
+        Split split = insert(cache.get(node.children.get(index)), key, value);
+        if (split == null) {
+            return null;
+        }
+        node.keys.add(index, split.key);
+        node.children.add(index + 1, split.right);
+        cache.markDirty(node);
+        return node.encodedBytes() > PAGE_SIZE ? splitInternal(node) : null;
+    }
+
+    /**
+     * Moves the upper half of a leaf, by size, to a new leaf.
+     */
+    private Split splitLeaf(Node leaf) throws IOException {
+        int half = (leaf.encodedBytes() - Node.HEADER_BYTES) / 2;
+        int moved = 0;
+        int bytes = 0;
+        while (bytes < half) {
+            bytes += Node.cellBytes(leaf.keys.get(moved), leaf.cells.get(moved));
+            moved++;
+        }
+        Node right = allocate(Node.LEAF);
+        List<byte[]> keys = leaf.keys.subList(moved, leaf.keys.size());
+        List<Node.Cell> cells = leaf.cells.subList(moved, leaf.cells.size());
+        right.keys.addAll(keys);
+        right.cells.addAll(cells);
+        keys.clear();
+        cells.clear();
+        right.next = leaf.next;
+        leaf.next = right.id;
+        return new Split(right.keys.get(0), right.id);
+    }
+
+    /**
+     * Moves the upper half of an internal node, by size, to a new node; the
+     * middle key moves up to the parent.
+     */
+    private Split splitInternal(Node node) throws IOException {
+        int half = (node.encodedBytes() - Node.HEADER_BYTES) / 2;
+        int middle = 0;
+        for (int bytes = 4; bytes < half; middle++) {
+            bytes += 2 + node.keys.get(middle).length + 4;
+        }
+        byte[] separator = node.keys.get(middle);
+        Node right = allocate(Node.INTERNAL);
+        List<byte[]> keys = node.keys.subList(middle + 1, node.keys.size());
+        List<Integer> children = node.children.subList(middle + 1, node.children.size());
+        right.keys.addAll(keys);
+        right.children.addAll(children);
+        keys.clear();
+        children.clear();
+        node.keys.remove(middle);
+        return new Split(separator, right.id);
+    }
+
+    /**
+     * Returns the leaf cell of a value, writing it to overflow pages if it is too large.
+     */
+    private Node.Cell storeValue(byte[] key, byte[] value) throws IOException {
+        if (Node.inlineCellBytes(key, value) <= MAX_INLINE_CELL) {
+            return new Node.Cell(value, 0, 0);
+        }
+        int first = 0;
+        Node previous = null;
+        for (int offset = 0; offset < value.length; offset += OVERFLOW_DATA) {
+            Node page = allocate(Node.OVERFLOW);
+            page.data = Arrays.copyOfRange(value, offset, Math.min(value.length, offset + OVERFLOW_DATA));
+            if (previous == null) {
+                first = page.id;
+            } else {
+                previous.next = page.id;
+            }
+            previous = page;
+        }
+        return new Node.Cell(null, value.length, first);
+    }
+
+    private byte[] readValue(Node.Cell cell) throws IOException {
+        if (cell.inline() != null) {
+            return cell.inline();
+        }
+        byte[] value = new byte[cell.length()];
+        int offset = 0;
+        for (int id = cell.firstPage(); id != 0 && offset < value.length; ) {
+            Node page = cache.get(id);
+            System.arraycopy(page.data, 0, value, offset, page.data.length);
+            offset += page.data.length;
+            id = page.next;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the overflow pages of a value to the free list.
+     */
+    private void freeValue(Node.Cell cell) throws IOException {
+        for (int id = cell.inline() != null ? 0 : cell.firstPage(); id != 0; ) {
+            Node page = cache.get(id);
+            int next = page.next;
+            Node free = new Node(id, Node.FREE);
+            free.next = freeHead;
+            freeHead = id;
+            cache.add(free);
+            id = next;
+        }
+    }
+
+    /**
+     * Returns a new page, from the free list or at the end of the file.
+     */
+    private Node allocate(byte type) throws IOException {
+        int id;
+        if (freeHead != 0) {
+            id = freeHead;
+            freeHead = cache.get(id).next;
+        } else {
+            id = pageCount++;
+        }
+        Node node = new Node(id, type);
+        cache.add(node);
+        return node;
+    }
+
+    /**
+     * Logs an operation, and syncs the log if the policy asks for it.
+     */
+    private void logged(LogWrite write) throws IOException {
+        if (replaying) {
+            return;
+        }
+        write.run();
+        if (unsynced++ == 0) {
+            firstUnsyncedAt = System.nanoTime();
+        }
+        if (policy.shouldSync(unsynced, (System.nanoTime() - firstUnsyncedAt) / 1_000_000)) {
+            log.sync();
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Checkpoints once enough pages are dirty or the log is large.
+     */
+    private void afterChange() throws IOException {
+        if (!replaying && (cache.getDirtyCount() > cache.getCapacity() / 2 || log.size() > MAX_LOG_BYTES)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Brings the file to its last logged state: redoes the page writes of the
+     * last complete checkpoint, then replays the operations logged after it.
+     */
+    private void recover() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        List<ByteBuffer> images = new ArrayList<>();
+        List<byte[][]> operations = new ArrayList<>();
+        log.replay(new WriteAheadLog.Visitor() {
+            @Override
+            public void put(byte[] key, byte[] value) {
+                operations.add(new byte[][]{key, value});
+            }
+
+            @Override
+            public void delete(byte[] key) {
+                operations.add(new byte[][]{key});
+            }
+
+            @Override
+            public void page(int id, ByteBuffer page) {
+                ids.add(id);
+                images.add(ByteBuffer.allocate(page.remaining()).put(page).flip());
+            }
+
+            @Override
+            public void checkpoint() throws IOException {
+                // The checkpoint is complete: its pages hold every operation logged before it
+                for (int i = 0; i < ids.size(); i++) {
+                    file.write(ids.get(i), images.get(i));
+                }
+                file.sync();
+                ids.clear();
+                images.clear();
+                operations.clear();
+            }
+        });
+
+        if (file.getPageCount() == 0) {
+            // New file: metadata and an empty root leaf
+            pageCount = 1;
+            root = allocate(Node.LEAF).id;
+        } else {
+            readMeta();
+        }
+
+        replaying = true;
+        try {
+            for (byte[][] operation : operations) {
+                if (operation.length == 2) {
+                    put(operation[0], operation[1]);
+                } else {
+                    delete(operation[0]);
+                }
+            }
+        } finally {
+            replaying = false;
+        }
+        checkpoint();
+    }
+
+    private void readMeta() throws IOException {
+        ByteBuffer meta = ByteBuffer.allocate(PAGE_SIZE);
+        file.read(0, meta);
+        meta.flip();
+        if (meta.getInt() != MAGIC) {
+            throw new IOException("Not a tree file");
+        }
+        short version = meta.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported tree file version " + version);
+        }
+        int pageSize = meta.getInt();
+        if (pageSize != PAGE_SIZE) {
+            throw new IOException("Unsupported page size " + pageSize);
+        }
+        root = meta.getInt();
+        pageCount = meta.getInt();
+        freeHead = meta.getInt();
+        size = meta.getLong();
+    }
+
+    private ByteBuffer encodeMeta() {
+        ByteBuffer meta = ByteBuffer.allocate(PAGE_SIZE);
+        meta.putInt(MAGIC).putShort(VERSION).putInt(PAGE_SIZE).putInt(root).putInt(pageCount).putInt(freeHead)
+                .putLong(size);
+        return meta.clear();
+    }
+
+    /**
+     * A node split: the first key of the new right node, and its page.
+     */
+    private record Split(byte[] key, int right) {
+    }
+
+    /**
+     * A write to the log.
+     */
+    @FunctionalInterface
+    private interface LogWrite {
+        void run() throws IOException;
+    }
+
+    /**
+     * Receives the keys and values of a scan.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * Receives a key and its value.
+         *
+         * @return true to carry on, false to stop the scan
+         */
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+}
@@ -0,0 +1,301 @@
+package com.bookadvisor.storage.btree;
+
+import com.bookadvisor.interfaces.BookSaver;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.DurabilityPolicy;
+import com.bookadvisor.storage.LibraryRecords;
+import com.bookadvisor.util.AppLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Book library stored in an embedded B+tree keyed by book key, for libraries
+ * too large for the flat library files.
+ * <p>
+ * Get, save and remove by key cost one page per tree level, mostly served from
+ * the page cache, and books can be listed in key order from any key, without
+ * ever scanning or rewriting the whole file. See {@link BPlusTree} for the file
+ * format and crash recovery.
+ * </p>
+ * <p>
+ * A book is stored under its key as its other fields (title, author, cover
+ * URL, publish date, description), each a varint length (0 for null,
+ * otherwise length + 1) followed by UTF-8 bytes.
+ * </p>
+ */
+public class BTreeBookStore implements BookSaver, Closeable {
+
+    /**
+     * Default number of pages kept in memory (16 MiB).
+     */
+    public static final int DEFAULT_CACHE_PAGES = 4096;
+
+    private static final Logger logger = AppLogger.getInstance().getLogger();
+
+    // Tree file
+    private final Path file;
+    // Engine
+    private final BPlusTree tree;
+
+    private BTreeBookStore(Path file, BPlusTree tree) {
+        this.file = file;
+        this.tree = tree;
+    }
+
+    /**
+     * Opens a tree library with the default cache, syncing on {@link #sync()} and close only.
+     *
+     * @param file the tree file, created if needed
+     * @return the open store
+     * @throws IOException if the file cannot be opened or recovered
+     */
+    public static BTreeBookStore open(Path file) throws IOException {
+        return open(file, DEFAULT_CACHE_PAGES, DurabilityPolicy.onFlush());
+    }
+
+    /**
+     * Opens a tree library.
+     *
+     * @param file       the tree file, created if needed
+     * @param cachePages the number of pages kept in memory
+     * @param policy     when saves are synced to disk
+     * @return the open store
+     * @throws IOException if the file cannot be opened or recovered
+     */
+    public static BTreeBookStore open(Path file, int cachePages, DurabilityPolicy policy) throws IOException {
+        return new BTreeBookStore(file, BPlusTree.open(file, cachePages, policy));
+    }
+
+    /**
+     * Returns the tree file.
+     *
+     * @return the file path
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the book with the given key.
+     *
+     * @param key the key of the book
+     * @return the book, or null if there is none
+     * @throws IOException if the file cannot be read
+     */
+    public BookDto get(String key) throws IOException {
+        byte[] value = tree.get(key.getBytes(StandardCharsets.UTF_8));
+        return value != null ? decode(key, value) : null;
+    }
+
+    /**
+     * Saves a book, replacing the book with the same key if there is one.
+     *
+     * @param book the book to save
+     * @throws IOException if the book cannot be written
+     * @throws IllegalArgumentException if the key is longer than 512 UTF-8 bytes
+     */
+    public void put(BookDto book) throws IOException {
+        tree.put(LibraryRecords.keyOf(book).getBytes(StandardCharsets.UTF_8), encode(book));
+    }
+
+    /**
+     * Removes the book with the given key.
+     *
+     * @param key the key of the book
+     * @return true if a book was removed
+     * @throws IOException if the removal cannot be written
+     */
+    public boolean remove(String key) throws IOException {
+        return tree.delete(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Calls the consumer with the books whose keys fall in a range, in key order
+     * (Unicode code point order).
+     *
+     * @param fromKey  the first key, inclusive, or null to start at the first book
+     * @param toKey    the last key, exclusive, or null to run to the last book
+     * @param consumer receives the books
+     * @throws IOException if the file cannot be read
+     */
+    public void forEach(String fromKey, String toKey, Consumer<BookDto> consumer) throws IOException {
+        tree.scan(fromKey != null ? fromKey.getBytes(StandardCharsets.UTF_8) : null,
+                toKey != null ? toKey.getBytes(StandardCharsets.UTF_8) : null,
+                (key, value) -> {
+                    consumer.accept(decode(new String(key, StandardCharsets.UTF_8), value));
+                    return true;
+                });
+    }
+
+    /**
+     * Returns at most {@code limit} books from a key on, in key order.
+     *
+     * @param fromKey the first key, inclusive, or null to start at the first book
+     * @param limit   the number of books to return at most
+     * @return the books
+     * @throws IOException if the file cannot be read
+     */
+    public List<BookDto> list(String fromKey, int limit) throws IOException {
+        List<BookDto> books = new ArrayList<>();
+        if (limit <= 0) {
+            return books;
+        }
+        tree.scan(fromKey != null ? fromKey.getBytes(StandardCharsets.UTF_8) : null, null, (key, value) -> {
+            books.add(decode(new String(key, StandardCharsets.UTF_8), value));
+            return books.size() < limit;
+        });
+        return books;
+    }
+
+    /**
+     * Returns the number of books.
+     *
+     * @return the number of books
+     */
+    public long size() {
+        return tree.size();
+    }
+
+    /**
+     * Forces the saves made so far to the storage device.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    public void sync() throws IOException {
+        tree.sync();
+    }
+
+    /**
+     * Writes the changed pages to the tree file, so that reopening it has no
+     * log to replay.
+     *
+     * @throws IOException if the pages cannot be written
+     */
+    public void checkpoint() throws IOException {
+        tree.checkpoint();
+    }
+
+    /**
+     * Saves a book, logging failures, as the other {@link BookSaver}s do.
+     *
+     * @param book the book to save
+     */
+    @Override
+    public void save(BookDto book) {
+        try {
+            put(book);
+            logger.info("✅ Book saved: " + book.getTitle());
+        } catch (IOException | IllegalArgumentException e) {
+            logger.severe("❌ Error while saving: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves every book of the list, replacing the books with the same keys.
+     * Books already in the tree and not in the list are kept.
+     *
+     * @param books the books to save
+     */
+    @Override
+    public void saveAll(List<BookDto> books) {
+        try {
+            for (BookDto book : books) {
+                put(book);
+            }
+            logger.info("📄 " + books.size() + " books saved to " + file);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.severe("❌ Error during full save: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the changed pages and closes the file.
+     *
+     * @throws IOException if the last changes cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        tree.close();
+    }
+
+    /**
+     * Closes the store without writing the changed pages, leaving the files as
+     * a crash would. For tests.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    void abandon() throws IOException {
+        tree.abandon();
+    }
+
+    /**
+     * Returns the height of the tree. For tests.
+     *
+     * @return the number of levels
+     * @throws IOException if the file cannot be read
+     */
+    int height() throws IOException {
+        return tree.height();
+    }
+
+    private static byte[] encode(BookDto book) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeString(out, book.getTitle());
+        writeString(out, book.getAuthor());
+        writeString(out, book.getCoverUrl());
+        writeString(out, book.getPublishDate());
+        writeString(out, book.getDescription());
+        return out.toByteArray();
+    }
+
+    private static BookDto decode(String key, byte[] value) {
+        ByteBuffer in = ByteBuffer.wrap(value);
+        String title = readString(in);
+        String author = readString(in);
+        String coverUrl = readString(in);
+        String publishDate = readString(in);
+        String description = readString(in);
+        return new BookDto(title, author, coverUrl, publishDate, key, description);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            out.write(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long length = bytes.length + 1L;
+        while (length >= 0x80) {
+            out.write((int) (length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write((int) length);
+        out.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length - 1, StandardCharsets.UTF_8);
+        in.position(in.position() + length - 1);
+        return value;
+    }
+}
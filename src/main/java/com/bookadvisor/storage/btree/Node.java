@@ -0,0 +1,201 @@
+package com.bookadvisor.storage.btree;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A decoded page of a tree file: a leaf, an internal node, a page of a large
+ * value, or a free page.
+ * <p>
+ * Every page starts with an 8-byte header: the page type, an unused byte, the
+ * number of keys (2 bytes) and the next page (4 bytes), which links leaves in
+ * key order, the pages of a large value, and the free pages. Then:
+ * </p>
+ * <pre>
+ * leaf:      (u16 key length | key | u8 0 | u16 value length | value)
+ *          or (u16 key length | key | u8 1 | i32 value length | i32 first overflow page), per key
+ * internal:  i32 first child | (u16 key length | key | i32 child), per key
+ * overflow:  u16 data length | data
+ * </pre>
+ * <p>
+ * In an internal node, the child after a key holds the keys greater than or
+ * equal to it.
+ * </p>
+ */
+final class Node {
+
+    static final byte LEAF = 1;
+    static final byte INTERNAL = 2;
+    static final byte OVERFLOW = 3;
+    static final byte FREE = 4;
+
+    /**
+     * Bytes of the page header.
+     */
+    static final int HEADER_BYTES = 8;
+
+    // Bytes of a leaf cell besides the key and inline value
+    private static final int INLINE_CELL_BYTES = 2 + 1 + 2;
+    // Bytes of a leaf cell pointing to overflow pages, besides the key
+    private static final int OVERFLOW_CELL_BYTES = 2 + 1 + 4 + 4;
+
+    final int id;
+    byte type;
+    // Next page of the chain (next leaf, next overflow or free page), 0 for none
+    int next;
+    // Leaf and internal nodes: keys in order
+    final List<byte[]> keys = new ArrayList<>();
+    // Leaf: values of the keys
+    final List<Cell> cells = new ArrayList<>();
+    // Internal node: children, one more than the keys
+    final List<Integer> children = new ArrayList<>();
+    // Overflow page: its part of the value
+    byte[] data;
+
+    Node(int id, byte type) {
+        this.id = id;
+        this.type = type;
+    }
+
+    /**
+     * Returns the size of the leaf cell holding a key and its value.
+     */
+    static int cellBytes(byte[] key, Cell cell) {
+        return key.length + (cell.inline != null ? INLINE_CELL_BYTES + cell.inline.length : OVERFLOW_CELL_BYTES);
+    }
+
+    /**
+     * Returns the size of an inline leaf cell, to decide whether a value fits in its leaf.
+     */
+    static int inlineCellBytes(byte[] key, byte[] value) {
+        return INLINE_CELL_BYTES + key.length + value.length;
+    }
+
+    /**
+     * Returns the size of the node once encoded.
+     */
+    int encodedBytes() {
+        int bytes = HEADER_BYTES;
+        if (type == LEAF) {
+            for (int i = 0; i < keys.size(); i++) {
+                bytes += cellBytes(keys.get(i), cells.get(i));
+            }
+        } else if (type == INTERNAL) {
+            bytes += 4;
+            for (byte[] key : keys) {
+                bytes += 2 + key.length + 4;
+            }
+        } else if (type == OVERFLOW) {
+            bytes += 2 + data.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the index of a key in a leaf, or {@code -(insertion point) - 1}
+     * if absent, as {@link Arrays#binarySearch(Object[], Object)} does.
+     */
+    int search(byte[] key) {
+        int low = 0;
+        int high = keys.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = compare(keys.get(middle), key);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the index of the child of an internal node that may hold a key.
+     */
+    int childIndex(byte[] key) {
+        int index = search(key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Compares keys as unsigned bytes, which orders UTF-8 keys by code point.
+     */
+    static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /**
+     * Writes the node to a page buffer, from its position.
+     */
+    void encode(ByteBuffer page) {
+        page.put(type).put((byte) 0).putShort((short) keys.size()).putInt(next);
+        if (type == LEAF) {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i);
+                Cell cell = cells.get(i);
+                page.putShort((short) key.length).put(key);
+                if (cell.inline != null) {
+                    page.put((byte) 0).putShort((short) cell.inline.length).put(cell.inline);
+                } else {
+                    page.put((byte) 1).putInt(cell.length).putInt(cell.firstPage);
+                }
+            }
+        } else if (type == INTERNAL) {
+            page.putInt(children.get(0));
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i);
+                page.putShort((short) key.length).put(key).putInt(children.get(i + 1));
+            }
+        } else if (type == OVERFLOW) {
+            page.putShort((short) data.length).put(data);
+        }
+    }
+
+    /**
+     * Reads a node from a page buffer, from its position.
+     */
+    static Node decode(int id, ByteBuffer page) {
+        byte type = page.get();
+        page.get();
+        int count = Short.toUnsignedInt(page.getShort());
+        Node node = new Node(id, type);
+        node.next = page.getInt();
+        if (type == LEAF) {
+            for (int i = 0; i < count; i++) {
+                node.keys.add(bytes(page, Short.toUnsignedInt(page.getShort())));
+                if (page.get() == 0) {
+                    node.cells.add(new Cell(bytes(page, Short.toUnsignedInt(page.getShort())), 0, 0));
+                } else {
+                    node.cells.add(new Cell(null, page.getInt(), page.getInt()));
+                }
+            }
+        } else if (type == INTERNAL) {
+            node.children.add(page.getInt());
+            for (int i = 0; i < count; i++) {
+                node.keys.add(bytes(page, Short.toUnsignedInt(page.getShort())));
+                node.children.add(page.getInt());
+            }
+        } else if (type == OVERFLOW) {
+            node.data = bytes(page, Short.toUnsignedInt(page.getShort()));
+        }
+        return node;
+    }
+
+    private static byte[] bytes(ByteBuffer page, int length) {
+        byte[] bytes = new byte[length];
+        page.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * The value of a leaf key: inline, or the length and first page of a value
+     * stored in overflow pages.
+     */
+    record Cell(byte[] inline, int length, int firstPage) {
+    }
+}
@@ -0,0 +1,249 @@
+package com.bookadvisor.storage.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of decoded pages with clock eviction.
+ * <p>
+ * Frames sit on a ring swept by a clock hand. A hit sets the frame's reference
+ * bit; the hand clears reference bits as it passes and evicts the first frame
+ * found unreferenced. Dirty frames are never evicted: they only reach the file
+ * at a checkpoint, so the file always holds the tree of the last checkpoint
+ * (see {@link BPlusTree}). Frames used by the current operation are not
+ * evicted either, so the nodes along its path stay valid while it runs.
+ * </p>
+ * <p>
+ * If every frame is dirty or in use, the cache grows past its capacity; the
+ * tree checkpoints before that happens in practice.
+ * </p>
+ */
+final class PageCache {
+
+    // File the pages are read from
+    private final PageFile file;
+    // Frames kept before evicting
+    private final int capacity;
+    // Frames by page number
+    private final Map<Integer, Frame> frames = new HashMap<>();
+    // Frames in clock order
+    private final List<Frame> ring = new ArrayList<>();
+    // Position of the clock hand on the ring
+    private int hand;
+    // Number of dirty frames
+    private int dirty;
+    // Current operation, to spare the frames it uses
+    private long operation;
+    // Buffer pages are read into
+    private final ByteBuffer buffer;
+
+    // Statistics
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache over a page file.
+     *
+     * @param file     the page file
+     * @param pageSize the size of the pages
+     * @param capacity the number of pages kept in memory
+     */
+    PageCache(PageFile file, int pageSize, int capacity) {
+        this.file = file;
+        this.capacity = Math.max(8, capacity);
+        this.buffer = ByteBuffer.allocate(pageSize);
+    }
+
+    /**
+     * Starts a new operation: the frames used from now on are kept until the next one.
+     */
+    void beginOperation() {
+        operation++;
+    }
+
+    /**
+     * Returns a page, reading it from the file if it is not cached.
+     *
+     * @param id the page number
+     * @return the decoded page
+     * @throws IOException if the page cannot be read
+     */
+    Node get(int id) throws IOException {
+        Frame frame = frames.get(id);
+        if (frame != null) {
+            hits++;
+            frame.referenced = true;
+            frame.operation = operation;
+            return frame.node;
+        }
+        misses++;
+        buffer.clear();
+        file.read(id, buffer);
+        buffer.flip();
+        Node node = Node.decode(id, buffer);
+        insert(node, false);
+        return node;
+    }
+
+    /**
+     * Adds a new page, dirty, replacing any cached copy of the same page.
+     *
+     * @param node the page
+     */
+    void add(Node node) {
+        Frame frame = frames.get(node.id);
+        if (frame != null) {
+            frame.node = node;
+            markDirty(frame);
+            frame.operation = operation;
+        } else {
+            insert(node, true);
+        }
+    }
+
+    /**
+     * Marks a page changed. The page must be cached, which holds for the pages
+     * of the current operation.
+     *
+     * @param node the changed page
+     */
+    void markDirty(Node node) {
+        Frame frame = frames.get(node.id);
+        if (frame == null || frame.node != node) {
+            throw new IllegalStateException("Page " + node.id + " is not cached");
+        }
+        markDirty(frame);
+    }
+
+    private void markDirty(Frame frame) {
+        if (!frame.dirty) {
+            frame.dirty = true;
+            dirty++;
+        }
+    }
+
+    /**
+     * Returns the number of dirty pages.
+     *
+     * @return the dirty page count
+     */
+    int getDirtyCount() {
+        return dirty;
+    }
+
+    /**
+     * Returns the number of pages kept before evicting.
+     *
+     * @return the capacity
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the dirty pages, in page order.
+     *
+     * @return the dirty pages
+     */
+    List<Node> getDirtyPages() {
+        List<Node> pages = new ArrayList<>(dirty);
+        for (Frame frame : ring) {
+            if (frame.dirty) {
+                pages.add(frame.node);
+            }
+        }
+        pages.sort((a, b) -> Integer.compare(a.id, b.id));
+        return pages;
+    }
+
+    /**
+     * Marks every page clean, once the dirty pages are written to the file.
+     */
+    void markAllClean() {
+        for (Frame frame : ring) {
+            frame.dirty = false;
+        }
+        dirty = 0;
+    }
+
+    /**
+     * Drops every page, e.g. after the file was changed underneath the cache.
+     */
+    void clear() {
+        frames.clear();
+        ring.clear();
+        hand = 0;
+        dirty = 0;
+    }
+
+    /**
+     * Returns the fraction of lookups served from memory.
+     *
+     * @return the hit ratio, 0 before any lookup
+     */
+    double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private void insert(Node node, boolean isDirty) {
+        Frame frame = new Frame(node);
+        frame.operation = operation;
+        frame.referenced = true;
+        Frame victim = ring.size() >= capacity ? victim() : null;
+        if (victim != null) {
+            frames.remove(victim.node.id);
+            frame.slot = victim.slot;
+            ring.set(victim.slot, frame);
+        } else {
+            frame.slot = ring.size();
+            ring.add(frame);
+        }
+        frames.put(node.id, frame);
+        if (isDirty) {
+            markDirty(frame);
+        }
+    }
+
+    /**
+     * Sweeps the clock hand to the first clean, unreferenced frame not used by
+     * the current operation.
+     *
+     * @return the frame to evict, or null if there is none
+     */
+    private Frame victim() {
+        // Two turns: the first may only clear reference bits
+        for (int step = 0; step < ring.size() * 2; step++) {
+            Frame frame = ring.get(hand);
+            hand = (hand + 1) % ring.size();
+            if (frame.dirty || frame.operation == operation) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+            } else {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A cached page with its clock state.
+     */
+    private static final class Frame {
+        Node node;
+        int slot;
+        boolean referenced;
+        boolean dirty;
+        long operation;
+
+        Frame(Node node) {
+            this.node = node;
+        }
+    }
+}
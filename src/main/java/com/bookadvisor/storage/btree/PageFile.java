@@ -0,0 +1,110 @@
+package com.bookadvisor.storage.btree;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File made of fixed-size pages, read and written whole through a
+ * {@link FileChannel}. The file is locked while open, so only one process uses
+ * it at a time.
+ */
+final class PageFile implements Closeable {
+
+    // Open file
+    private final FileChannel channel;
+    // Size of every page
+    private final int pageSize;
+    // Lock held while the file is open
+    private final FileLock lock;
+
+    /**
+     * Opens a page file, creating it if needed.
+     *
+     * @param file     the file
+     * @param pageSize the size of the pages
+     * @throws IOException if the file cannot be opened, or is used by another process
+     */
+    PageFile(Path file, int pageSize) throws IOException {
+        this.pageSize = pageSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileLock held;
+        try {
+            held = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            held = null;
+        }
+        if (held == null) {
+            channel.close();
+            throw new IOException("Tree file is already open: " + file);
+        }
+        this.lock = held;
+    }
+
+    /**
+     * Returns the number of pages in the file.
+     *
+     * @return the page count
+     * @throws IOException if the size cannot be read
+     */
+    int getPageCount() throws IOException {
+        return (int) (channel.size() / pageSize);
+    }
+
+    /**
+     * Reads a page.
+     *
+     * @param id     the page number
+     * @param buffer receives the page, from its position
+     * @throws IOException if the page cannot be read, or is beyond the end of the file
+     */
+    void read(int id, ByteBuffer buffer) throws IOException {
+        long position = (long) id * pageSize;
+        int start = buffer.position();
+        while (buffer.position() - start < pageSize) {
+            int read = channel.read(buffer, position + buffer.position() - start);
+            if (read < 0) {
+                throw new EOFException("Page " + id + " is beyond the end of the file");
+            }
+        }
+    }
+
+    /**
+     * Writes a page.
+     *
+     * @param id     the page number
+     * @param buffer the page, from its position to its limit
+     * @throws IOException if the page cannot be written
+     */
+    void write(int id, ByteBuffer buffer) throws IOException {
+        long position = (long) id * pageSize;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Forces the written pages to the storage device.
+     *
+     * @throws IOException if the file cannot be synced
+     */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.bookadvisor.storage.btree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of a tree file.
+ * <p>
+ * Every change is logged as an operation (put or delete of a key) before it is
+ * applied to the cached pages. A checkpoint logs the images of the changed
+ * pages followed by an end marker, and only then writes the pages to the tree
+ * file; the log is emptied once the tree file is synced. Records are:
+ * </p>
+ * <pre>
+ * u8 type | i32 payload length | payload | u32 CRC32 of type and payload
+ * </pre>
+ * <p>
+ * A record cut short or with a wrong checksum ends the log: it was being
+ * written when the process stopped.
+ * </p>
+ */
+final class WriteAheadLog implements Closeable {
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+    static final byte PAGE = 3;
+    static final byte CHECKPOINT = 4;
+
+    // Bytes of a record besides its payload
+    private static final int RECORD_BYTES = 1 + 4 + 4;
+
+    // Open log file
+    private final FileChannel channel;
+    // Bytes written so far
+    private long size;
+    // Reused record buffer
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    /**
+     * Opens a log, creating it if needed. New records go after the valid ones.
+     *
+     * @param file the log file
+     * @throws IOException if the log cannot be opened
+     */
+    WriteAheadLog(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+
+    /**
+     * Returns the bytes written to the log since it was last emptied.
+     *
+     * @return the log size
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Logs the put of a key.
+     *
+     * @param key   the key
+     * @param value the value
+     * @throws IOException if the record cannot be written
+     */
+    void put(byte[] key, byte[] value) throws IOException {
+        ByteBuffer record = start(PUT, 4 + key.length + value.length);
+        record.putInt(key.length).put(key).put(value);
+        finish(record);
+    }
+
+    /**
+     * Logs the delete of a key.
+     *
+     * @param key the key
+     * @throws IOException if the record cannot be written
+     */
+    void delete(byte[] key) throws IOException {
+        ByteBuffer record = start(DELETE, key.length);
+        record.put(key);
+        finish(record);
+    }
+
+    /**
+     * Logs the image of a page, part of a checkpoint.
+     *
+     * @param id   the page number
+     * @param page the page, from its position to its limit
+     * @throws IOException if the record cannot be written
+     */
+    void page(int id, ByteBuffer page) throws IOException {
+        ByteBuffer record = start(PAGE, 4 + page.remaining());
+        record.putInt(id).put(page);
+        finish(record);
+    }
+
+    /**
+     * Logs the end of a checkpoint: the page images before it are complete.
+     *
+     * @throws IOException if the record cannot be written
+     */
+    void checkpoint() throws IOException {
+        finish(start(CHECKPOINT, 0));
+    }
+
+    /**
+     * Forces the log to the storage device.
+     *
+     * @throws IOException if the log cannot be synced
+     */
+    void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Empties the log, once everything it holds is in the tree file.
+     *
+     * @throws IOException if the log cannot be truncated
+     */
+    void reset() throws IOException {
+        channel.truncate(0);
+        channel.force(false);
+        size = 0;
+    }
+
+    /**
+     * Reads the valid records of the log, in order. Anything after the first
+     * invalid record is truncated, so new records follow the valid ones.
+     *
+     * @param visitor receives the records
+     * @throws IOException if the log cannot be read
+     */
+    void replay(Visitor visitor) throws IOException {
+        long position = 0;
+        long end = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(5);
+        while (position + RECORD_BYTES <= end) {
+            header.clear();
+            readFully(header, position);
+            byte type = header.get(0);
+            int length = header.getInt(1);
+            if (length < 0 || position + RECORD_BYTES + length > end) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length + 4);
+            readFully(record, position + 5);
+            CRC32 crc = new CRC32();
+            crc.update(type);
+            crc.update(record.array(), 0, length);
+            if ((int) crc.getValue() != record.getInt(length)) {
+                break;
+            }
+            record.clear().limit(length);
+            switch (type) {
+                case PUT -> {
+                    byte[] key = new byte[record.getInt()];
+                    record.get(key);
+                    byte[] value = new byte[record.remaining()];
+                    record.get(value);
+                    visitor.put(key, value);
+                }
+                case DELETE -> {
+                    byte[] key = new byte[length];
+                    record.get(key);
+                    visitor.delete(key);
+                }
+                case PAGE -> visitor.page(record.getInt(), record.slice());
+                case CHECKPOINT -> visitor.checkpoint();
+                default -> throw new IOException("Unknown log record type " + type);
+            }
+            position += RECORD_BYTES + length;
+        }
+        if (position < end) {
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Log ended while reading a record");
+            }
+        }
+    }
+
+    private ByteBuffer start(byte type, int length) {
+        if (buffer.capacity() < length + RECORD_BYTES) {
+            buffer = ByteBuffer.allocate(Math.max(length + RECORD_BYTES, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        return buffer.put(type).putInt(length);
+    }
+
+    private void finish(ByteBuffer record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record.get(0));
+        crc.update(record.array(), 5, record.position() - 5);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            size += channel.write(record, size);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Receives the records of a log.
+     */
+    interface Visitor {
+        void put(byte[] key, byte[] value) throws IOException;
+
+        void delete(byte[] key) throws IOException;
+
+        void page(int id, ByteBuffer page) throws IOException;
+
+        void checkpoint() throws IOException;
+    }
+}
@@ -0,0 +1,36 @@
+package com.bookadvisor.strategy;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.btree.BTreeBookStore;
+
+/**
+ * Implementation of the {@link SaveStrategy} interface that saves a book in a
+ * {@link BTreeBookStore}, for libraries too large for the library file.
+ */
+public class BTreeSaveStrategy implements SaveStrategy {
+
+    private final BTreeBookStore store;
+
+    /**
+     * Creates a strategy saving to the given tree library.
+     *
+     * @param store the open tree library
+     */
+    public BTreeSaveStrategy(BTreeBookStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns the tree library the books are saved to.
+     *
+     * @return the store
+     */
+    public BTreeBookStore getStore() {
+        return store;
+    }
+
+    @Override
+    public void save(BookDto book) {
+        store.save(book);
+    }
+}
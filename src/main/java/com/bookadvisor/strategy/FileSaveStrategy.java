@@ -11,7 +11,24 @@ import com.bookadvisor.service.BookLibraryService;
  */
 public class FileSaveStrategy implements SaveStrategy {
 
-    private final BookLibraryService service = new BookLibraryService();
+    private final BookLibraryService service;
+
+    /**
+     * Creates a strategy saving through a new BookLibraryService.
+     */
+    public FileSaveStrategy() {
+        this(new BookLibraryService());
+    }
+
+    /**
+     * Creates a strategy saving through the given service, so that its observers
+     * are notified of the books saved by this strategy.
+     *
+     * @param service the service used to save books
+     */
+    public FileSaveStrategy(BookLibraryService service) {
+        this.service = service;
+    }
 
     @Override
     public void save(BookDto book) {
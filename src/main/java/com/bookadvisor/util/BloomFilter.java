@@ -0,0 +1,79 @@
+package com.bookadvisor.util;
+
+/**
+ * Bloom filter over {@code long} values.
+ * <p>
+ * Answers "might this value have been added?" from a bit array, with no false
+ * negatives and a false positive rate chosen at creation. Values cannot be
+ * removed; a filter that became too full or stale is rebuilt instead. Not
+ * thread-safe.
+ * </p>
+ */
+public class BloomFilter {
+
+    // Bits of the filter
+    private final long[] bits;
+    // Number of bits
+    private final long bitCount;
+    // Bits set per value
+    private final int hashes;
+    // Number of values the filter was sized for
+    private final long expected;
+
+    /**
+     * Creates a filter sized for a number of values and a false positive rate.
+     *
+     * @param expected          the number of values expected
+     * @param falsePositiveRate the rate of false positives once full, e.g. 0.01
+     */
+    public BloomFilter(long expected, double falsePositiveRate) {
+        this.expected = Math.max(1, expected);
+        long optimal = (long) Math.ceil(-this.expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (Math.max(64, optimal) + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) bitCount / this.expected * Math.log(2)));
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(long value) {
+        long hash = Hashes.mix(value);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Returns whether a value might have been added: false means it certainly was not.
+     *
+     * @param value the value
+     * @return false if the value was never added
+     */
+    public boolean mightContain(long value) {
+        long hash = Hashes.mix(value);
+        long h1 = hash >>> 32;
+        long h2 = hash & 0xFFFFFFFFL;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of values the filter was sized for.
+     *
+     * @return the expected number of values
+     */
+    public long getExpected() {
+        return expected;
+    }
+}
@@ -0,0 +1,137 @@
+package com.bookadvisor.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor that runs tasks concurrently while never exceeding a fixed number
+ * of tasks in flight.
+ * <p>
+ * When the running JDK supports virtual threads, each task gets its own virtual
+ * thread and a semaphore enforces the limit. On older JDKs a fixed pool of daemon
+ * platform threads sized to the limit is used instead.
+ * </p>
+ */
+public class BoundedExecutor implements AutoCloseable {
+
+    // Underlying executor (virtual-thread-per-task or fixed pool)
+    private final ExecutorService delegate;
+    // Permits limiting the number of tasks running at the same time
+    private final Semaphore permits;
+    // Maximum number of concurrent tasks
+    private final int limit;
+    // True if the delegate runs tasks on virtual threads
+    private final boolean virtual;
+
+    /**
+     * Creates a new bounded executor.
+     *
+     * @param name  prefix used for the names of platform threads
+     * @param limit maximum number of tasks running at the same time
+     */
+    public BoundedExecutor(String name, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1: " + limit);
+        }
+        this.limit = limit;
+        this.permits = new Semaphore(limit);
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtual = virtualExecutor != null;
+        this.delegate = virtual ? virtualExecutor : Executors.newFixedThreadPool(limit, daemonThreads(name));
+    }
+
+    /**
+     * Submits a task for execution. The task waits for a free permit on its own
+     * thread, so the caller never blocks.
+     *
+     * @param task the task to run
+     * @param <T>  the result type of the task
+     * @return a future that can be used to wait for or cancel the task
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return delegate.submit(() -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Returns the maximum number of tasks that can run at the same time.
+     *
+     * @return the concurrency limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns whether tasks run on virtual threads.
+     *
+     * @return true if virtual threads are used, false for a platform thread pool
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Stops accepting new tasks and interrupts the running ones.
+     */
+    @Override
+    public void close() {
+        delegate.shutdownNow();
+    }
+
+    /**
+     * Waits for running tasks to finish after {@link #close()}.
+     *
+     * @param millis maximum time to wait in milliseconds
+     * @return true if all tasks finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long millis) throws InterruptedException {
+        return delegate.awaitTermination(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor through reflection, so the code
+     * still compiles and runs on JDK 17.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Not available on this JDK (or preview features disabled)
+            return null;
+        }
+    }
+
+    /**
+     * Returns a thread factory producing named daemon threads, so idle pools
+     * never keep the CLI from exiting.
+     *
+     * @param name prefix for the thread names
+     * @return the thread factory
+     */
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread t = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.bookadvisor.util;
+
+/**
+ * 64-bit hash functions for the primitive hash structures.
+ */
+public final class Hashes {
+
+    private Hashes() {
+    }
+
+    /**
+     * Returns the FNV-1a hash of bytes, mixed so every input bit affects every output bit.
+     *
+     * @param bytes the bytes
+     * @return the hash
+     */
+    public static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Mixes the bits of a value (the finalizer of MurmurHash3), so that close
+     * values get unrelated hashes.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bookadvisor.util;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hash map with primitive {@code long} keys, using open addressing with
+ * linear probing.
+ * <p>
+ * Keys and values sit in two flat arrays, so a lookup is a hash and a few
+ * array reads, with no boxing and no entry objects. Removal shifts the
+ * following entries back instead of leaving tombstones, so lookups stay short
+ * however many keys were removed. Values must not be null: a null value marks
+ * an empty slot. Not thread-safe.
+ * </p>
+ *
+ * @param <V> the value type
+ */
+public class LongHashMap<V> {
+
+    // Largest fill ratio before the table doubles
+    private static final double MAX_LOAD = 0.6;
+
+    // Keys, by slot
+    private long[] keys;
+    // Values, by slot (null for an empty slot)
+    private Object[] values;
+    // Slot count minus one (the slot count is a power of two)
+    private int mask;
+    // Number of entries
+    private int size;
+
+    /**
+     * Creates a map sized for the given number of entries.
+     *
+     * @param expected the number of entries expected
+     */
+    public LongHashMap(int expected) {
+        int capacity = Integer.highestOneBit((int) Math.max(4, Math.min(1 << 30, expected / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether a key is present.
+     *
+     * @param key the key
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   the key
+     * @param value the value, not null
+     * @return the previous value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        int slot = slot(key);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) * MAX_LOAD) {
+            resize((mask + 1) * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key the key
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slot(key);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return null;
+        }
+        V removed = (V) values[slot];
+        // Shift back the entries whose probe sequence ran through the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        values[free] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls the consumer with every key, in no particular order.
+     *
+     * @param consumer receives the keys
+     */
+    public void forEachKey(LongConsumer consumer) {
+        for (int slot = 0; slot <= mask; slot++) {
+            if (values[slot] != null) {
+                consumer.accept(keys[slot]);
+            }
+        }
+    }
+
+    private int slot(long key) {
+        return (int) Hashes.mix(key) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldValues[slot] != null) {
+                int target = slot(oldKeys[slot]);
+                while (values[target] != null) {
+                    target = (target + 1) & mask;
+                }
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.bookadvisor.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent loads of the same key into a single call.
+ * <p>
+ * The first caller for a key starts the loader; callers arriving while it is
+ * still running wait for the same result instead of loading it again. A failure
+ * is delivered to every waiting caller and is not remembered: the next call for
+ * the key runs the loader again. Completed results are not kept either (caching
+ * is left to the caller).
+ * </p>
+ * <p>
+ * The loader runs on a thread of its own rather than on the first caller's, so
+ * that no caller can interrupt a load others are waiting for: an interrupted
+ * caller, e.g. one that was cancelled or timed out, only stops waiting, and the
+ * load goes on for the other callers.
+ * </p>
+ *
+ * @param <K> the key type (typically a URL)
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+
+    /**
+     * Loads the value for a key.
+     *
+     * @param <V> the result type
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    // Runs the loads; threads are created as needed and end when idle
+    private static final ExecutorService LOADS = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "single-flight-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // Loads currently running, by key
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    // Number of calls that were served by another caller's load
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Returns the value for a key, starting the loader only if no load for the same
+     * key is already in progress, and waits for it.
+     *
+     * @param key    the key
+     * @param loader loads the value
+     * @return the loaded value
+     * @throws IOException if the load fails (for this caller or the one it waited on),
+     *                     or {@link InterruptedIOException} if this caller is interrupted
+     *                     while waiting; the load itself goes on
+     */
+    public V execute(K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        LOADS.execute(() -> {
+            V value;
+            try {
+                value = loader.load();
+            } catch (IOException | RuntimeException | Error e) {
+                inFlight.remove(key, mine);
+                mine.completeExceptionally(e);
+                return;
+            }
+            // Removed first: a caller arriving once this one has its value loads again
+            inFlight.remove(key, mine);
+            mine.complete(value);
+        });
+        return await(mine);
+    }
+
+    /**
+     * Returns the number of loads currently in progress.
+     *
+     * @return the number of in-flight keys
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Returns the number of calls that waited on another caller's load instead of
+     * loading the value themselves.
+     *
+     * @return the coalesced call count
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Waits for a load and rethrows its failure.
+     */
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an in-flight request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.bookadvisor;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+
+/**
+ * Books shared by the tests and benchmarks that need a library to work on.
+ */
+public final class TestBooks {
+
+    private TestBooks() {
+    }
+
+    /**
+     * Returns a builder set up for book number {@code i}: work key
+     * {@code /works/OL<i>W}, title "Book i", one of 50 authors, an Open Library
+     * cover and a short description. Tests needing other values change them on
+     * the builder.
+     *
+     * @param i the number of the book
+     * @return the builder
+     */
+    public static BookDtoBuilder builder(int i) {
+        return new BookDtoBuilder().key("/works/OL" + i + "W").title("Book " + i).author("Author " + i % 50)
+                .coverUrl("https://covers.openlibrary.org/b/id/" + i + "-M.jpg").publishDate("2000")
+                .description("About book " + i);
+    }
+
+    /**
+     * Returns book number {@code i}, as set up by {@link #builder(int)}.
+     *
+     * @param i the number of the book
+     * @return the book
+     */
+    public static BookDto book(int i) {
+        return builder(i).build();
+    }
+
+    /**
+     * Returns a book with the given key and title, and fixed other fields.
+     *
+     * @param key   the key of the book
+     * @param title the title of the book
+     * @return the book
+     */
+    public static BookDto book(String key, String title) {
+        return new BookDtoBuilder().key(key).title(title).author("Author").coverUrl("N/A")
+                .publishDate("2000").description("About " + title).build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.bookadvisor.batch;
+
+import com.bookadvisor.http.StubServer;
+import com.bookadvisor.service.BookService;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BatchSearchRunner} class, run against a local stub server.
+ */
+public class BatchSearchRunnerTest {
+
+    /**
+     * Tests that every query produces one JSON line and that the summary counts them.
+     */
+    @Test
+    public void testEveryQueryProducesOneJsonLine() throws Exception {
+        System.out.println("__________Testing BatchSearchRunner________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 2, Duration.ofSeconds(2))) {
+            server.json("/search.json", "{\"docs\":[{\"key\":\"/works/OL1W\",\"title\":\"Batch Book\"}]}");
+            server.json("/works/OL1W.json", "{\"description\":\"Batch description\"}");
+
+            String queries = "java\n\n# comment\npython\nrust\nkotlin\n";
+            StringWriter out = new StringWriter();
+            BatchSummary summary = new BatchSearchRunner(service, 3).run(new StringReader(queries), out);
+
+            List<String> lines = out.toString().lines().toList();
+            assertEquals(4, lines.size());
+            Set<String> seen = new HashSet<>();
+            for (String line : lines) {
+                JSONObject json = new JSONObject(line);
+                seen.add(json.getString("query"));
+                assertEquals("Batch Book", json.getJSONArray("results").getJSONObject(0).getString("title"));
+            }
+            assertEquals(Set.of("java", "python", "rust", "kotlin"), seen);
+
+            assertEquals(4, summary.getQueries());
+            assertEquals(0, summary.getFailures());
+            assertTrue(summary.getP99Millis() >= summary.getP50Millis());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bookadvisor.benchmark;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.CompressedLibraryFile;
+import com.bookadvisor.storage.LibraryLog;
+import com.bookadvisor.storage.LibraryStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the plain text library and the block-compressed library:
+ * full scans and point lookups. The file sizes, and so the compression ratio,
+ * are printed when each library is created. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.openjdk.jmh.Main CompressedLibraryBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressedLibraryBenchmark {
+
+    @Param({"text", "compressed"})
+    public String format;
+
+    @Param({"200000"})
+    public int books;
+
+    // Words the descriptions are made of
+    private static final String[] WORDS = ("the a story of love war family journey city house river night king "
+            + "young old woman man child friend secret letter dream death life world history first last").split(" ");
+
+    private Path file;
+    private LibraryStore store;
+
+    @Setup(Level.Trial)
+    public void createLibrary() throws IOException {
+        List<BookDto> library = new ArrayList<>(books);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < books; i++) {
+            StringBuilder description = new StringBuilder();
+            for (int w = 0; w < 60; w++) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            library.add(new BookDto("Book " + i, "Author " + i % 5_000, "https://covers.openlibrary.org/b/id/" + i + "-M.jpg",
+                    String.valueOf(1900 + i % 120), "/works/OL" + i + "W", description.toString().strip()));
+        }
+        file = Files.createTempFile("library-" + format, format.equals("text") ? ".txt" : ".bkz");
+        store = format.equals("text") ? new LibraryLog(file) : new CompressedLibraryFile(file, CompressedLibraryFile.DEFAULT_BLOCK_BYTES);
+        store.replaceAll(library);
+        System.out.printf("%n%s library: %d books in %d bytes%n", format, books, Files.size(file));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLibrary() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(file.resolveSibling(file.getFileName() + ".lock"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int scan() throws IOException {
+        return store.loadAll().size();
+    }
+
+    @Benchmark
+    public BookDto lookup() throws IOException {
+        String key = "/works/OL" + ThreadLocalRandom.current().nextInt(books) + "W";
+        return store instanceof LibraryLog log ? log.get(key) : ((CompressedLibraryFile) store).get(key);
+    }
+}
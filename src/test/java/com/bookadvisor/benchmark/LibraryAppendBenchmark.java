@@ -0,0 +1,65 @@
+package com.bookadvisor.benchmark;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.storage.DurabilityPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of {@link BookLibraryService#saveBook(BookDto)} written
+ * directly (one write per book) and in write-behind mode with several
+ * durability policies. Write-behind throughput is bounded by the writer thread
+ * once its queue is full. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.openjdk.jmh.Main LibraryAppendBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LibraryAppendBenchmark {
+
+    @Param({"direct", "everyWrite", "every1000", "every10ms"})
+    public String mode;
+
+    private Path file;
+    private BookLibraryService library;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void openLibrary() throws IOException {
+        file = Files.createTempFile("library-append", ".txt");
+        library = new BookLibraryService(file.toString());
+        switch (mode) {
+            case "everyWrite" -> library.enableWriteBehind(DurabilityPolicy.everyWrite(), false);
+            case "every1000" -> library.enableWriteBehind(DurabilityPolicy.everyRecords(1_000), false);
+            case "every10ms" -> library.enableWriteBehind(DurabilityPolicy.every(Duration.ofMillis(10)), false);
+            default -> {
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLibrary() throws IOException {
+        library.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void saveBook() {
+        int i = next++;
+        library.saveBook(new BookDto("Book " + i, "Author", "https://covers.openlibrary.org/b/id/" + i + "-M.jpg",
+                "2000", "/works/OL" + i + "W", "A short description."));
+    }
+}
@@ -0,0 +1,100 @@
+package com.bookadvisor.benchmark;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.BinaryLibraryFile;
+import com.bookadvisor.storage.LibraryConverter;
+import com.bookadvisor.storage.LibraryScanner;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the line-by-line library loader (one thread, {@code FileReader}
+ * and {@code String.split}) with the memory-mapped, chunked {@link LibraryScanner}
+ * at several pool sizes, on a generated library of 500,000 books. The same
+ * library converted to the binary format is loaded for comparison. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.openjdk.jmh.Main LibraryLoadBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LibraryLoadBenchmark {
+
+    private static final int BOOKS = 500_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path file;
+    private Path binary;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void writeLibrary() throws IOException {
+        file = Files.createTempFile("library-bench", ".txt");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < BOOKS; i++) {
+                out.write("The Book Number " + i + "||Author " + (i % 5000) + "||https://covers.openlibrary.org/b/id/"
+                        + i + "-M.jpg||19" + (i % 100) + "||A short description of the book, about sixty chars long."
+                        + "||/works/OL" + i + "W");
+                out.newLine();
+            }
+        }
+        binary = Files.createTempFile("library-bench", ".bin");
+        LibraryConverter.toBinary(file, binary);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void deleteLibrary() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(binary);
+    }
+
+    @Benchmark
+    public List<BookDto> lineByLine() throws IOException {
+        List<BookDto> books = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|\\|");
+                String title = parts.length > 0 ? parts[0] : "";
+                String author = parts.length > 1 ? parts[1] : "";
+                String coverUrl = parts.length > 2 ? parts[2] : "";
+                String publishDate = parts.length > 3 ? parts[3] : "";
+                String key = title + "||" + author + "||" + coverUrl + "||" + publishDate;
+                String description = parts.length > 4 ? parts[4] : "";
+                books.add(new BookDto(title, author, coverUrl, publishDate, key, description));
+            }
+        }
+        return books;
+    }
+
+    @Benchmark
+    public List<BookDto> chunked() throws IOException {
+        return LibraryScanner.readBooks(file, pool);
+    }
+
+    @Benchmark
+    public List<BookDto> binary() throws IOException {
+        return new BinaryLibraryFile(binary).loadAll();
+    }
+}
@@ -0,0 +1,84 @@
+package com.bookadvisor.benchmark;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.parser.DomResponseParser;
+import com.bookadvisor.parser.ResponseParser;
+import com.bookadvisor.parser.StreamingResponseParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of the DOM and streaming parsers on fixture responses.
+ * <p>
+ * The search fixture is a full {@code search.json} response (100 documents, all
+ * fields, as returned without {@code fields=}/{@code limit=}); both parsers emit
+ * the first 10 books. Run with:
+ * </p>
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.openjdk.jmh.Main ResponseParserBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseParserBenchmark {
+
+    private final ResponseParser dom = new DomResponseParser();
+    private final ResponseParser streaming = new StreamingResponseParser();
+
+    private String searchJson;
+    private String workJson;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        searchJson = fixture("search-lord-of-the-rings.json");
+        workJson = fixture("work-OL27448W.json");
+    }
+
+    @Benchmark
+    public void searchDom(Blackhole bh) throws IOException {
+        dom.parseSearch(new StringReader(searchJson), 10, bh::consume);
+    }
+
+    @Benchmark
+    public void searchStreaming(Blackhole bh) throws IOException {
+        streaming.parseSearch(new StringReader(searchJson), 10, bh::consume);
+    }
+
+    @Benchmark
+    public String workDom() throws IOException {
+        return dom.parseDescription(new StringReader(workJson));
+    }
+
+    @Benchmark
+    public String workStreaming() throws IOException {
+        return streaming.parseDescription(new StringReader(workJson));
+    }
+
+    /**
+     * Loads a fixture response from the test classpath.
+     *
+     * @param name the fixture file name
+     * @return the fixture content
+     * @throws IOException if the fixture cannot be read
+     */
+    static String fixture(String name) throws IOException {
+        try (InputStream in = BookDto.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing fixture: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
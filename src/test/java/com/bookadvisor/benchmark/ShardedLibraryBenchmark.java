@@ -0,0 +1,80 @@
+package com.bookadvisor.benchmark;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.ShardedLibrary;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.bookadvisor.TestBooks.book;
+
+/**
+ * JMH measurement of a {@link ShardedLibrary} by number of shards: saves from
+ * four threads at once, which only wait for each other within a shard, and
+ * loads of the whole library, which read the shards on separate threads. With
+ * one shard both match a single library file. Run with:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     org.openjdk.jmh.Main ShardedLibraryBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedLibraryBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int shards;
+
+    // Books in the library loaded by the load benchmark
+    private static final int BOOKS = 200_000;
+
+    private Path dir;
+    private ShardedLibrary library;
+    private final AtomicInteger next = new AtomicInteger(BOOKS);
+
+    @Setup(Level.Trial)
+    public void createLibrary() throws IOException {
+        dir = Files.createTempDirectory("library-shards");
+        library = ShardedLibrary.reshard(dir.resolve("library.txt"), shards);
+        List<BookDto> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(book(i));
+        }
+        library.putAll(books);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLibrary() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void put() throws IOException {
+        library.put(book(next.getAndIncrement()));
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1, time = 1)
+    @Measurement(iterations = 3, time = 1)
+    public int loadAll() throws IOException {
+        return library.loadAll().size();
+    }
+}
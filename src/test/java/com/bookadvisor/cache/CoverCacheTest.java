@@ -0,0 +1,74 @@
+package com.bookadvisor.cache;
+
+import com.bookadvisor.http.StubServer;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.observer.CoverPrefetcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CoverCache} class, run against a local stub server.
+ */
+public class CoverCacheTest {
+
+    /**
+     * Tests that a cover saved through the prefetcher is downloaded once, then
+     * served from disk as a local file and through a channel.
+     */
+    @Test
+    public void testPrefetchedCoverIsServedLocally(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing CoverCache________________");
+        try (StubServer server = new StubServer();
+             CoverCache cache = new CoverCache(dir, server.newTransport())) {
+            server.json("/b/id/42-M.jpg", "fake jpeg bytes");
+            String url = server.getBaseUrl() + "/b/id/42-M.jpg";
+
+            assertNull(cache.lookup(url));
+            BookDto book = new BookDto("Title", "Author", url, "2001", "/works/OL1W", "");
+            new CoverPrefetcher(cache).update(book);
+            Path local = cache.prefetch(url).get(5, TimeUnit.SECONDS);
+
+            assertEquals("fake jpeg bytes", Files.readString(local, StandardCharsets.UTF_8));
+            assertEquals(local, cache.lookup(url));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long copied = cache.transferTo(url, Channels.newChannel(out));
+            assertEquals(15, copied);
+            assertEquals("fake jpeg bytes", out.toString(StandardCharsets.UTF_8));
+
+            assertEquals(1, server.hits("/b/id/42-M.jpg"));
+            assertEquals(1, cache.size());
+            assertEquals(0, cache.getFailureCount());
+        }
+    }
+
+    /**
+     * Tests that the sweeper drops entries whose file is gone and keeps the others.
+     */
+    @Test
+    public void testSweepRemovesMissingFiles(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing CoverCache sweep________________");
+        try (StubServer server = new StubServer();
+             CoverCache cache = new CoverCache(dir, server.newTransport())) {
+            server.json("/b/id/1-M.jpg", "cover one");
+            server.json("/b/id/2-M.jpg", "cover two");
+
+            Path first = cache.get("/b/id/1-M.jpg");
+            cache.get("/b/id/2-M.jpg");
+            Files.delete(first);
+
+            assertEquals(1, cache.sweep());
+            assertEquals(1, cache.size());
+            assertNotNull(cache.lookup("/b/id/2-M.jpg"));
+        }
+    }
+}
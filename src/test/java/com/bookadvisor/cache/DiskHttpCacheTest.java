@@ -0,0 +1,88 @@
+package com.bookadvisor.cache;
+
+import com.bookadvisor.http.HttpTransport;
+import com.bookadvisor.http.StubServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link DiskHttpCache} class, run against a local stub server.
+ */
+public class DiskHttpCacheTest {
+
+    private static final String WORK_JSON = "{\"description\":\"Cached description\"}";
+
+    /**
+     * Tests that a stale entry is revalidated with If-None-Match, that a 304 is
+     * served from disk, and that the index survives a new cache instance.
+     */
+    @Test
+    public void testRevalidationAcrossRestarts(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing DiskHttpCache revalidation________________");
+        try (StubServer server = new StubServer()) {
+            server.handle("/works/OL1W.json", exchange -> {
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    StubServer.respond(exchange, 304, "", false);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", "\"v1\"");
+                    StubServer.respond(exchange, 200, WORK_JSON, true);
+                }
+            });
+            HttpTransport transport = server.newTransport();
+
+            // Freshness of zero: every fetch after the first one is a revalidation
+            DiskHttpCache cache = new DiskHttpCache(dir, 1024 * 1024, Duration.ZERO);
+            assertEquals(WORK_JSON, text(cache.fetch(transport, "/works/OL1W.json")));
+            assertEquals(1, cache.getMissCount());
+
+            DiskHttpCache restarted = new DiskHttpCache(dir, 1024 * 1024, Duration.ZERO);
+            assertEquals(1, restarted.size());
+            assertEquals(WORK_JSON, text(restarted.fetch(transport, "/works/OL1W.json")));
+            assertEquals(1, restarted.getRevalidationCount());
+            assertEquals(0, restarted.getMissCount());
+
+            // A fresh entry does not contact the server at all
+            DiskHttpCache fresh = new DiskHttpCache(dir, 1024 * 1024, Duration.ofHours(1));
+            assertEquals(WORK_JSON, text(fresh.fetch(transport, "/works/OL1W.json")));
+            assertEquals(1, fresh.getHitCount());
+            assertEquals(2, server.hits("/works/OL1W.json"));
+        }
+    }
+
+    /**
+     * Tests that the least recently used entries are evicted when the size cap is exceeded.
+     */
+    @Test
+    public void testSizeCapEvictsLeastRecentlyUsed(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing DiskHttpCache size cap________________");
+        try (StubServer server = new StubServer()) {
+            String body = "x".repeat(400);
+            server.json("/a.json", body + "a");
+            server.json("/b.json", body + "b");
+            server.json("/c.json", body + "c");
+            HttpTransport transport = server.newTransport();
+
+            DiskHttpCache cache = new DiskHttpCache(dir, 1000, Duration.ofHours(1));
+            cache.fetch(transport, "/a.json");
+            cache.fetch(transport, "/b.json");
+            cache.fetch(transport, "/a.json");  // "b" is now the least recently used
+            cache.fetch(transport, "/c.json");
+
+            assertEquals(2, cache.size());
+            assertEquals(1, cache.getEvictionCount());
+            assertNull(cache.getStale(transport.resolve("/b.json").toString()));
+            assertNotNull(cache.getStale(transport.resolve("/a.json").toString()));
+            assertTrue(cache.getTotalBytes() <= 1000);
+        }
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
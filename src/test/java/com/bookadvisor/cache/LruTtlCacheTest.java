@@ -0,0 +1,81 @@
+package com.bookadvisor.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LruTtlCache} class.
+ */
+public class LruTtlCacheTest {
+
+    /**
+     * Tests that the least recently used entry is evicted when the cache is full.
+     */
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        System.out.println("__________Testing LruTtlCache eviction________________");
+        LruTtlCache<String, String> cache = new LruTtlCache<>(2, Duration.ofMinutes(1));
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");          // "b" is now the least recently used
+        cache.put("c", "C");
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Tests that entries expire after their time to live and that stale values
+     * can still be read explicitly.
+     */
+    @Test
+    public void testEntriesExpire() {
+        System.out.println("__________Testing LruTtlCache expiry________________");
+        AtomicLong now = new AtomicLong();
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, Duration.ofSeconds(5), v -> 1L, now::get);
+        cache.put("a", "A");
+
+        now.set(Duration.ofSeconds(4).toNanos());
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.getStale("a"));
+
+        now.set(Duration.ofSeconds(6).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals("A", cache.getStale("a"), "Expired values stay readable as stale");
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getExpirationCount());
+        assertEquals(1, cache.size());
+
+        cache.put("a", "A2");
+        assertEquals("A2", cache.get("a"));
+    }
+
+    /**
+     * Tests that the cache is bounded by the total weight of its values.
+     */
+    @Test
+    public void testWeightBound() {
+        System.out.println("__________Testing LruTtlCache weight________________");
+        LruTtlCache<String, String> cache = new LruTtlCache<>(10, Duration.ofMinutes(1), v -> (long) v.length());
+        cache.put("a", "123456");
+        cache.put("b", "1234");
+        assertEquals(10, cache.getWeight());
+
+        cache.put("c", "12");
+        assertNull(cache.get("a"));
+        assertEquals(6, cache.getWeight());
+
+        // Too heavy to be cached at all
+        cache.put("d", "12345678901");
+        assertNull(cache.get("d"));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,151 @@
+package com.bookadvisor.exchange;
+
+import com.bookadvisor.TestBooks;
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.storage.ShardedLibrary;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link LibraryExporter}, {@link BookRecordReader} and {@link LibraryImporter}.
+ */
+public class LibraryExchangeTest {
+
+    private static List<BookDto> books(int count) {
+        return IntStream.range(0, count).mapToObj(TestBooks::book).collect(Collectors.toList());
+    }
+
+    private static List<BookDto> read(String text, ExchangeFormat format) {
+        try (Stream<BookDto> books = new BookRecordReader(new StringReader(text), format, "test").stream()) {
+            return books.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Tests that awkward fields survive a round trip in both formats: commas,
+     * quotes, line breaks, unicode and, in JSON Lines, null values.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        System.out.println("__________Testing export and import round trip________________");
+        BookDto odd = new BookDtoBuilder().key("/works/OL1W").title("War, \"Peace\" \\ \t\u0001").author("Léon Tolstoï 📚")
+                .coverUrl(null).publishDate("1869").description("First line\r\nsecond, \"quoted\" line\n").build();
+        List<BookDto> books = List.of(odd, book(2));
+
+        for (ExchangeFormat format : ExchangeFormat.values()) {
+            StringWriter out = new StringWriter();
+            assertEquals(2, new LibraryExporter(format).write(books.stream(), out));
+            List<BookDto> back = read(out.toString(), format);
+            assertEquals(2, back.size(), format.name());
+            BookDto first = back.get(0);
+            assertEquals(odd.getTitle(), first.getTitle(), format.name());
+            assertEquals(odd.getAuthor(), first.getAuthor(), format.name());
+            assertEquals(odd.getDescription(), first.getDescription(), format.name());
+            assertEquals(format == ExchangeFormat.CSV ? "" : null, first.getCoverUrl(), format.name());
+            assertEquals(book(2).getKey(), back.get(1).getKey(), format.name());
+        }
+
+        String csv = "description,key,extra,title\r\n\"multi\nline\",/works/OL9W,x,Nine\r\n\r\n,/works/OL10W,,Ten";
+        List<BookDto> back = read(csv, ExchangeFormat.CSV);
+        assertEquals(2, back.size());
+        assertEquals("multi\nline", back.get(0).getDescription());
+        assertEquals("Nine", back.get(0).getTitle());
+        assertEquals("", back.get(0).getAuthor(), "Missing columns read as empty strings");
+        assertEquals("Ten", back.get(1).getTitle());
+
+        assertThrows(Exception.class, () -> read("{\"key\":\n", ExchangeFormat.JSONL));
+        assertThrows(Exception.class, () -> read("key,title\r\n\"open,x\r\n", ExchangeFormat.CSV));
+    }
+
+    /**
+     * Tests that parallel encoding writes the books in their original order,
+     * whatever the batch size.
+     */
+    @Test
+    public void testParallelExportKeepsOrder() throws Exception {
+        System.out.println("__________Testing parallel export order________________");
+        List<BookDto> books = books(5_003);
+        StringWriter sequential = new StringWriter();
+        new LibraryExporter(ExchangeFormat.JSONL).write(books.stream(), sequential);
+        for (int batch : new int[]{1, 7, 1000}) {
+            StringWriter parallel = new StringWriter();
+            assertEquals(books.size(), new LibraryExporter(ExchangeFormat.JSONL, 4, batch).write(books.stream(), parallel));
+            assertEquals(sequential.toString(), parallel.toString(), "Batch size " + batch);
+        }
+    }
+
+    /**
+     * Tests exporting a library to gzipped CSV and importing it into another
+     * library, both through the service, with imported books replacing saved
+     * ones and line breaks flattened for the text library.
+     */
+    @Test
+    public void testExportAndImportLibrary(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing library export and import________________");
+        BookLibraryService source = new BookLibraryService(dir.resolve("source.txt").toString());
+        List<BookDto> books = books(2_500);
+        books.set(3, new BookDtoBuilder().key(book(3).getKey()).title("Three").author("A, B").coverUrl("N/A")
+                .publishDate("N/A").description("one, \"two\"").build());
+        source.appendBooks(books);
+
+        Path export = dir.resolve("books.csv.gz");
+        assertEquals(2_500, new LibraryExporter(ExchangeFormat.CSV, 3, 100).export(source, export));
+        assertFalse(Files.exists(dir.resolve("books.csv.gz.tmp")));
+
+        BookLibraryService target = new BookLibraryService(dir.resolve("target.txt").toString());
+        target.appendBooks(List.of(new BookDtoBuilder().key(book(1).getKey()).title("Old").author("Old")
+                .coverUrl("N/A").publishDate("N/A").description("Old").build()));
+        assertEquals(2_500, new LibraryImporter(target, 300).importFile(export));
+
+        Map<String, BookDto> imported = new HashMap<>();
+        target.forEachBook(b -> imported.put(b.getKey(), b));
+        assertEquals(2_500, imported.size());
+        assertEquals("Book 1", imported.get(book(1).getKey()).getTitle(), "Imported books replace saved ones");
+        assertEquals("A, B", imported.get(book(3).getKey()).getAuthor());
+        assertEquals("one, \"two\"", imported.get(book(3).getKey()).getDescription());
+
+        new LibraryImporter(target).importBooks(Stream.of(new BookDtoBuilder().key(book(4).getKey()).title("Four")
+                .author("A").coverUrl("N/A").publishDate("N/A").description("one\r\ntwo\nthree").build()));
+        imported.clear();
+        target.forEachBook(b -> imported.put(b.getKey(), b));
+        assertEquals(2_500, imported.size());
+        assertEquals("one two three", imported.get(book(4).getKey()).getDescription());
+    }
+
+    /**
+     * Tests exporting a sharded library to JSON Lines.
+     */
+    @Test
+    public void testExportShardedLibrary(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing sharded library export________________");
+        Path library = dir.resolve("library.txt");
+        new BookLibraryService(library.toString()).appendBooks(books(1_000));
+        ShardedLibrary.reshard(library, 4);
+
+        Path export = dir.resolve("books.jsonl");
+        assertEquals(1_000, new LibraryExporter(ExchangeFormat.JSONL).export(new BookLibraryService(library.toString()), export));
+        List<String> keys = new ArrayList<>();
+        try (BookRecordReader reader = BookRecordReader.open(export)) {
+            reader.forEachRemaining(b -> keys.add(b.getKey()));
+        }
+        assertEquals(1_000, keys.size());
+        assertEquals(1_000, keys.stream().distinct().count());
+    }
+}
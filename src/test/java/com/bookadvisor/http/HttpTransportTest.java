@@ -0,0 +1,136 @@
+package com.bookadvisor.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link HttpTransport} class, run against a local stub server.
+ */
+public class HttpTransportTest {
+
+    /**
+     * Tests that gzip-compressed bodies are decompressed transparently and that
+     * relative paths are resolved against the base URL.
+     */
+    @Test
+    public void testGzipBodyIsDecoded() throws Exception {
+        System.out.println("__________Testing HttpTransport gzip________________");
+        try (StubServer server = new StubServer()) {
+            server.json("/works/OL1W.json", "{\"title\":\"Gzip Book\"}");
+            HttpTransport transport = server.newTransport();
+
+            String body = new String(transport.getBytes("/works/OL1W.json"), StandardCharsets.UTF_8);
+
+            assertEquals("{\"title\":\"Gzip Book\"}", body);
+            assertEquals(1, server.hits("/works/OL1W.json"));
+        }
+    }
+
+    /**
+     * Tests that a non-2xx status is reported as an HttpStatusException.
+     */
+    @Test
+    public void testErrorStatusThrows() throws Exception {
+        System.out.println("__________Testing HttpTransport error status________________");
+        try (StubServer server = new StubServer()) {
+            HttpTransport transport = server.newTransport();
+
+            HttpStatusException e = assertThrows(HttpStatusException.class,
+                    () -> transport.getBytes("/missing.json"));
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    /**
+     * Tests that responses without a body are read as empty even when they
+     * announce gzip content, and that a broken gzip body fails cleanly.
+     */
+    @Test
+    public void testBodilessGzipResponses() throws Exception {
+        System.out.println("__________Testing HttpTransport bodiless gzip________________");
+        try (StubServer server = new StubServer()) {
+            server.handle("/not-modified.json", exchange -> {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+            });
+            server.handle("/empty.json", exchange -> {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            server.handle("/broken.json", exchange -> {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                StubServer.respond(exchange, 200, "not gzip at all", false);
+            });
+            HttpTransport transport = server.newTransport();
+
+            try (HttpTransport.Response response = transport.send(transport.newRequest("/not-modified.json").build())) {
+                assertEquals(304, response.getStatusCode());
+                assertEquals(0, response.getBody().readAllBytes().length);
+            }
+            try (HttpTransport.Response response = transport.send(transport.newRequest("/empty.json")
+                    .method("HEAD", HttpRequest.BodyPublishers.noBody()).build())) {
+                assertEquals(200, response.getStatusCode());
+            }
+            try (InputStream in = transport.openStream("/empty.json")) {
+                assertEquals(0, in.readAllBytes().length);
+            }
+            assertThrows(ZipException.class, () -> transport.getBytes("/broken.json"));
+        }
+    }
+
+    /**
+     * Tests that reading a body that stalls after its headers fails once the
+     * body timeout elapses, while a slow body that keeps sending data is read whole.
+     */
+    @Test
+    public void testStalledBodyTimesOut() throws Exception {
+        System.out.println("__________Testing HttpTransport stalled body________________");
+        try (StubServer server = new StubServer()) {
+            server.handle("/stalled.json", exchange -> {
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                out.write("{\"title\":".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            server.handle("/slow.json", exchange -> {
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int i = 0; i < 6; i++) {
+                        out.write('x');
+                        out.flush();
+                        Thread.sleep(100);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            HttpTransport transport = new HttpTransport(server.getBaseUrl(), Duration.ofSeconds(2),
+                    Duration.ofSeconds(5), Duration.ofMillis(300));
+            transport.setResiliencePolicy(null);
+
+            long start = System.nanoTime();
+            assertThrows(HttpTimeoutException.class, () -> transport.getBytes("/stalled.json"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3), "The read should not wait for the server");
+
+            assertEquals("xxxxxx", new String(transport.getBytes("/slow.json"), StandardCharsets.UTF_8),
+                    "Time between chunks counts, not the whole body");
+        }
+    }
+}
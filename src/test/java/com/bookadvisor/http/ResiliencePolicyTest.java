@@ -0,0 +1,104 @@
+package com.bookadvisor.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ResiliencePolicy} class, run against a local stub server.
+ */
+public class ResiliencePolicyTest {
+
+    /**
+     * Creates a policy with short delays so the tests run quickly.
+     */
+    private static ResiliencePolicy fastPolicy(int failureThreshold) {
+        return new ResiliencePolicy(
+                new AdaptiveRateLimiter(100, 1, 200, 100, 1, 0.5, 5_000),
+                new CircuitBreaker(failureThreshold, Duration.ofSeconds(30)),
+                3, Duration.ofMillis(5), Duration.ofMillis(20));
+    }
+
+    /**
+     * Tests that transient 503 responses are retried until the server recovers.
+     */
+    @Test
+    public void testRetriesServerErrors() throws Exception {
+        System.out.println("__________Testing ResiliencePolicy retries________________");
+        try (StubServer server = new StubServer()) {
+            AtomicInteger calls = new AtomicInteger();
+            server.handle("/works/OL1W.json", exchange -> {
+                if (calls.incrementAndGet() < 3) {
+                    StubServer.respond(exchange, 503, "{}", false);
+                } else {
+                    StubServer.respond(exchange, 200, "{\"title\":\"Back\"}", false);
+                }
+            });
+            HttpTransport transport = server.newTransport();
+            ResiliencePolicy policy = fastPolicy(5);
+            transport.setResiliencePolicy(policy);
+
+            String body = new String(transport.getBytes("/works/OL1W.json"), StandardCharsets.UTF_8);
+
+            assertEquals("{\"title\":\"Back\"}", body);
+            assertEquals(3, server.hits("/works/OL1W.json"));
+            assertEquals(2, policy.getRetryCount());
+            assertEquals(CircuitBreaker.State.CLOSED, policy.getCircuitState());
+        }
+    }
+
+    /**
+     * Tests that a 429 response cuts the rate of the limiter.
+     */
+    @Test
+    public void testThrottlingLowersRate() throws Exception {
+        System.out.println("__________Testing ResiliencePolicy throttling________________");
+        try (StubServer server = new StubServer()) {
+            AtomicInteger calls = new AtomicInteger();
+            server.handle("/search.json", exchange -> {
+                if (calls.incrementAndGet() == 1) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    StubServer.respond(exchange, 429, "{}", false);
+                } else {
+                    StubServer.respond(exchange, 200, "{\"docs\":[]}", false);
+                }
+            });
+            HttpTransport transport = server.newTransport();
+            ResiliencePolicy policy = fastPolicy(5);
+            transport.setResiliencePolicy(policy);
+
+            transport.getBytes("/search.json?q=java");
+
+            assertEquals(1, policy.getThrottledCount());
+            assertTrue(policy.getRateLimiter().getRate() < 100, "Rate should drop after a 429");
+        }
+    }
+
+    /**
+     * Tests that a failing server opens the breaker, after which requests fail
+     * fast without reaching the server.
+     */
+    @Test
+    public void testBreakerOpensAndShortCircuits() throws Exception {
+        System.out.println("__________Testing ResiliencePolicy circuit breaker________________");
+        try (StubServer server = new StubServer()) {
+            server.handle("/works/OL2W.json", exchange -> StubServer.respond(exchange, 500, "{}", false));
+            HttpTransport transport = server.newTransport();
+            ResiliencePolicy policy = fastPolicy(3);
+            transport.setResiliencePolicy(policy);
+
+            HttpStatusException e = assertThrows(HttpStatusException.class,
+                    () -> transport.getBytes("/works/OL2W.json"));
+            assertEquals(500, e.getStatusCode());
+            assertEquals(CircuitBreaker.State.OPEN, policy.getCircuitState());
+
+            assertThrows(CircuitOpenException.class, () -> transport.getBytes("/works/OL2W.json"));
+            assertEquals(3, server.hits("/works/OL2W.json"));
+            assertEquals(1, policy.getShortCircuitedCount());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.bookadvisor.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal local HTTP server used by tests in place of Open Library.
+ * Responses are registered per path (the query string is ignored) and can be
+ * delayed, gzip-compressed or replaced by error statuses.
+ */
+public class StubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Map<String, HttpHandler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a stub server on a random free port.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            HttpHandler handler = handlers.get(path);
+            if (handler == null) {
+                respond(exchange, 404, "{}", false);
+            } else {
+                handler.handle(exchange);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the base URL of the server, e.g. {@code http://127.0.0.1:12345}.
+     *
+     * @return the base URL
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Creates a transport pointing at this server.
+     *
+     * @return a new HttpTransport
+     */
+    public HttpTransport newTransport() {
+        return new HttpTransport(getBaseUrl(), Duration.ofSeconds(2), Duration.ofSeconds(5));
+    }
+
+    /**
+     * Serves a JSON body for a path.
+     *
+     * @param path the request path
+     * @param json the body to return
+     */
+    public void json(String path, String json) {
+        handle(path, exchange -> respond(exchange, 200, json, acceptsGzip(exchange)));
+    }
+
+    /**
+     * Serves a JSON body for a path after a delay.
+     *
+     * @param path  the request path
+     * @param json  the body to return
+     * @param delay time to wait before answering
+     */
+    public void delayedJson(String path, String json, Duration delay) {
+        handle(path, exchange -> {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, json, acceptsGzip(exchange));
+        });
+    }
+
+    /**
+     * Registers a custom handler for a path.
+     *
+     * @param path    the request path
+     * @param handler the handler
+     */
+    public void handle(String path, HttpHandler handler) {
+        handlers.put(path, handler);
+    }
+
+    /**
+     * Returns how many requests were received for a path.
+     *
+     * @param path the request path
+     * @return the number of requests
+     */
+    public int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Writes a response, optionally gzip-compressed.
+     *
+     * @param exchange the exchange to answer
+     * @param status   the status code
+     * @param body     the body
+     * @param gzip     true to compress the body
+     * @throws IOException if writing fails
+     */
+    public static void respond(HttpExchange exchange, int status, String body, boolean gzip) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (gzip) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                out.write(bytes);
+            }
+            bytes = buffer.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return accept != null && accept.contains("gzip");
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.bookadvisor.importer;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link WorksDumpImporter} class, run on a synthetic dump.
+ */
+public class WorksDumpImporterTest {
+
+    /**
+     * Writes a gzipped dump of {@code lines} lines and returns the number of works
+     * in it; every 10th line is an author record and every 25th line is malformed.
+     */
+    private static int writeDump(Path dump, int lines) throws Exception {
+        int works = 0;
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(dump)), StandardCharsets.UTF_8))) {
+            for (int i = 1; i <= lines; i++) {
+                if (i % 25 == 0) {
+                    out.write("/type/work\t/works/OL" + i + "W\t1\t2024-01-01T00:00:00\t{not json");
+                } else if (i % 10 == 0) {
+                    out.write("/type/author\t/authors/OL" + i + "A\t1\t2024-01-01T00:00:00\t{\"name\":\"Someone\"}");
+                } else {
+                    JSONObject work = new JSONObject()
+                            .put("key", "/works/OL" + i + "W")
+                            .put("title", "Work " + i)
+                            .put("covers", new int[]{1000 + i})
+                            .put("first_publish_date", "19" + (i % 100))
+                            .put("description", new JSONObject().put("type", "/type/text").put("value", "Line one\nline two || " + i));
+                    out.write("/type/work\t/works/OL" + i + "W\t3\t2024-01-01T00:00:00\t" + work);
+                    works++;
+                }
+                out.newLine();
+            }
+        }
+        return works;
+    }
+
+    /**
+     * Tests that every work of the dump is imported in order, with clean fields,
+     * and that the checkpoint records the lines done.
+     */
+    @Test
+    public void testImportsEveryWorkInOrder(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing WorksDumpImporter________________");
+        Path dump = dir.resolve("works.txt.gz");
+        Path checkpoint = dir.resolve("works.checkpoint");
+        int works = writeDump(dump, 2_000);
+        BookLibraryService library = new BookLibraryService(dir.resolve("catalogue.txt").toString());
+
+        ImportSummary summary = new WorksDumpImporter(library, 128, 4).importDump(dump, checkpoint);
+
+        assertEquals(2_000, summary.getLinesRead());
+        assertEquals(works, summary.getImported());
+        assertEquals(2_000 - works, summary.getSkipped());
+        assertEquals("2000", Files.readString(checkpoint));
+
+        List<BookDto> books = library.loadBooks();
+        assertEquals(works, books.size());
+        assertEquals("Work 1", books.get(0).getTitle());
+        assertEquals("Work 1999", books.get(books.size() - 1).getTitle());
+        assertEquals("https://covers.openlibrary.org/b/id/1001-M.jpg", books.get(0).getCoverUrl());
+        assertEquals("Line one line two | 1", books.get(0).getDescription());
+    }
+
+    /**
+     * Tests that an import resumes from the checkpoint instead of starting over.
+     */
+    @Test
+    public void testResumesFromCheckpoint(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing WorksDumpImporter resume________________");
+        Path dump = dir.resolve("works.txt.gz");
+        Path checkpoint = dir.resolve("works.checkpoint");
+        writeDump(dump, 300);
+        Files.writeString(checkpoint, "200");
+        BookLibraryService library = new BookLibraryService(dir.resolve("catalogue.txt").toString());
+
+        ImportSummary summary = new WorksDumpImporter(library, 64, 2).importDump(dump, checkpoint);
+
+        assertEquals(200, summary.getStartLine());
+        assertEquals(100, summary.getLinesRead());
+        List<BookDto> books = library.loadBooks();
+        assertEquals("Work 201", books.get(0).getTitle());
+        assertEquals(summary.getImported(), books.size());
+        assertEquals("300", Files.readString(checkpoint));
+    }
+}
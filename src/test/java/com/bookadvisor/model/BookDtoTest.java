@@ -0,0 +1,68 @@
+package com.bookadvisor.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the lazy description of the {@link BookDto} class.
+ */
+public class BookDtoTest {
+
+    /**
+     * Tests that a slow description loader does not hold the lock of the book,
+     * so other calls on the book go on while it runs.
+     */
+    @Test
+    public void testLoaderRunsOutsideTheLock() throws Exception {
+        System.out.println("__________Testing BookDto lazy description lock________________");
+        BookDto book = new BookDto("Title", "Author", "N/A", "2000", "/works/OL1W", "");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        book.setDescriptionLoader(() -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "Loaded";
+        });
+
+        CompletableFuture<String> read = CompletableFuture.supplyAsync(book::getDescription);
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> book.setDescriptionLoader(null));
+        write.get(1, TimeUnit.SECONDS);
+        release.countDown();
+        assertEquals("", read.get(5, TimeUnit.SECONDS), "A loader replaced while it ran is not kept");
+    }
+
+    /**
+     * Tests that a failing loader leaves the description as it was, and is
+     * called again by the next read until it succeeds.
+     */
+    @Test
+    public void testFailureIsRetried() {
+        System.out.println("__________Testing BookDto failing description loader________________");
+        BookDto book = new BookDto("Title", "Author", "N/A", "2000", "/works/OL1W", "");
+        AtomicInteger calls = new AtomicInteger();
+        book.setDescriptionLoader(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("Unavailable");
+            }
+            return "Loaded";
+        });
+
+        assertEquals("", book.getDescription());
+        assertFalse(book.isDescriptionResolved());
+        assertEquals("Loaded", book.getDescription());
+        assertEquals("Loaded", book.getDescription());
+        assertEquals(2, calls.get());
+        assertTrue(book.isDescriptionResolved());
+    }
+}
@@ -0,0 +1,54 @@
+package com.bookadvisor.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BookId} class.
+ */
+public class BookIdTest {
+
+    private static BookDto book(String key, String title, String author) {
+        return new BookDto(title, author, "N/A", "2000", key, "");
+    }
+
+    /**
+     * Tests that work keys give their work number, whatever the other fields,
+     * and that other keys fall back to the title and author.
+     */
+    @Test
+    public void testWorkKeys() {
+        System.out.println("__________Testing BookId work keys________________");
+        assertEquals(45804, BookId.fromWorkKey("/works/OL45804W"));
+        assertEquals(45804, BookId.fromWorkKey("OL45804W"));
+        assertEquals(0, BookId.fromWorkKey("/books/OL7353617M"));
+        assertEquals(0, BookId.fromWorkKey("/works/OLW"));
+        assertEquals(0, BookId.fromWorkKey("/works/OL12x4W"));
+        assertEquals(0, BookId.fromWorkKey(null));
+
+        assertEquals(BookId.of(book("/works/OL27448W", "The Lord of the Rings", "J.R.R. Tolkien")),
+                BookId.of(book("/works/OL27448W", "LOTR", "Tolkien")));
+        long hashed = BookId.of(book("falseKey", "Test Title", "Test Author"));
+        assertFalse(BookId.isWorkId(hashed));
+        assertEquals(hashed, BookId.of(book("", "Test Title", "Test Author")));
+        assertTrue(BookId.isWorkId(BookId.of(book("/works/OL1W", "Test Title", "Test Author"))));
+    }
+
+    /**
+     * Tests that titles and authors differing only in case, accents or
+     * punctuation give the same id, and that different books do not.
+     */
+    @Test
+    public void testTitleAndAuthorHash() {
+        System.out.println("__________Testing BookId title and author hash________________");
+        assertEquals("les miserables", BookId.normalize("  Les Misérables! "));
+        assertEquals(BookId.fromTitleAndAuthor("Les Misérables", "Victor Hugo"),
+                BookId.fromTitleAndAuthor("les miserables", "VICTOR  HUGO."));
+        assertNotEquals(BookId.fromTitleAndAuthor("Les Misérables", "Victor Hugo"),
+                BookId.fromTitleAndAuthor("Notre-Dame de Paris", "Victor Hugo"));
+        // The separator keeps the title and author apart
+        assertNotEquals(BookId.fromTitleAndAuthor("Ab", "c"), BookId.fromTitleAndAuthor("A", "bc"));
+        assertEquals(BookId.fromTitleAndAuthor(null, null), BookId.fromTitleAndAuthor("", ""));
+    }
+}
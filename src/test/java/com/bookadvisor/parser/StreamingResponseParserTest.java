@@ -0,0 +1,113 @@
+package com.bookadvisor.parser;
+
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link StreamingResponseParser} class, checked against
+ * the {@link DomResponseParser} on fixture responses.
+ */
+public class StreamingResponseParserTest {
+
+    /**
+     * Tests that both parsers produce the same books for the search fixture.
+     */
+    @Test
+    public void testSearchMatchesDomParser() throws IOException {
+        System.out.println("__________Testing StreamingResponseParser search________________");
+        String json = fixture("search-lord-of-the-rings.json");
+
+        List<BookDto> expected = new ArrayList<>();
+        List<BookDto> actual = new ArrayList<>();
+        new DomResponseParser().parseSearch(new StringReader(json), 10, expected::add);
+        int count = new StreamingResponseParser().parseSearch(new StringReader(json), 10, actual::add);
+
+        assertEquals(10, count);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getAuthor(), actual.get(i).getAuthor());
+            assertEquals(expected.get(i).getCoverUrl(), actual.get(i).getCoverUrl());
+            assertEquals(expected.get(i).getPublishDate(), actual.get(i).getPublishDate());
+            assertEquals(expected.get(i).getKey(), actual.get(i).getKey());
+        }
+    }
+
+    /**
+     * Tests that parsing stops once the limit is reached, leaving the rest unread.
+     */
+    @Test
+    public void testSearchStopsAtLimit() throws IOException {
+        System.out.println("__________Testing StreamingResponseParser early termination________________");
+        String json = fixture("search-lord-of-the-rings.json");
+        CountingReader reader = new CountingReader(new StringReader(json));
+
+        List<BookDto> books = new ArrayList<>();
+        new StreamingResponseParser().parseSearch(reader, 2, books::add);
+
+        assertEquals(2, books.size());
+        assertTrue(reader.count < json.length() / 2, "The parser should stop reading after the second document");
+    }
+
+    /**
+     * Tests both forms of work descriptions (plain string and typed text).
+     */
+    @Test
+    public void testDescriptionForms() throws IOException {
+        System.out.println("__________Testing StreamingResponseParser descriptions________________");
+        ResponseParser parser = new StreamingResponseParser();
+
+        assertEquals("Plain", parser.parseDescription(new StringReader("{\"a\":[1,{\"b\":\"}\"}],\"description\":\"Plain\"}")));
+        assertEquals("Typed \"quoted\"", parser.parseDescription(
+                new StringReader("{\"description\":{\"type\":\"/type/text\",\"value\":\"Typed \\\"quoted\\\"\"}}")));
+        assertEquals("", parser.parseDescription(new StringReader("{\"title\":\"No description\",\"n\":null}")));
+        assertEquals(new DomResponseParser().parseDescription(new StringReader(fixture("work-OL27448W.json"))),
+                parser.parseDescription(new StringReader(fixture("work-OL27448W.json"))));
+    }
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = getResource(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream getResource(String name) {
+        return StreamingResponseParserTest.class.getResourceAsStream("/fixtures/" + name);
+    }
+
+    /**
+     * Reader that counts how many characters have been read.
+     */
+    private static class CountingReader extends Reader {
+        private final Reader delegate;
+        private long count;
+
+        CountingReader(Reader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) throws IOException {
+            int n = delegate.read(buf, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
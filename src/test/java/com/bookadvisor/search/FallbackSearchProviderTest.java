@@ -0,0 +1,96 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link FallbackSearchProvider} class.
+ */
+public class FallbackSearchProviderTest {
+
+    /**
+     * Provider answering every query with the same books, or failing, and
+     * counting its calls.
+     */
+    private static class StubProvider implements SearchProvider {
+        private final String name;
+        private final List<BookDto> books;
+        private final boolean failing;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        StubProvider(String name, List<BookDto> books, boolean failing) {
+            this.name = name;
+            this.books = books;
+            this.failing = failing;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<BookDto> search(String query, int page, int pageSize) throws IOException {
+            calls.incrementAndGet();
+            if (failing) {
+                throw new IOException("unavailable");
+            }
+            int from = Math.min(books.size(), (page - 1) * pageSize);
+            return books.subList(from, Math.min(books.size(), from + pageSize));
+        }
+    }
+
+    private static List<BookDto> books(String... titles) {
+        return Arrays.stream(titles)
+                .map(t -> new BookDtoBuilder().key("/works/" + t).title(t).author("A").description("").build())
+                .toList();
+    }
+
+    /**
+     * Tests that a query answered by the primary provider costs a single call.
+     */
+    @Test
+    public void testPrimaryIsAskedOnce() throws IOException {
+        System.out.println("__________Testing FallbackSearchProvider single call________________");
+        StubProvider primary = new StubProvider("local", books("One", "Two", "Three"), false);
+        StubProvider fallback = new StubProvider("remote", books("Remote"), false);
+        FallbackSearchProvider provider = new FallbackSearchProvider(primary, fallback);
+
+        assertEquals(2, provider.search("q", 1, 2).size());
+        assertEquals(1, primary.calls.get());
+        assertEquals(0, fallback.calls.get());
+
+        assertEquals(1, provider.search("q", 2, 2).size());
+        assertEquals(2, primary.calls.get());
+
+        // Past the last page of the primary: still the primary's (empty) results
+        assertTrue(provider.search("q", 3, 2).isEmpty());
+        assertEquals(0, fallback.calls.get());
+    }
+
+    /**
+     * Tests that the fallback answers when the primary has no results or fails.
+     */
+    @Test
+    public void testFallsBackWhenPrimaryIsEmptyOrFails() throws IOException {
+        System.out.println("__________Testing FallbackSearchProvider fallback________________");
+        StubProvider fallback = new StubProvider("remote", books("Remote"), false);
+
+        StubProvider empty = new StubProvider("local", List.of(), false);
+        assertEquals("Remote", new FallbackSearchProvider(empty, fallback).search("q", 1, 10).get(0).getTitle());
+        assertEquals(1, empty.calls.get());
+
+        StubProvider failing = new StubProvider("remote", List.of(), true);
+        assertEquals("Remote", new FallbackSearchProvider(failing, fallback).search("q", 1, 10).get(0).getTitle());
+        assertEquals(1, failing.calls.get());
+        assertEquals(2, fallback.calls.get());
+    }
+}
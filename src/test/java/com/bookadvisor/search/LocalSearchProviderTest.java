@@ -0,0 +1,191 @@
+package com.bookadvisor.search;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.observer.SearchIndexUpdater;
+import com.bookadvisor.service.BookLibraryService;
+import com.bookadvisor.service.BookService;
+import com.bookadvisor.http.HttpTransport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LocalSearchProvider} class.
+ */
+public class LocalSearchProviderTest {
+
+    private static BookDto book(String key, String title, String author) {
+        return new BookDtoBuilder().key(key).title(title).author(author).description("").build();
+    }
+
+    private static LocalSearchProvider corpus() {
+        return new LocalSearchProvider(List.of(
+                book("/works/OL1W", "The Return of the King", "J.R.R. Tolkien"),
+                book("/works/OL2W", "The Lord of the Rings", "J.R.R. Tolkien"),
+                book("/works/OL3W", "Lord of the Flies", "William Golding"),
+                book("/works/OL4W", "The Lord of the Rings: Deluxe Edition", "J.R.R. Tolkien"),
+                book("/works/OL2W", "The Lord of the Rings", "J.R.R. Tolkien")));
+    }
+
+    /**
+     * Tests that every query word must match and that exact titles rank first.
+     */
+    @Test
+    public void testMatchesAllWordsAndRanksExactTitleFirst() {
+        System.out.println("__________Testing LocalSearchProvider ranking________________");
+        LocalSearchProvider provider = corpus();
+
+        assertEquals(4, provider.size(), "Duplicate keys should be indexed once");
+
+        List<BookDto> results = provider.search("the lord of the rings", 1, 10);
+        assertEquals(2, results.size());
+        assertEquals("/works/OL2W", results.get(0).getKey());
+        assertEquals("/works/OL4W", results.get(1).getKey());
+
+        List<BookDto> byAuthor = provider.search("tolkien king", 1, 10);
+        assertEquals(1, byAuthor.size());
+        assertEquals("The Return of the King", byAuthor.get(0).getTitle());
+
+        assertTrue(provider.search("lord hobbit", 1, 10).isEmpty());
+    }
+
+    /**
+     * Tests that results are paged.
+     */
+    @Test
+    public void testPaging() {
+        System.out.println("__________Testing LocalSearchProvider paging________________");
+        LocalSearchProvider provider = corpus();
+
+        assertEquals(2, provider.search("lord", 1, 2).size());
+        assertEquals(1, provider.search("lord", 2, 2).size());
+        assertTrue(provider.search("lord", 3, 2).isEmpty());
+    }
+
+    /**
+     * Tests that BookService answers from a local provider without any network access.
+     */
+    @Test
+    public void testBookServiceSearchesLocallyWithoutNetwork() {
+        System.out.println("__________Testing BookService with local provider________________");
+        // Nothing listens on this address: any network access would fail the search
+        HttpTransport offline = new HttpTransport("http://127.0.0.1:9", Duration.ofMillis(200), Duration.ofMillis(200));
+        offline.setResiliencePolicy(null);
+        try (BookService service = new BookService(offline)) {
+            service.setSearchProvider(new FallbackSearchProvider(corpus(), new OpenLibrarySearchProvider(offline)));
+
+            List<BookDto> results = service.searchBooks("Lord of the Flies");
+            assertEquals(1, results.size());
+            assertEquals("William Golding", results.get(0).getAuthor());
+            assertEquals("", results.get(0).getDescription());
+        }
+    }
+
+    /**
+     * Tests that replaced and removed books no longer match, also once the
+     * index was rebuilt to drop them.
+     */
+    @Test
+    public void testReplacedAndRemovedBooksStopMatching() {
+        System.out.println("__________Testing LocalSearchProvider removals________________");
+        LocalSearchProvider provider = corpus();
+
+        provider.add(book("/works/OL3W", "Lord of the Flies: Annotated", "William Golding"));
+        List<BookDto> replaced = provider.search("golding", 1, 10);
+        assertEquals(1, replaced.size());
+        assertEquals("Lord of the Flies: Annotated", replaced.get(0).getTitle());
+
+        assertTrue(provider.remove("/works/OL1W"));
+        assertFalse(provider.remove("/works/OL1W"));
+        assertTrue(provider.search("return king", 1, 10).isEmpty());
+        assertEquals(3, provider.size());
+
+        // Enough changes to rebuild the index
+        for (int i = 0; i < 100; i++) {
+            provider.add(book("/works/OL2W", "The Lord of the Rings " + i, "J.R.R. Tolkien"));
+        }
+        List<BookDto> rings = provider.search("rings", 1, 10);
+        assertEquals(2, rings.size());
+        assertTrue(rings.stream().anyMatch(b -> b.getTitle().equals("The Lord of the Rings 99")));
+        assertEquals(3, provider.size());
+    }
+
+    /**
+     * Tests that a provider over a library indexes it on first search, and again
+     * only once invalidated.
+     */
+    @Test
+    public void testReindexesWhenInvalidated() {
+        System.out.println("__________Testing LocalSearchProvider library rewrites________________");
+        List<BookDto> library = new ArrayList<>(List.of(book("/works/OL1W", "Dune", "Frank Herbert")));
+        AtomicInteger reads = new AtomicInteger();
+        LocalSearchProvider provider = new LocalSearchProvider(() -> {
+            reads.incrementAndGet();
+            return List.copyOf(library);
+        });
+
+        assertEquals(1, provider.search("dune", 1, 10).size());
+        assertEquals(1, provider.size());
+
+        library.set(0, book("/works/OL2W", "Emma", "Jane Austen"));
+        assertEquals(1, provider.search("dune", 1, 10).size(), "The library is only read again once invalidated");
+        assertEquals(1, reads.get());
+
+        provider.invalidate();
+        assertTrue(provider.search("dune", 1, 10).isEmpty());
+        assertEquals(1, provider.search("emma", 1, 10).size());
+        assertEquals(2, reads.get());
+    }
+
+    /**
+     * Tests that searches return copies, so changing a result leaves the index alone.
+     */
+    @Test
+    public void testResultsAreCopies() {
+        System.out.println("__________Testing LocalSearchProvider result copies________________");
+        BookDto saved = book("/works/OL1W", "Dune", "Frank Herbert");
+        LocalSearchProvider provider = new LocalSearchProvider(List.of(saved));
+
+        BookDto result = provider.search("dune", 1, 10).get(0);
+        assertNotSame(saved, result);
+        result.setDescriptionLoader(() -> "Fetched");
+        assertEquals("Fetched", result.getDescription());
+
+        BookDto again = provider.search("dune", 1, 10).get(0);
+        assertEquals("", again.getDescription());
+        assertTrue(again.isDescriptionResolved());
+    }
+
+    /**
+     * Tests that an index following a library service drops removed and
+     * overwritten books.
+     */
+    @Test
+    public void testFollowsLibraryService(@TempDir Path dir) {
+        System.out.println("__________Testing LocalSearchProvider following a library________________");
+        try (BookLibraryService library = new BookLibraryService(dir.resolve("library.txt").toString())) {
+            LocalSearchProvider provider = new LocalSearchProvider(library::loadBooks);
+            library.addObserver(new SearchIndexUpdater(provider));
+
+            library.saveBook(book("/works/OL1W", "Dune", "Frank Herbert"));
+            library.saveBook(book("/works/OL2W", "Emma", "Jane Austen"));
+            assertEquals(1, provider.search("dune", 1, 10).size());
+
+            library.removeBook("/works/OL1W");
+            assertTrue(provider.search("dune", 1, 10).isEmpty());
+
+            library.saveAllInternal(List.of(book("/works/OL3W", "Persuasion", "Jane Austen")));
+            List<BookDto> austen = provider.search("austen", 1, 10);
+            assertEquals(1, austen.size());
+            assertEquals("Persuasion", austen.get(0).getTitle());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.BinaryLibraryFile;
+import com.bookadvisor.storage.LibraryConverter;
+import com.bookadvisor.storage.LibraryLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the in-memory library kept by {@link BookLibraryService}.
+ */
+public class BookLibraryServiceTest {
+
+    private static List<String> titles(List<BookDto> books) {
+        return books.stream().map(BookDto::getTitle).toList();
+    }
+
+    /**
+     * Tests that changes made through the service are applied in memory without
+     * reading the file again, and that changes made by another store over the
+     * same file are picked up.
+     */
+    @Test
+    public void testResidentLibrary(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BookLibraryService resident library________________");
+        Path file = dir.resolve("library.txt");
+        BookLibraryService service = new BookLibraryService(file.toString());
+
+        assertTrue(service.loadBooks().isEmpty());
+        BookDto first = book("/works/OL1W", "One");
+        service.saveBook(first);
+        service.saveBook(book("/works/OL2W", "Two"));
+        service.saveBook(book("/works/OL1W", "One, revised"));
+        List<BookDto> books = service.loadBooks();
+        assertEquals(List.of("Two", "One, revised"), titles(books));
+        assertSame(books.get(0), service.loadBooks().get(0), "An unchanged file should not be read again");
+
+        assertTrue(service.removeBook("/works/OL2W"));
+        assertEquals(List.of("One, revised"), titles(service.loadBooks()));
+
+        // Another store appends to the file, then rewrites it
+        LibraryLog other = new LibraryLog(file);
+        other.put(book("/works/OL3W", "Three"));
+        assertEquals(List.of("One, revised", "Three"), titles(service.loadBooks()));
+        other.replaceAll(List.of(book("/works/OL4W", "Four")));
+        assertEquals(List.of("Four"), titles(service.loadBooks()));
+
+        service.saveAll(List.of(book("/works/OL5W", "Five"), book("/works/OL6W", "Six")));
+        assertEquals(List.of("Five", "Six"), titles(service.loadBooks()));
+        assertEquals(List.of("Five", "Six"), titles(new LibraryLog(file).loadAll()));
+    }
+
+    /**
+     * Tests that a book saved again under another key is merged into the saved
+     * one by default, rejected with REJECT, and saved twice with ALLOW, and that
+     * saveBook reports which of these happened.
+     */
+    @Test
+    public void testDuplicatePolicy(@TempDir Path dir) {
+        System.out.println("__________Testing BookLibraryService duplicates________________");
+        BookLibraryService service = new BookLibraryService(dir.resolve("library.txt").toString());
+        BookDto manual = new BookDtoBuilder().title("Les Misérables").author("Victor Hugo").coverUrl("N/A")
+                .publishDate("1862").description("Added by hand").build();
+        BookDto found = new BookDtoBuilder().key("/works/OL24034W").title("Les misérables").author("Victor Hugo")
+                .coverUrl("https://covers.openlibrary.org/b/id/1-M.jpg").publishDate("1862").description("").build();
+
+        assertEquals(SaveOutcome.SAVED, service.saveBook(manual));
+        assertTrue(service.isSaved(manual));
+        assertFalse(service.isSaved(found), "Different ids: a work key against a title hash");
+        assertEquals(SaveOutcome.SAVED, service.saveBook(found));
+        assertEquals(SaveOutcome.MERGED, service.saveBook(new BookDtoBuilder().key("/works/OL24034W").title("Les Misérables").author("Victor Hugo")
+                .coverUrl("N/A").publishDate("").description("From a search").build()));
+        List<BookDto> books = service.loadBooks();
+        assertEquals(2, books.size());
+        BookDto merged = books.get(1);
+        assertEquals("/works/OL24034W", merged.getKey());
+        assertEquals("https://covers.openlibrary.org/b/id/1-M.jpg", merged.getCoverUrl(), "Empty fields keep their saved value");
+        assertEquals("1862", merged.getPublishDate());
+        assertEquals("From a search", merged.getDescription());
+
+        service.saveBook(new BookDtoBuilder().title("les miserables").author("VICTOR HUGO").coverUrl("N/A")
+                .publishDate("1900").description("Another copy").build());
+        assertEquals(2, service.loadBooks().size(), "Same title and author should be merged");
+        assertEquals("Another copy", service.loadBooks().get(1).getDescription());
+
+        service.setDuplicatePolicy(DuplicatePolicy.REJECT);
+        assertEquals(SaveOutcome.REJECTED,
+                service.saveBook(new BookDtoBuilder().key("x").title("Les Misérables").author("Victor Hugo").build()));
+        assertEquals("Another copy", service.loadBooks().get(1).getDescription(), "Duplicates should be rejected");
+
+        service.setDuplicatePolicy(DuplicatePolicy.ALLOW);
+        assertEquals(SaveOutcome.SAVED,
+                service.saveBook(new BookDtoBuilder().key("x").title("Les Misérables").author("Victor Hugo").build()));
+        assertEquals(3, service.loadBooks().size());
+    }
+
+    /**
+     * Tests that the detected store is reused, and that the format is detected
+     * again once the file is converted.
+     */
+    @Test
+    public void testStoreFollowsConversions(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BookLibraryService store detection________________");
+        Path file = dir.resolve("library.txt");
+        BookLibraryService service = new BookLibraryService(file.toString());
+        service.saveBook(book("/works/OL1W", "One"));
+        assertInstanceOf(LibraryLog.class, service.getStore());
+        assertSame(service.getStore(), service.getStore());
+
+        LibraryConverter.toBinary(file, file);
+        assertInstanceOf(BinaryLibraryFile.class, service.getStore(), "A converted file should be detected again");
+        service.saveBook(book("/works/OL2W", "Two"));
+        assertEquals(List.of("One", "Two"), titles(service.loadBooks()));
+
+        LibraryConverter.toText(file, file);
+        assertInstanceOf(LibraryLog.class, service.getStore());
+        assertEquals(List.of("One", "Two"), titles(service.loadBooks()));
+    }
+}
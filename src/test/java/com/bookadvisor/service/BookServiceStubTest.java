@@ -0,0 +1,225 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.cache.LruTtlCache;
+import com.bookadvisor.http.StubServer;
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link BookService} run against a local stub of the Open Library API.
+ */
+public class BookServiceStubTest {
+
+    private static final String SEARCH_JSON = "{\"numFound\":3,\"docs\":["
+            + "{\"key\":\"/works/OL1W\",\"title\":\"First\",\"author_name\":[\"Ann\"],\"cover_i\":11,\"first_publish_year\":2001},"
+            + "{\"key\":\"/works/OL2W\",\"title\":\"Second\",\"author_name\":[\"Bob\"],\"first_publish_year\":2002},"
+            + "{\"key\":\"/works/OL3W\",\"title\":\"Third\"}"
+            + "]}";
+
+    /**
+     * Tests that results keep the ranking order and that a slow work fetch falls
+     * back to an empty description without holding up the others.
+     */
+    @Test
+    public void testSearchKeepsOrderAndSkipsSlowDescriptions() throws Exception {
+        System.out.println("__________Testing BookService against stub server________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofMillis(500))) {
+            server.json("/search.json", SEARCH_JSON);
+            server.json("/works/OL1W.json", "{\"description\":\"Plain description\"}");
+            server.json("/works/OL2W.json", "{\"description\":{\"type\":\"/type/text\",\"value\":\"Typed description\"}}");
+            server.delayedJson("/works/OL3W.json", "{\"description\":\"Too late\"}", Duration.ofSeconds(3));
+
+            long start = System.nanoTime();
+            List<BookDto> books = service.searchBooks("some title");
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            assertEquals(3, books.size());
+            assertEquals("First", books.get(0).getTitle());
+            assertEquals("Second", books.get(1).getTitle());
+            assertEquals("Third", books.get(2).getTitle());
+
+            assertEquals("Plain description", books.get(0).getDescription());
+            assertEquals("Typed description", books.get(1).getDescription());
+            assertEquals("", books.get(2).getDescription());
+
+            assertEquals("Ann", books.get(0).getAuthor());
+            assertEquals("https://covers.openlibrary.org/b/id/11-M.jpg", books.get(0).getCoverUrl());
+            assertEquals("Unknown", books.get(2).getAuthor());
+            assertEquals("N/A", books.get(2).getPublishDate());
+
+            assertTrue(elapsedMillis < 2500, "The slow fetch should not hold up the search: " + elapsedMillis + " ms");
+        }
+    }
+
+    /**
+     * Tests that a caller timing out on a search shared with another caller does
+     * not abort the request the other caller is waiting for.
+     */
+    @Test
+    public void testTimedOutCallerLeavesSharedSearchRunning() throws Exception {
+        System.out.println("__________Testing BookService shared search timeout________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            server.delayedJson("/search.json", SEARCH_JSON, Duration.ofMillis(800));
+
+            CompletableFuture<List<BookDto>> impatient = service.searchBooksAsync("shared", Duration.ofMillis(100));
+            CompletableFuture<List<BookDto>> patient = service.searchBooksAsync("shared", Duration.ofSeconds(10));
+
+            ExecutionException e = assertThrows(ExecutionException.class, impatient::get);
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertEquals(3, patient.get().size());
+            assertEquals(1, server.hits("/search.json"));
+        }
+    }
+
+    /**
+     * Tests that a repeated search with different case and spacing is served from
+     * the result cache without contacting the server again.
+     */
+    @Test
+    public void testRepeatedSearchHitsCache() throws Exception {
+        System.out.println("__________Testing BookService result cache________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            server.json("/search.json", SEARCH_JSON);
+            server.json("/works/OL1W.json", "{\"description\":\"Plain description\"}");
+
+            List<BookDto> first = service.searchBooks("Some  Title");
+            List<BookDto> second = service.searchBooks(" some title ");
+
+            assertEquals(3, second.size());
+            assertEquals(first.get(0).getTitle(), second.get(0).getTitle());
+            assertEquals(1, server.hits("/search.json"));
+            assertEquals(1, service.getResultCache().getHitCount());
+            assertEquals(1, service.getResultCache().getMissCount());
+        }
+    }
+
+    /**
+     * Tests that the paged stream fetches further pages only as it is consumed,
+     * and stops after a short page.
+     */
+    @Test
+    public void testStreamFetchesPagesLazily() throws Exception {
+        System.out.println("__________Testing BookService paged stream________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            // Three pages of 4 results, the last one holding only 2
+            server.handle("/search.json", exchange -> {
+                String query = exchange.getRequestURI().getQuery();
+                int page = query.contains("page=") ? Integer.parseInt(query.replaceAll(".*page=(\\d+).*", "$1")) : 1;
+                int count = page < 3 ? 4 : 2;
+                StringBuilder docs = new StringBuilder();
+                for (int i = 0; i < count; i++) {
+                    docs.append(i > 0 ? "," : "").append("{\"title\":\"Book ").append((page - 1) * 4 + i + 1).append("\"}");
+                }
+                StubServer.respond(exchange, 200, "{\"docs\":[" + docs + "]}", false);
+            });
+
+            try (Stream<BookDto> stream = service.streamBooks("paging", 4)) {
+                assertEquals(List.of("Book 1", "Book 2"), stream.limit(2).map(BookDto::getTitle).toList());
+            }
+            assertEquals(1, server.hits("/search.json"), "Only the first page should be fetched");
+
+            try (Stream<BookDto> stream = service.streamBooks("paging", 4)) {
+                List<String> titles = stream.map(BookDto::getTitle).toList();
+                assertEquals(10, titles.size());
+                assertEquals("Book 10", titles.get(9));
+            }
+            assertEquals(4, server.hits("/search.json"));
+        }
+    }
+
+    /**
+     * Tests that an asynchronous search fails with a timeout when the server is
+     * too slow, and that a cancelled search completes right away.
+     */
+    @Test
+    public void testAsyncSearchTimesOutAndCancels() throws Exception {
+        System.out.println("__________Testing BookService async search________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            server.delayedJson("/search.json", SEARCH_JSON, Duration.ofSeconds(3));
+
+            long start = System.nanoTime();
+            CompletableFuture<List<BookDto>> slow = service.searchBooksAsync("slow", Duration.ofMillis(200));
+            ExecutionException e = assertThrows(ExecutionException.class, slow::get);
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertTrue((System.nanoTime() - start) / 1_000_000 < 2000, "The timeout should not wait for the server");
+
+            CompletableFuture<List<BookDto>> cancelled = service.searchBooksAsync("cancelled");
+            assertTrue(cancelled.cancel(true));
+            assertTrue(cancelled.isCancelled());
+            assertThrows(CancellationException.class, cancelled::join);
+        }
+    }
+
+    /**
+     * Tests that work documents are only fetched when a description is read,
+     * once per book, and that the top results can be prefetched.
+     */
+    @Test
+    public void testDescriptionsAreLoadedLazily() throws Exception {
+        System.out.println("__________Testing BookService lazy descriptions________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            server.json("/search.json", SEARCH_JSON);
+            server.json("/works/OL1W.json", "{\"description\":\"Plain description\"}");
+            server.json("/works/OL2W.json", "{\"description\":\"Second description\"}");
+
+            List<BookDto> books = service.searchBooks("lazy");
+            assertEquals(0, server.hits("/works/OL1W.json"), "No work should be fetched by the search");
+            assertFalse(books.get(0).isDescriptionResolved());
+
+            assertEquals("Plain description", books.get(0).getDescription());
+            assertEquals("Plain description", books.get(0).getDescription());
+            assertEquals(1, server.hits("/works/OL1W.json"));
+            assertEquals(0, server.hits("/works/OL2W.json"));
+
+            service.setDescriptionPrefetch(2);
+            service.searchBooks("prefetched");
+            long deadline = System.currentTimeMillis() + 2000;
+            while (server.hits("/works/OL2W.json") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, server.hits("/works/OL2W.json"), "The top results should be prefetched");
+        }
+    }
+
+    /**
+     * Tests that an expired cached result is served when the server fails, and
+     * that a search with nothing cached still fails.
+     */
+    @Test
+    public void testStaleResultsServedWhenServerFails() throws Exception {
+        System.out.println("__________Testing BookService stale results________________");
+        try (StubServer server = new StubServer();
+             BookService service = new BookService(server.newTransport(), 4, Duration.ofSeconds(2))) {
+            AtomicLong now = new AtomicLong();
+            service.setResultCache(new LruTtlCache<>(100, Duration.ofMinutes(5), v -> 1L, now::get));
+            server.json("/search.json", SEARCH_JSON);
+            assertEquals(3, service.searchBooksAsync("stale").get().size());
+
+            server.handle("/search.json", exchange -> StubServer.respond(exchange, 503, "{}", false));
+            now.set(Duration.ofMinutes(10).toNanos());
+            List<BookDto> stale = service.searchBooksAsync("stale").get();
+            assertEquals(3, stale.size(), "The expired result should be served");
+            assertEquals("First", stale.get(0).getTitle());
+            assertTrue(server.hits("/search.json") > 1, "The expired result should not be served without trying the server");
+
+            assertThrows(ExecutionException.class, () -> service.searchBooksAsync("never cached").get());
+        }
+    }
+}
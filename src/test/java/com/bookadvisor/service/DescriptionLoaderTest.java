@@ -0,0 +1,76 @@
+package com.bookadvisor.service;
+
+import com.bookadvisor.util.BoundedExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link DescriptionLoader} class.
+ */
+public class DescriptionLoaderTest {
+
+    /**
+     * Tests that a failed fetch is not retried before the retry delay, and is
+     * retried by the first read after it.
+     */
+    @Test
+    public void testFailedFetchIsRetriedAfterDelay() throws Exception {
+        System.out.println("__________Testing DescriptionLoader retry delay________________");
+        AtomicInteger fetches = new AtomicInteger();
+        try (BoundedExecutor executor = new BoundedExecutor("test-enrichment", 2)) {
+            DescriptionLoader loader = new DescriptionLoader("/works/OL1W", () -> {
+                if (fetches.incrementAndGet() == 1) {
+                    throw new IOException("HTTP 503");
+                }
+                return "Fetched";
+            }, executor, Duration.ofSeconds(2), Duration.ofMillis(200));
+
+            assertThrows(UncheckedIOException.class, loader::get);
+            assertThrows(UncheckedIOException.class, loader::get);
+            assertEquals(1, fetches.get(), "No fetch should start during the retry delay");
+
+            Thread.sleep(300);
+            assertEquals("Fetched", loader.get());
+            assertEquals(2, fetches.get());
+        }
+    }
+
+    /**
+     * Tests that a read timing out leaves the fetch running, uninterrupted, for
+     * a later read to pick up.
+     */
+    @Test
+    public void testTimeoutLeavesFetchRunning() throws Exception {
+        System.out.println("__________Testing DescriptionLoader timeout________________");
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        try (BoundedExecutor executor = new BoundedExecutor("test-enrichment", 2)) {
+            DescriptionLoader loader = new DescriptionLoader("/works/OL1W", () -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+                done.countDown();
+                return "Late";
+            }, executor, Duration.ofMillis(50), Duration.ofSeconds(30));
+
+            assertThrows(UncheckedIOException.class, loader::get);
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertFalse(interrupted.get(), "The fetch should not be interrupted");
+            Thread.sleep(50);
+            assertEquals("Late", loader.get(), "A finished fetch is used even during the retry delay");
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BinaryLibraryFile} and {@link LibraryConverter} classes.
+ */
+public class BinaryLibraryFileTest {
+
+    private static BookDto book(String key, String title, String author, String date, String description) {
+        return new BookDtoBuilder().key(key).title(title).author(author).coverUrl("https://covers/" + title)
+                .publishDate(date).description(description).build();
+    }
+
+    private static void assertSameBook(BookDto expected, BookDto actual) {
+        assertEquals(expected.getTitle(), actual.getTitle());
+        assertEquals(expected.getAuthor(), actual.getAuthor());
+        assertEquals(expected.getCoverUrl(), actual.getCoverUrl());
+        assertEquals(expected.getPublishDate(), actual.getPublishDate());
+        assertEquals(expected.getDescription(), actual.getDescription());
+        assertEquals(LibraryRecords.keyOf(expected), actual.getKey());
+    }
+
+    /**
+     * Tests that every kind of field reads back as written, across several blocks,
+     * and that updates and removals are appended.
+     */
+    @Test
+    public void testRoundTripAndAppend(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BinaryLibraryFile________________");
+        Path file = dir.resolve("library.bin");
+        List<BookDto> books = new ArrayList<>();
+        books.add(book("/works/OL1W", "Plain", "Tolkien", "1954", "Has || and\nnew lines"));
+        books.add(book("/works/OL2W", "Dated", "Tolkien", "July 29, 1954", ""));
+        books.add(book("/works/OL3W", "Unknown", "Борис Акунин", "N/A", null));
+        books.add(new BookDto("No key", null, null, null, null, "Nulls everywhere"));
+        books.add(new BookDto("Open Library", "A", "https://covers.openlibrary.org/b/id/8406786-M.jpg", "2000",
+                "/works/OL27448W", "Stored as numbers"));
+        books.add(new BookDto("Leading zero", "A", "https://covers.openlibrary.org/b/id/0123-M.jpg", "2000",
+                "/works/OL0123W", "Stored as text"));
+        for (int i = 0; i < BinaryLibraryFile.BLOCK_RECORDS + 10; i++) {
+            books.add(book("/works/OL" + (100 + i) + "W", "Book " + i, "Author " + (i % 7), "0" + i % 3, "d"));
+        }
+
+        BinaryLibraryFile store = new BinaryLibraryFile(file);
+        store.putAll(books);
+        assertTrue(BinaryLibraryFile.isBinary(file));
+
+        List<BookDto> loaded = new BinaryLibraryFile(file).loadAll();
+        assertEquals(books.size(), loaded.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertSameBook(books.get(i), loaded.get(i));
+        }
+
+        store.put(book("/works/OL1W", "Plain, revised", "Tolkien", "1955", ""));
+        assertTrue(store.remove("/works/OL2W"));
+        assertFalse(store.remove("/works/OL2W"));
+
+        List<BookDto> reloaded = new BinaryLibraryFile(file).loadAll();
+        assertEquals(books.size() - 1, reloaded.size());
+        assertEquals("Unknown", reloaded.get(0).getTitle());
+        assertEquals("Plain, revised", reloaded.get(reloaded.size() - 1).getTitle());
+    }
+
+    /**
+     * Tests that an incomplete last block is ignored and overwritten, and that a
+     * damaged block is reported.
+     */
+    @Test
+    public void testDetectsDamagedBlocks(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BinaryLibraryFile checksums________________");
+        Path file = dir.resolve("library.bin");
+        BinaryLibraryFile store = new BinaryLibraryFile(file);
+        store.put(book("/works/OL1W", "First", "A", "2000", "one"));
+        long firstEnd = Files.size(file);
+        store.put(book("/works/OL2W", "Second", "B", "2001", "two"));
+
+        // Cut the second block short, as a crash during the append would
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+        BinaryLibraryFile reopened = new BinaryLibraryFile(file);
+        assertEquals(1, reopened.loadAll().size());
+        reopened.put(book("/works/OL3W", "Third", "C", "2002", "three"));
+        assertEquals(List.of("First", "Third"),
+                new BinaryLibraryFile(file).loadAll().stream().map(BookDto::getTitle).toList());
+
+        // Flip a byte inside the first block
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) firstEnd - 6] ^= 0x55;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).loadAll());
+    }
+
+    /**
+     * Tests that damage before the last block, or another format version, fails
+     * loudly instead of being taken for a block cut short, and that appends leave
+     * such a file alone.
+     */
+    @Test
+    public void testDamageBeforeTheEndIsNotTruncated(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BinaryLibraryFile damaged frames________________");
+        Path file = dir.resolve("library.bin");
+        BinaryLibraryFile store = new BinaryLibraryFile(file);
+        store.put(book("/works/OL1W", "First", "A", "2000", "one"));
+        long secondStart = Files.size(file);
+        store.put(book("/works/OL2W", "Second", "B", "2001", "two"));
+        store.put(book("/works/OL3W", "Third", "C", "2002", "three"));
+        byte[] intact = Files.readAllBytes(file);
+
+        // A length field claiming more bytes than the file holds
+        byte[] bytes = intact.clone();
+        bytes[(int) secondStart] = 0x7F;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).loadAll());
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).put(book("/works/OL4W", "Fourth", "D", "2003", "")));
+        assertEquals(intact.length, Files.size(file), "The blocks after the damage must not be truncated");
+
+        // A record count changed
+        bytes = intact.clone();
+        bytes[(int) secondStart + 7] ^= 0x01;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).loadAll());
+
+        // The last block dropped whole: the header counts more records than the file holds
+        Files.write(file, Arrays.copyOf(intact, (int) secondStart));
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).loadAll());
+
+        // Another format version
+        bytes = intact.clone();
+        bytes[5] = 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> new BinaryLibraryFile(file).loadAll());
+    }
+
+    /**
+     * Tests that converting text to binary and back keeps the library, that the
+     * binary file is smaller, and that BookLibraryService detects the format.
+     */
+    @Test
+    public void testConvertAndDetect(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryConverter________________");
+        Path text = dir.resolve("library.txt");
+        LibraryLog log = new LibraryLog(text);
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            books.add(book("/works/OL" + i + "W", "Book " + i, "Author " + (i % 20), String.valueOf(1900 + i % 100), "d" + i));
+        }
+        log.putAll(books);
+        log.remove("/works/OL5W");
+
+        Path binary = dir.resolve("library.bin");
+        assertEquals(1_001, LibraryConverter.convert(text, binary));
+        assertTrue(Files.size(binary) < Files.size(text), "The binary file should be smaller");
+
+        BookLibraryService service = new BookLibraryService(binary.toString());
+        List<BookDto> loaded = service.loadBooks();
+        assertEquals(999, loaded.size());
+        assertSameBook(books.get(0), loaded.get(0));
+
+        service.saveBook(book("/works/OL9999W", "Added", "Someone", "2020", "new"));
+        assertTrue(BinaryLibraryFile.isBinary(binary), "Saving should keep the binary format");
+        assertTrue(service.removeBook("/works/OL0W"));
+
+        Path back = dir.resolve("back.txt");
+        LibraryConverter.convert(binary, back);
+        List<BookDto> roundTrip = new LibraryLog(back).loadAll();
+        assertEquals(999, roundTrip.size());
+        assertEquals("Book 1", roundTrip.get(0).getTitle());
+        assertEquals("Added", roundTrip.get(roundTrip.size() - 1).getTitle());
+    }
+
+    /**
+     * Tests that text to binary and back keeps the spaces around fields and the
+     * pipes inside them.
+     */
+    @Test
+    public void testConvertIsLossless(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryConverter round trip________________");
+        Path text = dir.resolve("library.txt");
+        String lines = "  Spaced title ||Author  || null||2000|| description with trailing space ||/works/OL1W\n"
+                + "Plain||Author||null||2001||text||/works/OL2W\n";
+        Files.writeString(text, lines);
+
+        Path binary = dir.resolve("library.bin");
+        Path back = dir.resolve("back.txt");
+        LibraryConverter.convert(text, binary);
+        assertEquals("  Spaced title ", BinaryLibraryFile.open(binary).loadAll().get(0).getTitle());
+        LibraryConverter.convert(binary, back);
+        assertEquals(lines, Files.readString(back));
+
+        Path pipes = dir.resolve("pipes.bin");
+        List<String> titles = List.of("Pipes || inside", "Ends with |", "Back\\slash \\|| \\");
+        for (int i = 0; i < titles.size(); i++) {
+            new BinaryLibraryFile(pipes).put(book("/works/OL" + (i + 3) + "W", titles.get(i), "A|", "2000", "d||"));
+        }
+        Path pipesText = dir.resolve("pipes.txt");
+        LibraryConverter.convert(pipes, pipesText);
+        List<BookDto> read = new LibraryLog(pipesText).loadAll();
+        assertEquals(titles, read.stream().map(BookDto::getTitle).toList());
+        assertEquals("A|", read.get(0).getAuthor());
+        assertEquals("d||", read.get(0).getDescription());
+    }
+}
@@ -0,0 +1,134 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.TestBooks;
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link CompressedLibraryFile} class.
+ */
+public class CompressedLibraryFileTest {
+
+    /**
+     * Book number i with a zero-padded key, so keys sort as numbers, and a long description.
+     */
+    private static BookDto paddedBook(int i) {
+        return TestBooks.builder(i).key(String.format("/works/OL%06dW", i))
+                .description(("Book " + i + " is a story told over many chapters, about people and places. ").repeat(5))
+                .build();
+    }
+
+    private static List<BookDto> books(int from, int to) {
+        List<BookDto> books = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            books.add(paddedBook(i));
+        }
+        return books;
+    }
+
+    /**
+     * Tests point lookups and full loads over many small blocks, before and
+     * after saves and removals, and through a second store sharing the file.
+     */
+    @Test
+    public void testLookupsAndSaves(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing CompressedLibraryFile lookups________________");
+        Path file = dir.resolve("library.bkz");
+        CompressedLibraryFile store = new CompressedLibraryFile(file, 4096);
+        store.replaceAll(books(1, 2001));
+        assertTrue(CompressedLibraryFile.isCompressed(file));
+        assertTrue(store.getBlockCount() > 100, "Small blocks expected");
+
+        for (int i = 1; i <= 2000; i += 37) {
+            assertEquals("Book " + i, store.get(paddedBook(i).getKey()).getTitle());
+        }
+        assertNull(store.get("/works/OL000000W"), "Key before the first block");
+        assertNull(store.get("/works/OL999999W"), "Key after the last block");
+        List<BookDto> all = store.loadAll();
+        assertEquals(2000, all.size());
+        assertEquals(paddedBook(1).getKey(), all.get(0).getKey());
+        assertEquals(paddedBook(1).getDescription(), all.get(0).getDescription());
+
+        store.put(paddedBook(5000));
+        store.put(new BookDtoBuilder().key(paddedBook(10).getKey()).title("Renamed").author("A").coverUrl("N/A")
+                .publishDate("N/A").description(null).build());
+        assertTrue(store.remove(paddedBook(20).getKey()));
+        assertFalse(store.remove(paddedBook(20).getKey()));
+        assertFalse(store.remove("/works/OL777777W"));
+
+        CompressedLibraryFile other = new CompressedLibraryFile(file, 4096);
+        assertEquals("Renamed", other.get(paddedBook(10).getKey()).getTitle());
+        assertNull(other.get(paddedBook(10).getKey()).getDescription());
+        assertNull(other.get(paddedBook(20).getKey()));
+        all = other.loadAll();
+        assertEquals(2000, all.size());
+        assertEquals(paddedBook(5000).getKey(), all.get(all.size() - 2).getKey(), "Saves are listed last");
+
+        other.put(paddedBook(6000));
+        assertEquals("Book 6000", store.get(paddedBook(6000).getKey()).getTitle(), "Appends by another store should be read");
+    }
+
+    /**
+     * Tests that saves are merged into the sorted blocks once large enough, and
+     * that a block cut short by a crash is ignored and overwritten.
+     */
+    @Test
+    public void testMergeAndTornBlock(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing CompressedLibraryFile merge________________");
+        Path file = dir.resolve("library.bkz");
+        CompressedLibraryFile store = new CompressedLibraryFile(file, 64 * 1024);
+        store.replaceAll(books(0, 100));
+        int blocks = store.getBlockCount();
+        for (int i = 100; i < 3500; i += 100) {
+            store.putAll(books(i, i + 100));
+        }
+        assertTrue(store.getBlockCount() > blocks, "Saves should have been merged into sorted blocks");
+        assertEquals(3500, store.loadAll().size());
+
+        store.put(paddedBook(9000));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+        CompressedLibraryFile reopened = new CompressedLibraryFile(file, 64 * 1024);
+        assertNull(reopened.get(paddedBook(9000).getKey()), "The torn block should be ignored");
+        reopened.put(paddedBook(9001));
+        assertEquals(3501, new CompressedLibraryFile(file, 64 * 1024).loadAll().size());
+    }
+
+    /**
+     * Tests converting a text library to the compressed format and back, its
+     * size, and the service over a compressed library.
+     */
+    @Test
+    public void testConversionAndService(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing CompressedLibraryFile conversion________________");
+        Path text = dir.resolve("library.txt");
+        Path compressed = dir.resolve("library.bkz");
+        LibraryLog.open(text).putAll(books(0, 3000));
+        assertEquals(3000, LibraryConverter.compress(text, compressed));
+        assertTrue(Files.size(compressed) * 4 < Files.size(text),
+                "Expected at least 4x compression, got " + Files.size(text) + " -> " + Files.size(compressed));
+
+        BookLibraryService service = new BookLibraryService(compressed.toString());
+        assertEquals(3000, service.loadBooks().size());
+        service.saveBook(paddedBook(3000));
+        assertTrue(service.removeBook(paddedBook(0).getKey()));
+        assertEquals(3000, service.loadBooks().size());
+
+        Path back = dir.resolve("back.txt");
+        assertEquals(3000, LibraryConverter.convert(compressed, back));
+        assertEquals(3000, LibraryScanner.readBooks(back).size());
+    }
+}
@@ -0,0 +1,186 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link GroupCommitWriter} class.
+ */
+public class GroupCommitWriterTest {
+
+    /**
+     * Library store counting writes and syncs, optionally failing every write.
+     */
+    private static final class CountingStore implements LibraryStore {
+        final LibraryLog log;
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicInteger syncs = new AtomicInteger();
+        volatile boolean failing;
+
+        CountingStore(Path file) {
+            log = new LibraryLog(file);
+        }
+
+        @Override
+        public Path getFile() {
+            return log.getFile();
+        }
+
+        @Override
+        public void put(BookDto book) throws IOException {
+            putAll(List.of(book));
+        }
+
+        @Override
+        public void putAll(Collection<BookDto> books) throws IOException {
+            if (failing) {
+                throw new IOException("Disk full");
+            }
+            writes.incrementAndGet();
+            log.putAll(books);
+        }
+
+        @Override
+        public boolean remove(String key) throws IOException {
+            return log.remove(key);
+        }
+
+        @Override
+        public List<BookDto> loadAll() throws IOException {
+            return log.loadAll();
+        }
+
+        @Override
+        public void sync() throws IOException {
+            syncs.incrementAndGet();
+            log.sync();
+        }
+
+        @Override
+        public long getGeneration() throws IOException {
+            return log.getGeneration();
+        }
+
+        @Override
+        public void replaceAll(Collection<BookDto> books) throws IOException {
+            log.replaceAll(books);
+        }
+    }
+
+    /**
+     * Tests that concurrent saves are all written, grouped into far fewer
+     * writes and syncs than saves.
+     */
+    @Test
+    public void testGroupsConcurrentSaves(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing GroupCommitWriter________________");
+        CountingStore store = new CountingStore(dir.resolve("library.txt"));
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> committed = new ArrayList<>();
+        try (GroupCommitWriter writer = new GroupCommitWriter(() -> store, DurabilityPolicy.everyWrite(), 1024)) {
+            List<Future<CompletableFuture<Void>>> submitted = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                int n = i;
+                submitted.add(callers.submit(() -> writer.save(book(n))));
+            }
+            for (Future<CompletableFuture<Void>> f : submitted) {
+                committed.add(f.get());
+            }
+            CompletableFuture.allOf(committed.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } finally {
+            callers.shutdown();
+        }
+
+        assertEquals(20_000, store.loadAll().size());
+        assertTrue(store.writes.get() < 20_000, "Saves should share writes: " + store.writes.get());
+        assertTrue(store.syncs.get() <= store.writes.get() + 1, "One sync per write at most");
+    }
+
+    /**
+     * Tests the record count and time policies, and that flush syncs whatever
+     * the policy.
+     */
+    @Test
+    public void testDurabilityPolicies(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing GroupCommitWriter policies________________");
+        CountingStore store = new CountingStore(dir.resolve("library.txt"));
+        try (GroupCommitWriter writer = new GroupCommitWriter(() -> store, DurabilityPolicy.every(Duration.ofMillis(50)), 16)) {
+            CompletableFuture<Void> committed = writer.save(book(1));
+            committed.get(5, TimeUnit.SECONDS);
+            assertEquals(1, store.syncs.get(), "The time policy should sync without further saves");
+        }
+
+        CountingStore counted = new CountingStore(dir.resolve("counted.txt"));
+        try (GroupCommitWriter writer = new GroupCommitWriter(() -> counted, DurabilityPolicy.everyRecords(1_000), 16)) {
+            CompletableFuture<Void> first = writer.save(book(1));
+            Thread.sleep(100);
+            assertFalse(first.isDone(), "One record is below the policy threshold");
+            writer.flush();
+            assertTrue(first.isDone());
+            assertEquals(1, counted.syncs.get());
+        }
+    }
+
+    /**
+     * Tests that a failed write fails the saves and flushes it covers.
+     */
+    @Test
+    public void testReportsFailures(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing GroupCommitWriter failures________________");
+        CountingStore store = new CountingStore(dir.resolve("library.txt"));
+        store.failing = true;
+        GroupCommitWriter writer = new GroupCommitWriter(() -> store, DurabilityPolicy.onFlush(), 16);
+        CompletableFuture<Void> committed = writer.save(book(1));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> committed.get(5, TimeUnit.SECONDS));
+        assertEquals("Disk full", e.getCause().getMessage());
+
+        writer.save(book(2));
+        assertThrows(IOException.class, writer::flush);
+        store.failing = false;
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.save(book(3)));
+    }
+
+    /**
+     * Tests the write-behind mode of BookLibraryService: saves are visible to
+     * loads, which write the queue first.
+     */
+    @Test
+    public void testLibraryServiceWriteBehind(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BookLibraryService write-behind________________");
+        BookLibraryService library = new BookLibraryService(dir.resolve("library.txt").toString());
+        AtomicInteger notified = new AtomicInteger();
+        library.addObserver(b -> notified.incrementAndGet());
+        library.enableWriteBehind(DurabilityPolicy.everyRecords(100), false);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                library.saveBook(book(i));
+            }
+            assertEquals(1_000, notified.get());
+            assertEquals(1_000, library.loadBooks().size());
+            assertTrue(library.removeBook("/works/OL5W"));
+        } finally {
+            library.close();
+        }
+        assertEquals(999, new BookLibraryService(dir.resolve("library.txt").toString()).loadBooks().size());
+    }
+}
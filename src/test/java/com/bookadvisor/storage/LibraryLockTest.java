@@ -0,0 +1,95 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LibraryLock} class and for logs sharing a file.
+ */
+public class LibraryLockTest {
+
+    /**
+     * Tests that the generation only moves on rewrites, and that a shared lock
+     * cannot be upgraded.
+     */
+    @Test
+    public void testGenerationAndNesting(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLock________________");
+        Path file = dir.resolve("library.txt");
+        LibraryLock lock = LibraryLock.of(file);
+        assertSame(lock, LibraryLock.of(dir.resolve(".").resolve("library.txt")));
+
+        try (LibraryLock.Held held = lock.exclusive()) {
+            assertEquals(0, lock.readGeneration());
+            try (LibraryLock.Held nested = lock.shared()) {
+                assertEquals(1, lock.nextGeneration());
+            }
+            assertEquals(1, lock.readGeneration());
+        }
+
+        LibraryLog log = new LibraryLog(file);
+        log.put(book("/works/OL1W", "First"));
+        try (LibraryLock.Held held = lock.shared()) {
+            assertEquals(1, lock.readGeneration(), "Appends should keep the generation");
+            assertThrows(IllegalStateException.class, lock::exclusive);
+        }
+        log.replaceAll(List.of(book("/works/OL2W", "Second")));
+        try (LibraryLock.Held held = lock.shared()) {
+            assertEquals(2, lock.readGeneration(), "Rewrites should move the generation");
+        }
+    }
+
+    /**
+     * Tests that two logs over the same file see each other's appends and
+     * rewrites, and that a follower receives the books appended and removed by the other log.
+     */
+    @Test
+    public void testLogsSharingAFile(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLog shared file________________");
+        Path file = dir.resolve("library.txt");
+        LibraryLog first = new LibraryLog(file);
+        LibraryLog second = new LibraryLog(file);
+
+        first.put(book("/works/OL1W", "One"));
+        assertEquals("One", second.get("/works/OL1W").getTitle());
+        second.put(book("/works/OL2W", "Two"));
+        assertTrue(first.remove("/works/OL2W"), "Appends of the other log should be seen");
+        assertEquals(1, second.size());
+
+        first.replaceAll(List.of(book("/works/OL3W", "Three")));
+        assertNull(second.get("/works/OL1W"), "Rewrites of the other log should be seen");
+        assertEquals(List.of("Three"), second.loadAll().stream().map(BookDto::getTitle).toList());
+
+        LinkedBlockingQueue<BookDto> followed = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<String> removed = new LinkedBlockingQueue<>();
+        AtomicInteger rewrites = new AtomicInteger();
+        second.follow(followed::add, removed::add, rewrites::incrementAndGet);
+        first.put(book("/works/OL4W", "Four"));
+        BookDto appended = followed.poll(30, TimeUnit.SECONDS);
+        assertNotNull(appended, "The follower should receive the appended book");
+        assertEquals("Four", appended.getTitle());
+        assertEquals(2, second.size());
+
+        first.remove("/works/OL3W");
+        assertEquals("/works/OL3W", removed.poll(30, TimeUnit.SECONDS), "The follower should receive the removed key");
+        assertEquals(1, second.size());
+        assertEquals(0, rewrites.get());
+
+        first.replaceAll(List.of(book("/works/OL5W", "Five")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (rewrites.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, rewrites.get(), "The follower should be told of the rewrite");
+    }
+}
@@ -0,0 +1,156 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LibraryLog} class.
+ */
+public class LibraryLogTest {
+
+    /**
+     * Tests that saves replace books with the same key, that removals append a
+     * tombstone, and that a new log over the same file sees the same library.
+     */
+    @Test
+    public void testPutReplaceRemoveAndReopen(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLog________________");
+        Path file = dir.resolve("library.txt");
+        LibraryLog log = new LibraryLog(file);
+
+        log.put(book("/works/OL1W", "First"));
+        log.put(book("/works/OL2W", "Second"));
+        log.put(book("/works/OL1W", "First, revised"));
+        assertTrue(log.remove("/works/OL2W"));
+        assertFalse(log.remove("/works/OL2W"), "Removing twice should do nothing");
+        log.put(book("/works/OL3W", "Third"));
+
+        assertEquals(5, Files.readAllLines(file).size(), "Every change should be appended");
+        assertEquals(2, log.size());
+        assertEquals("First, revised", log.get("/works/OL1W").getTitle());
+        assertNull(log.get("/works/OL2W"));
+        assertTrue(log.getGarbageRatio() > 0);
+
+        List<BookDto> reopened = new LibraryLog(file).loadAll();
+        assertEquals(List.of("First, revised", "Third"), reopened.stream().map(BookDto::getTitle).toList());
+        assertEquals("/works/OL3W", reopened.get(1).getKey());
+        assertEquals("About Third", reopened.get(1).getDescription());
+    }
+
+    /**
+     * Tests that files written before keys were stored are read as they are,
+     * including a last line without terminator, and can be appended to.
+     */
+    @Test
+    public void testReadsLegacyFiles(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLog legacy format________________");
+        Path file = dir.resolve("library.txt");
+        Files.writeString(file, "Old||Someone||null||1999||Old book\nNo description||Someone||null||2001||",
+                StandardCharsets.UTF_8);
+        LibraryLog log = new LibraryLog(file);
+
+        List<BookDto> books = log.loadAll();
+        assertEquals(2, books.size());
+        assertEquals("Old||Someone||null||1999", books.get(0).getKey());
+        assertEquals("", books.get(1).getDescription());
+
+        assertTrue(log.remove(books.get(0).getKey()));
+        log.put(book("/works/OL9W", "New"));
+
+        List<BookDto> reloaded = new LibraryLog(file).loadAll();
+        assertEquals(List.of("No description", "New"), reloaded.stream().map(BookDto::getTitle).toList());
+    }
+
+    /**
+     * Tests that compaction drops replaced records and tombstones but keeps
+     * every live book in file order.
+     */
+    @Test
+    public void testCompactionShrinksFile(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLog compaction________________");
+        Path file = dir.resolve("library.txt");
+        LibraryLog log = new LibraryLog(file, 0.5, Long.MAX_VALUE);
+
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            books.add(book("/works/OL" + i + "W", "Book " + i));
+        }
+        log.putAll(books);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i += 2) {
+                log.put(book("/works/OL" + i + "W", "Book " + i + " v" + round));
+            }
+        }
+        for (int i = 1; i < 100; i += 10) {
+            log.remove("/works/OL" + i + "W");
+        }
+        long before = log.getFileSize();
+        assertTrue(log.getGarbageRatio() > 0.5);
+
+        log.compact();
+
+        assertTrue(log.getFileSize() < before / 2, "Compaction should drop the garbage");
+        assertEquals(0.0, log.getGarbageRatio(), 1e-9);
+        assertEquals(Files.size(file), log.getFileSize());
+        List<BookDto> live = new LibraryLog(file).loadAll();
+        assertEquals(90, live.size());
+        // Replaced books move to the end, where their last record is
+        assertEquals("Book 3", live.get(0).getTitle());
+        assertEquals("Book 98 v2", live.get(live.size() - 1).getTitle());
+        assertEquals("Book 0 v2", log.get("/works/OL0W").getTitle());
+    }
+
+    /**
+     * Tests that two logs compacting the same file at the same time, as two
+     * processes would, keep every live book and leave no temporary file.
+     */
+    @Test
+    public void testConcurrentCompactions(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryLog concurrent compactions________________");
+        Path file = dir.resolve("library.txt");
+        LibraryLog first = new LibraryLog(file, 0.5, Long.MAX_VALUE);
+        LibraryLog second = new LibraryLog(file, 0.5, Long.MAX_VALUE);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 2_000; i++) {
+                first.put(book("/works/OL" + i + "W", "Book " + i + " v" + round));
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> a = pool.submit(() -> {
+                    first.compact();
+                    return null;
+                });
+                Future<?> b = pool.submit(() -> {
+                    second.compact();
+                    return null;
+                });
+                a.get();
+                b.get();
+            } finally {
+                pool.shutdown();
+            }
+            List<BookDto> live = new LibraryLog(file).loadAll();
+            assertEquals(2_000, live.size());
+            for (BookDto book : live) {
+                assertTrue(book.getTitle().endsWith(" v" + round), book.getTitle());
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(List.of(), files.filter(f -> f.toString().endsWith(".compact")).toList());
+            }
+        }
+    }
+}
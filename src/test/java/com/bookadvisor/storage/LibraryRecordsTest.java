@@ -0,0 +1,69 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LibraryRecords} class.
+ */
+public class LibraryRecordsTest {
+
+    /**
+     * Tests that fields holding separators, pipes and backslashes read back
+     * whole, and that books differing only there keep their own keys.
+     */
+    @Test
+    public void testSeparatorsInsideFieldsRoundTrip() {
+        System.out.println("__________Testing LibraryRecords escaping________________");
+        List<String> descriptions = List.of("has || pipes", "also || pipes", "a | b", "ends with |",
+                "|| starts", "back\\slash", "escaped \\|| and \\\\ and \\", "|||");
+        for (String description : descriptions) {
+            BookDto book = new BookDtoBuilder().key("/works/OL1W").title("Title | with pipe").author("Author||")
+                    .coverUrl("N/A").publishDate("2000").description(description).build();
+            String line = LibraryRecords.encode(book);
+            BookDto decoded = LibraryRecords.decode(line);
+
+            assertEquals("/works/OL1W", decoded.getKey(), line);
+            assertEquals(description, decoded.getDescription(), line);
+            assertEquals("Title | with pipe", decoded.getTitle(), line);
+            assertEquals("Author||", decoded.getAuthor(), line);
+            assertEquals("2000", decoded.getPublishDate(), line);
+        }
+
+        // Without a stored key, the derived key is the same from the book and from its record
+        BookDto keyless = new BookDtoBuilder().title("A || B").author("C |").coverUrl("N/A").publishDate("2000")
+                .description("d").build();
+        String line = LibraryRecords.encode(keyless);
+        assertEquals(LibraryRecords.keyOf(keyless), LibraryRecords.decode(line).getKey());
+        assertEquals(LibraryRecords.keyOf(keyless), LibraryRecords.keyOf(line));
+        assertEquals("A || B", LibraryRecords.decode(line).getTitle());
+    }
+
+    /**
+     * Tests that records written before escaping read as they always did.
+     */
+    @Test
+    public void testUnescapedRecordsReadAsBefore() {
+        System.out.println("__________Testing LibraryRecords unescaped records________________");
+        BookDto odd = LibraryRecords.decode("Odd|||Pipes||a|b||2000||x||||");
+        assertEquals("Odd", odd.getTitle());
+        assertEquals("|Pipes", odd.getAuthor());
+        assertEquals("a|b", odd.getCoverUrl());
+        assertEquals("x", odd.getDescription());
+        assertEquals("Odd|||Pipes||a|b||2000", odd.getKey());
+
+        BookDto path = LibraryRecords.decode("C:\\books||Author||null||1999||d||/works/OL2W||extra");
+        assertEquals("C:\\books", path.getTitle());
+        assertEquals("/works/OL2W", path.getKey());
+
+        BookDto shortRecord = LibraryRecords.decode("Short||Only");
+        assertEquals("Only", shortRecord.getAuthor());
+        assertEquals("", shortRecord.getDescription());
+        assertEquals("Short||Only||||", shortRecord.getKey());
+    }
+}
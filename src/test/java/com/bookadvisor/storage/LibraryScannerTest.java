@@ -0,0 +1,157 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.model.BookDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LibraryScanner} class.
+ */
+public class LibraryScannerTest {
+
+    /**
+     * Tests that the byte-level scanner splits fields exactly as
+     * {@link LibraryRecords#decode(String)} does, multi-byte text included.
+     */
+    @Test
+    public void testMatchesRecordDecoding(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryScanner fields________________");
+        List<String> lines = List.of(
+                "Title||Author||http://cover||2001||A description||/works/OL1W",
+                "Légendes||Борис Акунин||null||1999||Ça déborde: 日本語",
+                "No description||Someone||null||2001||",
+                "Short||Only",
+                "Odd|||Pipes||a|b||2000||x||||",
+                "Too||many||fields||here||desc||/works/OL2W||extra",
+                "Windows||Line||null||2002||crlf\r");
+        Path file = dir.resolve("library.txt");
+        Files.writeString(file, String.join("\n", lines), StandardCharsets.UTF_8);
+
+        List<BookDto> books = LibraryScanner.readBooks(file);
+
+        assertEquals(lines.size(), books.size());
+        for (int i = 0; i < lines.size(); i++) {
+            BookDto expected = LibraryRecords.decode(lines.get(i).strip());
+            BookDto actual = books.get(i);
+            assertEquals(expected.getTitle(), actual.getTitle(), lines.get(i));
+            assertEquals(expected.getAuthor(), actual.getAuthor(), lines.get(i));
+            assertEquals(expected.getCoverUrl(), actual.getCoverUrl(), lines.get(i));
+            assertEquals(expected.getPublishDate(), actual.getPublishDate(), lines.get(i));
+            assertEquals(expected.getDescription(), actual.getDescription(), lines.get(i));
+            assertEquals(expected.getKey(), actual.getKey(), lines.get(i));
+        }
+    }
+
+    /**
+     * Tests that escaped separators inside fields parse as {@link LibraryRecords#decode(String)}
+     * reads them, so a description holding {@code ||} does not leak into the key.
+     */
+    @Test
+    public void testEscapedFieldsMatchRecordDecoding(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryScanner escaped fields________________");
+        List<BookDto> books = List.of(
+                new BookDto("Title", "Author", "N/A", "2000", "/works/OL1W", "has || pipes"),
+                new BookDto("Title", "Author", "N/A", "2000", "/works/OL2W", "also || pipes"),
+                new BookDto("A || B", "C |", "N/A", "2000", null, "back\\slash \\"));
+        Path file = dir.resolve("library.txt");
+        Files.writeString(file, String.join("\n", books.stream().map(LibraryRecords::encode).toList()) + "\n",
+                StandardCharsets.UTF_8);
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+
+        List<BookDto> read = LibraryScanner.readBooks(file);
+
+        assertEquals(books.size(), read.size());
+        for (int i = 0; i < books.size(); i++) {
+            BookDto expected = LibraryRecords.decode(lines.get(i));
+            assertEquals(expected.getTitle(), read.get(i).getTitle());
+            assertEquals(expected.getAuthor(), read.get(i).getAuthor());
+            assertEquals(expected.getDescription(), read.get(i).getDescription());
+            assertEquals(expected.getKey(), read.get(i).getKey());
+            assertEquals(books.get(i).getDescription(), read.get(i).getDescription());
+            assertEquals(LibraryRecords.keyOf(books.get(i)), read.get(i).getKey());
+        }
+        assertEquals(List.of("/works/OL1W", "/works/OL2W"), new LibraryLog(file).loadAll().stream()
+                .limit(2).map(BookDto::getKey).toList(), "Both books should survive a reload");
+    }
+
+    /**
+     * Tests that a file split into many chunks is parsed completely, in file
+     * order, with replaced and removed records left out.
+     */
+    @Test
+    public void testParallelChunksKeepFileOrder(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryScanner chunks________________");
+        Path file = dir.resolve("library.txt");
+        int count = 60_000;
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < count; i++) {
+                out.write("Book " + i + "||Author é||null||2000||" + "x".repeat(60) + "||/works/OL" + i + "W");
+                out.newLine();
+            }
+            out.write(LibraryRecords.tombstone("/works/OL7W"));
+            out.newLine();
+            out.write("Book 3 again||Author||null||2000||||/works/OL3W");
+            out.newLine();
+        }
+        assertTrue(Files.size(file) > 4L * LibraryScanner.MIN_CHUNK_BYTES, "The file should span several chunks");
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<BookDto> books = LibraryScanner.readBooks(file, pool);
+            assertEquals(count - 1, books.size());
+            assertEquals("Book 0", books.get(0).getTitle());
+            assertEquals("Book 4", books.get(3).getTitle());
+            assertEquals("Book 8", books.get(6).getTitle());
+            assertEquals("Book " + (count - 1), books.get(count - 3).getTitle());
+            assertEquals("Book 3 again", books.get(count - 2).getTitle());
+            assertEquals("Author é", books.get(100).getAuthor());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a single worker still parses the file in chunks no larger than
+     * the chunk limit, with the same records as a single pass.
+     */
+    @Test
+    public void testSingleWorkerParsesChunks(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing LibraryScanner single worker________________");
+        Path file = dir.resolve("library.txt");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < 2_000; i++) {
+                out.write("Book " + i + "||Author é||null||2000||" + "x".repeat(i % 300) + "||/works/OL" + i + "W");
+                out.newLine();
+            }
+            out.write("Last||Line||null||2000||no newline||/works/OL9999W");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<LibraryScanner.Entry> whole = LibraryScanner.scan(channel, 0, channel.size(), true, pool, Integer.MAX_VALUE);
+            List<LibraryScanner.Entry> chunked = LibraryScanner.scan(channel, 0, channel.size(), true, pool, 4096);
+            assertEquals(2_001, chunked.size());
+            assertEquals(whole.size(), chunked.size());
+            for (int i = 0; i < whole.size(); i++) {
+                assertEquals(whole.get(i).offset, chunked.get(i).offset);
+                assertEquals(whole.get(i).length, chunked.get(i).length);
+                assertEquals(whole.get(i).key, chunked.get(i).key);
+                assertEquals(whole.get(i).book.getDescription(), chunked.get(i).book.getDescription());
+            }
+            assertEquals("Last", chunked.get(2_000).book.getTitle());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
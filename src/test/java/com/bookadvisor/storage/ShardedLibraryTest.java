@@ -0,0 +1,163 @@
+package com.bookadvisor.storage;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.service.BookLibraryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.bookadvisor.TestBooks.book;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ShardedLibrary} class.
+ */
+public class ShardedLibraryTest {
+
+    private static Set<String> keys(List<BookDto> books) {
+        Set<String> keys = new HashSet<>();
+        books.forEach(b -> keys.add(b.getKey()));
+        return keys;
+    }
+
+    /**
+     * Tests splitting a text library into shards: every book is kept, each
+     * shard only holds its own books, and removals find the shard of the book.
+     */
+    @Test
+    public void testSplitAndRouting(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing ShardedLibrary split________________");
+        Path file = dir.resolve("library.txt");
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 1; i <= 500; i++) {
+            books.add(book(i));
+        }
+        LibraryLog.open(file).putAll(books);
+        // A book without a key is routed by the title and author of its derived key
+        BookDto unkeyed = new BookDtoBuilder().title("No Key").author("Someone").coverUrl("N/A")
+                .publishDate("1999").description("").build();
+        LibraryLog.open(file).put(unkeyed);
+
+        ShardedLibrary sharded = ShardedLibrary.reshard(file, 4);
+        assertTrue(ShardedLibrary.isManifest(file));
+        assertEquals(4, sharded.getShardCount());
+        assertEquals(5, sharded.getFiles().size(), "Manifest and four shards");
+        assertEquals(501, sharded.loadAll().size());
+
+        List<Path> files = sharded.getFiles();
+        for (int i = 0; i < 4; i++) {
+            List<BookDto> shard = LibraryLog.open(files.get(i + 1)).loadAll();
+            assertFalse(shard.isEmpty(), "Books should spread over every shard");
+            for (BookDto book : shard) {
+                assertEquals(i, ShardedLibrary.shardOf(LibraryRecords.keyOf(book), 4));
+            }
+        }
+
+        assertTrue(sharded.remove(LibraryRecords.keyOf(unkeyed)));
+        assertTrue(sharded.remove("/works/OL7W"));
+        assertFalse(sharded.remove("/works/OL7W"));
+        sharded.put(book(1000));
+        List<BookDto> loaded = sharded.loadAll();
+        assertEquals(500, loaded.size());
+        assertTrue(keys(loaded).contains("/works/OL1000W"));
+        assertFalse(keys(loaded).contains("/works/OL7W"));
+    }
+
+    /**
+     * Tests splitting a compressed library: it is read as a compressed file,
+     * not as text, and every book with its fields is kept.
+     */
+    @Test
+    public void testSplitCompressedLibrary(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing ShardedLibrary split of a compressed library________________");
+        Path file = dir.resolve("library.bkz");
+        List<BookDto> books = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            books.add(book(i));
+        }
+        new CompressedLibraryFile(file, 4096).replaceAll(books);
+
+        ShardedLibrary sharded = ShardedLibrary.reshard(file, 3);
+        assertTrue(ShardedLibrary.isManifest(file));
+        List<BookDto> loaded = sharded.loadAll();
+        assertEquals(50, loaded.size());
+        assertEquals(keys(books), keys(loaded));
+        for (BookDto book : loaded) {
+            assertEquals("About " + book.getTitle().toLowerCase(), book.getDescription());
+        }
+    }
+
+    /**
+     * Tests that concurrent saves from several threads all land, and that
+     * changing the number of shards keeps every book and deletes the old shards.
+     */
+    @Test
+    public void testConcurrentSavesAndReshard(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing ShardedLibrary reshard________________");
+        Path file = dir.resolve("library.txt");
+        ShardedLibrary sharded = ShardedLibrary.reshard(file, 3);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> saves = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int first = t * 250;
+                saves.add(pool.submit(() -> {
+                    for (int i = first; i < first + 250; i++) {
+                        sharded.put(book(i));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> save : saves) {
+                save.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1000, sharded.loadAll().size());
+
+        List<Path> oldShards = sharded.getFiles().subList(1, 4);
+        ShardedLibrary.reshard(file, 5);
+        assertEquals(5, sharded.getShardCount());
+        Set<String> keys = keys(sharded.loadAll());
+        assertEquals(1000, keys.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(keys.contains("/works/OL" + i + "W"));
+        }
+        for (Path old : oldShards) {
+            assertFalse(Files.exists(old), "Old shards should be deleted");
+        }
+    }
+
+    /**
+     * Tests the service over a sharded library, including a reshard made
+     * behind its back: its resident copy must notice the new layout.
+     */
+    @Test
+    public void testServiceOverShards(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing ShardedLibrary with the service________________");
+        Path file = dir.resolve("library.txt");
+        BookLibraryService service = new BookLibraryService(file.toString());
+        service.saveBook(book(1));
+        service.saveBook(book(2));
+        ShardedLibrary.reshard(file, 2);
+        assertEquals(2, service.loadBooks().size());
+
+        service.saveBook(book(3));
+        assertTrue(service.removeBook("/works/OL1W"));
+        ShardedLibrary.reshard(file, 4);
+        assertEquals(Set.of("/works/OL2W", "/works/OL3W"), keys(service.loadBooks()));
+        assertEquals(2, ShardedLibrary.open(file).loadAll().size());
+    }
+}
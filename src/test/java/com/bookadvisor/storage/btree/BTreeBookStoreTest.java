@@ -0,0 +1,129 @@
+package com.bookadvisor.storage.btree;
+
+import com.bookadvisor.factory.BookDtoBuilder;
+import com.bookadvisor.model.BookDto;
+import com.bookadvisor.storage.DurabilityPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BTreeBookStore} class.
+ */
+public class BTreeBookStoreTest {
+
+    private static String key(int i) {
+        return String.format("/works/OL%06dW", i);
+    }
+
+    private static BookDto book(int i, String description) {
+        return new BookDtoBuilder().key(key(i)).title("Book " + i).author("Author " + (i % 50))
+                .coverUrl(i % 3 == 0 ? null : "N/A").publishDate("19" + (i % 100)).description(description).build();
+    }
+
+    /**
+     * Tests get, replace and remove by key over a tree several levels deep,
+     * ordered range scans, and values larger than a page.
+     */
+    @Test
+    public void testPutGetRemoveAndScan(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BTreeBookStore________________");
+        Path file = dir.resolve("library.db");
+        String large = "Long description. ".repeat(1000);
+        try (BTreeBookStore store = BTreeBookStore.open(file, 64, DurabilityPolicy.onFlush())) {
+            // Shuffled inserts, so splits happen all over the tree
+            for (int i = 0; i < 20_000; i++) {
+                int n = (int) ((i * 7919L) % 20_000);
+                store.put(book(n, n % 1000 == 0 ? large : "About " + n));
+            }
+            assertEquals(20_000, store.size());
+            assertTrue(store.height() >= 3, "20000 books should need several levels");
+
+            assertEquals("About 12345", store.get(key(12345)).getDescription());
+            assertEquals(large, store.get(key(5000)).getDescription());
+            assertNull(store.get(key(3)).getCoverUrl());
+            assertNull(store.get("/works/OL999999W"));
+
+            store.put(book(12345, "Revised"));
+            assertEquals("Revised", store.get(key(12345)).getDescription());
+            assertEquals(20_000, store.size());
+            assertTrue(store.remove(key(77)));
+            assertFalse(store.remove(key(77)));
+            assertNull(store.get(key(77)));
+
+            List<String> keys = new ArrayList<>();
+            store.forEach(key(70), key(80), b -> keys.add(b.getKey()));
+            assertEquals(9, keys.size());
+            assertEquals(key(70), keys.get(0));
+            assertEquals(key(79), keys.get(8));
+            List<BookDto> page = store.list(key(19_998), 10);
+            assertEquals(List.of("Book 19998", "Book 19999"), page.stream().map(BookDto::getTitle).toList());
+
+            // Replacing a large value reuses the pages of the previous one
+            store.checkpoint();
+            long size = Files.size(file);
+            for (int i = 0; i < 50; i++) {
+                store.put(book(5000, large + i));
+            }
+            store.checkpoint();
+            assertEquals(size, Files.size(file), "Freed pages should be reused");
+        }
+
+        try (BTreeBookStore reopened = BTreeBookStore.open(file)) {
+            assertEquals(19_999, reopened.size());
+            assertEquals(large + 49, reopened.get(key(5000)).getDescription());
+            List<String> keys = new ArrayList<>();
+            reopened.forEach(null, null, b -> keys.add(b.getKey()));
+            assertEquals(19_999, keys.size());
+            assertEquals(keys.stream().sorted().toList(), keys, "Scans should be in key order");
+        }
+    }
+
+    /**
+     * Tests that the changes made after the last checkpoint are recovered from
+     * the log after a crash, and that a record cut short is ignored.
+     */
+    @Test
+    public void testRecoversFromLog(@TempDir Path dir) throws Exception {
+        System.out.println("__________Testing BTreeBookStore recovery________________");
+        Path file = dir.resolve("library.db");
+        BTreeBookStore store = BTreeBookStore.open(file, 16, DurabilityPolicy.onFlush());
+        for (int i = 0; i < 3000; i++) {
+            store.put(book(i, "About " + i));
+        }
+        for (int i = 0; i < 3000; i += 2) {
+            store.remove(key(i));
+        }
+        store.put(book(1, "Last change"));
+        store.sync();
+        store.abandon();
+        // A record being written when the process stopped
+        Files.write(dir.resolve("library.db.wal"), new byte[]{1, 0, 0, 0, 100, 'x'}, StandardOpenOption.APPEND);
+
+        try (BTreeBookStore recovered = BTreeBookStore.open(file)) {
+            assertEquals(1500, recovered.size());
+            assertNull(recovered.get(key(0)));
+            assertEquals("Last change", recovered.get(key(1)).getDescription());
+            assertEquals("About 2999", recovered.get(key(2999)).getDescription());
+            recovered.put(book(2, "After recovery"));
+        }
+        assertEquals(0, Files.size(dir.resolve("library.db.wal")), "Closing should empty the log");
+
+        try (BTreeBookStore reopened = BTreeBookStore.open(file)) {
+            assertEquals(1501, reopened.size());
+            assertEquals("After recovery", reopened.get(key(2)).getDescription());
+            assertThrows(IOException.class, () -> BTreeBookStore.open(file), "The file is in use");
+            assertThrows(IllegalArgumentException.class, () -> reopened.put(new BookDtoBuilder()
+                    .key("/works/" + "x".repeat(600)).title("Too long").build()));
+            assertEquals(1501, reopened.size());
+        }
+    }
+}
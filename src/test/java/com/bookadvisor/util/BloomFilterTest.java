@@ -0,0 +1,34 @@
+package com.bookadvisor.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BloomFilter} class.
+ */
+public class BloomFilterTest {
+
+    /**
+     * Tests that added values are always found, and that other values are
+     * mostly rejected, at about the chosen false positive rate.
+     */
+    @Test
+    public void testFalsePositiveRate() {
+        System.out.println("__________Testing BloomFilter________________");
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (long i = 0; i < 100_000; i++) {
+            filter.add(i * 31);
+        }
+        for (long i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(i * 31), "Added values must be found");
+        }
+        int falsePositives = 0;
+        for (long i = 0; i < 100_000; i++) {
+            if (filter.mightContain(-1 - i * 31)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2000, "Expected about 1% false positives, got " + falsePositives);
+    }
+}
@@ -0,0 +1,49 @@
+package com.bookadvisor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BoundedExecutor} class.
+ */
+public class BoundedExecutorTest {
+
+    /**
+     * Tests that no more than the configured number of tasks run at the same time
+     * and that every result can be collected in submission order.
+     */
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        System.out.println("__________Testing BoundedExecutor________________");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        try (BoundedExecutor executor = new BoundedExecutor("test", 3)) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                int n = i;
+                futures.add(executor.submit(() -> {
+                    int now = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(now, Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return n;
+                }));
+            }
+
+            // Results come back in the order the tasks were submitted
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(i, futures.get(i).get());
+            }
+        }
+
+        assertTrue(maxRunning.get() <= 3, "At most 3 tasks should run at the same time");
+        assertTrue(maxRunning.get() > 1, "Tasks should actually run concurrently");
+    }
+}
@@ -0,0 +1,51 @@
+package com.bookadvisor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link LongHashMap} class.
+ */
+public class LongHashMapTest {
+
+    /**
+     * Tests random puts and removes against a HashMap, with keys chosen to
+     * collide often, so removals have to shift entries back.
+     */
+    @Test
+    public void testMatchesHashMap() {
+        System.out.println("__________Testing LongHashMap________________");
+        LongHashMap<String> map = new LongHashMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5000) * (random.nextBoolean() ? 1L : -1L << 40);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + i;
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Set<Long> keys = new HashSet<>();
+        map.forEachKey(keys::add);
+        assertEquals(expected.keySet(), keys);
+        assertNull(map.get(123_456_789L));
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(keys.iterator().next()));
+    }
+}
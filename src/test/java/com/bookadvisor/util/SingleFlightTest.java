@@ -0,0 +1,144 @@
+package com.bookadvisor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link SingleFlight} class.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Tests that concurrent callers for the same key share a single load.
+     */
+    @Test
+    public void testConcurrentCallersShareOneLoad() throws Exception {
+        System.out.println("__________Testing SingleFlight coalescing________________");
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(pool.submit(() -> flight.execute("/works/OL1W.json", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "value";
+                })));
+            }
+            // Let every caller reach the in-flight load before it completes
+            while (flight.getCoalescedCount() < 4) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get());
+            }
+            assertEquals(1, loads.get());
+            assertEquals(0, flight.getInFlightCount());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a failure reaches the waiting callers and is not remembered.
+     */
+    @Test
+    public void testFailureIsPropagatedAndNotCached() throws Exception {
+        System.out.println("__________Testing SingleFlight failures________________");
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> leader = pool.submit(() -> flight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                throw new IOException("HTTP 503");
+            }));
+            started.await(5, TimeUnit.SECONDS);
+            Future<String> waiter = pool.submit(() -> flight.execute("key", () -> "not called"));
+            while (flight.getCoalescedCount() < 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> caller : List.of(leader, waiter)) {
+                ExecutionException e = assertThrows(ExecutionException.class, caller::get);
+                assertEquals("HTTP 503", e.getCause().getMessage());
+            }
+
+            // The next call loads again
+            assertEquals("fresh", flight.execute("key", () -> "fresh"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that cancelling one of two coalesced callers neither interrupts the
+     * load nor fails the other caller.
+     */
+    @Test
+    public void testCancelledCallerLeavesTheLoadRunning() throws Exception {
+        System.out.println("__________Testing SingleFlight cancellation________________");
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<String> first = pool.submit(() -> flight.execute("key", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                // An interrupt would end the wait early and fail the load
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> second = pool.submit(() -> flight.execute("key", () -> "not called"));
+            while (flight.getCoalescedCount() < 1) {
+                Thread.sleep(5);
+            }
+
+            first.cancel(true);
+            release.countDown();
+
+            assertEquals("value", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertTrue(first.isCancelled());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a latch from inside a loader, which may only throw IOException.
+     */
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+}